@@ -0,0 +1,377 @@
+import bearmaps.jmh.Workload;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The workloads of the JMH benchmarks in <code>bearmaps.jmh</code>, made from the datasets and
+ * query files the unit tests use. A dataset is the name of an OSM file in the directory given by
+ * the <code>bearmaps.data</code> property, by default the one the tests read, without its
+ * <code>.osm.xml</code> suffix. Viewports are either the raster_params.txt queries or random
+ * 2560x1440 viewports at the deepest level, which need the largest render grids. Graphs larger
+ * than any extract are <code>SyntheticGrid</code> snapshots, kept in the temporary directory.
+ * Random points and names are drawn with fixed seeds, so every run times the same operations.
+ */
+public class Workloads {
+    private static final String DATA_DIR = System.getProperty("bearmaps.data",
+            "../library-su18/bearmaps/");
+    private static final String IMG_ROOT = "../library-su18/bearmaps/img/";
+    private static final int NUM_CLOSEST = 100000;
+    private static final int NUM_LARGE_ROUTES = 100;
+    private static final int NUM_LARGE_GRIDS = 20;
+    private static final int NUM_ISOCHRONES = 200;
+    private static final int NUM_MATRICES = 8;
+    private static final int MATRIX_SIZE = 100;
+    private static final int NUM_WALKS = 4;
+    private static final int NUM_TYPED = 500;
+    private static final int NUM_MISSPELLED = 2000;
+    private static final int SEARCH_LIMIT = 10;
+    private static final long FUZZY_BUDGET_NANOS = 10_000_000;
+
+    /** Builds the graph of a dataset from its XML, without the saved snapshot. */
+    public static Workload buildGraph(String dataset) {
+        File file = osm(dataset);
+        return workload(1, (i, sink) -> sink.consume(OsmIngest.read(file)));
+    }
+
+    /**
+     * Finds the vertices closest to 100,000 random points within the map, with the k-d tree, or
+     * with a linear scan over every vertex if <code>method</code> is <code>scan</code>.
+     */
+    public static Workload closest(String dataset, String method) {
+        GraphDB graph = new GraphDB(osm(dataset).getPath());
+        double[][] points = randomPoints(new Random(61), NUM_CLOSEST);
+        double[] lons = points[0];
+        double[] lats = points[1];
+        switch (method) {
+            case "kdtree":
+                return workload(NUM_CLOSEST, (i, sink) ->
+                        sink.consume(graph.closest(lons[i], lats[i])));
+            case "scan":
+                return workload(NUM_CLOSEST, (i, sink) ->
+                        sink.consume(graph.closestByScan(lons[i], lats[i])));
+            default:
+                throw new IllegalArgumentException("Unknown closest method: " + method);
+        }
+    }
+
+    /**
+     * Finds the vertices closest to 100,000 random points within a <code>SyntheticGrid</code> of
+     * about <code>vertices</code> vertices, opened with the named <code>GraphDB.Storage</code>.
+     */
+    public static Workload largeGraphClosest(String vertices, String storage) throws Exception {
+        GraphDB graph = syntheticGraph(vertices, storage);
+        double[][] points = gridPoints(graph.compact(), new Random(61), NUM_CLOSEST, 1);
+        double[] lons = points[0];
+        double[] lats = points[1];
+        return workload(NUM_CLOSEST, (i, sink) ->
+                sink.consume(graph.closest(lons[i], lats[i])));
+    }
+
+    /**
+     * Routes between random points of a <code>SyntheticGrid</code> of about
+     * <code>vertices</code> vertices, opened with the named <code>GraphDB.Storage</code>. Routes
+     * span a tenth of the grid, so that A* stays fast on the largest graphs.
+     */
+    public static Workload largeGraphRoutes(String vertices, String storage) throws Exception {
+        GraphDB graph = syntheticGraph(vertices, storage);
+        CompactGraph compact = graph.compact();
+        double[][] starts = gridPoints(compact, new Random(61), NUM_LARGE_ROUTES, 0.9);
+        double lonSpan = compact.lon(compact.size() - 1) - compact.lon(0);
+        double latSpan = compact.lat(compact.size() - 1) - compact.lat(0);
+        return workload(NUM_LARGE_ROUTES, (i, sink) -> sink.consume(Router.shortestPath(graph,
+                starts[0][i], starts[1][i], starts[0][i] + 0.1 * lonSpan,
+                starts[1][i] + 0.1 * latSpan)));
+    }
+
+    /**
+     * Routes the path_params.txt queries with <code>algorithm</code>, after loading or building
+     * the preprocessing it needs next to the dataset, as the server does.
+     */
+    public static Workload shortestPath(String dataset, String algorithm) throws Exception {
+        String path = osm(dataset).getPath();
+        GraphDB graph = new GraphDB(path);
+        Router.Algorithm algo = Router.Algorithm.from(algorithm);
+        if (algo == Router.Algorithm.CH || algo == Router.Algorithm.AUTO) {
+            graph.loadOrBuildHierarchy(path + ".ch");
+        } else if (algo == Router.Algorithm.ALT) {
+            graph.loadOrBuildLandmarks(path + ".alt");
+        }
+        List<RouteRequestParams> queries = new ArrayList<>();
+        for (RouteRequestParams q : RoutingBenchmark.paramsFromFile()) {
+            queries.add(new RouteRequestParams.Builder().setStartLon(q.startLon)
+                    .setStartLat(q.startLat).setEndLon(q.endLon).setEndLat(q.endLat)
+                    .setAlgorithm(algo).create());
+        }
+        return workload(queries.size(), (i, sink) ->
+                sink.consume(Router.shortestPath(graph, queries.get(i), null)));
+    }
+
+    /**
+     * Computes isochrones from random points on the map, each with its boundary as the
+     * <code>/isochrone</code> response has it. <code>bound</code> is the bound as a query
+     * parameter, such as <code>miles=1</code> or <code>minutes=10</code>.
+     */
+    public static Workload isochrone(String dataset, String bound) {
+        GraphDB graph = new GraphDB(osm(dataset).getPath());
+        String[] param = bound.split("=");
+        Random random = new Random(61);
+        List<IsochroneRequestParams> requests = new ArrayList<>();
+        for (int i = 0; i < NUM_ISOCHRONES; i += 1) {
+            Map<String, String[]> query = new HashMap<>();
+            query.put("lon", new String[]{Double.toString(MapServer.ROOT_ULLON
+                    + random.nextDouble() * MapServer.ROOT_LON_DELTA)});
+            query.put("lat", new String[]{Double.toString(MapServer.ROOT_LRLAT
+                    + random.nextDouble() * MapServer.ROOT_LAT_DELTA)});
+            query.put(param[0], new String[]{param[1]});
+            requests.add(IsochroneRequestParams.from(query));
+        }
+        return workload(requests.size(), (i, sink) -> {
+            IsochroneRequestParams params = requests.get(i);
+            sink.consume(new IsochroneResultParams(Router.isochrone(graph, params),
+                    params.metric, false));
+        });
+    }
+
+    /**
+     * Computes 100x100 distance matrices between random points on the map, with one Dijkstra
+     * search per source, or with the contraction hierarchy's many-to-many search if
+     * <code>method</code> is <code>ch</code>.
+     */
+    public static Workload distanceMatrix(String dataset, String method) throws Exception {
+        String path = osm(dataset).getPath();
+        GraphDB graph = new GraphDB(path);
+        if (method.equals("ch")) {
+            graph.loadOrBuildHierarchy(path + ".ch");
+        } else if (!method.equals("dijkstra")) {
+            throw new IllegalArgumentException("Unknown matrix method: " + method);
+        }
+        Random random = new Random(61);
+        List<MatrixRequestParams> requests = new ArrayList<>();
+        for (int i = 0; i < NUM_MATRICES; i += 1) {
+            double[][] sources = randomPoints(random, MATRIX_SIZE);
+            double[][] targets = randomPoints(random, MATRIX_SIZE);
+            requests.add(new MatrixRequestParams.Builder().setSources(sources[0], sources[1])
+                    .setTargets(targets[0], targets[1]).create());
+        }
+        return workload(requests.size(), (i, sink) ->
+                sink.consume(Router.distanceMatrix(graph, requests.get(i))));
+    }
+
+    /**
+     * Lists the directions of routes of <code>vertices</code> vertices, long walks along the
+     * graph that mostly keep to the street they are on, so that the time per vertex shows
+     * whether generating directions is linear in the route.
+     */
+    public static Workload routeDirections(String dataset, String vertices) {
+        GraphDB graph = new GraphDB(osm(dataset).getPath());
+        Random random = new Random(23);
+        List<List<Long>> walks = new ArrayList<>();
+        for (int i = 0; i < NUM_WALKS; i += 1) {
+            walks.add(DirectionsBenchmark.walk(graph, Integer.parseInt(vertices), random));
+        }
+        return workload(walks.size(), (i, sink) ->
+                sink.consume(Router.routeDirections(graph, walks.get(i))));
+    }
+
+    /**
+     * Replays autocomplete keystrokes: every prefix of a sample of location names in turn, as
+     * a user typing them would send them, asking for the top 10 names.
+     */
+    public static Workload prefixSearch(String dataset) {
+        GraphDB graph = new GraphDB(osm(dataset).getPath());
+        List<String> names = graph.getLocationsByPrefix("");
+        Random random = new Random(61);
+        List<String> typed = new ArrayList<>();
+        for (int i = 0; i < NUM_TYPED && !names.isEmpty(); i += 1) {
+            String name = names.get(random.nextInt(names.size()));
+            for (int length = 1; length <= name.length(); length += 1) {
+                typed.add(name.substring(0, length));
+            }
+        }
+        return workload(typed.size(), (i, sink) ->
+                sink.consume(graph.getLocationsByPrefix(typed.get(i), SEARCH_LIMIT)));
+    }
+
+    /** Searches for location names with one or two random typos, with a 10 ms budget. */
+    public static Workload fuzzySearch(String dataset) {
+        GraphDB graph = new GraphDB(osm(dataset).getPath());
+        List<String> names = graph.getLocationsByPrefix("");
+        Random random = new Random(61);
+        List<String> misspelled = new ArrayList<>();
+        for (int i = 0; i < NUM_MISSPELLED && !names.isEmpty(); i += 1) {
+            StringBuilder query = new StringBuilder(names.get(random.nextInt(names.size())));
+            for (int edits = 1 + random.nextInt(2); edits > 0; edits -= 1) {
+                int at = random.nextInt(query.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: query.setCharAt(at, c); break;
+                    case 1: query.insert(at, c); break;
+                    default: query.deleteCharAt(at);
+                }
+            }
+            misspelled.add(query.toString());
+        }
+        return workload(misspelled.size(), (i, sink) -> sink.consume(
+                graph.getLocationsFuzzy(misspelled.get(i), SEARCH_LIMIT, FUZZY_BUDGET_NANOS)));
+    }
+
+    /** Finds the render grids of the viewports. */
+    public static Workload mapRaster(String viewports) throws Exception {
+        Rasterer rasterer = new Rasterer();
+        List<RasterRequestParams> requests = viewports(viewports);
+        return workload(requests.size(), (i, sink) ->
+                sink.consume(rasterer.getMapRaster(requests.get(i))));
+    }
+
+    /**
+     * Renders the viewports with a route across each, drawn on the base map as the server
+     * does, with tile and mosaic caches of <code>cacheMB</code> megabytes each. A budget of 0
+     * composites every grid from its tile files.
+     */
+    public static Workload renderImage(String dataset, String viewports, String cacheMB)
+            throws Exception {
+        GraphDB graph = new GraphDB(osm(dataset).getPath());
+        List<RasterResultParams> rasters = rasters(viewports);
+        List<List<Long>> routes = new ArrayList<>();
+        for (RasterResultParams raster : rasters) {
+            double width = raster.rasterLrLon - raster.rasterUlLon;
+            double height = raster.rasterUlLat - raster.rasterLrLat;
+            routes.add(Router.shortestPath(graph, raster.rasterUlLon + width / 4,
+                    raster.rasterUlLat - height / 4, raster.rasterLrLon - width / 4,
+                    raster.rasterLrLat + height / 4));
+        }
+        long budget = Long.parseLong(cacheMB) << 20;
+        MosaicCache mosaics = new MosaicCache(new TileCache(tiles(rasters), budget), budget);
+        return workload(rasters.size(), (i, sink) -> sink.consume(
+                MapServer.renderImage(rasters.get(i), mosaics, graph, routes.get(i))));
+    }
+
+    /** Encodes the rendered viewports as PNG at deflate <code>level</code>. */
+    public static Workload encodePng(String viewports, String level) throws Exception {
+        List<RasterResultParams> rasters = rasters(viewports);
+        TileCache tiles = new TileCache(tiles(rasters), 0);
+        List<BufferedImage> images = new ArrayList<>();
+        for (RasterResultParams raster : rasters) {
+            images.add(MosaicCache.compose(raster.renderGrid, tiles));
+        }
+        int deflate = Integer.parseInt(level);
+        CountingStream out = new CountingStream();
+        return workload(images.size(), (i, sink) -> {
+            PngEncoder.write(images.get(i), out, deflate);
+            sink.consume(out.count);
+        });
+    }
+
+    private static File osm(String dataset) {
+        return new File(DATA_DIR, dataset + ".osm.xml");
+    }
+
+    private static List<RasterRequestParams> viewports(String viewports) throws Exception {
+        switch (viewports) {
+            case "raster_params":
+                return RasterBenchmark.paramsFromFile();
+            case "large":
+                return RasterBenchmark.largeViewports(new Random(61)).subList(0, NUM_LARGE_GRIDS);
+            default:
+                throw new IllegalArgumentException("Unknown viewports: " + viewports);
+        }
+    }
+
+    private static List<RasterResultParams> rasters(String viewports) throws Exception {
+        Rasterer rasterer = new Rasterer();
+        List<RasterResultParams> rasters = new ArrayList<>();
+        for (RasterRequestParams viewport : viewports(viewports)) {
+            RasterResultParams raster = rasterer.getMapRaster(viewport);
+            if (raster.querySuccess) {
+                rasters.add(raster);
+            }
+        }
+        return rasters;
+    }
+
+    /** Returns the tile directory, or one of synthetic tiles for the rasters if it is missing. */
+    private static String tiles(List<RasterResultParams> rasters) throws Exception {
+        if (new File(IMG_ROOT).isDirectory()) {
+            return IMG_ROOT;
+        }
+        return RasterBenchmark.syntheticTiles(rasters);
+    }
+
+    /** Returns the longitudes and latitudes of random points within the map. */
+    private static double[][] randomPoints(Random random, int count) {
+        double[][] points = new double[2][count];
+        for (int i = 0; i < count; i += 1) {
+            points[0][i] = MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA;
+            points[1][i] = MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA;
+        }
+        return points;
+    }
+
+    /**
+     * Returns the longitudes and latitudes of random points within the first
+     * <code>fraction</code> of a <code>SyntheticGrid</code> along each axis.
+     */
+    private static double[][] gridPoints(CompactGraph grid, Random random, int count,
+                                         double fraction) {
+        double minLon = grid.lon(0), maxLon = grid.lon(grid.size() - 1);
+        double minLat = grid.lat(0), maxLat = grid.lat(grid.size() - 1);
+        double[][] points = new double[2][count];
+        for (int i = 0; i < count; i += 1) {
+            points[0][i] = minLon + random.nextDouble() * fraction * (maxLon - minLon);
+            points[1][i] = minLat + random.nextDouble() * fraction * (maxLat - minLat);
+        }
+        return points;
+    }
+
+    /**
+     * Opens a <code>SyntheticGrid</code> of about <code>vertices</code> vertices, generating its
+     * snapshot in the temporary directory the first time.
+     */
+    private static GraphDB syntheticGraph(String vertices, String storage) throws Exception {
+        File source = SyntheticGrid.source(new File(System.getProperty("java.io.tmpdir")),
+                Integer.parseInt(vertices));
+        return new GraphDB(source.getPath(), GraphDB.Storage.valueOf(storage));
+    }
+
+    private static Workload workload(int size, Operation operation) {
+        return new Workload() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void run(int i, Blackhole sink) throws Exception {
+                operation.run(i, sink);
+            }
+        };
+    }
+
+    /** One operation of a workload. */
+    private interface Operation {
+        void run(int i, Blackhole sink) throws Exception;
+    }
+
+    /** Discards what is written to it, counting the bytes, in place of the network. */
+    private static class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
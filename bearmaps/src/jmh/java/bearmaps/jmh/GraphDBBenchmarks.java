@@ -0,0 +1,74 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times building a graph from its OSM XML and finding the vertex closest to a point. Closest
+ * queries are sampled one at a time, so the scores include the p50 and p99 latency, with the
+ * k-d tree and with the linear scan it replaced.
+ */
+@Fork(1)
+public class GraphDBBenchmarks {
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 10)
+    @Measurement(iterations = 5, time = 10)
+    public void buildGraph(Building state, Blackhole sink) throws Exception {
+        state.build.run(0, sink);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void closest(Closest state, Blackhole sink) throws Exception {
+        state.closest.run(state.next, sink);
+        state.next = state.next + 1 == state.closest.size() ? 0 : state.next + 1;
+    }
+
+    @State(Scope.Thread)
+    public static class Building {
+        @Param({"berkeley-2018-small", "berkeley-2018"})
+        public String dataset;
+
+        private Workload build;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            build = Workload.of("buildGraph", dataset);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Closest {
+        @Param({"berkeley-2018-small", "berkeley-2018"})
+        public String dataset;
+
+        @Param({"kdtree", "scan"})
+        public String method;
+
+        private Workload closest;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            closest = Workload.of("closest", dataset, method);
+        }
+    }
+}
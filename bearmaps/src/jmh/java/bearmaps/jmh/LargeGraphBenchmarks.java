@@ -0,0 +1,77 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times closest and routing queries on synthetic grids larger than any extract, with the graph
+ * on the heap and memory-mapped. Each trial runs in its own fork, so the GC profiler's figures
+ * show what each storage mode costs the collector.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeGraphBenchmarks {
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void closest(Closest state, Blackhole sink) throws Exception {
+        state.closest.run(state.next, sink);
+        state.next = state.next + 1 == state.closest.size() ? 0 : state.next + 1;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void shortestPath(Routes state, Blackhole sink) throws Exception {
+        state.routes.run(state.next, sink);
+        state.next = state.next + 1 == state.routes.size() ? 0 : state.next + 1;
+    }
+
+    @State(Scope.Thread)
+    public static class Closest {
+        @Param({"1000000", "4000000"})
+        public String vertices;
+
+        @Param({"HEAP", "MAPPED"})
+        public String storage;
+
+        private Workload closest;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            closest = Workload.of("largeGraphClosest", vertices, storage);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Routes {
+        @Param({"1000000", "4000000"})
+        public String vertices;
+
+        @Param({"HEAP", "MAPPED"})
+        public String storage;
+
+        private Workload routes;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            routes = Workload.of("largeGraphRoutes", vertices, storage);
+        }
+    }
+}
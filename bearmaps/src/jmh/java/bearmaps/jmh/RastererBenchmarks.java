@@ -0,0 +1,43 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** Times <code>Rasterer.getMapRaster</code>, one viewport per operation in turn. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RastererBenchmarks {
+    @Param({"raster_params", "large"})
+    public String viewports;
+
+    private Workload rasters;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        rasters = Workload.of("mapRaster", viewports);
+    }
+
+    @Benchmark
+    public void getMapRaster(Blackhole sink) throws Exception {
+        rasters.run(next, sink);
+        next = next + 1 == rasters.size() ? 0 : next + 1;
+    }
+}
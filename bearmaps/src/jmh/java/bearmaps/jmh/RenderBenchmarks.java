@@ -0,0 +1,79 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the two halves of a <code>/raster</code> response: rendering a viewport with a route
+ * drawn on it, through caches of each size, and encoding the rendered image as PNG at each
+ * deflate level. The tiles are those the server reads, or synthetic ones if they are missing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RenderBenchmarks {
+    @Benchmark
+    public void renderImage(Rendering state, Blackhole sink) throws Exception {
+        state.render.run(state.next, sink);
+        state.next = state.next + 1 == state.render.size() ? 0 : state.next + 1;
+    }
+
+    @Benchmark
+    public void encodePng(Encoding state, Blackhole sink) throws Exception {
+        state.encode.run(state.next, sink);
+        state.next = state.next + 1 == state.encode.size() ? 0 : state.next + 1;
+    }
+
+    @State(Scope.Thread)
+    public static class Rendering {
+        @Param({"berkeley-2018"})
+        public String dataset;
+
+        @Param({"raster_params", "large"})
+        public String viewports;
+
+        /** Megabytes for each of the tile and mosaic caches; 0 composites every request. */
+        @Param({"0", "128"})
+        public String cacheMB;
+
+        private Workload render;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            render = Workload.of("renderImage", dataset, viewports, cacheMB);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Encoding {
+        @Param({"raster_params", "large"})
+        public String viewports;
+
+        @Param({"1", "4", "9"})
+        public String level;
+
+        private Workload encode;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            encode = Workload.of("encodePng", viewports, level);
+        }
+    }
+}
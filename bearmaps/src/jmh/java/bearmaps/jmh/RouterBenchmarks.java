@@ -0,0 +1,127 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the searches behind the routing endpoints, one query per operation in turn, so a score
+ * is the mean over the queries: <code>Router.shortestPath</code> on the path_params.txt queries
+ * with each algorithm, isochrones and distance matrices from random points, and the directions
+ * of long routes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmarks {
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void shortestPath(Routing state, Blackhole sink) throws Exception {
+        state.routes.run(state.next, sink);
+        state.next = state.next + 1 == state.routes.size() ? 0 : state.next + 1;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void isochrone(Isochrones state, Blackhole sink) throws Exception {
+        state.isochrones.run(state.next, sink);
+        state.next = state.next + 1 == state.isochrones.size() ? 0 : state.next + 1;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void distanceMatrix(Matrices state, Blackhole sink) throws Exception {
+        state.matrices.run(state.next, sink);
+        state.next = state.next + 1 == state.matrices.size() ? 0 : state.next + 1;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void routeDirections(Directions state, Blackhole sink) throws Exception {
+        state.directions.run(state.next, sink);
+        state.next = state.next + 1 == state.directions.size() ? 0 : state.next + 1;
+    }
+
+    @State(Scope.Thread)
+    public static class Routing {
+        @Param({"berkeley-2018-small", "berkeley-2018"})
+        public String dataset;
+
+        @Param({"ASTAR", "ALT", "BIDIRECTIONAL", "CH"})
+        public String algorithm;
+
+        private Workload routes;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            routes = Workload.of("shortestPath", dataset, algorithm);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Isochrones {
+        @Param({"berkeley-2018"})
+        public String dataset;
+
+        /** The bound as a query parameter: a road distance, or a travel time by road speed. */
+        @Param({"miles=0.5", "miles=2", "minutes=5"})
+        public String bound;
+
+        private Workload isochrones;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            isochrones = Workload.of("isochrone", dataset, bound);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Matrices {
+        @Param({"berkeley-2018"})
+        public String dataset;
+
+        @Param({"dijkstra", "ch"})
+        public String method;
+
+        private Workload matrices;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            matrices = Workload.of("distanceMatrix", dataset, method);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Directions {
+        @Param({"berkeley-2018"})
+        public String dataset;
+
+        /** Vertices per route; the time per vertex should not grow with the route. */
+        @Param({"10000", "160000"})
+        public String vertices;
+
+        private Workload directions;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            directions = Workload.of("routeDirections", dataset, vertices);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times location search: autocomplete, one keystroke of a typed name per operation, and fuzzy
+ * search for a misspelled name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmarks {
+    @Param({"berkeley-2018"})
+    public String dataset;
+
+    private Workload prefixes;
+    private Workload misspellings;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        prefixes = Workload.of("prefixSearch", dataset);
+        misspellings = Workload.of("fuzzySearch", dataset);
+    }
+
+    @Benchmark
+    public void prefixSearch(Blackhole sink) throws Exception {
+        prefixes.run(next, sink);
+        next = next + 1 == prefixes.size() ? 0 : next + 1;
+    }
+
+    @Benchmark
+    public void fuzzySearch(Blackhole sink) throws Exception {
+        misspellings.run(next, sink);
+        next = next + 1 == misspellings.size() ? 0 : next + 1;
+    }
+}
@@ -0,0 +1,38 @@
+package bearmaps.jmh;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+/**
+ * A series of operations of the map server, prepared on a dataset, for a benchmark to time one
+ * at a time. JMH only generates code for benchmarks in a named package, and the server lives in
+ * the default package, which a named package cannot import, so each workload is made by a static
+ * method of <code>Workloads</code> in the default package and reached through this interface.
+ */
+public interface Workload {
+    /** Returns the number of operations, such as queries, that a benchmark cycles through. */
+    int size();
+
+    /** Runs operation <code>i</code>, handing its result to <code>sink</code>. */
+    void run(int i, Blackhole sink) throws Exception;
+
+    /**
+     * Returns the workload made by the static method <code>factory</code> of
+     * <code>Workloads</code>, which takes <code>args.length</code> strings.
+     */
+    static Workload of(String factory, String... args) throws Exception {
+        Class<?>[] types = new Class<?>[args.length];
+        Arrays.fill(types, String.class);
+        try {
+            return (Workload) Class.forName("Workloads").getMethod(factory, types)
+                    .invoke(null, (Object[]) args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
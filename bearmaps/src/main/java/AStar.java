@@ -0,0 +1,108 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* search over the vertex indices of a <code>CompactGraph</code>, guided by the chord lower
+ * bound on the great-circle distance to the target (see <code>UnitVectors</code>) scaled by
+ * <code>weightPerMile</code>, or by landmark bounds when <code>Landmarks</code> are given.
+ * Working memory comes from the calling thread's <code>SearchState</code>, so a search
+ * allocates nothing except the returned path.
+ *
+ * The search ends at the target or at any copy of it, whichever comes first: a copy of a
+ * restricted junction is the same place, reached over an approach with banned turns.
+ */
+class AStar {
+    private AStar() {
+    }
+
+    /**
+     * Returns the OSM IDs of a shortest path from vertex <code>source</code> to vertex
+     * <code>target</code>, or an empty list if the target is unreachable.
+     */
+    static List<Long> shortestPath(CompactGraph graph, int source, int target,
+                                   SearchTrace trace) {
+        return shortestPath(graph, source, target, null, trace);
+    }
+
+    /**
+     * Returns the OSM IDs of a shortest path from vertex <code>source</code> to vertex
+     * <code>target</code>, guided by <code>landmarks</code> if they are not <code>null</code>.
+     */
+    static List<Long> shortestPath(CompactGraph graph, int source, int target,
+                                   Landmarks landmarks, SearchTrace trace) {
+        SearchState state = SearchState.forGraph(graph);
+        if (trace != null) {
+            trace.begin(graph.id(source), graph.id(target));
+        }
+        int found = search(state, source, target, landmarks, trace);
+        if (trace != null) {
+            trace.end();
+        }
+        return found >= 0 ? state.path(found) : Collections.emptyList();
+    }
+
+    /**
+     * Runs the search using <code>state</code>, leaving the parent pointers in place.
+     * @param landmarks Landmark tables for the heuristic, or <code>null</code> to use only the
+     *                  great-circle distance.
+     * @param trace Records each expansion, or <code>null</code> to record nothing.
+     * @return The vertex at which <code>target</code> was reached, which is either the target
+     * or one of its copies, or -1 if it was not reached.
+     */
+    static int search(SearchState state, int source, int target, Landmarks landmarks,
+                      SearchTrace trace) {
+        CompactGraph graph = state.graph;
+        IndexedMinHeap heap = state.heap;
+        UnitVectors points = graph.unitVectors();
+        double x = points.x(target);
+        double y = points.y(target);
+        double z = points.z(target);
+        double perMile = graph.weightPerMile();
+        int[] targets = landmarks == null ? null : graph.withCopies(target);
+
+        state.reach(source, 0.0, -1);
+        heap.push(source, heuristic(points, x, y, z, perMile, landmarks, targets, source));
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            state.settled += 1;
+            double dv = state.dist(v);
+            if (trace != null) {
+                trace.expand(graph.id(v), dv,
+                        heuristic(points, x, y, z, perMile, landmarks, targets, v), heap.size());
+            }
+            if (graph.original(v) == target) {
+                return v;
+            }
+            state.relaxed += graph.edgeEnd(v) - graph.edgeStart(v);
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                double dw = dv + graph.weight(e);
+                if (dw < state.dist(w)) {
+                    state.reach(w, dw, v);
+                    heap.push(w, dw + heuristic(points, x, y, z, perMile, landmarks, targets,
+                            w));
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the heuristic at <code>v</code>: the chord bound to the target at
+     * <code>(x, y, z)</code>, or the landmark bound if that is larger. The landmark bound is
+     * taken to whichever of the <code>targets</code> is nearest, since the search may end at
+     * any of them.
+     */
+    private static double heuristic(UnitVectors points, double x, double y, double z,
+                                    double perMile, Landmarks landmarks, int[] targets, int v) {
+        double h = points.lowerBound(v, x, y, z) * perMile;
+        if (landmarks == null) {
+            return h;
+        }
+        double bound = landmarks.lowerBound(v, targets[0]);
+        for (int i = 1; i < targets.length; i += 1) {
+            bound = Math.min(bound, landmarks.lowerBound(v, targets[i]));
+        }
+        return Math.max(h, bound);
+    }
+}
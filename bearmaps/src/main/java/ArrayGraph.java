@@ -0,0 +1,152 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A <code>CompactGraph</code> whose arrays live on the Java heap.
+ */
+class ArrayGraph extends CompactGraph {
+    /** OSM ID of each node, sorted ascending. */
+    private final long[] ids;
+    /** Latitude and longitude of each node. */
+    private final double[] lats, lons;
+    /** The node each copy of a restricted junction stands for, in ascending order. */
+    private final int[] copyOf;
+    /** Offset of the first edge of each vertex; <code>offsets[size()]</code> is the edge count. */
+    private final int[] offsets;
+    /** Destination vertex index of each edge. */
+    private final int[] targets;
+    /** Great-circle length of each edge, in miles. */
+    private final float[] weights;
+    /** Travel time of each edge, in seconds. */
+    private final float[] times;
+    /** Whether the graph has one-way streets or split junctions. */
+    private final boolean directed;
+    /** The vertices as points on the unit sphere. */
+    private final UnitVectors points;
+    /** Initial bearing of each edge, in degrees. */
+    private final float[] bearings;
+
+    /**
+     * Creates an undirected graph without turn restrictions, whose vertices are all OSM nodes
+     * and whose edges all have a twin the other way with the same length and time.
+     */
+    ArrayGraph(long[] ids, double[] lats, double[] lons,
+               int[] offsets, int[] targets, float[] weights, float[] times) {
+        this(ids, lats, lons, new int[0], offsets, targets, weights, times, false);
+    }
+
+    /** Creates a graph, computing the unit vectors of its vertices and bearings of its edges. */
+    ArrayGraph(long[] ids, double[] lats, double[] lons, int[] copyOf, int[] offsets,
+               int[] targets, float[] weights, float[] times, boolean directed) {
+        this(ids, lats, lons, copyOf, offsets, targets, weights, times, directed, null, null);
+    }
+
+    /**
+     * Creates a graph with the unit vectors and bearings saved in its snapshot, or computes
+     * them where they are <code>null</code>.
+     */
+    ArrayGraph(long[] ids, double[] lats, double[] lons, int[] copyOf, int[] offsets,
+               int[] targets, float[] weights, float[] times, boolean directed, double[] xyz,
+               float[] bearings) {
+        this.ids = ids;
+        this.lats = lats;
+        this.lons = lons;
+        this.copyOf = copyOf;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.times = times;
+        this.directed = directed;
+        this.points = new UnitVectors(DoubleBuffer.wrap(xyz != null ? xyz
+                : UnitVectors.compute(this)));
+        this.bearings = bearings != null ? bearings : bearings(this);
+    }
+
+    @Override
+    int size() {
+        return ids.length + copyOf.length;
+    }
+
+    @Override
+    int nodeCount() {
+        return ids.length;
+    }
+
+    @Override
+    int original(int v) {
+        return v < ids.length ? v : copyOf[v - ids.length];
+    }
+
+    @Override
+    int edgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    int index(long id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? -1 : i;
+    }
+
+    @Override
+    long id(int v) {
+        return ids[original(v)];
+    }
+
+    @Override
+    double lat(int v) {
+        return lats[original(v)];
+    }
+
+    @Override
+    double lon(int v) {
+        return lons[original(v)];
+    }
+
+    @Override
+    int edgeStart(int v) {
+        return offsets[v];
+    }
+
+    @Override
+    int edgeEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    @Override
+    int target(int e) {
+        return targets[e];
+    }
+
+    @Override
+    float weight(int e) {
+        return weights[e];
+    }
+
+    @Override
+    float time(int e) {
+        return times[e];
+    }
+
+    @Override
+    boolean directed() {
+        return directed;
+    }
+
+    @Override
+    UnitVectors unitVectors() {
+        return points;
+    }
+
+    @Override
+    float bearing(int e) {
+        return bearings[e];
+    }
+
+    @Override
+    long sizeInBytes() {
+        return 8L * ids.length + 16L * lats.length + 4L * copyOf.length + 4L * offsets.length
+                + 4L * targets.length + 4L * weights.length + 4L * times.length + 24L * size()
+                + 4L * bearings.length;
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bidirectional A* search over a <code>CompactGraph</code>: a forward search from the source
+ * and a backward search from the target, which meet in the middle. The backward search follows
+ * the edges of the transpose, so one-way streets are walked against their direction, and it
+ * starts from the target and all its copies at once.
+ *
+ * Both searches use the average potential <code>p(v) = (h_t(v) - h_s(v)) / 2</code>, where
+ * <code>h_t</code> and <code>h_s</code> are the chord lower bounds on the great-circle distances
+ * to the target and source (see <code>UnitVectors</code>), scaled by <code>weightPerMile</code>.
+ * The forward search orders vertices by <code>d_s(v) + p(v)</code> and the backward search by
+ * <code>d_t(v) - p(v)</code>. Because the two potentials sum to zero, any s-t path through a
+ * vertex has length equal to the sum of its two keys, so once the smallest forward and backward
+ * keys add up to at least the best path found so far, no shorter path remains.
+ */
+class BidirectionalAStar {
+    private BidirectionalAStar() {
+    }
+
+    /**
+     * Returns the OSM IDs of a shortest path from vertex <code>source</code> to vertex
+     * <code>target</code>, or an empty list if the target is unreachable.
+     * @param trace Records each expansion, or <code>null</code> to record nothing.
+     */
+    static List<Long> shortestPath(CompactGraph graph, int source, int target,
+                                   SearchTrace trace) {
+        SearchState forward = SearchState.forGraph(graph, SearchState.FORWARD);
+        SearchState backward = SearchState.forGraph(graph, SearchState.BACKWARD);
+        if (trace != null) {
+            trace.begin(graph.id(source), graph.id(target));
+        }
+        int meet = search(forward, backward, source, target, trace);
+        if (trace != null) {
+            trace.end();
+        }
+        if (meet < 0) {
+            return Collections.emptyList();
+        }
+        List<Long> path = forward.path(meet);
+        for (int v = backward.parent(meet); v >= 0; v = backward.parent(v)) {
+            path.add(graph.id(v));
+        }
+        return path;
+    }
+
+    /**
+     * Runs both searches, leaving their parent pointers in place.
+     * @return The vertex where the shortest path crosses between the two searches, or -1 if
+     * <code>target</code> is unreachable.
+     */
+    private static int search(SearchState forward, SearchState backward, int source, int target,
+                              SearchTrace trace) {
+        CompactGraph graph = forward.graph;
+        CompactGraph reversed = graph.reversed();
+        UnitVectors points = graph.unitVectors();
+        double perMile = graph.weightPerMile();
+        double sx = points.x(source), sy = points.y(source), sz = points.z(source);
+        double tx = points.x(target), ty = points.y(target), tz = points.z(target);
+
+        forward.reach(source, 0.0, -1);
+        forward.heap.push(source, potential(points, perMile, source, sx, sy, sz, tx, ty, tz));
+        double targetKey = -potential(points, perMile, target, sx, sy, sz, tx, ty, tz);
+        backward.reach(target, 0.0, -1);
+        backward.heap.push(target, targetKey);
+        for (int copy : graph.copies(target)) {
+            backward.reach(copy, 0.0, -1);
+            backward.heap.push(copy, targetKey);
+        }
+        double best = source == target ? 0.0 : Double.POSITIVE_INFINITY;
+        int meet = source == target ? source : -1;
+
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            if (forward.heap.peekKey() + backward.heap.peekKey() >= best) {
+                break;
+            }
+            boolean isForward = forward.heap.peekKey() <= backward.heap.peekKey();
+            SearchState self = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            CompactGraph edges = isForward ? graph : reversed;
+            double sign = isForward ? 1.0 : -1.0;
+
+            int v = self.heap.poll();
+            self.settled += 1;
+            self.relaxed += edges.edgeEnd(v) - edges.edgeStart(v);
+            double dv = self.dist(v);
+            if (trace != null) {
+                trace.expand(graph.id(v), dv,
+                        sign * potential(points, perMile, v, sx, sy, sz, tx, ty, tz),
+                        forward.heap.size() + backward.heap.size());
+            }
+            for (int e = edges.edgeStart(v); e < edges.edgeEnd(v); e += 1) {
+                int w = edges.target(e);
+                double dw = dv + edges.weight(e);
+                if (dw < self.dist(w)) {
+                    self.reach(w, dw, v);
+                    self.heap.push(w, dw + sign
+                            * potential(points, perMile, w, sx, sy, sz, tx, ty, tz));
+                    double through = dw + other.dist(w);
+                    if (through < best) {
+                        best = through;
+                        meet = w;
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /** Returns the forward potential of v, half the difference of its bounds to t and s. */
+    private static double potential(UnitVectors points, double perMile, int v, double sx,
+                                    double sy, double sz, double tx, double ty, double tz) {
+        return (points.lowerBound(v, tx, ty, tz) - points.lowerBound(v, sx, sy, sz)) / 2
+                * perMile;
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Serialization-ready counters of one of the server's in-memory caches, taken at one moment.
+ */
+class CacheStats {
+    /** Requests answered from the cache, and requests that had to compute their value. */
+    final long hits, misses;
+    /** Entries dropped to stay within the budget. */
+    final long evictions;
+    final int entries;
+    final long bytes, budgetBytes;
+
+    CacheStats(long hits, long misses, long evictions, int entries, long bytes, long budgetBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.budgetBytes = budgetBytes;
+    }
+
+    double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
@@ -0,0 +1,239 @@
+import java.nio.ByteBuffer;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable, compressed sparse row (CSR) representation of the cleaned road graph. Vertices
+ * are addressed by dense <code>int</code> indices in increasing order of their OSM IDs, so an OSM
+ * ID is mapped back to its index with a binary search over the IDs.
+ *
+ * The edges leaving vertex <code>v</code> occupy the half-open range
+ * <code>[edgeStart(v), edgeEnd(v))</code> of the edge indices. Subclasses decide where the
+ * arrays live: <code>ArrayGraph</code> keeps them on the heap and <code>MappedGraph</code> reads
+ * them from a memory-mapped snapshot file.
+ *
+ * Every edge has two weights: its great-circle length, which the searches minimize, and its
+ * travel time at the speed of its road, computed once at ingest. <code>byTime()</code> returns
+ * a view of the graph weighted by travel time instead, so the same searches find fastest routes.
+ * The initial bearing of every edge and the unit vectors of the vertices, for directions and
+ * for the search heuristics, are computed once when the graph is built and saved in its
+ * snapshot with the other arrays.
+ *
+ * Edges are directed, so a one-way street only has an edge in its direction of travel. Turn
+ * restrictions are built into the graph by splitting each restricted junction: the approaches
+ * that share a set of banned turns lead into a copy of the junction that lacks the banned
+ * edges. The copies are numbered after the OSM nodes and report the ID and coordinates of the
+ * node they copy, so paths through them read as ordinary paths, but a search that ends at a
+ * node has also arrived when it reaches one of its copies.
+ */
+abstract class CompactGraph {
+    /** An empty array, returned by <code>copies</code> for the many unrestricted vertices. */
+    private static final int[] NO_COPIES = new int[0];
+
+    /** The view of this graph weighted by travel time, created on first use. */
+    private volatile CompactGraph byTime;
+    /** The transpose of this graph, created on first use. */
+    private volatile CompactGraph reversed;
+
+    /** Returns the number of vertices, including the copies of restricted junctions. */
+    abstract int size();
+
+    /**
+     * Returns the number of vertices that are OSM nodes. They come first, in OSM ID order, and
+     * are followed by the copies of restricted junctions.
+     */
+    int nodeCount() {
+        return size();
+    }
+
+    /**
+     * Returns the OSM node that vertex <code>v</code> stands for: <code>v</code> itself, or the
+     * junction it is a copy of.
+     */
+    int original(int v) {
+        return v;
+    }
+
+    /**
+     * Returns the copies of node <code>v</code>, which are reached instead of it by the
+     * approaches with restricted turns. The copies are numbered in the order of the nodes they
+     * copy, so they are found with a binary search.
+     */
+    int[] copies(int v) {
+        int lo = nodeCount();
+        int hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (original(mid) < v) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int end = lo;
+        while (end < size() && original(end) == v) {
+            end += 1;
+        }
+        if (end == lo) {
+            return NO_COPIES;
+        }
+        return IntStream.range(lo, end).toArray();
+    }
+
+    /**
+     * Returns node <code>v</code> followed by its copies: every vertex at which a search that
+     * ends at <code>v</code> has arrived.
+     */
+    int[] withCopies(int v) {
+        int[] copies = copies(v);
+        int[] all = new int[copies.length + 1];
+        all[0] = v;
+        System.arraycopy(copies, 0, all, 1, copies.length);
+        return all;
+    }
+
+    /** Returns the number of directed edges. */
+    abstract int edgeCount();
+
+    /**
+     * Returns the dense index of the vertex with OSM ID <code>id</code>.
+     * @param id The OSM ID of a vertex.
+     * @return The index of that vertex, or -1 if it is not in the graph.
+     */
+    abstract int index(long id);
+
+    abstract long id(int v);
+
+    abstract double lat(int v);
+
+    abstract double lon(int v);
+
+    abstract int edgeStart(int v);
+
+    abstract int edgeEnd(int v);
+
+    abstract int target(int e);
+
+    /** Returns the great-circle length of edge <code>e</code>, in miles. */
+    abstract float weight(int e);
+
+    /** Returns the travel time of edge <code>e</code> at the speed of its road, in seconds. */
+    abstract float time(int e);
+
+    /**
+     * Returns a lower bound on the weight of any path per mile of great-circle distance between
+     * its ends. Heuristics scale great-circle distances by it so they stay admissible whatever
+     * the edges are weighted by.
+     */
+    double weightPerMile() {
+        return 1.0;
+    }
+
+    /**
+     * Returns a view of this graph with the same vertices and edges, in which the weight of
+     * every edge is its travel time in seconds.
+     */
+    CompactGraph byTime() {
+        CompactGraph view = byTime;
+        if (view == null) {
+            synchronized (this) {
+                view = byTime;
+                if (view == null) {
+                    view = new TimedGraph(this);
+                    byTime = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Returns the vertices as points on the unit sphere, for a lower bound on great-circle
+     * distances without trigonometry. They take 24 bytes per vertex.
+     */
+    abstract UnitVectors unitVectors();
+
+    /**
+     * Returns the initial bearing of edge <code>e</code> in degrees clockwise from north, as
+     * <code>GraphDB.bearing</code> computes it. They take 4 bytes per edge.
+     */
+    abstract float bearing(int e);
+
+    /** Returns the initial bearing of every edge of <code>graph</code>, indexed by edge. */
+    static float[] bearings(CompactGraph graph) {
+        float[] bearings = new float[graph.edgeCount()];
+        IntStream.range(0, graph.size()).parallel().forEach(v -> {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                bearings[e] = (float) GraphDB.bearing(graph.lat(v), graph.lon(v), graph.lat(w),
+                        graph.lon(w));
+            }
+        });
+        return bearings;
+    }
+
+    /** Returns an estimate of the Java heap retained by this graph, in bytes. */
+    abstract long sizeInBytes();
+
+    /** Returns an iterator over all OSM vertex IDs in ascending order, without the copies. */
+    PrimitiveIterator.OfLong idIterator() {
+        return IntStream.range(0, nodeCount()).mapToLong(this::id).iterator();
+    }
+
+    /**
+     * Returns whether some edge may lack a twin going the other way with the same length and
+     * time: whether the graph has one-way streets or split junctions, as recorded when it was
+     * built.
+     */
+    abstract boolean directed();
+
+    /**
+     * Returns the transpose of this graph: the same vertices, with every edge
+     * <code>v -> w</code> replaced by <code>w -> v</code>. Searches toward a vertex run as
+     * searches from it in the transpose. An undirected graph is its own transpose; a directed
+     * one builds its edges reversed on the heap on first use and keeps them.
+     */
+    CompactGraph reversed() {
+        CompactGraph transpose = reversed;
+        if (transpose == null) {
+            synchronized (this) {
+                transpose = reversed;
+                if (transpose == null) {
+                    transpose = directed() ? new ReversedGraph(this) : this;
+                    reversed = transpose;
+                }
+            }
+        }
+        return transpose;
+    }
+
+    /**
+     * Returns a checksum of the vertex IDs and edges, used to check that data derived from this
+     * graph and saved to disk still matches it.
+     */
+    long checksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        for (int v = 0; v < size(); v += 1) {
+            drainIfFull(crc, buffer, 12);
+            buffer.putLong(id(v));
+            buffer.putInt(edgeEnd(v) - edgeStart(v));
+            for (int e = edgeStart(v); e < edgeEnd(v); e += 1) {
+                drainIfFull(crc, buffer, 8);
+                buffer.putInt(target(e));
+                buffer.putFloat(weight(e));
+            }
+        }
+        drainIfFull(crc, buffer, buffer.capacity());
+        return crc.getValue();
+    }
+
+    private static void drainIfFull(CRC32 crc, ByteBuffer buffer, int needed) {
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A contraction hierarchy over a <code>CompactGraph</code>: a rank for every vertex plus, for
+ * every vertex, the edges (original or shortcut) leading up to higher ranked vertices. A shortest
+ * path query runs a forward search from the source over upward edges and a backward search from
+ * the target over the reverses of upward edges, and the two meet at the highest ranked vertex of
+ * the path. Shortcuts remember the vertex they bypass, so the result is unpacked back into the
+ * original vertices. The backward search starts from the target and its copies together, as a
+ * path may arrive at a restricted junction through any of them.
+ *
+ * Hierarchies are built by <code>ContractionHierarchyBuilder</code> and can be saved to and
+ * loaded from a file so that preprocessing is paid once per graph rather than once per start.
+ */
+class ContractionHierarchy {
+    private static final int MAGIC = 0x424d4348; // "BMCH"
+    private static final int VERSION = 2;
+    /** Magic, version and graph checksum, ahead of the payload. */
+    private static final int HEADER_BYTES = 16;
+    /** The CRC32 of the payload, after it. */
+    private static final int TRAILER_BYTES = 8;
+
+    private final CompactGraph graph;
+    private final int[] rank;
+    /* Upward edges v -> w with rank[w] > rank[v], used by the forward search. */
+    private final int[] forwardOffsets, forwardTargets, forwardMiddles;
+    private final double[] forwardWeights;
+    /* Edges u -> v with rank[u] > rank[v], stored at v by u, used by the backward search. */
+    private final int[] backwardOffsets, backwardTargets, backwardMiddles;
+    private final double[] backwardWeights;
+
+    ContractionHierarchy(CompactGraph graph, int[] rank,
+                         int[] forwardOffsets, int[] forwardTargets, double[] forwardWeights,
+                         int[] forwardMiddles,
+                         int[] backwardOffsets, int[] backwardTargets, double[] backwardWeights,
+                         int[] backwardMiddles) {
+        this.graph = graph;
+        this.rank = rank;
+        this.forwardOffsets = forwardOffsets;
+        this.forwardTargets = forwardTargets;
+        this.forwardWeights = forwardWeights;
+        this.forwardMiddles = forwardMiddles;
+        this.backwardOffsets = backwardOffsets;
+        this.backwardTargets = backwardTargets;
+        this.backwardWeights = backwardWeights;
+        this.backwardMiddles = backwardMiddles;
+    }
+
+    /** Contracts every vertex of <code>graph</code>, using all available cores. */
+    static ContractionHierarchy build(CompactGraph graph) {
+        return new ContractionHierarchyBuilder(graph).build();
+    }
+
+    /** Returns the number of shortcut edges added by contraction. */
+    int shortcutCount() {
+        int count = 0;
+        for (int m : forwardMiddles) {
+            count += m >= 0 ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the OSM IDs of a shortest path from vertex <code>source</code> to vertex
+     * <code>target</code>, or an empty list if the target is unreachable.
+     * @param trace Records each expansion, or <code>null</code> to record nothing.
+     */
+    List<Long> shortestPath(int source, int target, SearchTrace trace) {
+        SearchState forward = SearchState.forGraph(graph, SearchState.FORWARD);
+        SearchState backward = SearchState.forGraph(graph, SearchState.BACKWARD);
+        if (trace != null) {
+            trace.begin(graph.id(source), graph.id(target));
+        }
+        int meet = search(forward, backward, source, target, trace);
+        if (trace != null) {
+            trace.end();
+        }
+        if (meet < 0) {
+            return Collections.emptyList();
+        }
+
+        int hops = 0;
+        for (int v = meet; v >= 0; v = forward.parent(v)) {
+            hops += 1;
+        }
+        int[] upward = new int[hops];
+        for (int v = meet; v >= 0; v = forward.parent(v)) {
+            hops -= 1;
+            upward[hops] = v;
+        }
+        List<Long> path = new ArrayList<>();
+        path.add(graph.id(source));
+        for (int i = 0; i + 1 < upward.length; i += 1) {
+            unpack(upward[i], upward[i + 1], path);
+        }
+        for (int v = meet; backward.parent(v) >= 0; v = backward.parent(v)) {
+            unpack(v, backward.parent(v), path);
+        }
+        return path;
+    }
+
+    private int search(SearchState forward, SearchState backward, int source, int target,
+                       SearchTrace trace) {
+        forward.reach(source, 0.0, -1);
+        forward.heap.push(source, 0.0);
+        for (int v : graph.withCopies(target)) {
+            backward.reach(v, 0.0, -1);
+            backward.heap.push(v, 0.0);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+
+        while (true) {
+            double forwardKey = forward.heap.peekKey();
+            double backwardKey = backward.heap.peekKey();
+            if (Math.min(forwardKey, backwardKey) >= best
+                    || (forward.heap.isEmpty() && backward.heap.isEmpty())) {
+                break;
+            }
+            boolean isForward = forwardKey <= backwardKey;
+            SearchState self = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            int[] offsets = isForward ? forwardOffsets : backwardOffsets;
+            int[] targets = isForward ? forwardTargets : backwardTargets;
+            double[] weights = isForward ? forwardWeights : backwardWeights;
+
+            int v = self.heap.poll();
+            self.settled += 1;
+            double dv = self.dist(v);
+            if (trace != null) {
+                trace.expand(graph.id(v), dv, 0.0,
+                        forward.heap.size() + backward.heap.size());
+            }
+            double through = dv + other.dist(v);
+            if (through < best) {
+                best = through;
+                meet = v;
+            }
+            for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+                int w = targets[e];
+                double dw = dv + weights[e];
+                if (dw < self.dist(w)) {
+                    self.reach(w, dw, v);
+                    self.heap.push(w, dw);
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * Returns the shortest path distance from every source to every target, in miles, with
+     * infinity for unreachable pairs. Runs the bucket-based many-to-many search: a backward
+     * search from each target over upward edges leaves its distance in a bucket at every vertex
+     * it settles, then a forward search from each source over upward edges meets all the targets
+     * at once by scanning the buckets of the vertices it settles. The searches of each phase run
+     * in parallel across cores.
+     * @param sources The vertex indices of the sources, one row each.
+     * @param targets The vertex indices of the targets, one column each.
+     */
+    double[][] distances(int[] sources, int[] targets) {
+        int[][] spaces = new int[targets.length][];
+        double[][] spaceDists = new double[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(j -> {
+            SearchState state = SearchState.forGraph(graph, SearchState.BACKWARD);
+            spaces[j] = upward(state, graph.withCopies(targets[j]), backwardOffsets,
+                    backwardTargets, backwardWeights);
+            spaceDists[j] = new double[spaces[j].length];
+            for (int i = 0; i < spaces[j].length; i += 1) {
+                spaceDists[j][i] = state.dist(spaces[j][i]);
+            }
+        });
+
+        /* Gather the buckets by vertex, so a forward search reads each as one range. */
+        int[] bucketStarts = new int[graph.size() + 1];
+        for (int[] space : spaces) {
+            for (int v : space) {
+                bucketStarts[v + 1] += 1;
+            }
+        }
+        for (int v = 0; v < graph.size(); v += 1) {
+            bucketStarts[v + 1] += bucketStarts[v];
+        }
+        int[] next = Arrays.copyOf(bucketStarts, graph.size());
+        int[] bucketColumns = new int[bucketStarts[graph.size()]];
+        double[] bucketDists = new double[bucketColumns.length];
+        for (int j = 0; j < targets.length; j += 1) {
+            for (int i = 0; i < spaces[j].length; i += 1) {
+                int slot = next[spaces[j][i]]++;
+                bucketColumns[slot] = j;
+                bucketDists[slot] = spaceDists[j][i];
+            }
+        }
+
+        double[][] distances = new double[sources.length][targets.length];
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            double[] row = distances[i];
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+            SearchState state = SearchState.forGraph(graph, SearchState.FORWARD);
+            for (int v : upward(state, new int[]{sources[i]}, forwardOffsets, forwardTargets,
+                    forwardWeights)) {
+                double dv = state.dist(v);
+                for (int b = bucketStarts[v]; b < bucketStarts[v + 1]; b += 1) {
+                    double through = dv + bucketDists[b];
+                    if (through < row[bucketColumns[b]]) {
+                        row[bucketColumns[b]] = through;
+                    }
+                }
+            }
+        });
+        return distances;
+    }
+
+    /**
+     * Runs a search from <code>roots</code> over the given upward edges until it runs out of
+     * vertices, leaving the distances in <code>state</code>.
+     * @return The settled vertices, in the order they were settled.
+     */
+    private static int[] upward(SearchState state, int[] roots, int[] offsets, int[] targets,
+                                double[] weights) {
+        int[] settled = new int[16];
+        for (int root : roots) {
+            state.reach(root, 0.0, -1);
+            state.heap.push(root, 0.0);
+        }
+        while (!state.heap.isEmpty()) {
+            int v = state.heap.poll();
+            if (state.settled == settled.length) {
+                settled = Arrays.copyOf(settled, 2 * settled.length);
+            }
+            settled[state.settled] = v;
+            state.settled += 1;
+            double dv = state.dist(v);
+            for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+                int w = targets[e];
+                double dw = dv + weights[e];
+                if (dw < state.dist(w)) {
+                    state.reach(w, dw, v);
+                    state.heap.push(w, dw);
+                }
+            }
+        }
+        return Arrays.copyOf(settled, state.settled);
+    }
+
+    /**
+     * Appends the original vertices of the hierarchy edge <code>u -> w</code> to
+     * <code>path</code>, excluding <code>u</code> itself.
+     */
+    private void unpack(int u, int w, List<Long> path) {
+        int middle = middle(u, w);
+        if (middle < 0) {
+            path.add(graph.id(w));
+        } else {
+            unpack(u, middle, path);
+            unpack(middle, w, path);
+        }
+    }
+
+    /** Returns the vertex bypassed by the hierarchy edge u -> w, or -1 for an original edge. */
+    private int middle(int u, int w) {
+        if (rank[u] < rank[w]) {
+            return lightest(u, w, forwardOffsets, forwardTargets, forwardWeights,
+                    forwardMiddles);
+        }
+        return lightest(w, u, backwardOffsets, backwardTargets, backwardWeights,
+                backwardMiddles);
+    }
+
+    private static int lightest(int v, int target, int[] offsets, int[] targets,
+                                double[] weights, int[] middles) {
+        int best = -1;
+        for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+            if (targets[e] == target && (best < 0 || weights[e] < weights[best])) {
+                best = e;
+            }
+        }
+        return middles[best];
+    }
+
+    /**
+     * Saves this hierarchy to <code>path</code>, tagged with the checksum of its graph and
+     * followed by a CRC32 of the arrays. The file is written to a temporary file first and moved
+     * into place, so a reader never sees a partial file.
+     * @throws IOException if the file cannot be written.
+     */
+    void save(String path) throws IOException {
+        File file = new File(path).getAbsoluteFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(graph.checksum());
+                CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+                DataOutputStream payload = new DataOutputStream(checked);
+                writeInts(payload, rank);
+                writeInts(payload, forwardOffsets);
+                writeInts(payload, forwardTargets);
+                writeDoubles(payload, forwardWeights);
+                writeInts(payload, forwardMiddles);
+                writeInts(payload, backwardOffsets);
+                writeInts(payload, backwardTargets);
+                writeDoubles(payload, backwardWeights);
+                writeInts(payload, backwardMiddles);
+                out.writeLong(checked.getChecksum().getValue());
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Loads the hierarchy saved at <code>path</code> for <code>graph</code>.
+     * @return The hierarchy, or <code>null</code> if the file does not exist, has another
+     * format version, was built from a different graph, or does not match its CRC32.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    static ContractionHierarchy load(String path, CompactGraph graph) throws IOException {
+        File file = new File(path);
+        if (!file.isFile() || file.length() < HEADER_BYTES + TRAILER_BYTES) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != graph.checksum() || !intact(file)) {
+                return null;
+            }
+            int[] rank = readInts(in);
+            int[] forwardOffsets = readInts(in);
+            int[] forwardTargets = readInts(in);
+            double[] forwardWeights = readDoubles(in);
+            int[] forwardMiddles = readInts(in);
+            int[] backwardOffsets = readInts(in);
+            int[] backwardTargets = readInts(in);
+            double[] backwardWeights = readDoubles(in);
+            int[] backwardMiddles = readInts(in);
+            return new ContractionHierarchy(graph, rank,
+                    forwardOffsets, forwardTargets, forwardWeights, forwardMiddles,
+                    backwardOffsets, backwardTargets, backwardWeights, backwardMiddles);
+        }
+    }
+
+    /**
+     * Returns whether the payload of a saved hierarchy matches the CRC32 after it, so that
+     * array lengths read from a damaged file are never trusted.
+     */
+    private static boolean intact(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            in.readFully(buffer, 0, HEADER_BYTES);
+            long left = file.length() - HEADER_BYTES - TRAILER_BYTES;
+            while (left > 0) {
+                int n = (int) Math.min(buffer.length, left);
+                in.readFully(buffer, 0, n);
+                crc.update(buffer, 0, n);
+                left -= n;
+            }
+            return in.readLong() == crc.getValue();
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Preprocessing for <code>ContractionHierarchy</code>. Vertices are contracted in rounds. Each
+ * round computes the priority of every vertex whose neighborhood changed, picks the vertices
+ * whose priority is lower than that of all their remaining neighbors, and contracts that
+ * independent set. Witness searches for the selected vertices run in parallel across cores, then
+ * the resulting shortcuts are applied one vertex at a time.
+ *
+ * Contracting <code>v</code> removes it from the remaining graph and, for every pair of
+ * remaining neighbors <code>u -> v -> w</code>, adds a shortcut <code>u -> w</code> unless a
+ * witness search finds a path from <code>u</code> to <code>w</code> that avoids <code>v</code>
+ * and is no longer than going through it. Because two vertices in an independent set are never
+ * adjacent, their witness searches only read the remaining graph and can run concurrently.
+ */
+class ContractionHierarchyBuilder {
+    /** Witness searches give up after settling this many vertices and keep the shortcut. */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final CompactGraph graph;
+    private final int n;
+    /* Remaining graph: outgoing and incoming edges of every vertex, including shortcuts. */
+    private final EdgeList[] out, in;
+    private final boolean[] contracted;
+    private final int[] contractedNeighbors;
+    private final int[] priority;
+    private final boolean[] dirty;
+    private final int[] rank;
+    private final ThreadLocal<WitnessSearch> witness;
+
+    ContractionHierarchyBuilder(CompactGraph graph) {
+        this.graph = graph;
+        n = graph.size();
+        out = new EdgeList[n];
+        in = new EdgeList[n];
+        for (int v = 0; v < n; v += 1) {
+            out[v] = new EdgeList();
+            in[v] = new EdgeList();
+        }
+        for (int v = 0; v < n; v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                if (w != v) {
+                    out[v].put(w, graph.weight(e), -1);
+                    in[w].put(v, graph.weight(e), -1);
+                }
+            }
+        }
+        contracted = new boolean[n];
+        contractedNeighbors = new int[n];
+        priority = new int[n];
+        dirty = new boolean[n];
+        Arrays.fill(dirty, true);
+        rank = new int[n];
+        witness = ThreadLocal.withInitial(() -> new WitnessSearch(n));
+    }
+
+    /** Contracts every vertex and returns the resulting hierarchy. */
+    ContractionHierarchy build() {
+        int[] remaining = IntStream.range(0, n).toArray();
+        int nextRank = 0;
+        while (remaining.length > 0) {
+            IntStream.of(remaining).parallel().filter(v -> dirty[v]).forEach(v -> {
+                priority[v] = computePriority(v);
+                dirty[v] = false;
+            });
+            int[] selected = IntStream.of(remaining).parallel()
+                    .filter(this::isLocalMinimum).toArray();
+            /*
+             * Mark the whole set contracted before searching for witnesses, so that no witness
+             * path runs through another vertex that is being contracted in the same round.
+             */
+            for (int v : selected) {
+                contracted[v] = true;
+            }
+            int[][] shortcuts = new int[selected.length][];
+            double[][] shortcutWeights = new double[selected.length][];
+            IntStream.range(0, selected.length).parallel().forEach(i -> {
+                WitnessSearch search = witness.get();
+                search.findShortcuts(selected[i]);
+                shortcuts[i] = search.shortcutEnds();
+                shortcutWeights[i] = search.shortcutWeights();
+            });
+            for (int i = 0; i < selected.length; i += 1) {
+                contract(selected[i], shortcuts[i], shortcutWeights[i]);
+                rank[selected[i]] = nextRank;
+                nextRank += 1;
+            }
+            remaining = IntStream.of(remaining).filter(v -> !contracted[v]).toArray();
+        }
+        return assemble();
+    }
+
+    /** Edge difference plus the number of already contracted neighbors. */
+    private int computePriority(int v) {
+        WitnessSearch search = witness.get();
+        search.findShortcuts(v);
+        return search.shortcutCount() - out[v].size - in[v].size + contractedNeighbors[v];
+    }
+
+    /** Returns whether v has a lower (priority, index) than all its remaining neighbors. */
+    private boolean isLocalMinimum(int v) {
+        return isLowerThan(v, out[v]) && isLowerThan(v, in[v]);
+    }
+
+    private boolean isLowerThan(int v, EdgeList edges) {
+        for (int i = 0; i < edges.size; i += 1) {
+            int u = edges.targets[i];
+            if (priority[u] < priority[v] || (priority[u] == priority[v] && u < v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes v from the remaining graph and adds its shortcuts. The edges v still has at this
+     * point all lead to higher ranked vertices and become its upward edges in the hierarchy.
+     */
+    private void contract(int v, int[] ends, double[] weights) {
+        for (int i = 0; i < out[v].size; i += 1) {
+            int w = out[v].targets[i];
+            in[w].remove(v);
+            contractedNeighbors[w] += 1;
+            dirty[w] = true;
+        }
+        for (int i = 0; i < in[v].size; i += 1) {
+            int u = in[v].targets[i];
+            out[u].remove(v);
+            contractedNeighbors[u] += 1;
+            dirty[u] = true;
+        }
+        for (int i = 0; i < weights.length; i += 1) {
+            int u = ends[2 * i], w = ends[2 * i + 1];
+            out[u].put(w, weights[i], v);
+            in[w].put(u, weights[i], v);
+        }
+    }
+
+    private ContractionHierarchy assemble() {
+        int[] forwardOffsets = new int[n + 1];
+        int[] backwardOffsets = new int[n + 1];
+        for (int v = 0; v < n; v += 1) {
+            forwardOffsets[v + 1] = forwardOffsets[v] + out[v].size;
+            backwardOffsets[v + 1] = backwardOffsets[v] + in[v].size;
+        }
+        int[] forwardTargets = new int[forwardOffsets[n]];
+        double[] forwardWeights = new double[forwardOffsets[n]];
+        int[] forwardMiddles = new int[forwardOffsets[n]];
+        int[] backwardTargets = new int[backwardOffsets[n]];
+        double[] backwardWeights = new double[backwardOffsets[n]];
+        int[] backwardMiddles = new int[backwardOffsets[n]];
+        for (int v = 0; v < n; v += 1) {
+            out[v].copyTo(forwardTargets, forwardWeights, forwardMiddles, forwardOffsets[v]);
+            in[v].copyTo(backwardTargets, backwardWeights, backwardMiddles, backwardOffsets[v]);
+        }
+        return new ContractionHierarchy(graph, rank,
+                forwardOffsets, forwardTargets, forwardWeights, forwardMiddles,
+                backwardOffsets, backwardTargets, backwardWeights, backwardMiddles);
+    }
+
+    /** A growable list of weighted edges with at most one edge to each target. */
+    private static class EdgeList {
+        int[] targets = new int[4];
+        double[] weights = new double[4];
+        int[] middles = new int[4];
+        int size;
+
+        /** Adds an edge, or lowers the weight of an existing edge to the same target. */
+        void put(int target, double weight, int middle) {
+            for (int i = 0; i < size; i += 1) {
+                if (targets[i] == target) {
+                    if (weight < weights[i]) {
+                        weights[i] = weight;
+                        middles[i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+                middles = Arrays.copyOf(middles, 2 * size);
+            }
+            targets[size] = target;
+            weights[size] = weight;
+            middles[size] = middle;
+            size += 1;
+        }
+
+        void remove(int target) {
+            for (int i = 0; i < size; i += 1) {
+                if (targets[i] == target) {
+                    size -= 1;
+                    targets[i] = targets[size];
+                    weights[i] = weights[size];
+                    middles[i] = middles[size];
+                    return;
+                }
+            }
+        }
+
+        void copyTo(int[] t, double[] w, int[] m, int offset) {
+            System.arraycopy(targets, 0, t, offset, size);
+            System.arraycopy(weights, 0, w, offset, size);
+            System.arraycopy(middles, 0, m, offset, size);
+        }
+    }
+
+    /**
+     * Per-thread witness search: a Dijkstra search in the remaining graph that skips the vertex
+     * being contracted and any vertex already marked contracted, bounded by the longest path
+     * through it and by a settle limit.
+     */
+    private class WitnessSearch {
+        private final IndexedMinHeap heap;
+        private final double[] dist;
+        private final int[] stamp;
+        private int generation;
+        /* Shortcuts found by the last findShortcuts call, as (u, w) pairs and weights. */
+        private int[] ends = new int[16];
+        private double[] weights = new double[8];
+        private int count;
+
+        WitnessSearch(int n) {
+            heap = new IndexedMinHeap(n);
+            dist = new double[n];
+            stamp = new int[n];
+        }
+
+        /** Finds the shortcuts needed to contract v, without modifying the graph. */
+        void findShortcuts(int v) {
+            count = 0;
+            EdgeList outgoing = out[v];
+            double maxOut = 0;
+            for (int j = 0; j < outgoing.size; j += 1) {
+                maxOut = Math.max(maxOut, outgoing.weights[j]);
+            }
+            for (int i = 0; i < in[v].size; i += 1) {
+                int u = in[v].targets[i];
+                double toV = in[v].weights[i];
+                search(u, v, toV + maxOut);
+                for (int j = 0; j < outgoing.size; j += 1) {
+                    int w = outgoing.targets[j];
+                    double through = toV + outgoing.weights[j];
+                    if (w != u && distance(w) > through) {
+                        add(u, w, through);
+                    }
+                }
+            }
+        }
+
+        int shortcutCount() {
+            return count;
+        }
+
+        int[] shortcutEnds() {
+            return Arrays.copyOf(ends, 2 * count);
+        }
+
+        double[] shortcutWeights() {
+            return Arrays.copyOf(weights, count);
+        }
+
+        private void search(int source, int skip, double limit) {
+            heap.clear();
+            generation += 1;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            stamp[source] = generation;
+            dist[source] = 0;
+            heap.push(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && heap.peekKey() <= limit && settled < WITNESS_SETTLE_LIMIT) {
+                int x = heap.poll();
+                settled += 1;
+                EdgeList edges = out[x];
+                for (int i = 0; i < edges.size; i += 1) {
+                    int y = edges.targets[i];
+                    if (y == skip || contracted[y]) {
+                        continue;
+                    }
+                    double d = dist[x] + edges.weights[i];
+                    if (d < distance(y)) {
+                        stamp[y] = generation;
+                        dist[y] = d;
+                        heap.push(y, d);
+                    }
+                }
+            }
+        }
+
+        private double distance(int x) {
+            return stamp[x] == generation ? dist[x] : Double.POSITIVE_INFINITY;
+        }
+
+        private void add(int u, int w, double weight) {
+            if (count == weights.length) {
+                ends = Arrays.copyOf(ends, 4 * count);
+                weights = Arrays.copyOf(weights, 2 * count);
+            }
+            ends[2 * count] = u;
+            ends[2 * count + 1] = w;
+            weights[count] = weight;
+            count += 1;
+        }
+    }
+}
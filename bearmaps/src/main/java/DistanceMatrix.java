@@ -0,0 +1,93 @@
+import java.util.stream.IntStream;
+
+/**
+ * Shortest path distances between every pair of a set of sources and a set of targets, as
+ * needed for dispatch planning. With a contraction hierarchy the matrix comes from its
+ * bucket-based many-to-many search; otherwise one Dijkstra search runs per source, in parallel
+ * across cores, and stops as soon as it has settled every target. Either way the matrix costs
+ * about one search per source or target rather than one per pair.
+ */
+class DistanceMatrix {
+    private DistanceMatrix() {
+    }
+
+    /**
+     * Returns the distance from every source to every target, in miles, with infinity for
+     * unreachable pairs.
+     * @param g The graph to measure on.
+     * @param sources The compact graph indices of the sources, one row each.
+     * @param targets The compact graph indices of the targets, one column each.
+     */
+    static double[][] compute(GraphDB g, int[] sources, int[] targets) {
+        ContractionHierarchy hierarchy = g.hierarchy();
+        if (hierarchy != null) {
+            return hierarchy.distances(sources, targets);
+        }
+        return dijkstra(g.compact(), sources, targets);
+    }
+
+    /**
+     * Returns the distance matrix computed with one Dijkstra search per source. The distance to
+     * a target is the distance to the nearest of it and its copies.
+     */
+    static double[][] dijkstra(CompactGraph graph, int[] sources, int[] targets) {
+        boolean[] isTarget = new boolean[graph.size()];
+        int[][] arrivals = new int[targets.length][];
+        int distinct = 0;
+        for (int j = 0; j < targets.length; j += 1) {
+            arrivals[j] = graph.withCopies(targets[j]);
+            for (int t : arrivals[j]) {
+                distinct += isTarget[t] ? 0 : 1;
+                isTarget[t] = true;
+            }
+        }
+        int targetCount = distinct;
+        double[][] distances = new double[sources.length][];
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            SearchState state = SearchState.forGraph(graph);
+            search(state, sources[i], isTarget, targetCount);
+            double[] row = new double[targets.length];
+            for (int j = 0; j < targets.length; j += 1) {
+                row[j] = Double.POSITIVE_INFINITY;
+                for (int t : arrivals[j]) {
+                    row[j] = Math.min(row[j], state.dist(t));
+                }
+            }
+            distances[i] = row;
+        });
+        return distances;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from <code>source</code> until <code>targetCount</code> vertices
+     * marked in <code>isTarget</code> are settled or no vertex is left, so that the distance of
+     * every reachable target in <code>state</code> is final.
+     */
+    private static void search(SearchState state, int source, boolean[] isTarget,
+                               int targetCount) {
+        CompactGraph graph = state.graph;
+        IndexedMinHeap heap = state.heap;
+        int remaining = targetCount;
+        state.reach(source, 0.0, -1);
+        heap.push(source, 0.0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            state.settled += 1;
+            if (isTarget[v]) {
+                remaining -= 1;
+                if (remaining == 0) {
+                    return;
+                }
+            }
+            double dv = state.dist(v);
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                double dw = dv + graph.weight(e);
+                if (dw < state.dist(w)) {
+                    state.reach(w, dw, v);
+                    heap.push(w, dw);
+                }
+            }
+        }
+    }
+}
@@ -1,94 +1,277 @@
 import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.util.*;
 
 /**
  * Graph for storing all of the intersection (vertex) and road (edge) information.
- * Uses your GraphBuildingHandler to convert the XML files into a graph. Your
- * code must include the vertices, adjacent, distance, closest, lat, and lon
- * methods. You'll also need to include instance variables and methods for
- * modifying the graph (e.g. addNode and addEdge).
+ * Uses <code>OsmIngest</code> to convert the XML files into a graph, and provides the vertices,
+ * adjacent, distance, closest, lat, and lon methods over it, as well as search over the named
+ * locations in the file.
  *
  * @author Kevin Lowe, Antares Chen, Kevin Lin
  */
 public class GraphDB {
+    /** CSR form of the cleaned graph. */
+    private CompactGraph compact;
     /**
-     * This constructor creates and starts an XML parser, cleans the nodes, and prepares the
-     * data structures for processing. Modify this constructor to initialize your data structures.
+     * The transpose of the compact graph, used by adjacent to find the roads into a vertex.
+     * It is the compact graph itself unless the graph is directed.
+     */
+    private CompactGraph reversed;
+    /** Spatial index over the vertices of the compact graph, used by closest. */
+    private KdTree kdTree;
+    /** Prefix index over the named locations, used by search. */
+    private LocationIndex locations;
+    /** The way and way name of each edge of the compact graph, used by directions. */
+    private WayTable ways;
+    /** Contraction hierarchy for fast routing, or null until one is loaded or built. */
+    private volatile ContractionHierarchy hierarchy;
+    /** Contraction hierarchy over travel times, or null until one is loaded or built. */
+    private volatile ContractionHierarchy timeHierarchy;
+    /** Landmark distance tables for ALT routing, or null until they are loaded or built. */
+    private volatile Landmarks landmarks;
+
+    /**
+     * This constructor reads the XML file with the parallel <code>OsmIngest</code> pipeline,
+     * which keeps only the nodes on allowed roads. If a current <code>GraphSnapshot</code> of the
+     * file exists, the graph is loaded from it instead; otherwise one is written after parsing so
+     * that the next start can skip the XML. The named locations and the way table are saved next
+     * to it in the same way. The way table can only be rebuilt with the graph, so a snapshot
+     * without a matching one is parsed again.
      *
      * @param dbPath Path to the XML file to be parsed.
+     * @throws IllegalArgumentException if there is no usable snapshot and the file cannot be
+     * read or parsed.
      */
+    public GraphDB(String dbPath) {
+        this(dbPath, Storage.HEAP);
+    }
 
-    private HashMap<Long, Node> IDtoNode = new HashMap();
-    /* edges maps a Node to a hashset(neightbor) of its edges */
-    private HashMap<Long, HashSet<Edge>> edges = new HashMap<>();
-    private HashMap<Long, HashSet<Long>> neighbors = new HashMap<>();
-    ArrayList<Node> sortbyXY = new ArrayList<>();
-    Node medianx=new Node(38,122,50);
-
-    /* allEdges contains all edges in graph (might not implement*/
-    private TreeSet<Edge> allEdges = new TreeSet<>();
+    /**
+     * Builds the graph as above, keeping its arrays as <code>storage</code> says. In
+     * <code>MAPPED</code> mode the snapshot is always written and then mapped, falling back to
+     * the heap only if it cannot be written.
+     *
+     * @param dbPath  Path to the XML file to be parsed.
+     * @param storage Where the vertex and edge arrays live.
+     * @throws IllegalArgumentException if there is no usable snapshot and the file cannot be
+     * read or parsed.
+     */
+    public GraphDB(String dbPath, Storage storage) {
+        File inputFile = new File(dbPath);
+        boolean mapped = storage == Storage.MAPPED;
+        try {
+            compact = mapped ? GraphSnapshot.map(inputFile) : GraphSnapshot.load(inputFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            locations = compact == null ? null : LocationIndex.load(inputFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            ways = compact == null ? null : WayTable.load(inputFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (ways == null || ways.edgeCount() != compact.edgeCount()) {
+            compact = null;
+        }
+        if (compact == null) {
+            parse(inputFile);
+            try {
+                GraphSnapshot.save(compact, inputFile);
+                if (mapped) {
+                    CompactGraph snapshot = GraphSnapshot.map(inputFile);
+                    compact = snapshot != null ? snapshot : compact;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (locations == null) {
+            readLocations(inputFile);
+        }
+        kdTree = new KdTree(compact);
+        reversed = compact.reversed();
+    }
 
-    public HashMap<Long, Node> getIDtoNode() {
-        return IDtoNode;
+    /** Where a <code>GraphDB</code> keeps its vertex and edge arrays. */
+    public enum Storage {
+        /** On the Java heap. */
+        HEAP,
+        /** In a memory-mapped snapshot file, outside the heap and shared between processes. */
+        MAPPED
     }
 
-    public HashMap<Long, HashSet<Edge>> getEdges() {
-        return edges;
+    /**
+     * Parses the OSM XML file into the compact graph.
+     * @throws IllegalArgumentException if the file cannot be read or parsed.
+     */
+    private void parse(File inputFile) {
+        List<LocationParams> named = new ArrayList<>();
+        try {
+            compact = OsmIngest.read(inputFile, named, table -> ways = table);
+        } catch (SAXException | IOException e) {
+            throw new IllegalArgumentException("Unable to read the OSM file " + inputFile, e);
+        }
+        locations = new LocationIndex(named);
+        saveLocations(inputFile);
+        saveWays(inputFile);
     }
 
-    public HashMap<Long, HashSet<Long>> getNeighbors() {
-        return neighbors;
+    /**
+     * Reads the named locations of the OSM XML file for a graph loaded from its snapshot,
+     * leaving none if the file cannot be read.
+     */
+    private void readLocations(File inputFile) {
+        try {
+            locations = new LocationIndex(OsmIngest.readLocations(inputFile));
+            saveLocations(inputFile);
+        } catch (SAXException | IOException e) {
+            e.printStackTrace();
+            locations = new LocationIndex(Collections.emptyList());
+        }
     }
 
-    public GraphDB(String dbPath) {
-        File inputFile = new File(dbPath);
-        try (FileInputStream inputStream = new FileInputStream(inputFile)) {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            saxParser.parse(inputStream, new GraphBuildingHandler(this));
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+    private void saveLocations(File inputFile) {
+        try {
+            locations.save(inputFile);
+        } catch (IOException e) {
             e.printStackTrace();
         }
-        clean();
-        for (Node n : IDtoNode.values()) {
-            sortbyXY.add(n);
+    }
+
+    private void saveWays(File inputFile) {
+        try {
+            ways.save(inputFile);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
     /**
-     * Helper to process strings into their "cleaned" form, ignoring punctuation and capitalization.
+     * Returns the compact, index-based view of this graph used by the routing engines.
+     */
+    CompactGraph compact() {
+        return compact;
+    }
+
+    /**
+     * Returns the way and way name of each edge of the compact graph.
+     */
+    WayTable ways() {
+        return ways;
+    }
+
+    /**
+     * Returns the compact view of this graph weighted by <code>metric</code>: by length, or by
+     * travel time.
+     */
+    CompactGraph compact(Router.Metric metric) {
+        return metric == Router.Metric.TIME ? compact.byTime() : compact;
+    }
+
+    /**
+     * Returns the contraction hierarchy of this graph, or <code>null</code> if none has been
+     * loaded or built.
+     */
+    ContractionHierarchy hierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * Returns the contraction hierarchy of this graph weighted by <code>metric</code>, or
+     * <code>null</code> if none has been loaded or built.
+     */
+    ContractionHierarchy hierarchy(Router.Metric metric) {
+        return metric == Router.Metric.TIME ? timeHierarchy : hierarchy;
+    }
+
+    /**
+     * Loads the contraction hierarchy saved at <code>path</code> if it was built from this
+     * graph, and otherwise builds one and saves it there for the next start. Failing to read or
+     * write the file only costs the preprocessing time, so it is reported and not thrown.
      *
-     * @param s Input string.
-     * @return Cleaned string.
+     * @param path Path of the saved hierarchy.
      */
-    private static String cleanString(String s) {
-        return s.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+    void loadOrBuildHierarchy(String path) {
+        loadOrBuildHierarchy(path, Router.Metric.DISTANCE);
     }
 
     /**
-     * Remove nodes with no connections from the graph.
-     * While this does not guarantee that any two nodes in the remaining graph are connected,
-     * we can reasonably assume this since typically roads are connected.
+     * Loads or builds the contraction hierarchy of this graph weighted by <code>metric</code>,
+     * as above. Each metric needs its own hierarchy and file.
+     *
+     * @param path   Path of the saved hierarchy.
+     * @param metric The edge weights the hierarchy is built over.
      */
-    private void clean() {
-        ArrayList<Long> removeID = new ArrayList<>();
-        for (long nodeid : neighbors.keySet()) {
-            if (neighbors.get(nodeid).isEmpty()) {
-                removeID.add(nodeid);
+    void loadOrBuildHierarchy(String path, Router.Metric metric) {
+        CompactGraph graph = compact(metric);
+        ContractionHierarchy ch = null;
+        try {
+            ch = ContractionHierarchy.load(path, graph);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (ch == null) {
+            ch = ContractionHierarchy.build(graph);
+            try {
+                ch.save(path);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        for (long nodeid : removeID) {
-            neighbors.remove(nodeid);
-            IDtoNode.remove(nodeid);
-            edges.remove(nodeid);
+        if (metric == Router.Metric.TIME) {
+            timeHierarchy = ch;
+        } else {
+            hierarchy = ch;
+        }
+    }
+
+    /**
+     * Returns the landmark tables of this graph, or <code>null</code> if none have been loaded
+     * or built.
+     */
+    Landmarks landmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Loads the landmark tables saved at <code>path</code> if they were built from this graph,
+     * and otherwise builds <code>Landmarks.DEFAULT_COUNT</code> landmarks and saves them there.
+     *
+     * @param path Path of the saved tables.
+     */
+    void loadOrBuildLandmarks(String path) {
+        Landmarks tables = null;
+        try {
+            tables = Landmarks.load(path, compact);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (tables == null) {
+            tables = Landmarks.build(compact, Landmarks.DEFAULT_COUNT);
+            try {
+                tables.save(path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+        landmarks = tables;
+    }
+
+    /**
+     * Helper to process strings into their "cleaned" form, ignoring punctuation and capitalization.
+     *
+     * @param s Input string.
+     * @return Cleaned string.
+     */
+    static String cleanString(String s) {
+        return s.replaceAll("[^a-zA-Z ]", "").toLowerCase();
     }
 
     /**
@@ -98,7 +281,8 @@ public class GraphDB {
      * @return The longitude of that vertex, or 0.0 if the vertex is not in the graph.
      */
     double lon(long v) {
-        return IDtoNode.get(v).getLon();
+        int i = compact.index(v);
+        return i < 0 ? 0.0 : compact.lon(i);
     }
 
     /**
@@ -108,7 +292,8 @@ public class GraphDB {
      * @return The latitude of that vertex, or 0.0 if the vertex is not in the graph.
      */
     double lat(long v) {
-        return IDtoNode.get(v).getLat();
+        int i = compact.index(v);
+        return i < 0 ? 0.0 : compact.lat(i);
     }
 
     /**
@@ -117,21 +302,32 @@ public class GraphDB {
      * @return An iterable of all vertex IDs in the graph.
      */
     Iterable<Long> vertices() {
-        return IDtoNode.keySet();
+        return compact::idIterator;
     }
 
     /**
-     * Returns an iterable over the IDs of all vertices adjacent to <code>v</code>.
+     * Returns an iterable over the IDs of all vertices adjacent to <code>v</code>: those joined
+     * to it by a road in either direction, including one-way roads that lead into it.
      *
      * @param v The ID for any vertex in the graph.
      * @return An iterable over the IDs of all vertices adjacent to <code>v</code>, or an empty
      * iterable if the vertex is not in the graph.
      */
     Iterable<Long> adjacent(long v) {
-        if (IDtoNode.containsKey(v)) {
-            return new HashSet<>(neighbors.get(v));
+        int i = compact.index(v);
+        if (i < 0) {
+            return Collections.emptyList();
         }
-        return new HashSet<>();
+        Set<Long> adjacent = new LinkedHashSet<>();
+        for (int e = compact.edgeStart(i); e < compact.edgeEnd(i); e += 1) {
+            adjacent.add(compact.id(compact.target(e)));
+        }
+        for (int u : compact.withCopies(i)) {
+            for (int e = reversed.edgeStart(u); e < reversed.edgeEnd(u); e += 1) {
+                adjacent.add(reversed.id(reversed.target(e)));
+            }
+        }
+        return adjacent;
     }
 
     /**
@@ -144,18 +340,18 @@ public class GraphDB {
      * @source https://www.movable-type.co.uk/scripts/latlong.html
      */
     public double distance(long v, long w) {
-        double phi1 = Math.toRadians(lat(v));
-        double phi2 = Math.toRadians(lat(w));
-        double dphi = Math.toRadians(lat(w) - lat(v));
-        double dlambda = Math.toRadians(lon(w) - lon(v));
-
-        double a = Math.sin(dphi / 2.0) * Math.sin(dphi / 2.0);
-        a += Math.cos(phi1) * Math.cos(phi2) * Math.sin(dlambda / 2.0) * Math.sin(dlambda / 2.0);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+        return haversine(lat(v), lon(v), lat(w), lon(w));
     }
 
     public double distance(double lon1, double lon2, double lat1, double lat2) {
+        return haversine(lat1, lon1, lat2, lon2);
+    }
+
+    /**
+     * Returns the great-circle distance in miles between two points given in degrees.
+     * @source https://www.movable-type.co.uk/scripts/latlong.html
+     */
+    static double haversine(double lat1, double lon1, double lat2, double lon2) {
         double phi1 = Math.toRadians(lat1);
         double phi2 = Math.toRadians(lat2);
         double dphi = Math.toRadians(lat2 - lat1);
@@ -176,103 +372,39 @@ public class GraphDB {
      *
      * @param lon The given longitude.
      * @param lat The given latitude.
-     * @return The ID for the vertex closest to the <code>lon</code> and <code>lat</code>.
+     * @return The ID for the vertex closest to the <code>lon</code> and <code>lat</code>, or
+     * <code>NO_VERTEX</code> if the graph is empty.
      */
     public long closest(double lon, double lat) {
-         //medianx=kdtree(medianx, sortbyXY, 0);//build kd tree
-         //double inputx=projectToX(lon,lat);
-        // double inputy=projectToY(lon,lat);
-        //double dx=inputx-medianx.x;
-       // double dy=inputy-medianx.y;
-       // double bestdistance=Math.sqrt(dx*dx+dy*dy);
-        // return findclosesthelper(medianx.left,medianx,inputx,inputy,bestdistance).id;
-        double closest=10000000;
-        long closestid=1000000;
-        for (long id : IDtoNode.keySet()) {
-            if (distance(lon, lat, id) < closest) {
-                closest = distance(lon, lat, id);
-                closestid = id;
-            }
-        }
-        return closestid;
-
+        int v = closestIndex(lon, lat);
+        return v < 0 ? NO_VERTEX : compact.id(v);
     }
 
-    public Node findclosesthelper(Node next, Node bestsofar, double inputx, double inputy,double bestdistance){
-        double dx=inputx-next.x;
-        double dy=inputy-next.y;
-        double r=Math.sqrt(dx*dx+dy*dy);
-        int axis=next.depth%2;
-        if(r>bestdistance){
-            if(axis==0){
-                if(next.equals(bestsofar.right)) {
-                    if (Math.abs(dx) > bestdistance && bestsofar.left != null) {
-                        bestsofar = findclosesthelper(bestsofar.left, bestsofar, inputx, inputy, bestdistance);
-                    }
-                }
-                if(next.equals(bestsofar.left)) {
-                    if (Math.abs(dx) > bestdistance && bestsofar.right != null) {
-                        bestsofar = findclosesthelper(bestsofar.right, bestsofar, inputx, inputy, bestdistance);
-                    }
-                }
-            }else{
-                //if ()
-            }
-        }
-
-
-
-
-
-
-
-
-
-        return bestsofar;
-
+    /**
+     * Returns the compact graph index of the vertex closest to the given point, or -1 if the
+     * graph is empty.
+     */
+    int closestIndex(double lon, double lat) {
+        return kdTree.nearest(lon, lat);
     }
 
-    public Node kdtree(Node median, List<Node> sortby, int depth) {
-        if (sortby.size() == 1) {
-           median=sortby.get(0);
-           median.depth=depth;
-           return median;
-        } else if (depth % 2 == 0) {
-            Collections.sort(sortby, new Comparator<Node>() {
-                @Override
-                public int compare(Node node1, Node node2) {
-                    return Double.compare(node1.x, node2.x);
-                }
-            });
-
-        } else {
-            Collections.sort(sortby, new Comparator<Node>() {
-                @Override
-                public int compare(Node node1, Node node2) {
-                    return Double.compare(node1.y, node2.y);
-                }
-
-            });
-        }
-
-        median = sortby.get(sortby.size() / 2);
-        median.depth=depth;
-        if(sortby.size()==2){
-            ArrayList<Node> left=new ArrayList<>();
-            ArrayList<Node> right=new ArrayList<>();
-            left.add(sortby.get(0));
-            right.add(sortby.get(1));
-            median.left =kdtree(median.left,left, depth + 1);
-            median.right = kdtree(median.right,right , depth + 1);
-        }else{
-            median.left =kdtree(median.left,sortby.subList(0, sortby.size() / 2), depth + 1);
-            median.right = kdtree(median.right,sortby.subList((sortby.size() /2)+1,sortby.size())  , depth + 1);
+    /**
+     * Returns the ID of the closest vertex by checking every vertex in the graph. Gives the same
+     * answer as <code>closest</code>; kept as a reference for tests and benchmarks.
+     */
+    long closestByScan(double lon, double lat) {
+        double closest = Double.POSITIVE_INFINITY;
+        int closestIndex = -1;
+        for (int v = 0; v < compact.nodeCount(); v += 1) {
+            double d = haversine(lat, lon, compact.lat(v), compact.lon(v));
+            if (d < closest) {
+                closest = d;
+                closestIndex = v;
+            }
         }
-
-        return median;
+        return closestIndex < 0 ? NO_VERTEX : compact.id(closestIndex);
     }
 
-
     /**
      * Return the Euclidean x-value for some point, p, in Berkeley. Found by computing the
      * Transverse Mercator projection centered at Berkeley.
@@ -306,7 +438,7 @@ public class GraphDB {
     }
 
     /**
-     * In linear time, collect all the names of OSM locations that prefix-match the query string.
+     * Collect all the names of OSM locations that prefix-match the query string.
      *
      * @param prefix Prefix string to be searched for. Could be any case, with our without
      *               punctuation.
@@ -314,7 +446,21 @@ public class GraphDB {
      * cleaned <code>prefix</code>.
      */
     public List<String> getLocationsByPrefix(String prefix) {
-        return Collections.emptyList();
+        return getLocationsByPrefix(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Collect the names of the OSM locations that prefix-match the query string, the names
+     * shared by the most locations first, without looking at the names that are not returned.
+     *
+     * @param prefix Prefix string to be searched for. Could be any case, with our without
+     *               punctuation.
+     * @param limit  The most names to return.
+     * @return A <code>List</code> of at most <code>limit</code> full names of locations whose
+     * cleaned name matches the cleaned <code>prefix</code>.
+     */
+    public List<String> getLocationsByPrefix(String prefix, int limit) {
+        return locations.byPrefix(prefix, limit);
     }
 
     /**
@@ -326,7 +472,23 @@ public class GraphDB {
      * cleaned <code>locationName</code>
      */
     public List<LocationParams> getLocations(String locationName) {
-        return Collections.emptyList();
+        return locations.get(locationName);
+    }
+
+    /**
+     * Collect the locations whose names are closest to a possibly misspelled
+     * <code>locationName</code>, ranked by edit distance and then by how many locations share
+     * the name.
+     *
+     * @param locationName A name of a location searched for, which may contain typos.
+     * @param limit        The most locations to return.
+     * @param budgetNanos  How long to spend on the search before settling for the best
+     *                     matches found so far, in nanoseconds.
+     * @return A <code>List</code> of at most <code>limit</code> <code>LocationParams</code>.
+     */
+    public List<LocationParams> getLocationsFuzzy(String locationName, int limit,
+                                                  long budgetNanos) {
+        return locations.fuzzy(locationName, limit, budgetNanos);
     }
 
     /**
@@ -341,10 +503,17 @@ public class GraphDB {
      * @source https://www.movable-type.co.uk/scripts/latlong.html
      */
     double bearing(long v, long w) {
-        double phi1 = Math.toRadians(lat(v));
-        double phi2 = Math.toRadians(lat(w));
-        double lambda1 = Math.toRadians(lon(v));
-        double lambda2 = Math.toRadians(lon(w));
+        return bearing(lat(v), lon(v), lat(w), lon(w));
+    }
+
+    /**
+     * Returns the initial bearing in degrees from one point to another, as above.
+     */
+    static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double lambda1 = Math.toRadians(lon1);
+        double lambda2 = Math.toRadians(lon2);
 
         double y = Math.sin(lambda2 - lambda1) * Math.cos(phi2);
         double x = Math.cos(phi1) * Math.sin(phi2);
@@ -352,29 +521,14 @@ public class GraphDB {
         return Math.toDegrees(Math.atan2(y, x));
     }
 
-    public void addNode(double lat, double lon, long id) {
-        if (!IDtoNode.containsKey(id)) {
-            IDtoNode.put(id, new Node(lat, lon, id));
-            neighbors.put(id, new HashSet<>());
-            edges.put(id, new HashSet<>());
-        }
-
-    }
-
-    public void addEdge(long source, long dest) {
-        Edge srcTodest = new Edge(source, dest, distance(source, dest));//source to dest edge
-        Edge destTosrc = new Edge(dest, source, distance(dest, source));//dest to source edge
-        neighbors.get(source).add(dest);
-        neighbors.get(dest).add(source);
-        edges.get(source).add(srcTodest);
-        edges.get(dest).add(destTosrc);
-    }
-
-
     /**
      * Radius of the Earth in miles.
      */
-    private static final int R = 3963;
+    static final int R = 3963;
+    /**
+     * The ID <code>closest</code> returns for an empty graph, as the original scan did.
+     */
+    static final long NO_VERTEX = 1000000;
     /**
      * Latitude centered on Berkeley.
      */
@@ -389,104 +543,4 @@ public class GraphDB {
      * @source https://gis.stackexchange.com/a/7298
      */
     private static final double K0 = 1.0;
-
-    public class Node {
-        private double lat;
-        private double lon;
-        private long id;
-        private String Name;
-        private double x;
-        private double y;
-        private Node left;
-        private Node right;
-        private int depth;
-
-        public Node(double lat, double lon, long id) {
-            this.lat = lat;
-            this.lon = lon;
-            this.id = id;
-            this.x = projectToX(lon, lat);
-            this.y = projectToY(lon, lat);
-        }
-
-        public Node(double lat, double lon, long id, String name) {
-            this.lat = lat;
-            this.lon = lon;
-            this.id = id;
-            this.Name = name;
-        }
-
-        public void setName(String name) {
-            Name = name;
-        }
-
-        public double getLat() {
-            return lat;
-        }
-
-        public double getLon() {
-            return lon;
-        }
-
-        public long getId() {
-            return id;
-        }
-
-
-        public String getName() {
-            return Name;
-        }
-
-    }
-
-    public class Edge implements Comparable<Edge> {
-
-        private long src;
-        private long dest;
-        private double weight;
-
-        /* Creates an Edge (SRC, DEST) with edge weight WEIGHT. */
-        Edge(long src, long dest, double weight) {
-            this.src = src;
-            this.dest = dest;
-            this.weight = weight;
-        }
-
-        /* Returns the edge's source node. */
-        public long getSource() {
-            return src;
-        }
-
-        /* Returns the edge's destination node. */
-        public long getDest() {
-            return dest;
-        }
-
-        /* Returns the weight of the edge. */
-        public double getWeight() {
-            return weight;
-        }
-
-        public int compareTo(Edge other) {
-            double cmp = weight - other.weight;
-            return (int) cmp;
-        }
-
-        /* Returns true if two Edges have the same source, destination, and
-           weight. */
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            } else if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-
-            Edge e = (Edge) o;
-            return (src == e.src && dest == e.dest && weight == e.weight)
-                    || (src == e.dest && dest == e.src && weight == e.weight);
-        }
-
-
-    }
-
 }
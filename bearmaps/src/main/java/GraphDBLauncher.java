@@ -28,7 +28,5 @@ public class GraphDBLauncher {
         long v = g.closest(-122.258207, 37.875352);
         System.out.print("The vertex number closest to -122.258207, 37.875352 is " + v + ", which");
         System.out.println(" has longitude, latitude of: " + g.lon(v) + ", " + g.lat(v));
-
-        System.out.println("To get started, uncomment print statements in GraphBuildingHandler.");
     }
 }
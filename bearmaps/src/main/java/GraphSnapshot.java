@@ -0,0 +1,289 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary snapshot of the cleaned graph, so that later starts can skip parsing the OSM XML.
+ *
+ * The file is a fixed header followed by the payload. The header holds a magic number, the
+ * format version, the length of the OSM file the snapshot was built from, the payload length and
+ * a CRC32 of the payload. The payload is the node, junction copy and edge counts and whether the
+ * graph is directed, followed by the <code>CompactGraph</code> arrays, little-endian and each
+ * aligned to its element size. The unit vectors of the vertices and the bearings of the edges
+ * are saved with them, so neither is recomputed when the graph is loaded. A snapshot is either
+ * copied onto the heap with one bulk read per array, or mapped and used in place by a
+ * <code>MappedGraph</code>.
+ *
+ * A snapshot is only used when it is at least as new as the OSM file, was built from a file of
+ * the same length, has the current version and passes its checksum. Anything else is treated
+ * as missing and the graph is rebuilt from XML.
+ */
+class GraphSnapshot {
+    /** Suffix appended to the OSM file path to name its snapshot. */
+    static final String SUFFIX = ".snapshot";
+    private static final int MAGIC = 0x424d4753; // "BMGS"
+    private static final int VERSION = 6;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    /* magic, version, source length, payload length, payload CRC */
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+    /* node count, copy count, edge count, directed flag, which keeps the arrays aligned */
+    private static final int COUNTS_BYTES = 4 + 4 + 4 + 4;
+    /** Size of the chunks the file is written in. */
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Returns the file that holds the snapshot of the OSM file at <code>source</code>.
+     */
+    static File of(File source) {
+        return new File(source.getPath() + SUFFIX);
+    }
+
+    /**
+     * Loads the snapshot of <code>source</code> onto the heap.
+     * @return The graph, or <code>null</code> if there is no usable snapshot.
+     * @throws IOException if the snapshot exists but cannot be read.
+     */
+    static CompactGraph load(File source) throws IOException {
+        return open(source, false);
+    }
+
+    /**
+     * Maps the snapshot of <code>source</code> without copying it onto the heap.
+     * @return The graph, or <code>null</code> if there is no usable snapshot.
+     * @throws IOException if the snapshot exists but cannot be read.
+     */
+    static CompactGraph map(File source) throws IOException {
+        return open(source, true);
+    }
+
+    private static CompactGraph open(File source, boolean mapped) throws IOException {
+        File file = of(source);
+        if (!file.isFile() || !source.isFile() || file.lastModified() < source.lastModified()) {
+            return null;
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            if (channel.size() < HEADER_BYTES + COUNTS_BYTES) {
+                return null;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    HEADER_BYTES + COUNTS_BYTES).order(ORDER);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION
+                    || header.getLong() != source.length()) {
+                return null;
+            }
+            long payloadLength = header.getLong();
+            long crc = header.getLong();
+            if (payloadLength != channel.size() - HEADER_BYTES
+                    || crc != checksum(channel, HEADER_BYTES, payloadLength)) {
+                return null;
+            }
+            int n = header.getInt();
+            int k = header.getInt();
+            int m = header.getInt();
+            boolean directed = header.getInt() != 0;
+            long position = HEADER_BYTES + COUNTS_BYTES;
+            ByteBuffer ids = section(channel, position, 8L * n);
+            position += 8L * n;
+            ByteBuffer lats = section(channel, position, 8L * n);
+            position += 8L * n;
+            ByteBuffer lons = section(channel, position, 8L * n);
+            position += 8L * n;
+            ByteBuffer xyz = section(channel, position, 24L * (n + k));
+            position += 24L * (n + k);
+            ByteBuffer copyOf = section(channel, position, 4L * k);
+            position += 4L * k;
+            ByteBuffer offsets = section(channel, position, 4L * (n + k + 1));
+            position += 4L * (n + k + 1);
+            ByteBuffer targets = section(channel, position, 4L * m);
+            position += 4L * m;
+            ByteBuffer weights = section(channel, position, 4L * m);
+            position += 4L * m;
+            ByteBuffer times = section(channel, position, 4L * m);
+            position += 4L * m;
+            ByteBuffer bearings = section(channel, position, 4L * m);
+            if (mapped) {
+                return new MappedGraph(ids.asLongBuffer(), lats.asDoubleBuffer(),
+                        lons.asDoubleBuffer(), copyOf.asIntBuffer(), offsets.asIntBuffer(),
+                        targets.asIntBuffer(), weights.asFloatBuffer(), times.asFloatBuffer(),
+                        directed, xyz.asDoubleBuffer(), bearings.asFloatBuffer());
+            }
+            long[] idArray = new long[n];
+            double[] latArray = new double[n];
+            double[] lonArray = new double[n];
+            int[] copyArray = new int[k];
+            int[] offsetArray = new int[n + k + 1];
+            int[] targetArray = new int[m];
+            float[] weightArray = new float[m];
+            float[] timeArray = new float[m];
+            double[] xyzArray = new double[3 * (n + k)];
+            float[] bearingArray = new float[m];
+            ids.asLongBuffer().get(idArray);
+            lats.asDoubleBuffer().get(latArray);
+            lons.asDoubleBuffer().get(lonArray);
+            copyOf.asIntBuffer().get(copyArray);
+            offsets.asIntBuffer().get(offsetArray);
+            targets.asIntBuffer().get(targetArray);
+            weights.asFloatBuffer().get(weightArray);
+            times.asFloatBuffer().get(timeArray);
+            xyz.asDoubleBuffer().get(xyzArray);
+            bearings.asFloatBuffer().get(bearingArray);
+            return new ArrayGraph(idArray, latArray, lonArray, copyArray, offsetArray,
+                    targetArray, weightArray, timeArray, directed, xyzArray, bearingArray);
+        }
+    }
+
+    private static MappedByteBuffer section(FileChannel channel, long position, long size)
+            throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot section too large to map: " + size + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ORDER);
+        return buffer;
+    }
+
+    /** Returns the CRC32 of a range of the file, mapping it a piece at a time. */
+    private static long checksum(FileChannel channel, long position, long length)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        long end = position + length;
+        while (position < end) {
+            long size = Math.min(end - position, Integer.MAX_VALUE / 2);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+            position += size;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the snapshot of <code>graph</code>, built from the OSM file at <code>source</code>.
+     * The arrays are streamed out in chunks, so a graph whose accessors do not keep it on the
+     * heap can be larger than the heap. The snapshot is written to a temporary file first and
+     * moved into place, so a reader never sees a partial file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    static void save(CompactGraph graph, File source) throws IOException {
+        File file = of(source);
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile()
+                .getParentFile());
+        try {
+            try (FileChannel channel = new RandomAccessFile(temp, "rw").getChannel()) {
+                ChunkWriter out = new ChunkWriter(channel, HEADER_BYTES);
+                writePayload(graph, out);
+                long payloadLength = out.finish();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(source.length());
+                header.putLong(payloadLength);
+                header.putLong(out.crc.getValue());
+                header.flip();
+                channel.position(0);
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void writePayload(CompactGraph graph, ChunkWriter out) throws IOException {
+        int nodes = graph.nodeCount();
+        int n = graph.size();
+        int m = graph.edgeCount();
+        out.reserve(COUNTS_BYTES).putInt(nodes).putInt(n - nodes).putInt(m)
+                .putInt(graph.directed() ? 1 : 0);
+        for (int v = 0; v < nodes; v += 1) {
+            out.reserve(8).putLong(graph.id(v));
+        }
+        for (int v = 0; v < nodes; v += 1) {
+            out.reserve(8).putDouble(graph.lat(v));
+        }
+        for (int v = 0; v < nodes; v += 1) {
+            out.reserve(8).putDouble(graph.lon(v));
+        }
+        double[] xyz = new double[3];
+        for (int v = 0; v < n; v += 1) {
+            UnitVectors.point(graph.lat(v), graph.lon(v), xyz, 0);
+            out.reserve(24).putDouble(xyz[0]).putDouble(xyz[1]).putDouble(xyz[2]);
+        }
+        for (int v = nodes; v < n; v += 1) {
+            out.reserve(4).putInt(graph.original(v));
+        }
+        for (int v = 0; v < n; v += 1) {
+            out.reserve(4).putInt(graph.edgeStart(v));
+        }
+        out.reserve(4).putInt(m);
+        for (int v = 0; v < n; v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                out.reserve(4).putInt(graph.target(e));
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                out.reserve(4).putFloat(graph.weight(e));
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                out.reserve(4).putFloat(graph.time(e));
+            }
+        }
+        for (int v = 0; v < n; v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                out.reserve(4).putFloat(graph.bearing(e));
+            }
+        }
+    }
+
+    /** Buffers writes to a channel in fixed-size chunks, checksumming them on the way out. */
+    private static class ChunkWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ORDER);
+        private final CRC32 crc = new CRC32();
+        private long written;
+
+        ChunkWriter(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            channel.position(position);
+        }
+
+        /** Returns the buffer, with room for at least <code>bytes</code> more bytes. */
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            written += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /** Flushes what is left and returns the number of bytes written. */
+        long finish() throws IOException {
+            flush();
+            return written;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * A 4-ary min-heap of vertex indices in <code>[0, capacity)</code> keyed by <code>double</code>
+ * priorities, with O(log n) decrease-key. Each vertex appears at most once. All storage is
+ * allocated up front, so inserting, polling and clearing never allocate.
+ */
+class IndexedMinHeap {
+    /** Vertex stored at each heap position. */
+    private final int[] heap;
+    /** Priority of the vertex at each heap position. */
+    private final double[] keys;
+    /** Heap position of each vertex, or -1 if the vertex is not in the heap. */
+    private final int[] position;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new double[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int v) {
+        return position[v] >= 0;
+    }
+
+    /** Returns the vertex with the smallest priority without removing it. */
+    int peek() {
+        return heap[0];
+    }
+
+    /** Returns the smallest priority in the heap, or infinity if the heap is empty. */
+    double peekKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    /** Returns the priority of vertex <code>v</code>, which must be in the heap. */
+    double key(int v) {
+        return keys[position[v]];
+    }
+
+    /**
+     * Inserts <code>v</code> with priority <code>key</code>, or lowers its priority to
+     * <code>key</code> if it is already in the heap.
+     */
+    void push(int v, double key) {
+        int i = position[v];
+        if (i < 0) {
+            i = size;
+            size += 1;
+        } else if (key >= keys[i]) {
+            return;
+        }
+        siftUp(i, v, key);
+    }
+
+    /** Removes and returns the vertex with the smallest priority. */
+    int poll() {
+        int min = heap[0];
+        position[min] = -1;
+        size -= 1;
+        if (size > 0) {
+            siftDown(0, heap[size], keys[size]);
+        }
+        return min;
+    }
+
+    /** Removes every vertex, in time proportional to the current size. */
+    void clear() {
+        for (int i = 0; i < size; i += 1) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i, int v, double key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(i, heap[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, v, key);
+    }
+
+    private void siftDown(int i, int v, double key) {
+        while (true) {
+            int first = 4 * i + 1;
+            if (first >= size) {
+                break;
+            }
+            int min = first;
+            int last = Math.min(first + 4, size);
+            for (int c = first + 1; c < last; c += 1) {
+                if (keys[c] < keys[min]) {
+                    min = c;
+                }
+            }
+            if (keys[min] >= key) {
+                break;
+            }
+            place(i, heap[min], keys[min]);
+            i = min;
+        }
+        place(i, v, key);
+    }
+
+    private void place(int i, int v, double key) {
+        heap[i] = v;
+        keys[i] = key;
+        position[v] = i;
+    }
+}
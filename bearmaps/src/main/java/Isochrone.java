@@ -0,0 +1,161 @@
+import java.util.Arrays;
+
+/**
+ * The vertices reachable from a source vertex within a bound on the weight of the path to them,
+ * found by a Dijkstra search that stops as soon as the next vertex lies beyond the bound. The
+ * weights are those of the graph searched: road distances in miles, or travel times in seconds
+ * on the view of a graph by travel time. The search costs
+ * time proportional to the area it covers rather than to the graph, and the result keeps only
+ * primitive arrays: the reached vertices in order of distance, and their distances.
+ *
+ * The search runs over the copies of restricted junctions like any other vertex, but a junction
+ * is reported once, as its OSM node, at the distance of whichever of its copies comes first.
+ */
+class Isochrone {
+    /** Number of bearing sectors the boundary polygon is built from. */
+    static final int BOUNDARY_SECTORS = 72;
+
+    /** The graph searched, whose weights the bound and distances are in. */
+    final CompactGraph graph;
+    /** The compact graph index of the source vertex. */
+    final int source;
+    /** The bound on the distance. */
+    final double bound;
+    /** The compact graph indices of the reached nodes, in order of distance. */
+    private final int[] vertices;
+    /** The distance of each reached vertex. */
+    private final double[] distances;
+
+    private Isochrone(CompactGraph graph, int source, double bound, int[] vertices,
+                      double[] distances) {
+        this.graph = graph;
+        this.source = source;
+        this.bound = bound;
+        this.vertices = vertices;
+        this.distances = distances;
+    }
+
+    /**
+     * Returns the vertices of <code>graph</code> within <code>bound</code> of
+     * <code>source</code>.
+     * @param graph The graph to search.
+     * @param source The compact graph index of the source vertex.
+     * @param bound The largest distance to include, in the weights of <code>graph</code>.
+     */
+    static Isochrone compute(CompactGraph graph, int source, double bound) {
+        SearchState state = SearchState.forGraph(graph);
+        IndexedMinHeap heap = state.heap;
+        int[] vertices = new int[64];
+        double[] distances = new double[64];
+        int count = 0;
+        /* Restricted junctions are marked once reported, through the node or one of its copies. */
+        state.reach(source, 0.0, -1);
+        heap.push(source, 0.0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            double dv = state.dist(v);
+            if (dv > bound) {
+                break;
+            }
+            state.settled += 1;
+            int node = graph.original(v);
+            boolean restricted = node != v || graph.copies(node).length > 0;
+            if (!restricted || state.mark(node)) {
+                if (count == vertices.length) {
+                    vertices = Arrays.copyOf(vertices, 2 * vertices.length);
+                    distances = Arrays.copyOf(distances, 2 * distances.length);
+                }
+                vertices[count] = node;
+                distances[count] = dv;
+                count += 1;
+            }
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                double dw = dv + graph.weight(e);
+                if (dw <= bound && dw < state.dist(w)) {
+                    state.reach(w, dw, v);
+                    heap.push(w, dw);
+                }
+            }
+        }
+        return new Isochrone(graph, source, bound, Arrays.copyOf(vertices, count),
+                Arrays.copyOf(distances, count));
+    }
+
+    /** Returns the number of reached nodes. */
+    int size() {
+        return vertices.length;
+    }
+
+    /** Returns the compact graph index of the <code>i</code>th closest reached node. */
+    int vertex(int i) {
+        return vertices[i];
+    }
+
+    /** Returns the distance of the <code>i</code>th closest reached node. */
+    double distance(int i) {
+        return distances[i];
+    }
+
+    /** Returns the distance of the farthest reached vertex. */
+    double maxDistance() {
+        return distances.length == 0 ? 0.0 : distances[distances.length - 1];
+    }
+
+    /**
+     * Returns the distances of all vertices of the graph, indexed by vertex, with infinity for
+     * the vertices that were not reached. Copies of a junction share its distance.
+     */
+    double[] distancesByVertex() {
+        double[] byVertex = new double[graph.size()];
+        Arrays.fill(byVertex, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < vertices.length; i += 1) {
+            byVertex[vertices[i]] = distances[i];
+        }
+        for (int v = graph.nodeCount(); v < graph.size(); v += 1) {
+            byVertex[v] = byVertex[graph.original(v)];
+        }
+        return byVertex;
+    }
+
+    /**
+     * Returns a boundary polygon around the reached vertices as alternating longitudes and
+     * latitudes. The plane around the source is split into <code>BOUNDARY_SECTORS</code> equal
+     * sectors by bearing, and the polygon joins the farthest reached vertex of each sector in
+     * order of bearing. Unlike a convex hull, it follows the shape of the road network inward
+     * where no road reaches far.
+     */
+    double[] boundary() {
+        double lon0 = graph.lon(source);
+        double lat0 = graph.lat(source);
+        double lonScale = Math.cos(Math.toRadians(lat0));
+        int[] farthest = new int[BOUNDARY_SECTORS];
+        double[] farthestSquared = new double[BOUNDARY_SECTORS];
+        Arrays.fill(farthest, -1);
+        for (int v : vertices) {
+            double x = (graph.lon(v) - lon0) * lonScale;
+            double y = graph.lat(v) - lat0;
+            double squared = x * x + y * y;
+            if (squared == 0) {
+                continue;
+            }
+            double angle = Math.atan2(y, x) + Math.PI;
+            int sector = Math.min(BOUNDARY_SECTORS - 1,
+                    (int) (angle / (2 * Math.PI) * BOUNDARY_SECTORS));
+            if (squared > farthestSquared[sector]) {
+                farthestSquared[sector] = squared;
+                farthest[sector] = v;
+            }
+        }
+        double[] polygon = new double[2 * BOUNDARY_SECTORS];
+        int length = 0;
+        for (int v : farthest) {
+            if (v >= 0) {
+                polygon[length] = graph.lon(v);
+                polygon[length + 1] = graph.lat(v);
+                length += 2;
+            }
+        }
+        return Arrays.copyOf(polygon, length);
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Map;
+
+/**
+ * The IsochroneRequestParams contains the fields received in a reachability request: the point
+ * to start from, and how far to go from it, either as a road distance in miles or as a travel
+ * time in minutes. A travel time is bounded at the speeds of the roads, unless a constant speed
+ * is given, in which case it is converted to the distance covered at that speed.
+ *
+ * This class can either be instantiated through a Spark request query map, or through the Builder
+ * class for requests made from Java.
+ */
+public class IsochroneRequestParams {
+    /** The start point longitude. */
+    public final double lon;
+    /** The start point latitude. */
+    public final double lat;
+    /** Whether the bound is on the road distance or on the travel time. */
+    public final Router.Metric metric;
+    /** The largest distance to include: in miles by distance, or in seconds by time. */
+    public final double bound;
+
+    /**
+     * Validate and return the parameters of an isochrone request. Requires <code>lon</code>,
+     * <code>lat</code> and either <code>miles</code>, or <code>minutes</code> with an optional
+     * constant <code>mph</code> speed that replaces the speeds of the roads.
+     * @param req The queryParams map from a Spark HTTP Request.
+     * @return The parsed request.
+     */
+    public static IsochroneRequestParams from(Map<String, String[]> req) {
+        return from(req, "");
+    }
+
+    /**
+     * Validate and return the parameters of an isochrone request whose keys all start with
+     * <code>prefix</code>, as when one is attached to another request.
+     * @param req The queryParams map from a Spark HTTP Request.
+     * @param prefix The prefix of every key.
+     * @return The parsed request.
+     */
+    static IsochroneRequestParams from(Map<String, String[]> req, String prefix) {
+        Builder builder = new Builder()
+                .setLon(parse(req, prefix + "lon"))
+                .setLat(parse(req, prefix + "lat"));
+        if (req.containsKey(prefix + "miles")) {
+            builder.setMiles(parse(req, prefix + "miles"));
+        } else if (req.containsKey(prefix + "minutes") && req.containsKey(prefix + "mph")) {
+            builder.setMiles(parse(req, prefix + "minutes") / 60 * parse(req, prefix + "mph"));
+        } else if (req.containsKey(prefix + "minutes")) {
+            builder.setMinutes(parse(req, prefix + "minutes"));
+        } else {
+            String msg = String.format("Request failed: %smiles not found.", prefix);
+            throw new IllegalArgumentException(msg);
+        }
+        return builder.create();
+    }
+
+    private static double parse(Map<String, String[]> req, String param) {
+        if (!req.containsKey(param)) {
+            String msg = String.format("Request failed: %s not found.", param);
+            throw new IllegalArgumentException(msg);
+        }
+        try {
+            double value = Double.parseDouble(req.get(param)[0]);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new NumberFormatException(param);
+            }
+            return value;
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            String msg = String.format("Incorrect parameters: unable to parse %s.", param);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    private IsochroneRequestParams(double lon, double lat, Router.Metric metric, double bound) {
+        this.lon = lon;
+        this.lat = lat;
+        this.metric = metric;
+        this.bound = bound;
+    }
+
+    public static class Builder {
+        private double lon, lat, bound;
+        private Router.Metric metric = Router.Metric.DISTANCE;
+
+        /**
+         * Creates an IsochroneRequestParams.Builder instance that can be used to build
+         * an IsochroneRequestParams with various fields pre-set.
+         */
+        public Builder() {
+        }
+
+        /**
+         * @throws IllegalArgumentException if the distance is negative or above
+         * <code>MAX_MILES</code>, or the time is negative or above <code>MAX_MINUTES</code>.
+         */
+        public IsochroneRequestParams create() {
+            if (metric == Router.Metric.TIME) {
+                if (bound < 0 || bound > MAX_MINUTES * 60) {
+                    throw new IllegalArgumentException(String.format(
+                            "Incorrect parameters: the time must be between 0 and %.0f minutes.",
+                            MAX_MINUTES));
+                }
+            } else if (bound < 0 || bound > MAX_MILES) {
+                throw new IllegalArgumentException(String.format(
+                        "Incorrect parameters: the distance must be between 0 and %.0f miles.",
+                        MAX_MILES));
+            }
+            return new IsochroneRequestParams(lon, lat, metric, bound);
+        }
+
+        public Builder setLon(double value) {
+            this.lon = value;
+            return this;
+        }
+
+        public Builder setLat(double value) {
+            this.lat = value;
+            return this;
+        }
+
+        /** Bounds the road distance, in miles. */
+        public Builder setMiles(double value) {
+            this.metric = Router.Metric.DISTANCE;
+            this.bound = value;
+            return this;
+        }
+
+        /** Bounds the travel time at the speeds of the roads, in minutes. */
+        public Builder setMinutes(double value) {
+            this.metric = Router.Metric.TIME;
+            this.bound = value * 60;
+            return this;
+        }
+    }
+
+    /** Largest distance a request may ask for, in miles. */
+    static final double MAX_MILES = 50.0;
+    /** Largest travel time a request may ask for, in minutes. */
+    static final double MAX_MINUTES = 60.0;
+}
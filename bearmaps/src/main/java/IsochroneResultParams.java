@@ -0,0 +1,48 @@
+/**
+ * The IsochroneResultParams contains the reachable area computed by Router.isochrone for
+ * serialization by Gson.
+ *
+ * The fields in this class cannot be accessed as it is only used to serialize results in MapServer.
+ */
+class IsochroneResultParams {
+    /** Whether any road was reached besides the start vertex. */
+    private final boolean isochroneSuccess;
+    /** The number of reached vertices, including the start vertex. */
+    private final int vertexCount;
+    /** The road distance of the farthest reached vertex in miles, for a distance bound. */
+    private final Double maxDistance;
+    /** The travel time to the farthest reached vertex in seconds, for a time bound. */
+    private final Double maxTime;
+    /** The boundary polygon, as longitude and latitude pairs. */
+    private final double[][] boundary;
+    /** The OSM IDs of the reached vertices in order of distance, or null if not requested. */
+    private final long[] vertices;
+
+    /**
+     * Constructs an IsochroneResultParams instance from an isochrone.
+     * @param isochrone The reached vertices.
+     * @param metric What the isochrone was bounded by.
+     * @param withVertices Whether to list the reached vertices.
+     */
+    IsochroneResultParams(Isochrone isochrone, Router.Metric metric, boolean withVertices) {
+        CompactGraph graph = isochrone.graph;
+        this.isochroneSuccess = isochrone.size() > 1;
+        this.vertexCount = isochrone.size();
+        boolean byTime = metric == Router.Metric.TIME;
+        this.maxDistance = byTime ? null : isochrone.maxDistance();
+        this.maxTime = byTime ? isochrone.maxDistance() : null;
+        double[] polygon = isochrone.boundary();
+        this.boundary = new double[polygon.length / 2][];
+        for (int i = 0; i < boundary.length; i += 1) {
+            boundary[i] = new double[]{polygon[2 * i], polygon[2 * i + 1]};
+        }
+        if (withVertices) {
+            this.vertices = new long[isochrone.size()];
+            for (int i = 0; i < vertices.length; i += 1) {
+                vertices[i] = graph.id(isochrone.vertex(i));
+            }
+        } else {
+            this.vertices = null;
+        }
+    }
+}
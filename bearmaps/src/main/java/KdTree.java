@@ -0,0 +1,202 @@
+/**
+ * An immutable k-d tree over the vertices of a <code>CompactGraph</code>, used to answer
+ * nearest-vertex queries in logarithmic expected time.
+ *
+ * Points are stored as unit vectors on the sphere rather than as Transverse Mercator projected
+ * coordinates. The straight-line (chord) distance between two unit vectors increases strictly with
+ * their great-circle distance, so pruning on chord distance never discards the great-circle
+ * nearest vertex, and the answer is the same as a linear scan using <code>GraphDB.distance</code>:
+ * the smallest great-circle distance wins, with ties going to the lowest vertex index.
+ *
+ * The tree is implicit: the node for the index range <code>[lo, hi)</code> is stored at position
+ * <code>(lo + hi) / 2</code>, with the lower half to its left and the upper half to its right.
+ */
+public class KdTree {
+    /** Relative slack on pruning bounds to absorb floating point error. */
+    private static final double SLACK = 1e-9;
+
+    private final CompactGraph graph;
+    /** Vertex index stored at each tree position. */
+    private final int[] vertex;
+    /** Unit vector coordinates at each tree position. */
+    private final double[] xs, ys, zs;
+    /** Splitting axis (0, 1 or 2) at each tree position. */
+    private final byte[] axis;
+
+    /**
+     * Builds a tree over the OSM nodes of <code>graph</code>, leaving out the copies of
+     * restricted junctions so that a point always snaps to the node itself.
+     * @param graph The graph whose vertices are indexed.
+     */
+    KdTree(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        vertex = new int[n];
+        xs = new double[n];
+        ys = new double[n];
+        zs = new double[n];
+        axis = new byte[n];
+        for (int v = 0; v < n; v += 1) {
+            vertex[v] = v;
+            double phi = Math.toRadians(graph.lat(v));
+            double lambda = Math.toRadians(graph.lon(v));
+            xs[v] = Math.cos(phi) * Math.cos(lambda);
+            ys[v] = Math.cos(phi) * Math.sin(lambda);
+            zs[v] = Math.sin(phi);
+        }
+        build(0, n);
+    }
+
+    /**
+     * Returns the index of the vertex closest to the given point by great-circle distance.
+     * @param lon The query longitude.
+     * @param lat The query latitude.
+     * @return The index of the closest vertex, or -1 if the tree is empty.
+     */
+    int nearest(double lon, double lat) {
+        if (vertex.length == 0) {
+            return -1;
+        }
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        Query q = new Query(lon, lat, Math.cos(phi) * Math.cos(lambda),
+                Math.cos(phi) * Math.sin(lambda), Math.sin(phi));
+        search(q, 0, vertex.length);
+        return q.best;
+    }
+
+    private void build(int lo, int hi) {
+        if (hi - lo <= 0) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        byte a = widestAxis(lo, hi);
+        select(lo, hi - 1, mid, a);
+        axis[mid] = a;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /** Returns the axis along which the points in <code>[lo, hi)</code> are most spread out. */
+    private byte widestAxis(int lo, int hi) {
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = lo; i < hi; i += 1) {
+            for (int a = 0; a < 3; a += 1) {
+                double c = coord(i, a);
+                min[a] = Math.min(min[a], c);
+                max[a] = Math.max(max[a], c);
+            }
+        }
+        byte best = 0;
+        for (byte a = 1; a < 3; a += 1) {
+            if (max[a] - min[a] > max[best] - min[best]) {
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /** Quickselect: partition <code>[lo, hi]</code> so that position k holds its median on a. */
+    private void select(int lo, int hi, int k, int a) {
+        while (hi > lo) {
+            double pivot = coord((lo + hi) >>> 1, a);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (coord(i, a) < pivot) {
+                    i += 1;
+                }
+                while (coord(j, a) > pivot) {
+                    j -= 1;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void search(Query q, int lo, int hi) {
+        if (hi - lo <= 0) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = q.x - xs[mid], dy = q.y - ys[mid], dz = q.z - zs[mid];
+        double chordSq = dx * dx + dy * dy + dz * dz;
+        if (chordSq <= q.bound * q.bound) {
+            int v = vertex[mid];
+            double d = GraphDB.haversine(q.lat, q.lon, graph.lat(v), graph.lon(v));
+            if (d < q.bestDistance || (d == q.bestDistance && v < q.best)) {
+                q.best = v;
+                q.bestDistance = d;
+                q.bound = chordBound(d);
+            }
+        }
+        double diff = q.coord(axis[mid]) - coord(mid, axis[mid]);
+        if (diff < 0) {
+            search(q, lo, mid);
+            if (-diff <= q.bound) {
+                search(q, mid + 1, hi);
+            }
+        } else {
+            search(q, mid + 1, hi);
+            if (diff <= q.bound) {
+                search(q, lo, mid);
+            }
+        }
+    }
+
+    /** Returns an upper bound on the chord length of a great-circle arc of d miles. */
+    private static double chordBound(double d) {
+        return 2 * Math.sin(Math.min(d / (2 * GraphDB.R), Math.PI / 2)) * (1 + SLACK)
+                + SLACK;
+    }
+
+    private double coord(int i, int a) {
+        return a == 0 ? xs[i] : a == 1 ? ys[i] : zs[i];
+    }
+
+    private void swap(int i, int j) {
+        int v = vertex[i];
+        vertex[i] = vertex[j];
+        vertex[j] = v;
+        double t = xs[i];
+        xs[i] = xs[j];
+        xs[j] = t;
+        t = ys[i];
+        ys[i] = ys[j];
+        ys[j] = t;
+        t = zs[i];
+        zs[i] = zs[j];
+        zs[j] = t;
+    }
+
+    /** Mutable state of a single nearest-neighbor query. */
+    private static class Query {
+        final double lon, lat, x, y, z;
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        double bound = Double.POSITIVE_INFINITY;
+
+        Query(double lon, double lat, double x, double y, double z) {
+            this.lon = lon;
+            this.lat = lat;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        double coord(int a) {
+            return a == 0 ? x : a == 1 ? y : z;
+        }
+    }
+}
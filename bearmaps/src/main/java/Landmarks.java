@@ -0,0 +1,215 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Landmark distance tables for the ALT (A*, landmarks, triangle inequality) heuristic. For a
+ * landmark <code>L</code>, the triangle inequality gives two lower bounds on the distance from
+ * <code>v</code> to <code>t</code>: <code>d(L, t) - d(L, v)</code> and
+ * <code>d(v, L) - d(t, L)</code>. The heuristic is the largest of these over all landmarks, and
+ * never less than the great-circle distance.
+ *
+ * Landmarks are chosen by farthest-point selection: each new landmark is the reachable vertex
+ * farthest by road from all landmarks chosen so far, which spreads them around the edge of the
+ * map where they give the tightest bounds. The distances are stored as floats, vertex-major, so
+ * that all landmark distances of a vertex share a cache line or two.
+ */
+class Landmarks {
+    /** Number of landmarks chosen by default. */
+    static final int DEFAULT_COUNT = 16;
+    private static final int MAGIC = 0x424d4c4d; // "BMLM"
+    private static final int VERSION = 1;
+    /**
+     * Bounds are reduced by this fraction of the distances involved, so that rounding the
+     * tables to floats can never make the heuristic overestimate.
+     */
+    private static final double SLACK = 1e-6;
+
+    private final CompactGraph graph;
+    private final int[] landmarks;
+    /* d(L_k, v) at 2 * (v * count + k) and d(v, L_k) right after it; infinite if unreachable. */
+    private final float[] table;
+
+    private Landmarks(CompactGraph graph, int[] landmarks, float[] table) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.table = table;
+    }
+
+    /**
+     * Selects <code>count</code> landmarks for <code>graph</code> and computes their distance
+     * tables. Selection needs one search per landmark in turn; the searches toward the landmarks
+     * then run in parallel.
+     */
+    static Landmarks build(CompactGraph graph, int count) {
+        int n = graph.size();
+        count = Math.min(count, n);
+        int[] chosen = new int[count];
+        float[][] from = new float[count][];
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        int next = centralVertex(graph);
+        for (int k = 0; k < count; k += 1) {
+            chosen[k] = next;
+            from[k] = distances(graph, next);
+            double farthest = -1;
+            for (int v = 0; v < n; v += 1) {
+                nearest[v] = Math.min(nearest[v], from[k][v]);
+                if (nearest[v] != Double.POSITIVE_INFINITY && nearest[v] > farthest) {
+                    farthest = nearest[v];
+                    next = v;
+                }
+            }
+        }
+        CompactGraph reversed = graph.reversed();
+        float[][] to = new float[count][];
+        IntStream.range(0, count).parallel().forEach(k -> to[k] = distances(reversed, chosen[k]));
+
+        float[] table = new float[2 * count * n];
+        for (int v = 0; v < n; v += 1) {
+            for (int k = 0; k < count; k += 1) {
+                table[2 * (v * count + k)] = from[k][v];
+                table[2 * (v * count + k) + 1] = to[k][v];
+            }
+        }
+        return new Landmarks(graph, chosen, table);
+    }
+
+    /** Returns the vertex closest to the mean position of all vertices. */
+    private static int centralVertex(CompactGraph graph) {
+        double lat = 0, lon = 0;
+        for (int v = 0; v < graph.size(); v += 1) {
+            lat += graph.lat(v);
+            lon += graph.lon(v);
+        }
+        lat /= graph.size();
+        lon /= graph.size();
+        int best = 0;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int v = 0; v < graph.size(); v += 1) {
+            double d = GraphDB.haversine(lat, lon, graph.lat(v), graph.lon(v));
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /** Runs Dijkstra's algorithm from <code>source</code> over all of <code>graph</code>. */
+    private static float[] distances(CompactGraph graph, int source) {
+        SearchState state = SearchState.forGraph(graph);
+        state.reach(source, 0.0, -1);
+        state.heap.push(source, 0.0);
+        while (!state.heap.isEmpty()) {
+            int v = state.heap.poll();
+            double dv = state.dist(v);
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                double dw = dv + graph.weight(e);
+                if (dw < state.dist(w)) {
+                    state.reach(w, dw, v);
+                    state.heap.push(w, dw);
+                }
+            }
+        }
+        float[] dist = new float[graph.size()];
+        for (int v = 0; v < dist.length; v += 1) {
+            dist[v] = (float) state.dist(v);
+        }
+        return dist;
+    }
+
+    /** Returns the number of landmarks. */
+    int count() {
+        return landmarks.length;
+    }
+
+    /** Returns the OSM ID of landmark <code>k</code>. */
+    long landmarkId(int k) {
+        return graph.id(landmarks[k]);
+    }
+
+    /** Returns a lower bound on the road distance from vertex v to vertex t. */
+    double lowerBound(int v, int t) {
+        int count = landmarks.length;
+        int vBase = 2 * v * count, tBase = 2 * t * count;
+        double best = 0;
+        for (int i = 0; i < 2 * count; i += 2) {
+            double fromV = table[vBase + i], fromT = table[tBase + i];
+            double toV = table[vBase + i + 1], toT = table[tBase + i + 1];
+            /* Bounds involving an unreachable (infinite) entry come out NaN or negative. */
+            double forward = fromT - fromV - SLACK * (fromT + fromV);
+            double backward = toV - toT - SLACK * (toV + toT);
+            if (forward > best) {
+                best = forward;
+            }
+            if (backward > best) {
+                best = backward;
+            }
+        }
+        return best;
+    }
+
+    /** Returns the heap retained by the distance tables, in bytes. */
+    long sizeInBytes() {
+        return 4L * table.length + 4L * landmarks.length;
+    }
+
+    /**
+     * Saves the landmark tables to <code>path</code>, tagged with the checksum of the graph.
+     * @throws IOException if the file cannot be written.
+     */
+    void save(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(graph.checksum());
+            out.writeInt(landmarks.length);
+            for (int l : landmarks) {
+                out.writeInt(l);
+            }
+            out.writeInt(table.length);
+            for (float d : table) {
+                out.writeFloat(d);
+            }
+        }
+    }
+
+    /**
+     * Loads the landmark tables saved at <code>path</code> for <code>graph</code>.
+     * @return The tables, or <code>null</code> if the file does not exist, has another format
+     * version, or was built from a different graph.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    static Landmarks load(String path, CompactGraph graph) throws IOException {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != graph.checksum()) {
+                return null;
+            }
+            int[] landmarks = new int[in.readInt()];
+            for (int k = 0; k < landmarks.length; k += 1) {
+                landmarks[k] = in.readInt();
+            }
+            float[] table = new float[in.readInt()];
+            for (int i = 0; i < table.length; i += 1) {
+                table[i] = in.readFloat();
+            }
+            return new Landmarks(graph, landmarks, table);
+        }
+    }
+}
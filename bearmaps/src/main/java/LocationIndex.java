@@ -0,0 +1,420 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A prefix index over the named locations of the OSM file, for autocomplete and search.
+ *
+ * Locations are grouped by their cleaned names, which are kept as one sorted array, so the
+ * cleaned names that start with a prefix are a contiguous range found with two binary searches.
+ * The locations themselves are kept in parallel arrays sorted by cleaned name, then full name,
+ * then ID, and equal full names share one string. A cleaned name is as popular as the number of
+ * locations that carry it, and a segment tree over the cleaned names gives the most popular one
+ * in any range, so the top k matches of a prefix are found in O(k log n) time however many names
+ * match it.
+ *
+ * Fuzzy search finds the cleaned names within a few edits of a query through an inverted index
+ * of trigrams. Each cleaned name is padded with two marks at either end, giving one trigram per
+ * character plus two. An edit changes at most three of the query's trigrams, so a name within
+ * d edits shares all but 3d of them; only names that pass this count filter and the length
+ * filter are checked with a bounded edit distance. The cleaned names hold only letters and
+ * spaces, so a trigram is a number below 28 cubed and the posting lists are addressed directly.
+ */
+class LocationIndex {
+    /** Suffix appended to the OSM file path to name its saved index. */
+    static final String SUFFIX = ".locations";
+    private static final int MAGIC = 0x424d4c49; // "BMLI"
+    private static final int VERSION = 1;
+    /** Symbols in a trigram: the padding mark, space and the 26 letters. */
+    private static final int SYMBOLS = 28;
+    /** Candidates checked between looks at the clock. */
+    private static final int CHECK_INTERVAL = 64;
+
+    /** Distinct cleaned names, sorted. */
+    private final String[] keys;
+    /** The locations of <code>keys[k]</code> occupy <code>[starts[k], starts[k + 1])</code>. */
+    private final int[] starts;
+    private final long[] ids;
+    private final double[] lats, lons;
+    private final String[] names;
+    /**
+     * Segment tree over the keys, with leaf <code>k</code> at <code>keys.length + k</code>. Each
+     * node holds the most popular key below it, the first in order among equally popular ones.
+     */
+    private final int[] tree;
+    /**
+     * Posting lists of the trigram index: the keys containing trigram <code>g</code>, in
+     * increasing order, are <code>postings[gramStarts[g]]</code> up to
+     * <code>postings[gramStarts[g + 1]]</code>.
+     */
+    private final int[] gramStarts;
+    private final int[] postings;
+
+    /**
+     * Builds the index of <code>locations</code>. Locations whose cleaned name is empty cannot be
+     * searched for and are left out.
+     */
+    LocationIndex(List<LocationParams> locations) {
+        List<LocationParams> named = new ArrayList<>(locations.size());
+        List<String> cleaned = new ArrayList<>(locations.size());
+        Integer[] order = new Integer[locations.size()];
+        for (LocationParams location : locations) {
+            String key = GraphDB.cleanString(location.name);
+            if (!key.isEmpty()) {
+                order[named.size()] = named.size();
+                named.add(location);
+                cleaned.add(key);
+            }
+        }
+        int size = named.size();
+        order = Arrays.copyOf(order, size);
+        Arrays.sort(order, Comparator.<Integer, String>comparing(cleaned::get)
+                .thenComparing(i -> named.get(i).name)
+                .thenComparingLong(i -> named.get(i).id));
+
+        ids = new long[size];
+        lats = new double[size];
+        lons = new double[size];
+        names = new String[size];
+        List<String> distinctKeys = new ArrayList<>();
+        List<Integer> keyStarts = new ArrayList<>();
+        for (int i = 0; i < size; i += 1) {
+            LocationParams location = named.get(order[i]);
+            String key = cleaned.get(order[i]);
+            ids[i] = location.id;
+            lats[i] = location.lat;
+            lons[i] = location.lon;
+            names[i] = i > 0 && names[i - 1].equals(location.name) ? names[i - 1] : location.name;
+            if (distinctKeys.isEmpty() || !distinctKeys.get(distinctKeys.size() - 1).equals(key)) {
+                distinctKeys.add(key);
+                keyStarts.add(i);
+            }
+        }
+        keyStarts.add(size);
+        keys = distinctKeys.toArray(new String[0]);
+        starts = keyStarts.stream().mapToInt(Integer::intValue).toArray();
+
+        tree = new int[2 * keys.length];
+        for (int k = 0; k < keys.length; k += 1) {
+            tree[keys.length + k] = k;
+        }
+        for (int node = keys.length - 1; node > 0; node -= 1) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+
+        int[][] keyGrams = new int[keys.length][];
+        gramStarts = new int[SYMBOLS * SYMBOLS * SYMBOLS + 1];
+        for (int k = 0; k < keys.length; k += 1) {
+            keyGrams[k] = trigrams(keys[k]);
+            for (int g : keyGrams[k]) {
+                gramStarts[g + 1] += 1;
+            }
+        }
+        for (int g = 0; g + 1 < gramStarts.length; g += 1) {
+            gramStarts[g + 1] += gramStarts[g];
+        }
+        postings = new int[gramStarts[gramStarts.length - 1]];
+        int[] next = Arrays.copyOf(gramStarts, gramStarts.length - 1);
+        for (int k = 0; k < keys.length; k += 1) {
+            for (int g : keyGrams[k]) {
+                postings[next[g]] = k;
+                next[g] += 1;
+            }
+        }
+    }
+
+    /** Returns the number of indexed locations. */
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the full names of the locations whose cleaned names start with the cleaned
+     * <code>prefix</code>, most popular cleaned name first.
+     * @param prefix Prefix string to be searched for, in any case and with or without
+     *               punctuation.
+     * @param limit The most names to return.
+     */
+    List<String> byPrefix(String prefix, int limit) {
+        String key = GraphDB.cleanString(prefix);
+        int lo = lowerBound(key);
+        int hi = lowerBound(key + Character.MAX_VALUE);
+        List<String> matches = new ArrayList<>();
+        if (lo >= hi || limit <= 0) {
+            return matches;
+        }
+        /* Ranges of keys still to take from, each with its most popular key, best first. */
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[2] == b[2] ? 0
+                : better(a[2], b[2]) == a[2] ? -1 : 1);
+        ranges.add(new int[]{lo, hi, best(lo, hi)});
+        while (!ranges.isEmpty() && matches.size() < limit) {
+            int[] range = ranges.poll();
+            int k = range[2];
+            for (int i = starts[k]; i < starts[k + 1] && matches.size() < limit; i += 1) {
+                if (i == starts[k] || names[i] != names[i - 1]) {
+                    matches.add(names[i]);
+                }
+            }
+            if (range[0] < k) {
+                ranges.add(new int[]{range[0], k, best(range[0], k)});
+            }
+            if (k + 1 < range[1]) {
+                ranges.add(new int[]{k + 1, range[1], best(k + 1, range[1])});
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns every location whose cleaned name equals the cleaned <code>locationName</code>.
+     */
+    List<LocationParams> get(String locationName) {
+        int k = Arrays.binarySearch(keys, GraphDB.cleanString(locationName));
+        if (k < 0) {
+            return Collections.emptyList();
+        }
+        List<LocationParams> matches = new ArrayList<>(starts[k + 1] - starts[k]);
+        for (int i = starts[k]; i < starts[k + 1]; i += 1) {
+            matches.add(new LocationParams(lats[i], lons[i], names[i], ids[i]));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the locations whose cleaned names are closest to the cleaned <code>query</code>,
+     * allowing one edit in queries of 4 to 7 characters and two in longer ones. Names are ranked
+     * by edit distance, then by how many locations share them, then in order.
+     * @param query A name that may be misspelled.
+     * @param limit The most locations to return.
+     * @param budgetNanos How long to spend checking candidates. Once it runs out, the best names
+     *                    among those checked so far are returned.
+     */
+    List<LocationParams> fuzzy(String query, int limit, long budgetNanos) {
+        long start = System.nanoTime();
+        String key = GraphDB.cleanString(query);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int maxEdits = key.length() < 4 ? 0 : key.length() < 8 ? 1 : 2;
+        int[] grams = trigrams(key);
+
+        /* Count the trigrams each name shares with the query by merging the posting lists. */
+        int total = 0;
+        for (int g : grams) {
+            total += gramStarts[g + 1] - gramStarts[g];
+        }
+        int[] hits = new int[total];
+        total = 0;
+        for (int g : grams) {
+            int length = gramStarts[g + 1] - gramStarts[g];
+            System.arraycopy(postings, gramStarts[g], hits, total, length);
+            total += length;
+        }
+        Arrays.sort(hits);
+        int needed = Math.max(1, grams.length - 3 * maxEdits);
+        long[] candidates = new long[16];
+        int size = 0;
+        for (int i = 0, j = 0; i < hits.length; i = j) {
+            while (j < hits.length && hits[j] == hits[i]) {
+                j += 1;
+            }
+            int k = hits[i];
+            if (j - i >= needed && Math.abs(keys[k].length() - key.length()) <= maxEdits) {
+                if (size == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, 2 * size);
+                }
+                /* Most shared trigrams first, then in order, once sorted descending. */
+                candidates[size] = (long) (j - i) << 32 | (Integer.MAX_VALUE - k);
+                size += 1;
+            }
+        }
+        Arrays.sort(candidates, 0, size);
+
+        /* Check the likeliest candidates first, keeping the name and distance of each match. */
+        List<int[]> matches = new ArrayList<>();
+        for (int c = size - 1; c >= 0; c -= 1) {
+            int k = Integer.MAX_VALUE - (int) candidates[c];
+            int distance = editDistance(key, keys[k], maxEdits);
+            if (distance <= maxEdits) {
+                matches.add(new int[]{k, distance});
+            }
+            if ((size - c) % CHECK_INTERVAL == 0 && System.nanoTime() - start > budgetNanos) {
+                break;
+            }
+        }
+        matches.sort((a, b) -> a[1] != b[1] ? a[1] - b[1] : better(a[0], b[0]) == a[0] ? -1 : 1);
+        List<LocationParams> results = new ArrayList<>();
+        for (int[] match : matches) {
+            for (int i = starts[match[0]]; i < starts[match[0] + 1]; i += 1) {
+                if (results.size() == limit) {
+                    return results;
+                }
+                results.add(new LocationParams(lats[i], lons[i], names[i], ids[i]));
+            }
+        }
+        return results;
+    }
+
+    /** Returns the distinct trigrams of a cleaned name padded with two marks at either end. */
+    private static int[] trigrams(String key) {
+        int[] grams = new int[key.length() + 2];
+        int a = 0, b = 0;
+        for (int i = 0; i < grams.length; i += 1) {
+            int c = i < key.length() ? symbol(key.charAt(i)) : 0;
+            grams[i] = (a * SYMBOLS + b) * SYMBOLS + c;
+            a = b;
+            b = c;
+        }
+        Arrays.sort(grams);
+        int size = 0;
+        for (int i = 0; i < grams.length; i += 1) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[size] = grams[i];
+                size += 1;
+            }
+        }
+        return Arrays.copyOf(grams, size);
+    }
+
+    private static int symbol(char c) {
+        return c == ' ' ? 1 : c - 'a' + 2;
+    }
+
+    /**
+     * Returns the Levenshtein distance between two strings, or <code>maxEdits + 1</code> as soon
+     * as it is known to exceed <code>maxEdits</code>.
+     */
+    static int editDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j += 1) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i += 1) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j += 1) {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    /** Returns the index of the first key not less than <code>key</code>. */
+    private int lowerBound(String key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /** Returns the most popular key in <code>[lo, hi)</code>, which must not be empty. */
+    private int best(int lo, int hi) {
+        int best = lo;
+        for (lo += keys.length, hi += keys.length; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                best = better(best, tree[lo]);
+                lo += 1;
+            }
+            if ((hi & 1) == 1) {
+                hi -= 1;
+                best = better(best, tree[hi]);
+            }
+        }
+        return best;
+    }
+
+    /** Returns whichever of two keys has more locations, or the first in order on a tie. */
+    private int better(int a, int b) {
+        int countA = starts[a + 1] - starts[a];
+        int countB = starts[b + 1] - starts[b];
+        return countA > countB || countA == countB && a < b ? a : b;
+    }
+
+    /** Returns an estimate of the Java heap retained by this index, in bytes. */
+    long sizeInBytes() {
+        long bytes = 4L * (starts.length + tree.length + gramStarts.length + postings.length)
+                + 24L * ids.length
+                + 4L * (keys.length + names.length);
+        for (String key : keys) {
+            bytes += 40 + key.length();
+        }
+        for (int i = 0; i < names.length; i += 1) {
+            if (i == 0 || names[i] != names[i - 1]) {
+                bytes += 40 + names[i].length();
+            }
+        }
+        return bytes;
+    }
+
+    /** Returns the file that holds the saved index of the OSM file at <code>source</code>. */
+    static File of(File source) {
+        return new File(source.getPath() + SUFFIX);
+    }
+
+    /**
+     * Saves the locations of this index next to the OSM file they were read from.
+     * @throws IOException if the file cannot be written.
+     */
+    void save(File source) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(of(source))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.length());
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i += 1) {
+                out.writeLong(ids[i]);
+                out.writeDouble(lats[i]);
+                out.writeDouble(lons[i]);
+                out.writeUTF(names[i]);
+            }
+        }
+    }
+
+    /**
+     * Loads the index saved next to the OSM file at <code>source</code>.
+     * @return The index, or <code>null</code> if there is none, it is older than the OSM file,
+     * was built from a file of another length, or has another format version.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    static LocationIndex load(File source) throws IOException {
+        File file = of(source);
+        if (!file.isFile() || !source.isFile() || file.lastModified() < source.lastModified()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != source.length()) {
+                return null;
+            }
+            int size = in.readInt();
+            List<LocationParams> locations = new ArrayList<>(size);
+            for (int i = 0; i < size; i += 1) {
+                long id = in.readLong();
+                double lat = in.readDouble();
+                double lon = in.readDouble();
+                locations.add(new LocationParams(lat, lon, in.readUTF(), id));
+            }
+            return new LocationIndex(locations);
+        }
+    }
+}
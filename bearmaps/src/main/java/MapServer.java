@@ -2,19 +2,29 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import spark.Request;
+import spark.Response;
+
 import static spark.Spark.*;
 
 /**
@@ -49,32 +59,70 @@ public class MapServer {
     /** The <code>Rasterer</code> responsible for computing the shortest path and directions. */
     private static Rasterer rasterer;
     /**
-     * The most recently-requested shortest-paths route. The <code>renderImage</code> method redraws
-     * this route every time a new rastering result is requested from the browser.
+     * The most recently-requested shortest-paths route of each session. The
+     * <code>renderImage</code> method redraws the caller's route every time a new rastering
+     * result is requested from the browser.
      */
-    private static List<Long> route;
+    private static RouteStore routes;
+    /** Routes and directions computed on the current graph, shared by all sessions. */
+    private static RouteCache routeCache;
+    /** Decoded map tiles shared by all raster requests. */
+    private static TileCache tiles;
+    /** Base maps composited from the tiles, shared by all raster requests. */
+    private static MosaicCache mosaics;
     /** The configured Gson Java serializer. */
     private static Gson gson;
+    /** The most recent search traces requested with <code>trace=true</code>, by trace ID. */
+    private static final Map<Integer, SearchTrace> TRACES = Collections.synchronizedMap(
+            new LinkedHashMap<Integer, SearchTrace>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, SearchTrace> eldest) {
+                    return size() > MAX_TRACES;
+                }
+            });
+    /** The ID assigned to the next recorded search trace. */
+    private static final AtomicInteger NEXT_TRACE_ID = new AtomicInteger();
 
     /**
      * Code responsible for initializing variables. These objects must be instantiated
      * independently of the main method for the tests to function properly.
      */
     public static void initialize() {
-        graph = new GraphDB(OSM_DB_PATH);
+        graph = new GraphDB(OSM_DB_PATH, STORAGE);
         rasterer = new Rasterer();
-        route = Collections.emptyList();
+        tiles = new TileCache(IMG_ROOT, TILE_CACHE_BYTES);
+        mosaics = new MosaicCache(tiles, MOSAIC_CACHE_BYTES);
+        routes = new RouteStore(ROUTE_STORE_BYTES, SESSION_TTL_MILLIS);
+        routeCache = new RouteCache(ROUTE_CACHE_BYTES);
         gson = new GsonBuilder()
                 .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
                 .create();
     }
 
+    /**
+     * Loads or builds the landmark tables and the distance and time contraction hierarchies on a
+     * background thread, so the server answers requests from the start. Until each is ready,
+     * routes are found with A* and matrices with Dijkstra; <code>GraphDB</code> publishes each one
+     * through a volatile field as soon as it is set. The landmarks come first, as they take
+     * seconds where a hierarchy can take minutes.
+     */
+    private static void preprocessInBackground() {
+        Thread thread = new Thread(() -> {
+            graph.loadOrBuildLandmarks(OSM_DB_PATH + LANDMARKS_SUFFIX);
+            graph.loadOrBuildHierarchy(OSM_DB_PATH + CH_SUFFIX);
+            graph.loadOrBuildHierarchy(OSM_DB_PATH + TIME_CH_SUFFIX, Router.Metric.TIME);
+        }, "preprocessing");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Launch the <code>mapServer</code>, register server routes, and listen on the default port.
      * @param args Ignored
      */
     public static void main(String[] args) {
         initialize();
+        preprocessInBackground();
         staticFileLocation("/page");
         /* Allow for all origin requests since this is not an authenticated server. */
         before((request, response) -> {
@@ -92,20 +140,40 @@ public class MapServer {
             } catch (IllegalArgumentException e) {
                 halt(HALT_RESPONSE, e.getMessage());
             }
+            List<Long> route = routes.get(session(req, res, false));
+            /* An isochrone given with isochrone_-prefixed parameters is drawn under the route. */
+            Isochrone isochrone = null;
+            if (req.queryParams("isochrone_lon") != null) {
+                try {
+                    isochrone = Router.isochrone(graph, IsochroneRequestParams.from(
+                            req.queryMap().toMap(), ISOCHRONE_PREFIX));
+                } catch (IllegalArgumentException e) {
+                    halt(HALT_RESPONSE, e.getMessage());
+                }
+            }
+            BufferedImage img = renderImage(resultParams, mosaics, graph, route, isochrone);
+            /*
+             * The PNG is streamed into the response as it is encoded. With binary=true the body is
+             * the PNG itself and the other fields are sent in a header; otherwise the body is the
+             * JSON object, with the PNG Base64-encoded inside it.
+             */
             try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                BufferedImage img = renderImage(resultParams);
-                ImageIO.write(img, "png", os);
-                return gson.toJson(
-                        new RenderedRasterResultParams(
-                                resultParams, img.getWidth(), img.getHeight(),
-                                Base64.getEncoder().encodeToString(os.toByteArray())
-                        ));
+                OutputStream out = new BufferedOutputStream(res.raw().getOutputStream(),
+                        RESPONSE_BUFFER_BYTES);
+                if (Boolean.parseBoolean(req.queryParams("binary"))) {
+                    res.type("image/png");
+                    res.header(RASTER_PARAMS_HEADER, gson.toJson(new RenderedRasterResultParams(
+                            resultParams, img.getWidth(), img.getHeight(), null)));
+                    PngEncoder.write(img, out, PNG_LEVEL);
+                } else {
+                    res.type("application/json");
+                    writeRasterJson(gson, resultParams, img, PNG_LEVEL, out);
+                }
+                out.flush();
             } catch (IOException e) {
                 e.printStackTrace();
             }
-            /* Return the best-effort resultParams when unable to render image. */
-            return gson.toJson(resultParams);
+            return "";
         });
 
         /* Define the routing endpoint for HTTP GET requests. */
@@ -116,29 +184,104 @@ public class MapServer {
             } catch (IllegalArgumentException e) {
                 halt(HALT_RESPONSE, e.getMessage());
             }
-            route = Router.shortestPath(graph,
-                    params.startLon, params.startLat, params.endLon, params.endLat);
-            String directions = getDirectionsText(Router.routeDirections(graph, route));
-            RouteResultParams routeParams = new RouteResultParams(!route.isEmpty(), directions);
+            SearchTrace trace = params.trace ? new SearchTrace() : null;
+            RouteCache.Route route = route(graph, routeCache, params, trace);
+            List<Long> path = route.path();
+            routes.put(session(req, res, true), path);
+            Integer traceId = null;
+            if (trace != null) {
+                traceId = NEXT_TRACE_ID.incrementAndGet();
+                TRACES.put(traceId, trace);
+            }
+            RouteResultParams routeParams =
+                    new RouteResultParams(!path.isEmpty(), route.directions, traceId);
             return gson.toJson(routeParams);
         });
 
+        /* Define the distance matrix endpoint for HTTP GET requests. */
+        get("/matrix", (req, res) -> {
+            MatrixRequestParams params = null;
+            try {
+                params = MatrixRequestParams.from(req.queryMap().toMap());
+            } catch (IllegalArgumentException e) {
+                halt(HALT_RESPONSE, e.getMessage());
+            }
+            return gson.toJson(new MatrixResultParams(Router.distanceMatrix(graph, params)));
+        });
+
+        /*
+         * Define the isochrone endpoint for HTTP GET requests. With vertices=true the reached
+         * vertex IDs are listed as well as the boundary.
+         */
+        get("/isochrone", (req, res) -> {
+            IsochroneRequestParams params = null;
+            try {
+                params = IsochroneRequestParams.from(req.queryMap().toMap());
+            } catch (IllegalArgumentException e) {
+                halt(HALT_RESPONSE, e.getMessage());
+            }
+            Isochrone isochrone = Router.isochrone(graph, params);
+            return gson.toJson(new IsochroneResultParams(isochrone, params.metric,
+                    Boolean.parseBoolean(req.queryParams("vertices"))));
+        });
+
+        /*
+         * Define the debug endpoint for fetching a recorded search trace by ID. Without an ID,
+         * lists the IDs of the traces still held.
+         */
+        get("/debug/trace", (req, res) -> {
+            String id = req.queryParams("id");
+            if (id == null) {
+                synchronized (TRACES) {
+                    return gson.toJson(new ArrayList<>(TRACES.keySet()));
+                }
+            }
+            SearchTrace trace = null;
+            try {
+                trace = TRACES.get(Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                halt(HALT_RESPONSE, "Incorrect parameters: unable to parse id.");
+            }
+            if (trace == null) {
+                halt(HALT_RESPONSE, "No trace with id " + id + ".");
+            }
+            return gson.toJson(trace.summary());
+        });
+
+        /*
+         * Define the debug endpoints for the tile, base map, session route and route cache
+         * counters.
+         */
+        get("/debug/tiles", (req, res) -> gson.toJson(tiles.stats()));
+        get("/debug/mosaics", (req, res) -> gson.toJson(mosaics.stats()));
+        get("/debug/routes", (req, res) -> gson.toJson(routes.stats()));
+        get("/debug/routecache", (req, res) -> gson.toJson(routeCache.stats()));
+
         /* Define the API endpoint for clearing the current route. */
         get("/clear_route", (req, res) -> {
-            route = Collections.emptyList();
+            String session = session(req, res, false);
+            if (session != null) {
+                routes.remove(session);
+            }
             return true;
         });
 
         /* Define the API endpoint for search */
         get("/search", (req, res) -> {
             String term = req.queryParams("term");
+            /* Search for locations by name, tolerating typos. */
+            if (req.queryParams().contains("fuzzy")) {
+                List<LocationParams> data = graph.getLocationsFuzzy(term, SEARCH_LIMIT,
+                        SEARCH_BUDGET_NANOS);
+                return gson.toJson(data);
+            }
             /* Search for actual location data. */
             if (req.queryParams().contains("full")) {
                 List<LocationParams> data = graph.getLocations(term);
                 return gson.toJson(data);
             } else {
                 /* Search for prefix matching strings. */
-                List<String> matches = graph.getLocationsByPrefix(term);
+                List<String> matches = graph.getLocationsByPrefix(term, SEARCH_LIMIT);
                 return gson.toJson(matches);
             }
         });
@@ -151,78 +294,190 @@ public class MapServer {
     }
 
     /**
-     * Return the image defined by the <code>resultParams</code>.
+     * Returns the session token of a request: the <code>session</code> parameter if given, and
+     * otherwise the session cookie. Browsers send the cookie with every request, so the front end
+     * need not know about sessions; other clients may choose their own token and pass it.
+     * @param create Whether to start a new session, setting its cookie, if there is none.
+     * @return The token, or <code>null</code> if there is none and none was created.
+     */
+    private static String session(Request req, Response res, boolean create) {
+        String session = req.queryParams("session");
+        if (session == null) {
+            session = req.cookie(SESSION_COOKIE);
+        }
+        if (session != null && session.length() > MAX_SESSION_LENGTH) {
+            halt(HALT_RESPONSE, "Incorrect parameters: session is too long.");
+        }
+        if (session == null && create) {
+            session = UUID.randomUUID().toString();
+            res.cookie(SESSION_COOKIE, session);
+        }
+        return session;
+    }
+
+    /**
+     * Return the image defined by the <code>resultParams</code>. The base map comes from the
+     * mosaic cache and is shared, so a route is drawn onto a copy of it.
      * @param resultParams <code>RasterResultParams</code> from <code>Rasterer.getMapRaster</code>
+     * @param mosaics The cache the base map is read through.
+     * @param graph The graph the route's vertices belong to.
+     * @param route The route to draw, which may be empty.
      * @return The final, rastered image including any shortest-paths routes.
      */
-    private static BufferedImage renderImage(RasterResultParams resultParams) {
-        String[][] renderGrid = resultParams.renderGrid;
-        int numVertTiles = renderGrid.length;
-        int numHorizTiles = renderGrid[0].length;
+    static BufferedImage renderImage(RasterResultParams resultParams, MosaicCache mosaics,
+                                     GraphDB graph, List<Long> route) {
+        return renderImage(resultParams, mosaics, graph, route, null);
+    }
 
-        BufferedImage img = new BufferedImage(numHorizTiles * MapServer.TILE_SIZE,
-                numVertTiles * MapServer.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+    /**
+     * Return the image defined by the <code>resultParams</code>, with the roads covered by an
+     * isochrone shaded under the route.
+     * @param isochrone The reachable area to shade, or <code>null</code> for none.
+     * @see #renderImage(RasterResultParams, MosaicCache, GraphDB, List)
+     */
+    static BufferedImage renderImage(RasterResultParams resultParams, MosaicCache mosaics,
+                                     GraphDB graph, List<Long> route, Isochrone isochrone) {
+        BufferedImage base = mosaics.get(resultParams);
+        if ((route == null || route.isEmpty()) && isochrone == null) {
+            return base;
+        }
+        BufferedImage img = MosaicCache.copy(base);
         Graphics graphic = img.getGraphics();
-        int x = 0, y = 0;
-        for (int r = 0; r < numVertTiles; r += 1) {
-            for (int c = 0; c < numHorizTiles; c += 1) {
-                graphic.drawImage(readImage(IMG_ROOT + renderGrid[r][c]), x, y, null);
-                x += MapServer.TILE_SIZE;
-                if (x >= img.getWidth()) {
-                    x = 0;
-                    y += MapServer.TILE_SIZE;
-                }
-            }
+        double ullon = resultParams.rasterUlLon;
+        double ullat = resultParams.rasterUlLat;
+        double lrlon = resultParams.rasterLrLon;
+        double lrlat = resultParams.rasterLrLat;
+        double wdpp = (lrlon - ullon) / img.getWidth();
+        double hdpp = (ullat - lrlat) / img.getHeight();
+        Graphics2D g2d = (Graphics2D) graphic;
+        if (isochrone != null) {
+            drawIsochrone(g2d, isochrone, ullon, ullat, wdpp, hdpp);
+        }
+        if (route == null || route.isEmpty()) {
+            return img;
         }
-        /* If there is a route, draw it. */
-        if (route != null && !route.isEmpty()) {
-            double ullon = resultParams.rasterUlLon;
-            double ullat = resultParams.rasterUlLat;
-            double lrlon = resultParams.rasterLrLon;
-            double lrlat = resultParams.rasterLrLat;
-            double wdpp = (lrlon - ullon) / img.getWidth();
-            double hdpp = (ullat - lrlat) / img.getHeight();
-            Graphics2D g2d = (Graphics2D) graphic;
-            g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
-            g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX,
-                    BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            route.stream().reduce((v, w) -> {
+        /* Draw the route over the base map. */
+        g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
+        g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX,
+                BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        route.stream().reduce((v, w) -> {
+            g2d.drawLine((int) ((graph.lon(v) - ullon) * (1 / wdpp)),
+                    (int) ((ullat - graph.lat(v)) * (1 / hdpp)),
+                    (int) ((graph.lon(w) - ullon) * (1 / wdpp)),
+                    (int) ((ullat - graph.lat(w)) * (1 / hdpp)));
+            return w;
+        });
+        return img;
+    }
+
+    /**
+     * Shades the roads within an isochrone's bound. An edge leaving a reached vertex is drawn up
+     * to the point where the bound runs out, so the shading ends where the distance does rather
+     * than at the last intersection reached.
+     */
+    private static void drawIsochrone(Graphics2D g2d, Isochrone isochrone,
+                                      double ullon, double ullat, double wdpp, double hdpp) {
+        CompactGraph graph = isochrone.graph;
+        g2d.setColor(ISOCHRONE_STROKE_COLOR);
+        g2d.setStroke(new BasicStroke(ISOCHRONE_STROKE_WIDTH_PX,
+                BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        double[] dist = isochrone.distancesByVertex();
+        for (int i = 0; i < isochrone.size(); i += 1) {
+            int v = isochrone.vertex(i);
+            double dv = isochrone.distance(i);
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                double fraction = 1.0;
+                if (dist[w] > isochrone.bound) {
+                    fraction = Math.min(1.0, (isochrone.bound - dv) / graph.weight(e));
+                }
+                double lon = graph.lon(v) + fraction * (graph.lon(w) - graph.lon(v));
+                double lat = graph.lat(v) + fraction * (graph.lat(w) - graph.lat(v));
                 g2d.drawLine((int) ((graph.lon(v) - ullon) * (1 / wdpp)),
                         (int) ((ullat - graph.lat(v)) * (1 / hdpp)),
-                        (int) ((graph.lon(w) - ullon) * (1 / wdpp)),
-                        (int) ((ullat - graph.lat(w)) * (1 / hdpp)));
-                return w;
-            });
+                        (int) ((lon - ullon) * (1 / wdpp)),
+                        (int) ((ullat - lat) * (1 / hdpp)));
+            }
         }
-        return img;
     }
 
     /**
-     * Returns the image found at the given <code>imgPath</code>.
-     * @param imgPath <code>String</code> path to the image.
-     * @return The <code>BufferedImage</code> at the specified <code>imgPath</code>.
+     * Writes the JSON response for a raster request, Base64-encoding the PNG of the image straight
+     * into <code>out</code> as it is encoded rather than building the image data up as a string.
+     * @param gson The serializer for the other fields.
+     * @param resultParams <code>RasterResultParams</code> from <code>Rasterer.getMapRaster</code>
+     * @param img The rendered image.
+     * @param level The deflate level of the PNG.
+     * @param out The stream to write to, which is left open.
+     * @throws IOException if the stream cannot be written.
+     */
+    static void writeRasterJson(Gson gson, RasterResultParams resultParams, BufferedImage img,
+                                int level, OutputStream out) throws IOException {
+        /* Gson leaves out the null image field, which is then added before the closing brace. */
+        String fields = gson.toJson(new RenderedRasterResultParams(
+                resultParams, img.getWidth(), img.getHeight(), null));
+        out.write(fields.substring(0, fields.lastIndexOf('}')).getBytes(StandardCharsets.UTF_8));
+        out.write(",\"b64_encoded_image_data\":\"".getBytes(StandardCharsets.UTF_8));
+        OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            /* Closing the encoder writes its padding; the response stays open. */
+            @Override
+            public void close() {
+            }
+        });
+        PngEncoder.write(img, base64, level);
+        base64.close();
+        out.write("\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the route and directions for a routing request, or takes them from
+     * <code>cache</code> if a route between the same snapped vertices, by the same metric and
+     * algorithm, is cached. Requests with a trace always run the search, so it is recorded.
+     * @param graph The graph to route on.
+     * @param cache The routes computed on <code>graph</code>.
+     * @param params The routing request.
+     * @param trace The trace to record the search into, or <code>null</code>.
+     * @return The route and its directions.
      */
-    private static BufferedImage readImage(String imgPath) {
-        BufferedImage tileImg = null;
-        File in = new File(imgPath);
-        try {
-            tileImg = ImageIO.read(in);
-        } catch (IOException e) {
-            e.printStackTrace();
+    static RouteCache.Route route(GraphDB graph, RouteCache cache, RouteRequestParams params,
+                                  SearchTrace trace) {
+        int start = graph.closestIndex(params.startLon, params.startLat);
+        int end = graph.closestIndex(params.endLon, params.endLat);
+        boolean cacheable = trace == null;
+        if (cacheable) {
+            RouteCache.Route route = cache.get(graph, start, end, params.metric,
+                    params.algorithm);
+            if (route != null) {
+                return route;
+            }
+        }
+        long startTime = System.nanoTime();
+        List<Long> path = Router.shortestPath(graph, start, end, params.algorithm,
+                params.metric, trace);
+        String directions = getDirectionsText(Router.directions(graph, path));
+        long computeNanos = System.nanoTime() - startTime;
+        if (cacheable) {
+            return cache.put(graph, start, end, params.metric, params.algorithm, path,
+                    directions, computeNanos);
         }
-        return tileImg;
+        return RouteCache.uncached(path, directions);
     }
 
     /**
      * Returns the HTML-friendly <code>Stirng</code> representation of the route.
-     * @param directions The <code>List</code> of <code>NavigationDirections</code>.
+     * @param directions The <code>NavigationDirections</code>, in order.
      * @return An HTML-encoded <code>String</code> of the list of navigation directions.
      */
-    private static String getDirectionsText(List<Router.NavigationDirection> directions) {
+    private static String getDirectionsText(Iterator<Router.NavigationDirection> directions) {
         StringBuilder sb = new StringBuilder();
         int step = 1;
-        for (Router.NavigationDirection d: directions) {
-            sb.append(String.format("%d. %s <br>", step, d));
+        while (directions.hasNext()) {
+            sb.append(String.format("%d. %s <br>", step, directions.next()));
             step += 1;
         }
         return sb.toString();
@@ -230,17 +485,86 @@ public class MapServer {
 
     /** HTTP failed response. */
     private static final int HALT_RESPONSE = 403;
+    /** Number of search traces kept for the debug endpoint. */
+    private static final int MAX_TRACES = 32;
     /** Route stroke information: typically roads are not more than 5px wide. */
     private static final float ROUTE_STROKE_WIDTH_PX = 5.0f;
     /** Route stroke information: semi-transparent cyan. */
     private static final Color ROUTE_STROKE_COLOR = new Color(108, 181, 230, 200);
+    /** Isochrone stroke information: a little wider than a road, so the shading shows. */
+    private static final float ISOCHRONE_STROKE_WIDTH_PX = 7.0f;
+    /** Isochrone stroke information: semi-transparent green. */
+    private static final Color ISOCHRONE_STROKE_COLOR = new Color(76, 175, 80, 140);
+    /** Prefix of the parameters of an isochrone drawn on a raster. */
+    private static final String ISOCHRONE_PREFIX = "isochrone_";
+    /** Most autocomplete suggestions or fuzzy matches returned for a search term. */
+    private static final int SEARCH_LIMIT = 10;
+    /**
+     * Time a fuzzy search may spend checking candidates, set in milliseconds with
+     * <code>-Dbearmaps.searchBudgetMs</code>.
+     */
+    private static final long SEARCH_BUDGET_NANOS =
+            Long.getLong("bearmaps.searchBudgetMs", 10) * 1_000_000;
+    /** Cookie holding the session token. */
+    private static final String SESSION_COOKIE = "bearmaps_session";
+    /** Longest session token accepted. */
+    private static final int MAX_SESSION_LENGTH = 64;
+    /**
+     * Memory budget for the routes of all sessions, set in megabytes with
+     * <code>-Dbearmaps.routeStoreMB</code>. A route of 1000 vertices takes about 8 KB.
+     */
+    private static final long ROUTE_STORE_BYTES = Long.getLong("bearmaps.routeStoreMB", 32) << 20;
+    /**
+     * Memory budget for routes cached across sessions, set in megabytes with
+     * <code>-Dbearmaps.routeCacheMB</code>. A budget of 0 disables the cache.
+     */
+    private static final long ROUTE_CACHE_BYTES = Long.getLong("bearmaps.routeCacheMB", 32) << 20;
+    /**
+     * How long a session keeps its route after its last request, set in minutes with
+     * <code>-Dbearmaps.sessionTtlMinutes</code>.
+     */
+    private static final long SESSION_TTL_MILLIS =
+            Long.getLong("bearmaps.sessionTtlMinutes", 30) * 60_000;
     /** The directory where tile images can be found. */
     private static final String IMG_ROOT = "../library-su18/bearmaps/img/";
+    /** Header carrying the raster fields when the image is sent as binary PNG. */
+    private static final String RASTER_PARAMS_HEADER = "X-Raster-Params";
+    /** Size of the buffer between the PNG encoder and the response. */
+    private static final int RESPONSE_BUFFER_BYTES = 1 << 16;
+    /**
+     * Deflate level for raster PNGs, from 0 to 9, set with <code>-Dbearmaps.pngLevel</code>.
+     * Higher levels give smaller responses and take longer to encode.
+     */
+    private static final int PNG_LEVEL = Integer.getInteger("bearmaps.pngLevel",
+            PngEncoder.DEFAULT_LEVEL);
+    /**
+     * Memory budget for decoded tiles, set in megabytes with
+     * <code>-Dbearmaps.tileCacheMB</code>. A 256x256 RGB tile takes 256 KB once decoded.
+     */
+    private static final long TILE_CACHE_BYTES = Long.getLong("bearmaps.tileCacheMB", 128) << 20;
+    /**
+     * Memory budget for composited base maps, set in megabytes with
+     * <code>-Dbearmaps.mosaicCacheMB</code>. A full-screen base map takes 10 to 20 MB.
+     */
+    private static final long MOSAIC_CACHE_BYTES =
+            Long.getLong("bearmaps.mosaicCacheMB", 128) << 20;
     /**
      * The OSM XML file path. Downloaded from <a href="http://download.bbbike.org/osm/">here</a>
      * using custom region selection.
      */
     private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    /**
+     * Where the graph arrays are kept, set with <code>-Dbearmaps.storage=mapped</code> to keep
+     * them in a memory-mapped snapshot instead of on the heap.
+     */
+    private static final GraphDB.Storage STORAGE = GraphDB.Storage.valueOf(
+            System.getProperty("bearmaps.storage", "heap").toUpperCase());
+    /** Suffix of the file next to the OSM data where the contraction hierarchy is saved. */
+    private static final String CH_SUFFIX = ".ch";
+    /** Suffix of the file next to the OSM data where the travel time hierarchy is saved. */
+    private static final String TIME_CH_SUFFIX = ".time.ch";
+    /** Suffix of the file next to the OSM data where the ALT landmark tables are saved. */
+    private static final String LANDMARKS_SUFFIX = ".alt";
 
     /** An adapter class for extending RasterResultParams with the final image. */
     private static class RenderedRasterResultParams {
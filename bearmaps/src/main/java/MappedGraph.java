@@ -0,0 +1,134 @@
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A <code>CompactGraph</code> read in place from a memory-mapped <code>GraphSnapshot</code>.
+ * The arrays stay in the operating system's page cache rather than on the Java heap, so the heap
+ * does not grow with the extract, the collector never scans the graph, and several processes
+ * mapping the same snapshot share one physical copy.
+ */
+class MappedGraph extends CompactGraph {
+    private final LongBuffer ids;
+    private final DoubleBuffer lats, lons;
+    private final IntBuffer copyOf, offsets, targets;
+    private final FloatBuffer weights, times, bearings;
+    private final boolean directed;
+    private final UnitVectors points;
+
+    MappedGraph(LongBuffer ids, DoubleBuffer lats, DoubleBuffer lons, IntBuffer copyOf,
+                IntBuffer offsets, IntBuffer targets, FloatBuffer weights, FloatBuffer times,
+                boolean directed, DoubleBuffer xyz, FloatBuffer bearings) {
+        this.ids = ids;
+        this.lats = lats;
+        this.lons = lons;
+        this.copyOf = copyOf;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.times = times;
+        this.directed = directed;
+        this.points = new UnitVectors(xyz);
+        this.bearings = bearings;
+    }
+
+    @Override
+    int size() {
+        return ids.limit() + copyOf.limit();
+    }
+
+    @Override
+    int nodeCount() {
+        return ids.limit();
+    }
+
+    @Override
+    int original(int v) {
+        return v < ids.limit() ? v : copyOf.get(v - ids.limit());
+    }
+
+    @Override
+    int edgeCount() {
+        return targets.limit();
+    }
+
+    @Override
+    int index(long id) {
+        int lo = 0;
+        int hi = ids.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = ids.get(mid);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    long id(int v) {
+        return ids.get(original(v));
+    }
+
+    @Override
+    double lat(int v) {
+        return lats.get(original(v));
+    }
+
+    @Override
+    double lon(int v) {
+        return lons.get(original(v));
+    }
+
+    @Override
+    int edgeStart(int v) {
+        return offsets.get(v);
+    }
+
+    @Override
+    int edgeEnd(int v) {
+        return offsets.get(v + 1);
+    }
+
+    @Override
+    int target(int e) {
+        return targets.get(e);
+    }
+
+    @Override
+    float weight(int e) {
+        return weights.get(e);
+    }
+
+    @Override
+    float time(int e) {
+        return times.get(e);
+    }
+
+    @Override
+    boolean directed() {
+        return directed;
+    }
+
+    @Override
+    UnitVectors unitVectors() {
+        return points;
+    }
+
+    @Override
+    float bearing(int e) {
+        return bearings.get(e);
+    }
+
+    /** The arrays are off-heap; only the buffer objects themselves are retained. */
+    @Override
+    long sizeInBytes() {
+        return 0;
+    }
+}
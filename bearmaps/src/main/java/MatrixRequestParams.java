@@ -0,0 +1,120 @@
+import java.util.Map;
+
+/**
+ * The MatrixRequestParams contains the points received in a distance matrix request: a list of
+ * sources and a list of targets, each given as longitude and latitude pairs. The matrix has one
+ * row per source and one column per target.
+ *
+ * This class can either be instantiated through a Spark request query map, or through the Builder
+ * class for requests made from Java.
+ */
+public class MatrixRequestParams {
+    /** The source longitudes, in row order. */
+    public final double[] sourceLons;
+    /** The source latitudes, in row order. */
+    public final double[] sourceLats;
+    /** The target longitudes, in column order. */
+    public final double[] targetLons;
+    /** The target latitudes, in column order. */
+    public final double[] targetLats;
+
+    /**
+     * Validate and return the points of a matrix request. Each of the <code>sources</code> and
+     * <code>targets</code> parameters is a list of <code>lon,lat</code> pairs separated by
+     * semicolons.
+     * @param req The queryParams map from a Spark HTTP Request.
+     * @return The parsed request.
+     */
+    public static MatrixRequestParams from(Map<String, String[]> req) {
+        Builder builder = new Builder();
+        double[][] sources = points(req, "sources");
+        double[][] targets = points(req, "targets");
+        if ((long) sources[0].length * targets[0].length > MAX_CELLS) {
+            throw new IllegalArgumentException(String.format(
+                    "Incorrect parameters: a matrix may have at most %d cells.", MAX_CELLS));
+        }
+        return builder.setSources(sources[0], sources[1]).setTargets(targets[0], targets[1])
+                .create();
+    }
+
+    /** Returns the longitudes and latitudes of the points listed in <code>param</code>. */
+    private static double[][] points(Map<String, String[]> req, String param) {
+        if (!req.containsKey(param) || req.get(param).length == 0) {
+            String msg = String.format("Request failed: %s not found.", param);
+            throw new IllegalArgumentException(msg);
+        }
+        String[] pairs = req.get(param)[0].split(";");
+        double[] lons = new double[pairs.length];
+        double[] lats = new double[pairs.length];
+        try {
+            for (int i = 0; i < pairs.length; i += 1) {
+                String[] lonLat = pairs[i].split(",");
+                if (lonLat.length != 2) {
+                    throw new NumberFormatException(pairs[i]);
+                }
+                lons[i] = Double.parseDouble(lonLat[0]);
+                lats[i] = Double.parseDouble(lonLat[1]);
+            }
+        } catch (NumberFormatException e) {
+            String msg = String.format("Incorrect parameters: unable to parse %s.", param);
+            throw new IllegalArgumentException(msg);
+        }
+        return new double[][]{lons, lats};
+    }
+
+    private MatrixRequestParams(double[] sourceLons, double[] sourceLats, double[] targetLons,
+                                double[] targetLats) {
+        this.sourceLons = sourceLons;
+        this.sourceLats = sourceLats;
+        this.targetLons = targetLons;
+        this.targetLats = targetLats;
+    }
+
+    public static class Builder {
+        private double[] sourceLons = new double[0], sourceLats = new double[0];
+        private double[] targetLons = new double[0], targetLats = new double[0];
+
+        /**
+         * Creates a MatrixRequestParams.Builder instance that can be used to build
+         * a MatrixRequestParams with various fields pre-set.
+         */
+        public Builder() {
+        }
+
+        public MatrixRequestParams create() {
+            return new MatrixRequestParams(sourceLons, sourceLats, targetLons, targetLats);
+        }
+
+        /**
+         * Sets the sources.
+         * @throws IllegalArgumentException if the arrays differ in length.
+         */
+        public Builder setSources(double[] lons, double[] lats) {
+            checkLengths(lons, lats);
+            this.sourceLons = lons.clone();
+            this.sourceLats = lats.clone();
+            return this;
+        }
+
+        /**
+         * Sets the targets.
+         * @throws IllegalArgumentException if the arrays differ in length.
+         */
+        public Builder setTargets(double[] lons, double[] lats) {
+            checkLengths(lons, lats);
+            this.targetLons = lons.clone();
+            this.targetLats = lats.clone();
+            return this;
+        }
+
+        private static void checkLengths(double[] lons, double[] lats) {
+            if (lons.length != lats.length) {
+                throw new IllegalArgumentException(String.format(
+                        "%d longitudes but %d latitudes.", lons.length, lats.length));
+            }
+        }
+    }
+
+    /** Largest number of source and target pairs a single request may ask for. */
+    private static final int MAX_CELLS = 250_000;
+}
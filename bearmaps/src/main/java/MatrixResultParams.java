@@ -0,0 +1,33 @@
+/**
+ * The MatrixResultParams contains the distances computed by Router.distanceMatrix for
+ * serialization by Gson.
+ *
+ * The fields in this class cannot be accessed as it is only used to serialize results in MapServer.
+ */
+class MatrixResultParams {
+    /** Whether every source reaches every target. */
+    private final boolean matrixSuccess;
+    /** The distances in miles, one row per source, with null for unreachable pairs. */
+    private final Double[][] distances;
+
+    /**
+     * Constructs a MatrixResultParams instance from a distance matrix, in which unreachable
+     * pairs are infinite.
+     * @param distances The distances field.
+     */
+    MatrixResultParams(double[][] distances) {
+        boolean success = true;
+        this.distances = new Double[distances.length][];
+        for (int i = 0; i < distances.length; i += 1) {
+            this.distances[i] = new Double[distances[i].length];
+            for (int j = 0; j < distances[i].length; j += 1) {
+                if (Double.isInfinite(distances[i][j])) {
+                    success = false;
+                } else {
+                    this.distances[i][j] = distances[i][j];
+                }
+            }
+        }
+        this.matrixSuccess = success;
+    }
+}
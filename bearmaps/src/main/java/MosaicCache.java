@@ -0,0 +1,152 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of composited base maps: the tiles of a render grid copied into one
+ * raster, before any route is drawn. A render grid is a contiguous block of tiles at one depth,
+ * so it is identified by its upper left tile and its dimensions. Re-requesting the same view,
+ * whether by a small pan that stays within the same tiles, by another user, or after the route
+ * changes, then costs no tile reads or copies.
+ *
+ * Mosaics are weighed by their pixel data, and evicted least recently used first once they
+ * exceed the memory budget. One lock guards the bookkeeping; compositing happens outside it, so
+ * two concurrent misses on the same grid may both composite it. Cached mosaics are shared
+ * between requests and must not be modified; draw on a <code>copy</code> instead.
+ */
+class MosaicCache {
+    private final TileCache tiles;
+    private final long budgetBytes;
+    /** Kept in access order, least recently used first. */
+    private final LinkedHashMap<String, BufferedImage> mosaics =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     * @param tiles The cache that tiles are read through when compositing.
+     * @param budgetBytes The most pixel data to keep, in bytes. A budget of 0 disables caching,
+     *                    so every request composites its grid.
+     */
+    MosaicCache(TileCache tiles, long budgetBytes) {
+        this.tiles = tiles;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Returns the base map for the render grid of <code>resultParams</code>, compositing it if it
+     * is not cached.
+     * @param resultParams <code>RasterResultParams</code> from <code>Rasterer.getMapRaster</code>
+     * @return A shared <code>TYPE_INT_RGB</code> image that must not be modified.
+     */
+    BufferedImage get(RasterResultParams resultParams) {
+        String[][] renderGrid = resultParams.renderGrid;
+        String key = renderGrid[0][0] + "/" + renderGrid.length + "x" + renderGrid[0].length;
+        synchronized (this) {
+            BufferedImage mosaic = mosaics.get(key);
+            if (mosaic != null) {
+                hits.incrementAndGet();
+                return mosaic;
+            }
+        }
+        misses.incrementAndGet();
+        BufferedImage mosaic = compose(renderGrid, tiles);
+        long size = TileCache.bytes(mosaic);
+        if (size <= budgetBytes) {
+            synchronized (this) {
+                if (mosaics.put(key, mosaic) == null) {
+                    bytes += size;
+                }
+                Iterator<BufferedImage> eldest = mosaics.values().iterator();
+                while (bytes > budgetBytes) {
+                    bytes -= TileCache.bytes(eldest.next());
+                    eldest.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        return mosaic;
+    }
+
+    /** Returns a snapshot of the cache counters. */
+    synchronized CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), mosaics.size(), bytes,
+                budgetBytes);
+    }
+
+    /** Returns a copy of a <code>TYPE_INT_RGB</code> image that can be drawn on. */
+    static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        int[] from = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] to = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        System.arraycopy(from, 0, to, 0, from.length);
+        return copy;
+    }
+
+    /**
+     * Composites the tiles of <code>renderGrid</code> into a new <code>TYPE_INT_RGB</code> image.
+     * @param renderGrid The tile names, by row and column.
+     * @param tiles The cache the tiles are read through.
+     * @return The same pixels as drawing each tile onto a black image at its position.
+     */
+    static BufferedImage compose(String[][] renderGrid, TileCache tiles) {
+        int numVertTiles = renderGrid.length;
+        int numHorizTiles = renderGrid[0].length;
+
+        BufferedImage img = new BufferedImage(numHorizTiles * MapServer.TILE_SIZE,
+                numVertTiles * MapServer.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        /* Tiles are read and copied into disjoint slots of the raster in parallel. */
+        int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        CompletableFuture<?>[] draws = new CompletableFuture<?>[numVertTiles * numHorizTiles];
+        for (int r = 0; r < numVertTiles; r += 1) {
+            for (int c = 0; c < numHorizTiles; c += 1) {
+                String tile = renderGrid[r][c];
+                int x = c * MapServer.TILE_SIZE, y = r * MapServer.TILE_SIZE;
+                draws[r * numHorizTiles + c] = CompletableFuture.runAsync(
+                        () -> blit(tiles.get(tile), pixels, img.getWidth(), x, y), TILE_POOL);
+            }
+        }
+        CompletableFuture.allOf(draws).join();
+        return img;
+    }
+
+    /**
+     * Copies a <code>TYPE_INT_RGB</code> tile into the tile-sized slot of the raster whose upper
+     * left pixel is (x, y), which gives the same pixels as drawing it onto the black raster.
+     * @param tile The tile, or <code>null</code> to leave the slot black.
+     * @param pixels The pixel array of the <code>TYPE_INT_RGB</code> raster.
+     * @param width The width of the raster.
+     */
+    private static void blit(BufferedImage tile, int[] pixels, int width, int x, int y) {
+        if (tile == null) {
+            return;
+        }
+        int[] tilePixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        int tileWidth = tile.getWidth();
+        int columns = Math.min(tileWidth, MapServer.TILE_SIZE);
+        int rows = Math.min(tile.getHeight(), MapServer.TILE_SIZE);
+        for (int row = 0; row < rows; row += 1) {
+            System.arraycopy(tilePixels, row * tileWidth, pixels, (y + row) * width + x, columns);
+        }
+    }
+
+    /**
+     * Threads that read tiles and copy them into rasters. Tile reads spend much of their time
+     * waiting on the disk, so there are twice as many threads as cores.
+     */
+    private static final ExecutorService TILE_POOL = Executors.newFixedThreadPool(
+            2 * Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "tile-render");
+                t.setDaemon(true);
+                return t;
+            });
+}
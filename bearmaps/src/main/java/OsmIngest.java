@@ -0,0 +1,1039 @@
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reads an OSM XML file into a <code>CompactGraph</code> in two pipelined passes over the file.
+ *
+ * In each pass the calling thread runs the SAX parser and only copies raw attribute strings into
+ * batches, which worker threads then parse and filter. The first pass reads ways: workers keep the
+ * ways whose highway type is allowed and turn them into edges between node IDs, and the endpoints
+ * of those edges become the vertex set. The second pass reads nodes: workers drop every node that
+ * is not a vertex before parsing its coordinates, so the many nodes that are not on roads never
+ * reach the graph. The graph is then assembled with parallel sorts and the edge weights are
+ * computed in parallel: each edge's length, and its travel time at the way's
+ * <code>maxspeed</code>, or at the usual speed of its highway class if the tag is missing or
+ * cannot be read. Each edge also keeps the way it came from, and the ways keep their names,
+ * for directions (see <code>WayTable</code>). Nodes with a name tag are collected in the second
+ * pass as well, whether or not they are on a road, as the locations that can be searched for.
+ *
+ * A way tagged <code>oneway</code>, or a motorway or roundabout without such a tag, only gets
+ * edges in its direction of travel. The turn restriction relations read in the first pass are
+ * applied last, by splitting each restricted junction into copies (see
+ * <code>CompactGraph</code>).
+ *
+ * Apart from the copies, the result is the same as building the whole file into maps and
+ * removing the nodes without connections: vertices in OSM ID order, each adjacency list sorted
+ * and free of duplicates.
+ */
+class OsmIngest {
+    /**
+     * Only allow for non-service roads; this prevents going on pedestrian streets as much as
+     * possible. Note that in Berkeley, many of the campus roads are tagged as motor vehicle
+     * roads, but in practice we walk all over them with such impunity that we forget cars can
+     * actually drive on them.
+     */
+    static final Set<String> ALLOWED_HIGHWAY_TYPES = Set.of(
+            "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+            "living_street", "motorway_link", "trunk_link", "primary_link", "secondary_link",
+            "tertiary_link"
+    );
+    /**
+     * Speed assumed for each allowed highway class without a readable <code>maxspeed</code>
+     * tag, in miles per hour: typical US urban limits.
+     */
+    static final Map<String, Float> DEFAULT_SPEEDS = Map.ofEntries(
+            Map.entry("motorway", 65f), Map.entry("motorway_link", 40f),
+            Map.entry("trunk", 55f), Map.entry("trunk_link", 35f),
+            Map.entry("primary", 40f), Map.entry("primary_link", 30f),
+            Map.entry("secondary", 35f), Map.entry("secondary_link", 30f),
+            Map.entry("tertiary", 30f), Map.entry("tertiary_link", 25f),
+            Map.entry("unclassified", 25f), Map.entry("residential", 25f),
+            Map.entry("living_street", 10f)
+    );
+    /** Values of the <code>oneway</code> tag for ways that run against their node order. */
+    private static final Set<String> ONEWAY_REVERSE = Set.of("-1", "reverse");
+    /** Values of the <code>oneway</code> tag for ways that run in their node order. */
+    private static final Set<String> ONEWAY_FORWARD = Set.of("yes", "true", "1");
+    /** Values of the <code>oneway</code> tag for ways that run both ways. */
+    private static final Set<String> ONEWAY_NONE = Set.of("no", "false", "0");
+    /** Kilometers per hour in a mile per hour. */
+    private static final float KMH_PER_MPH = 1.609344f;
+    /** Knots per mile per hour. */
+    private static final float KNOTS_PER_MPH = 0.868976f;
+    private static final double SECONDS_PER_HOUR = 3600;
+    /** Number of ways or nodes handed to a worker at a time. */
+    private static final int BATCH_SIZE = 4096;
+
+    private final File file;
+    private final ExecutorService workers;
+    /** Bounds the batches waiting for or held by workers, so the reader cannot run far ahead. */
+    private final Semaphore inFlight;
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+    private OsmIngest(File file, ExecutorService workers, int threads) {
+        this.file = file;
+        this.workers = workers;
+        this.inFlight = new Semaphore(2 * threads);
+    }
+
+    /**
+     * Reads the road graph in <code>file</code>, using one worker thread per core.
+     * @throws IOException if the file cannot be read.
+     * @throws SAXException if the file is not well-formed XML.
+     */
+    static CompactGraph read(File file) throws IOException, SAXException {
+        return read(file, null);
+    }
+
+    /**
+     * Reads the road graph in <code>file</code> as above, and adds its named nodes to
+     * <code>locations</code> unless it is <code>null</code>.
+     * @throws IOException if the file cannot be read.
+     * @throws SAXException if the file is not well-formed XML.
+     */
+    static CompactGraph read(File file, List<LocationParams> locations)
+            throws IOException, SAXException {
+        return read(file, locations, null);
+    }
+
+    /**
+     * Reads the road graph in <code>file</code> as above, and hands the way of each of its
+     * edges to <code>ways</code> unless it is <code>null</code>.
+     * @throws IOException if the file cannot be read.
+     * @throws SAXException if the file is not well-formed XML.
+     */
+    static CompactGraph read(File file, List<LocationParams> locations,
+                             Consumer<WayTable> ways) throws IOException, SAXException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "osm-ingest");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            return new OsmIngest(file, workers, threads).run(locations, ways);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads only the named nodes in <code>file</code>, for a graph that was loaded from a
+     * snapshot.
+     * @throws IOException if the file cannot be read.
+     * @throws SAXException if the file is not well-formed XML.
+     */
+    static List<LocationParams> readLocations(File file) throws IOException, SAXException {
+        List<LocationParams> locations = new ArrayList<>();
+        OsmIngest ingest = new OsmIngest(file, null, 1);
+        NodeReader reader = ingest.new NodeReader(new long[0], new double[0], new double[0],
+                new boolean[0]);
+        ingest.parse(reader);
+        reader.addLocations(locations);
+        return locations;
+    }
+
+    private CompactGraph run(List<LocationParams> locations, Consumer<WayTable> wayTable)
+            throws IOException, SAXException {
+        ConcurrentLinkedQueue<EdgeBatch> edgeBatches = new ConcurrentLinkedQueue<>();
+        WayReader ways = new WayReader(edgeBatches);
+        parse(ways);
+        EdgeBatch edges = EdgeBatch.concat(edgeBatches);
+        long[] pairs = edges.pairs;
+
+        long[] ids = pairs.clone();
+        Arrays.parallelSort(ids);
+        ids = unique(ids);
+        double[] lats = new double[ids.length];
+        double[] lons = new double[ids.length];
+        boolean[] found = new boolean[ids.length];
+        NodeReader nodes = new NodeReader(ids, lats, lons, found);
+        parse(nodes);
+        if (locations != null) {
+            nodes.addLocations(locations);
+        }
+
+        return assemble(ids, lats, lons, found, edges, ways.restrictions, wayTable);
+    }
+
+    /**
+     * Returns the direction of travel of a way: 1 if it only runs in the order of its nodes, -1
+     * if it only runs against it, and 0 if it runs both ways.
+     * @param highway The highway type of the way.
+     * @param oneway The value of its <code>oneway</code> tag, or <code>null</code>.
+     * @param junction The value of its <code>junction</code> tag, or <code>null</code>.
+     */
+    static int direction(String highway, String oneway, String junction) {
+        if (oneway != null) {
+            String value = oneway.trim().toLowerCase();
+            if (ONEWAY_FORWARD.contains(value)) {
+                return 1;
+            } else if (ONEWAY_REVERSE.contains(value)) {
+                return -1;
+            } else if (ONEWAY_NONE.contains(value)) {
+                return 0;
+            }
+        }
+        /* Motorways and roundabouts are one-way unless tagged otherwise. */
+        boolean implied = "motorway".equals(highway) || "roundabout".equals(junction)
+                || "circular".equals(junction);
+        return implied ? 1 : 0;
+    }
+
+    /**
+     * Returns the speed of a way in miles per hour: its <code>maxspeed</code> if that is a
+     * positive number, read as km/h unless it says <code>mph</code> or <code>knots</code> as
+     * OSM specifies, and otherwise the default speed of its highway class.
+     * @param highway The highway type of the way, which must be allowed.
+     * @param maxspeed The value of its <code>maxspeed</code> tag, or <code>null</code>.
+     */
+    static float speed(String highway, String maxspeed) {
+        if (maxspeed != null) {
+            String value = maxspeed.trim().toLowerCase();
+            float perMph = KMH_PER_MPH;
+            if (value.endsWith("mph")) {
+                value = value.substring(0, value.length() - 3);
+                perMph = 1f;
+            } else if (value.endsWith("knots")) {
+                value = value.substring(0, value.length() - 5);
+                perMph = KNOTS_PER_MPH;
+            } else if (value.endsWith("km/h")) {
+                value = value.substring(0, value.length() - 4);
+            }
+            try {
+                float speed = Float.parseFloat(value.trim()) / perMph;
+                if (speed > 0 && !Float.isInfinite(speed)) {
+                    return speed;
+                }
+            } catch (NumberFormatException e) {
+                /* Values like "none", "walk" or "US:urban" fall through to the default. */
+            }
+        }
+        return DEFAULT_SPEEDS.get(highway);
+    }
+
+    /** Runs one pass of the SAX parser and waits for the workers to finish its batches. */
+    private void parse(DefaultHandler handler) throws IOException, SAXException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(in, handler);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new SAXException("Failed to process " + file, (Exception) e.getCause());
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /** Hands a batch to the workers, waiting while too many batches are in flight. */
+    private void submit(Runnable batch) throws SAXException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException(e);
+        }
+        pending.add(CompletableFuture.runAsync(() -> {
+            try {
+                batch.run();
+            } finally {
+                inFlight.release();
+            }
+        }, workers));
+    }
+
+    /**
+     * Builds the CSR arrays from the edge pairs, dropping edges to nodes that never appeared in
+     * the file, then numbers the vertices that are left with at least one edge. Where several
+     * ways join the same two nodes, the edge takes the fastest of their speeds, and is on the
+     * first way in the file with that speed. The turn restrictions are applied to the finished
+     * arrays.
+     */
+    private static CompactGraph assemble(long[] candidates, double[] candidateLats,
+                                         double[] candidateLons, boolean[] found,
+                                         EdgeBatch edges, List<TurnRestriction> restrictions,
+                                         Consumer<WayTable> ways) {
+        long[] pairs = edges.pairs;
+        /*
+         * Each pair becomes a directed edge, and a second edge the other way unless its way is
+         * one-way, keyed (source << 32 | target).
+         */
+        long[] directed = new long[pairs.length];
+        IntStream.range(0, pairs.length / 2).parallel().forEach(i -> {
+            int u = Arrays.binarySearch(candidates, pairs[2 * i]);
+            int w = Arrays.binarySearch(candidates, pairs[2 * i + 1]);
+            boolean valid = found[u] && found[w];
+            directed[2 * i] = valid ? (long) u << 32 | w : Long.MAX_VALUE;
+            directed[2 * i + 1] = valid && !edges.oneway[i]
+                    ? (long) w << 32 | u : Long.MAX_VALUE;
+        });
+        Arrays.parallelSort(directed);
+        long[] keys = unique(directed);
+        int m = keys.length > 0 && keys[keys.length - 1] == Long.MAX_VALUE
+                ? keys.length - 1 : keys.length;
+
+        /*
+         * Renumbering keeps the order, so the sorted keys stay sorted under the new indices. The
+         * end of a one-way street may have no edge of its own, so both ends of every edge count.
+         */
+        int[] index = new int[candidates.length];
+        Arrays.fill(index, -1);
+        for (int e = 0; e < m; e += 1) {
+            index[(int) (keys[e] >>> 32)] = 0;
+            index[(int) keys[e]] = 0;
+        }
+        int n = 0;
+        for (int i = 0; i < candidates.length; i += 1) {
+            if (index[i] == 0) {
+                index[i] = n;
+                n += 1;
+            }
+        }
+        long[] ids = new long[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < candidates.length; i += 1) {
+            if (index[i] >= 0) {
+                ids[index[i]] = candidates[i];
+                lats[index[i]] = candidateLats[i];
+                lons[index[i]] = candidateLons[i];
+            }
+        }
+
+        int[] offsets = new int[n + 1];
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        for (int e = 0; e < m; e += 1) {
+            sources[e] = index[(int) (keys[e] >>> 32)];
+            targets[e] = index[(int) keys[e]];
+            offsets[sources[e] + 1] += 1;
+        }
+        for (int v = 0; v < n; v += 1) {
+            offsets[v + 1] += offsets[v];
+        }
+        /* Find the edge of each pair in parallel, then keep the fastest speed of each edge. */
+        int[] edgeOf = new int[pairs.length];
+        IntStream.range(0, pairs.length / 2).parallel().forEach(i -> {
+            edgeOf[2 * i] = edgeIndex(keys, m, pairs, candidates, found, i, false);
+            edgeOf[2 * i + 1] = edges.oneway[i]
+                    ? -1 : edgeIndex(keys, m, pairs, candidates, found, i, true);
+        });
+        int[] pairWays = new int[pairs.length / 2];
+        for (int k = 0; k < edges.wayIds.length; k += 1) {
+            Arrays.fill(pairWays, k == 0 ? 0 : edges.wayEnds[k - 1], edges.wayEnds[k], k);
+        }
+        float[] speeds = new float[m];
+        int[] edgeWays = new int[m];
+        boolean oneway = false;
+        for (int i = 0; i < pairs.length; i += 1) {
+            int e = edgeOf[i];
+            oneway |= e >= 0 && edges.oneway[i / 2];
+            if (e >= 0 && edges.speeds[i / 2] > speeds[e]) {
+                speeds[e] = edges.speeds[i / 2];
+                edgeWays[e] = pairWays[i / 2];
+            }
+        }
+
+        float[] weights = new float[m];
+        float[] times = new float[m];
+        IntStream.range(0, m).parallel().forEach(e -> {
+            int v = sources[e];
+            int w = targets[e];
+            double miles = GraphDB.haversine(lats[v], lons[v], lats[w], lons[w]);
+            weights[e] = (float) miles;
+            times[e] = (float) (miles * SECONDS_PER_HOUR / speeds[e]);
+        });
+        List<int[]> banned = bannedTurns(restrictions, edges, candidates, index, offsets,
+                targets);
+        CompactGraph graph;
+        if (banned.isEmpty()) {
+            graph = new ArrayGraph(ids, lats, lons, new int[0], offsets, targets, weights, times,
+                    oneway);
+        } else {
+            int[] unsplit = targets.clone();
+            graph = splitJunctions(ids, lats, lons, offsets, targets, weights, times, banned);
+            edgeWays = splitWays(graph, offsets, unsplit, edgeWays);
+        }
+        if (ways != null) {
+            ways.accept(WayTable.build(edgeWays, edges.wayIds, edges.wayNames));
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the way of each edge of a graph whose junctions were split, given the way of each
+     * edge before: every edge out of a node or one of its copies is on the way of the edge
+     * between the same two nodes before the split.
+     */
+    private static int[] splitWays(CompactGraph graph, int[] offsets, int[] targets,
+                                   int[] edgeWays) {
+        int[] ways = new int[graph.edgeCount()];
+        for (int v = 0; v < graph.size(); v += 1) {
+            int u = graph.original(v);
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.original(graph.target(e));
+                ways[e] = edgeWays[Arrays.binarySearch(targets, offsets[u], offsets[u + 1], w)];
+            }
+        }
+        return ways;
+    }
+
+    /**
+     * Returns the index among the sorted edge keys of one direction of edge pair <code>i</code>,
+     * or -1 if the pair was dropped.
+     */
+    private static int edgeIndex(long[] keys, int m, long[] pairs, long[] candidates,
+                                 boolean[] found, int i, boolean reverse) {
+        int u = Arrays.binarySearch(candidates, pairs[2 * i]);
+        int w = Arrays.binarySearch(candidates, pairs[2 * i + 1]);
+        if (!found[u] || !found[w]) {
+            return -1;
+        }
+        long key = reverse ? (long) w << 32 | u : (long) u << 32 | w;
+        return Arrays.binarySearch(keys, 0, m, key);
+    }
+
+    /**
+     * Resolves the turn restrictions into the turns they ban, as <code>{via, from, to}</code>
+     * vertex triples sorted in that order. The approaches and exits of a restriction are the
+     * segments of its ways that touch its via node, kept only where the graph has an edge for
+     * them, so a restriction on a road that was dropped, or on a turn that one-way streets
+     * already rule out, bans nothing.
+     */
+    private static List<int[]> bannedTurns(List<TurnRestriction> restrictions, EdgeBatch edges,
+                                           long[] candidates, int[] index, int[] offsets,
+                                           int[] targets) {
+        List<int[]> banned = new ArrayList<>();
+        if (restrictions.isEmpty()) {
+            return banned;
+        }
+        Set<Long> referenced = new HashSet<>();
+        for (TurnRestriction restriction : restrictions) {
+            referenced.addAll(restriction.from);
+            referenced.addAll(restriction.to);
+        }
+        Map<Long, Integer> wayIndex = new HashMap<>();
+        for (int k = 0; k < edges.wayIds.length; k += 1) {
+            if (referenced.contains(edges.wayIds[k])) {
+                wayIndex.put(edges.wayIds[k], k);
+            }
+        }
+        for (TurnRestriction restriction : restrictions) {
+            int via = vertex(restriction.via, candidates, index);
+            if (via < 0) {
+                continue;
+            }
+            int[] from = ends(restriction.from, restriction.via, true, via, edges, wayIndex,
+                    candidates, index, offsets, targets);
+            int[] to = ends(restriction.to, restriction.via, false, via, edges, wayIndex,
+                    candidates, index, offsets, targets);
+            if (from.length == 0 || to.length == 0) {
+                continue;
+            }
+            for (int u : from) {
+                for (int e = offsets[via]; e < offsets[via + 1]; e += 1) {
+                    int w = targets[e];
+                    boolean listed = IntStream.of(to).anyMatch(x -> x == w);
+                    if (listed != restriction.only) {
+                        banned.add(new int[]{via, u, w});
+                    }
+                }
+            }
+        }
+        banned.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(a[2], b[2]));
+        List<int[]> distinct = new ArrayList<>();
+        for (int[] turn : banned) {
+            if (distinct.isEmpty() || !Arrays.equals(distinct.get(distinct.size() - 1), turn)) {
+                distinct.add(turn);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Returns the vertices next to <code>via</code> along the given ways: the ones with an edge
+     * into it if <code>into</code>, and the ones it has an edge to otherwise.
+     */
+    private static int[] ends(List<Long> ways, long viaId, boolean into, int via,
+                              EdgeBatch edges, Map<Long, Integer> wayIndex, long[] candidates,
+                              int[] index, int[] offsets, int[] targets) {
+        List<Integer> ends = new ArrayList<>();
+        for (long way : ways) {
+            Integer k = wayIndex.get(way);
+            if (k == null) {
+                continue;
+            }
+            for (int j = k == 0 ? 0 : edges.wayEnds[k - 1]; j < edges.wayEnds[k]; j += 1) {
+                long a = edges.pairs[2 * j];
+                long b = edges.pairs[2 * j + 1];
+                long other = a == viaId ? b : b == viaId ? a : viaId;
+                int x = other == viaId ? -1 : vertex(other, candidates, index);
+                if (x >= 0 && (into ? hasEdge(offsets, targets, x, via)
+                        : hasEdge(offsets, targets, via, x))) {
+                    ends.add(x);
+                }
+            }
+        }
+        return ends.stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+
+    /** Returns the vertex of the node with OSM ID <code>id</code>, or -1 if it was dropped. */
+    private static int vertex(long id, long[] candidates, int[] index) {
+        int i = Arrays.binarySearch(candidates, id);
+        return i < 0 ? -1 : index[i];
+    }
+
+    private static boolean hasEdge(int[] offsets, int[] targets, int v, int w) {
+        for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+            if (targets[e] == w) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits every junction with banned turns. The approaches to a junction are grouped by the
+     * set of turns they may not make, and the edges of each group are redirected to a new copy
+     * of the junction that has all its edges but the banned ones. Junctions are split in order
+     * of their index, and the edges out of a copy are redirected along with those of the node it
+     * copies, so restrictions at neighboring junctions combine. The copies only add their own
+     * edges and one <code>int</code> each to the graph.
+     */
+    private static CompactGraph splitJunctions(long[] ids, double[] lats, double[] lons,
+                                               int[] offsets, int[] targets, float[] weights,
+                                               float[] times, List<int[]> banned) {
+        int n = ids.length;
+        int m = targets.length;
+        int[] edgeTargets = targets;
+        float[] edgeWeights = weights;
+        float[] edgeTimes = times;
+        int size = m;
+        int[] copyOf = new int[16];
+        int[] copyStarts = new int[17];
+        copyStarts[0] = m;
+        int copies = 0;
+        /* The first copy and the end of the copies of each junction split so far. */
+        Map<Integer, int[]> copyRanges = new HashMap<>();
+        Set<Integer> redirected = new HashSet<>();
+
+        int at = 0;
+        while (at < banned.size()) {
+            int via = banned.get(at)[0];
+            Map<List<Integer>, List<Integer>> approaches = new LinkedHashMap<>();
+            while (at < banned.size() && banned.get(at)[0] == via) {
+                int from = banned.get(at)[1];
+                List<Integer> turns = new ArrayList<>();
+                while (at < banned.size() && banned.get(at)[0] == via
+                        && banned.get(at)[1] == from) {
+                    turns.add(banned.get(at)[2]);
+                    at += 1;
+                }
+                approaches.computeIfAbsent(turns, t -> new ArrayList<>()).add(from);
+            }
+
+            int first = n + copies;
+            for (Map.Entry<List<Integer>, List<Integer>> group : approaches.entrySet()) {
+                int copy = n + copies;
+                if (copies == copyOf.length) {
+                    copyOf = Arrays.copyOf(copyOf, 2 * copies);
+                    copyStarts = Arrays.copyOf(copyStarts, 2 * copies + 1);
+                }
+                copyOf[copies] = via;
+                for (int e = offsets[via]; e < offsets[via + 1]; e += 1) {
+                    int w = edgeTargets[e];
+                    if (group.getKey().contains(w < n ? w : copyOf[w - n])) {
+                        continue;
+                    }
+                    if (size == edgeTargets.length) {
+                        edgeTargets = Arrays.copyOf(edgeTargets, 2 * size);
+                        edgeWeights = Arrays.copyOf(edgeWeights, 2 * size);
+                        edgeTimes = Arrays.copyOf(edgeTimes, 2 * size);
+                    }
+                    edgeTargets[size] = w;
+                    edgeWeights[size] = edgeWeights[e];
+                    edgeTimes[size] = edgeTimes[e];
+                    size += 1;
+                }
+                copies += 1;
+                copyStarts[copies] = size;
+
+                for (int from : group.getValue()) {
+                    int[] range = copyRanges.getOrDefault(from, new int[]{n, n});
+                    for (int i = -1; i < range[1] - range[0]; i += 1) {
+                        int u = i < 0 ? from : range[0] + i;
+                        int start = u < n ? offsets[u] : copyStarts[u - n];
+                        int end = u < n ? offsets[u + 1] : copyStarts[u - n + 1];
+                        for (int e = start; e < end; e += 1) {
+                            if (edgeTargets[e] == via) {
+                                edgeTargets[e] = copy;
+                                redirected.add(u);
+                            }
+                        }
+                    }
+                }
+            }
+            copyRanges.put(via, new int[]{first, n + copies});
+        }
+
+        int[] allOffsets = Arrays.copyOf(offsets, n + copies + 1);
+        for (int c = 0; c < copies; c += 1) {
+            allOffsets[n + c + 1] = copyStarts[c + 1];
+        }
+        for (int v = n; v < n + copies; v += 1) {
+            redirected.add(v);
+        }
+        for (int v : redirected) {
+            sortEdges(allOffsets[v], allOffsets[v + 1], edgeTargets, edgeWeights, edgeTimes);
+        }
+        return new ArrayGraph(ids, lats, lons, Arrays.copyOf(copyOf, copies), allOffsets,
+                Arrays.copyOf(edgeTargets, size), Arrays.copyOf(edgeWeights, size),
+                Arrays.copyOf(edgeTimes, size), true);
+    }
+
+    /** Sorts the edges in <code>[start, end)</code> by target, with an insertion sort. */
+    private static void sortEdges(int start, int end, int[] targets, float[] weights,
+                                  float[] times) {
+        for (int i = start + 1; i < end; i += 1) {
+            int target = targets[i];
+            float weight = weights[i];
+            float time = times[i];
+            int j = i;
+            while (j > start && targets[j - 1] > target) {
+                targets[j] = targets[j - 1];
+                weights[j] = weights[j - 1];
+                times[j] = times[j - 1];
+                j -= 1;
+            }
+            targets[j] = target;
+            weights[j] = weight;
+            times[j] = time;
+        }
+    }
+
+    /**
+     * The edge pairs of a batch of ways, in each way's direction of travel. Every pair has the
+     * speed of its way in miles per hour and whether the way is one-way; every way its ID, its
+     * name and the end of its pairs. The reader numbers the batches in file order.
+     */
+    private static class EdgeBatch {
+        final int sequence;
+        final long[] pairs;
+        final float[] speeds;
+        final boolean[] oneway;
+        final long[] wayIds;
+        final String[] wayNames;
+        final int[] wayEnds;
+
+        EdgeBatch(int sequence, long[] pairs, float[] speeds, boolean[] oneway, long[] wayIds,
+                  String[] wayNames, int[] wayEnds) {
+            this.sequence = sequence;
+            this.pairs = pairs;
+            this.speeds = speeds;
+            this.oneway = oneway;
+            this.wayIds = wayIds;
+            this.wayNames = wayNames;
+            this.wayEnds = wayEnds;
+        }
+
+        /**
+         * Joins the batches into one in file order, whatever order the workers finished them
+         * in, so the ways come out in file order and the graph is the same on every run.
+         */
+        static EdgeBatch concat(ConcurrentLinkedQueue<EdgeBatch> batches) {
+            List<EdgeBatch> parts = new ArrayList<>(batches);
+            parts.sort(Comparator.comparingInt(part -> part.sequence));
+            int pairCount = 0;
+            int wayCount = 0;
+            for (EdgeBatch part : parts) {
+                pairCount += part.speeds.length;
+                wayCount += part.wayIds.length;
+            }
+            EdgeBatch all = new EdgeBatch(0, new long[2 * pairCount], new float[pairCount],
+                    new boolean[pairCount], new long[wayCount], new String[wayCount],
+                    new int[wayCount]);
+            int pairsAt = 0;
+            int waysAt = 0;
+            for (EdgeBatch part : parts) {
+                int count = part.speeds.length;
+                System.arraycopy(part.pairs, 0, all.pairs, 2 * pairsAt, 2 * count);
+                System.arraycopy(part.speeds, 0, all.speeds, pairsAt, count);
+                System.arraycopy(part.oneway, 0, all.oneway, pairsAt, count);
+                System.arraycopy(part.wayIds, 0, all.wayIds, waysAt, part.wayIds.length);
+                System.arraycopy(part.wayNames, 0, all.wayNames, waysAt, part.wayIds.length);
+                for (int k = 0; k < part.wayEnds.length; k += 1) {
+                    all.wayEnds[waysAt + k] = pairsAt + part.wayEnds[k];
+                }
+                pairsAt += count;
+                waysAt += part.wayIds.length;
+            }
+            return all;
+        }
+    }
+
+    /**
+     * A turn restriction relation with a via node: turning at <code>via</code> from any of the
+     * <code>from</code> ways onto any of the <code>to</code> ways is banned, or, if it is an
+     * <code>only</code> restriction, it is the only turn allowed.
+     */
+    private static class TurnRestriction {
+        final List<Long> from, to;
+        final long via;
+        final boolean only;
+
+        TurnRestriction(List<Long> from, long via, List<Long> to, boolean only) {
+            this.from = from;
+            this.via = via;
+            this.to = to;
+            this.only = only;
+        }
+    }
+
+    /** Removes repeats from a sorted array. */
+    private static long[] unique(long[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i += 1) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size] = sorted[i];
+                size += 1;
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * First pass: collects the node references and the highway, maxspeed, oneway, junction and
+     * name tags of each way. Workers turn the allowed ways into pairs of consecutive node IDs in
+     * the way's direction of travel, each with the speed of its way. The few turn restriction
+     * relations are read by the reader itself.
+     */
+    private class WayReader extends DefaultHandler {
+        private final ConcurrentLinkedQueue<EdgeBatch> edgeBatches;
+        /** The turn restrictions with a single via node, in file order. */
+        final List<TurnRestriction> restrictions = new ArrayList<>();
+        private boolean inWay, inRelation;
+        private String wayId, highway, maxspeed, oneway, junction, name;
+        private List<String> refs = new ArrayList<>();
+        private List<String> wayIds = new ArrayList<>();
+        private List<String> highways = new ArrayList<>();
+        private List<String> maxspeeds = new ArrayList<>();
+        private List<String> oneways = new ArrayList<>();
+        private List<String> junctions = new ArrayList<>();
+        private List<String> names = new ArrayList<>();
+        private List<Integer> wayEnds = new ArrayList<>();
+        /* The members and tags of the current relation. */
+        private final List<Long> fromWays = new ArrayList<>(), toWays = new ArrayList<>();
+        private final List<Long> viaNodes = new ArrayList<>();
+        private boolean viaWay;
+        private String type, restriction, motorcarRestriction, except;
+        /** The number of batches handed to the workers so far. */
+        private int batches;
+
+        WayReader(ConcurrentLinkedQueue<EdgeBatch> edgeBatches) {
+            this.edgeBatches = edgeBatches;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attributes) {
+            if (qName.equals("way")) {
+                inWay = true;
+                wayId = attributes.getValue("id");
+                highway = null;
+                maxspeed = null;
+                oneway = null;
+                junction = null;
+                name = null;
+            } else if (inWay && qName.equals("nd")) {
+                refs.add(attributes.getValue("ref"));
+            } else if (inWay && qName.equals("tag")) {
+                String k = attributes.getValue("k");
+                if ("highway".equals(k)) {
+                    highway = attributes.getValue("v");
+                } else if ("maxspeed".equals(k)) {
+                    maxspeed = attributes.getValue("v");
+                } else if ("oneway".equals(k)) {
+                    oneway = attributes.getValue("v");
+                } else if ("junction".equals(k)) {
+                    junction = attributes.getValue("v");
+                } else if ("name".equals(k)) {
+                    name = attributes.getValue("v");
+                }
+            } else if (qName.equals("relation")) {
+                inRelation = true;
+                fromWays.clear();
+                toWays.clear();
+                viaNodes.clear();
+                viaWay = false;
+                type = null;
+                restriction = null;
+                motorcarRestriction = null;
+                except = null;
+            } else if (inRelation && qName.equals("member")) {
+                String role = attributes.getValue("role");
+                boolean isWay = "way".equals(attributes.getValue("type"));
+                long ref = Long.parseLong(attributes.getValue("ref"));
+                if ("from".equals(role) && isWay) {
+                    fromWays.add(ref);
+                } else if ("to".equals(role) && isWay) {
+                    toWays.add(ref);
+                } else if ("via".equals(role)) {
+                    if (isWay) {
+                        viaWay = true;
+                    } else {
+                        viaNodes.add(ref);
+                    }
+                }
+            } else if (inRelation && qName.equals("tag")) {
+                String k = attributes.getValue("k");
+                if ("type".equals(k)) {
+                    type = attributes.getValue("v");
+                } else if ("restriction".equals(k)) {
+                    restriction = attributes.getValue("v");
+                } else if ("restriction:motorcar".equals(k)) {
+                    motorcarRestriction = attributes.getValue("v");
+                } else if ("except".equals(k)) {
+                    except = attributes.getValue("v");
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (qName.equals("way")) {
+                inWay = false;
+                wayIds.add(wayId);
+                highways.add(highway);
+                maxspeeds.add(maxspeed);
+                oneways.add(oneway);
+                junctions.add(junction);
+                names.add(name);
+                wayEnds.add(refs.size());
+                if (highways.size() == BATCH_SIZE) {
+                    flush();
+                }
+            } else if (qName.equals("relation")) {
+                inRelation = false;
+                addRestriction();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            flush();
+        }
+
+        /**
+         * Keeps the relation just read if it is a turn restriction that applies to cars and
+         * turns at a single node. Restrictions through a via way are not supported and ignored.
+         */
+        private void addRestriction() {
+            String value = motorcarRestriction != null ? motorcarRestriction : restriction;
+            if (!"restriction".equals(type) || value == null || viaWay || viaNodes.size() != 1
+                    || fromWays.isEmpty() || toWays.isEmpty()) {
+                return;
+            }
+            if (except != null && Arrays.asList(except.split(";")).contains("motorcar")) {
+                return;
+            }
+            boolean only = value.startsWith("only_");
+            if (only || value.startsWith("no_")) {
+                restrictions.add(new TurnRestriction(new ArrayList<>(fromWays), viaNodes.get(0),
+                        new ArrayList<>(toWays), only));
+            }
+        }
+
+        private void flush() throws SAXException {
+            if (highways.isEmpty()) {
+                return;
+            }
+            List<String> batchRefs = refs;
+            List<String> batchWayIds = wayIds;
+            List<String> batchHighways = highways;
+            List<String> batchMaxspeeds = maxspeeds;
+            List<String> batchOneways = oneways;
+            List<String> batchJunctions = junctions;
+            List<String> batchNames = names;
+            List<Integer> batchEnds = wayEnds;
+            refs = new ArrayList<>();
+            wayIds = new ArrayList<>();
+            highways = new ArrayList<>();
+            maxspeeds = new ArrayList<>();
+            oneways = new ArrayList<>();
+            junctions = new ArrayList<>();
+            names = new ArrayList<>();
+            wayEnds = new ArrayList<>();
+            int sequence = batches;
+            batches += 1;
+            submit(() -> {
+                long[] pairs = new long[16];
+                float[] speeds = new float[8];
+                boolean[] oneway = new boolean[8];
+                long[] ids = new long[batchHighways.size()];
+                String[] wayNames = new String[batchHighways.size()];
+                int[] ends = new int[batchHighways.size()];
+                int size = 0;
+                int ways = 0;
+                int start = 0;
+                for (int i = 0; i < batchHighways.size(); i += 1) {
+                    int end = batchEnds.get(i);
+                    String highway = batchHighways.get(i);
+                    if (highway != null && ALLOWED_HIGHWAY_TYPES.contains(highway)) {
+                        float speed = speed(highway, batchMaxspeeds.get(i));
+                        int direction = direction(highway, batchOneways.get(i),
+                                batchJunctions.get(i));
+                        for (int j = start; j + 1 < end; j += 1) {
+                            if (size + 2 > pairs.length) {
+                                pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+                                speeds = Arrays.copyOf(speeds, pairs.length / 2);
+                                oneway = Arrays.copyOf(oneway, pairs.length / 2);
+                            }
+                            long a = Long.parseLong(batchRefs.get(j));
+                            long b = Long.parseLong(batchRefs.get(j + 1));
+                            pairs[size] = direction < 0 ? b : a;
+                            pairs[size + 1] = direction < 0 ? a : b;
+                            speeds[size / 2] = speed;
+                            oneway[size / 2] = direction != 0;
+                            size += 2;
+                        }
+                        ids[ways] = Long.parseLong(batchWayIds.get(i));
+                        wayNames[ways] = batchNames.get(i);
+                        ends[ways] = size / 2;
+                        ways += 1;
+                    }
+                    start = end;
+                }
+                edgeBatches.add(new EdgeBatch(sequence, Arrays.copyOf(pairs, size),
+                        Arrays.copyOf(speeds, size / 2), Arrays.copyOf(oneway, size / 2),
+                        Arrays.copyOf(ids, ways), Arrays.copyOf(wayNames, ways),
+                        Arrays.copyOf(ends, ways)));
+            });
+        }
+    }
+
+    /**
+     * Second pass: collects the ID and coordinates of each node. Workers look each ID up among
+     * the vertices and only parse the coordinates of the nodes that are vertices. The few named
+     * nodes are kept aside by the reader itself.
+     */
+    private class NodeReader extends DefaultHandler {
+        private final long[] ids;
+        private final double[] lats, lons;
+        private final boolean[] found;
+        private String[] batch = new String[3 * BATCH_SIZE];
+        private int size;
+        /** The ID, coordinates and name of each named node, four strings per node. */
+        private final List<String> named = new ArrayList<>();
+        private String nodeId, nodeLat, nodeLon;
+
+        NodeReader(long[] ids, double[] lats, double[] lons, boolean[] found) {
+            this.ids = ids;
+            this.lats = lats;
+            this.lons = lons;
+            this.found = found;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attributes) throws SAXException {
+            if (qName.equals("node")) {
+                nodeId = attributes.getValue("id");
+                nodeLat = attributes.getValue("lat");
+                nodeLon = attributes.getValue("lon");
+                if (ids.length == 0) {
+                    return;
+                }
+                batch[size] = nodeId;
+                batch[size + 1] = nodeLat;
+                batch[size + 2] = nodeLon;
+                size += 3;
+                if (size == batch.length) {
+                    flush();
+                }
+            } else if (nodeId != null && qName.equals("tag")
+                    && "name".equals(attributes.getValue("k"))) {
+                named.add(nodeId);
+                named.add(nodeLat);
+                named.add(nodeLon);
+                named.add(attributes.getValue("v"));
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (qName.equals("node")) {
+                nodeId = null;
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            flush();
+        }
+
+        /** Adds the named nodes read in this pass to <code>locations</code>. */
+        void addLocations(List<LocationParams> locations) {
+            for (int i = 0; i < named.size(); i += 4) {
+                locations.add(new LocationParams(Double.parseDouble(named.get(i + 1)),
+                        Double.parseDouble(named.get(i + 2)), named.get(i + 3),
+                        Long.parseLong(named.get(i))));
+            }
+        }
+
+        /*
+         * Distinct nodes land in distinct slots, so workers never write the same element. A node
+         * ID repeated in the file keeps the coordinates of whichever copy is handled last.
+         */
+        private void flush() throws SAXException {
+            if (size == 0) {
+                return;
+            }
+            String[] nodes = batch;
+            int count = size;
+            batch = new String[3 * BATCH_SIZE];
+            size = 0;
+            submit(() -> {
+                for (int i = 0; i < count; i += 3) {
+                    int v = Arrays.binarySearch(ids, Long.parseLong(nodes[i]));
+                    if (v >= 0) {
+                        lats[v] = Double.parseDouble(nodes[i + 1]);
+                        lons[v] = Double.parseDouble(nodes[i + 2]);
+                        found[v] = true;
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A streaming PNG encoder for the <code>TYPE_INT_RGB</code> rasters that
+ * <code>MapServer.renderImage</code> produces.
+ *
+ * Rows are deflated one at a time and the compressed data is written out in fixed-size IDAT
+ * chunks as it is produced, so encoding never holds more than one row and one chunk in memory,
+ * however large the raster. Rows are not filtered: map rasters are mostly runs of a few flat
+ * colors, which deflate matches better unfiltered than after the Sub, Up or Paeth filters turn
+ * antialiased edges into noise, and skipping the filters also saves their cost. The deflate level
+ * trades encode time for size.
+ */
+class PngEncoder {
+    /** Deflate level used unless another is given, the same as ImageIO uses. */
+    static final int DEFAULT_LEVEL = 4;
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+    /** Largest amount of compressed data written per IDAT chunk. */
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private PngEncoder() {
+    }
+
+    /**
+     * Writes <code>image</code> to <code>out</code> as a PNG. The stream is not closed.
+     * @param image A <code>TYPE_INT_RGB</code> image.
+     * @param out The stream to write to.
+     * @param level The deflate level, from 0 (store) to 9 (smallest).
+     * @throws IOException if the stream cannot be written.
+     */
+    static void write(BufferedImage image, OutputStream out, int level) throws IOException {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Expected a TYPE_INT_RGB image");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        out.write(SIGNATURE);
+        ChunkWriter header = new ChunkWriter(out, "IHDR", 13);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.write(8); // bit depth
+        header.write(2); // truecolor
+        header.write(0); // deflate
+        header.write(0); // filter method
+        header.write(0); // no interlace
+        header.close();
+
+        Deflater deflater = new Deflater(level);
+        try {
+            ChunkWriter data = new ChunkWriter(out, "IDAT", CHUNK_BYTES);
+            DeflaterOutputStream compressed = new DeflaterOutputStream(data, deflater, CHUNK_BYTES);
+            byte[] row = new byte[1 + 3 * width]; // starts with filter type 0, None
+            for (int y = 0; y < height; y += 1) {
+                for (int x = 0, i = y * width; x < width; x += 1, i += 1) {
+                    int rgb = pixels[i];
+                    row[3 * x + 1] = (byte) (rgb >> 16);
+                    row[3 * x + 2] = (byte) (rgb >> 8);
+                    row[3 * x + 3] = (byte) rgb;
+                }
+                compressed.write(row);
+            }
+            compressed.finish();
+            data.close();
+        } finally {
+            deflater.end();
+        }
+        new ChunkWriter(out, "IEND", 0).close();
+    }
+
+    /**
+     * Buffers the data of chunks of one type, writing a chunk with its length and CRC each time
+     * the buffer fills and when closed. Closing does not close the underlying stream.
+     */
+    private static class ChunkWriter extends OutputStream {
+        private final OutputStream out;
+        private final byte[] type;
+        private final byte[] buffer;
+        private int size;
+
+        ChunkWriter(OutputStream out, String type, int capacity) {
+            this.out = out;
+            this.type = type.getBytes(StandardCharsets.US_ASCII);
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) {
+                emit();
+            }
+            buffer[size] = (byte) b;
+            size += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) {
+                    emit();
+                }
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        void writeInt(int v) throws IOException {
+            write(v >>> 24);
+            write(v >>> 16);
+            write(v >>> 8);
+            write(v);
+        }
+
+        private void emit() throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(buffer, 0, size);
+            writeInt(out, size);
+            out.write(type);
+            out.write(buffer, 0, size);
+            writeInt(out, (int) crc.getValue());
+            size = 0;
+        }
+
+        /** Writes the last chunk, which for an empty chunk type is the only one. */
+        @Override
+        public void close() throws IOException {
+            if (size > 0 || buffer.length == 0) {
+                emit();
+            }
+        }
+
+        private static void writeInt(OutputStream out, int v) throws IOException {
+            out.write(v >>> 24);
+            out.write(v >>> 16);
+            out.write(v >>> 8);
+            out.write(v);
+        }
+    }
+}
@@ -133,8 +133,8 @@ public class Rasterer {
 
     public double[] findRightcorner(double tileullat, double tileullon, double dp) {
         double[] xy = new double[4];
-        double y = this.ROOT_ULLAT;
-        double x = this.ROOT_ULLON;
+        double y = ROOT_ULLAT;
+        double x = ROOT_ULLON;
         int i;
         int j;
         i = (int) Math.ceil((tileullon - x) / (256 * dp));
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+/**
+ * The transpose of a directed <code>CompactGraph</code>: the same vertices, with every edge
+ * <code>v -> w</code> replaced by <code>w -> v</code>. Vertex IDs, coordinates and copies are
+ * read through to the forward graph, so a transpose of a mapped graph keeps none of its vertices
+ * on the heap; it owns only its offsets and the targets, weights and times of its edges. The
+ * bearings of its edges are rarely asked for, so they are computed on demand.
+ */
+class ReversedGraph extends CompactGraph {
+    private final CompactGraph graph;
+    /** Offset of the first edge of each vertex; <code>offsets[size()]</code> is the edge count. */
+    private final int[] offsets;
+    /** Source vertex index, in the forward graph, of each edge. */
+    private final int[] targets;
+    /** Great-circle length of each edge, in miles. */
+    private final float[] weights;
+    /** Travel time of each edge, in seconds. */
+    private final float[] times;
+
+    ReversedGraph(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        int m = graph.edgeCount();
+        offsets = new int[n + 1];
+        for (int e = 0; e < m; e += 1) {
+            offsets[graph.target(e) + 1] += 1;
+        }
+        for (int v = 0; v < n; v += 1) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        targets = new int[m];
+        weights = new float[m];
+        times = new float[m];
+        for (int v = 0; v < n; v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int slot = next[graph.target(e)]++;
+                targets[slot] = v;
+                weights[slot] = graph.weight(e);
+                times[slot] = graph.time(e);
+            }
+        }
+    }
+
+    @Override
+    int size() {
+        return graph.size();
+    }
+
+    @Override
+    int nodeCount() {
+        return graph.nodeCount();
+    }
+
+    @Override
+    int original(int v) {
+        return graph.original(v);
+    }
+
+    @Override
+    int[] copies(int v) {
+        return graph.copies(v);
+    }
+
+    @Override
+    int edgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    int index(long id) {
+        return graph.index(id);
+    }
+
+    @Override
+    long id(int v) {
+        return graph.id(v);
+    }
+
+    @Override
+    double lat(int v) {
+        return graph.lat(v);
+    }
+
+    @Override
+    double lon(int v) {
+        return graph.lon(v);
+    }
+
+    @Override
+    int edgeStart(int v) {
+        return offsets[v];
+    }
+
+    @Override
+    int edgeEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    @Override
+    int target(int e) {
+        return targets[e];
+    }
+
+    @Override
+    float weight(int e) {
+        return weights[e];
+    }
+
+    @Override
+    float time(int e) {
+        return times[e];
+    }
+
+    @Override
+    boolean directed() {
+        return true;
+    }
+
+    @Override
+    UnitVectors unitVectors() {
+        return graph.unitVectors();
+    }
+
+    @Override
+    float bearing(int e) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= e) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int w = targets[e];
+        return (float) GraphDB.bearing(lat(lo), lon(lo), lat(w), lon(w));
+    }
+
+    @Override
+    CompactGraph reversed() {
+        return graph;
+    }
+
+    /** Only the edges are retained; the vertices are those of the forward graph. */
+    @Override
+    long sizeInBytes() {
+        return 4L * offsets.length + 4L * targets.length + 4L * weights.length
+                + 4L * times.length;
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of computed routes, keyed by the pair of vertices that a request's
+ * endpoints snap to and by the metric and algorithm it asks for, so that requests between the
+ * same places skip the search and the directions. Popular destinations make such repeats common
+ * even when the clicked points differ. Shortest and fastest routes are kept apart, and so are
+ * routes found by different algorithms, which may break ties differently.
+ *
+ * Each route is kept as an array of vertex IDs with its directions text, and weighed by their
+ * estimated footprint. Routes are evicted least recently used first once they exceed the memory
+ * budget. The cache belongs to one graph: looking up or adding a route for any other graph, as
+ * after the graph is reloaded, first empties it. One lock guards the bookkeeping; routes are
+ * computed outside it, so two concurrent misses on the same pair may both compute the route.
+ */
+class RouteCache {
+    /** Estimated bytes a route takes besides its vertices and directions. */
+    static final long ROUTE_OVERHEAD_BYTES = 160;
+
+    private final long budgetBytes;
+    /** Kept in access order, least recently used first. */
+    private final LinkedHashMap<Key, Route> routes = new LinkedHashMap<>(16, 0.75f, true);
+    /** The graph the cached routes were computed on. */
+    private GraphDB graph;
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    /** Total time the hits would have spent computing their routes, in nanoseconds. */
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     * @param budgetBytes The most memory the routes may take, in bytes. A budget of 0 disables
+     *                    caching.
+     */
+    RouteCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Returns the cached route between two vertices and marks it as used.
+     * @param graph The graph the route is wanted on.
+     * @param start The compact graph index of the starting vertex.
+     * @param end The compact graph index of the destination vertex.
+     * @param metric What the route minimizes.
+     * @param algorithm The algorithm the route was requested with.
+     * @return The route, or <code>null</code> if it is not cached.
+     */
+    Route get(GraphDB graph, int start, int end, Router.Metric metric,
+              Router.Algorithm algorithm) {
+        Route route;
+        synchronized (this) {
+            invalidateUnless(graph);
+            route = routes.get(new Key(start, end, metric, algorithm));
+        }
+        if (route == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        savedNanos.addAndGet(route.computeNanos);
+        return route;
+    }
+
+    /**
+     * Caches a route between two vertices, evicting other routes until the budget is met.
+     * @param graph The graph the route was computed on.
+     * @param start The compact graph index of the starting vertex.
+     * @param end The compact graph index of the destination vertex.
+     * @param metric What the route minimizes.
+     * @param algorithm The algorithm the route was requested with.
+     * @param path The vertex IDs of the route.
+     * @param directions The directions text of the route.
+     * @param computeNanos How long computing the route and its directions took.
+     * @return The cached route.
+     */
+    Route put(GraphDB graph, int start, int end, Router.Metric metric,
+              Router.Algorithm algorithm, List<Long> path, String directions, long computeNanos) {
+        long[] vertices = VertexList.toArray(path);
+        Route route = new Route(vertices, directions, computeNanos);
+        if (route.bytes > budgetBytes) {
+            return route;
+        }
+        synchronized (this) {
+            invalidateUnless(graph);
+            Route old = routes.put(new Key(start, end, metric, algorithm), route);
+            bytes += route.bytes - (old == null ? 0 : old.bytes);
+            Iterator<Route> eldest = routes.values().iterator();
+            while (bytes > budgetBytes) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return route;
+    }
+
+    /** Returns a route that is not held by any cache. */
+    static Route uncached(List<Long> path, String directions) {
+        return new Route(VertexList.toArray(path), directions, 0);
+    }
+
+    /** Empties the cache if its routes were computed on another graph. */
+    private void invalidateUnless(GraphDB graph) {
+        if (graph != this.graph) {
+            routes.clear();
+            bytes = 0;
+            this.graph = graph;
+        }
+    }
+
+    /** Returns a snapshot of the cache counters. */
+    synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), routes.size(), bytes,
+                budgetBytes, savedNanos.get() / 1e6);
+    }
+
+    /** The cache counters, with the time the hits saved. */
+    static class Stats extends CacheStats {
+        /** Time the hits would have spent computing their routes, in milliseconds. */
+        final double savedMillis;
+
+        Stats(long hits, long misses, long evictions, int entries, long bytes, long budgetBytes,
+              double savedMillis) {
+            super(hits, misses, evictions, entries, bytes, budgetBytes);
+            this.savedMillis = savedMillis;
+        }
+    }
+
+    /** The snapped endpoints of a request, with the metric and algorithm it asks for. */
+    private static class Key {
+        private final int start;
+        private final int end;
+        private final Router.Metric metric;
+        private final Router.Algorithm algorithm;
+
+        private Key(int start, int end, Router.Metric metric, Router.Algorithm algorithm) {
+            this.start = start;
+            this.end = end;
+            this.metric = metric;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return start == other.start && end == other.end && metric == other.metric
+                    && algorithm == other.algorithm;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((31 * start + end) * 31 + metric.ordinal()) * 31 + algorithm.ordinal();
+        }
+    }
+
+    /** A computed route and its directions. */
+    static class Route {
+        private final long[] vertices;
+        /** The HTML-friendly directions text. */
+        final String directions;
+        private final long computeNanos;
+        private final long bytes;
+
+        private Route(long[] vertices, String directions, long computeNanos) {
+            this.vertices = vertices;
+            this.directions = directions;
+            this.computeNanos = computeNanos;
+            this.bytes = ROUTE_OVERHEAD_BYTES + 8L * vertices.length + directions.length();
+        }
+
+        /** Returns the vertex IDs of the route, as an unmodifiable list. */
+        List<Long> path() {
+            return new VertexList(vertices);
+        }
+    }
+
+}
@@ -19,6 +19,12 @@ public class RouteRequestParams {
     public final double endLat;
     /** The end point longitude. */
     public final double endLon;
+    /** Whether to record a search trace for this request. */
+    public final boolean trace;
+    /** The search algorithm to route with. */
+    public final Router.Algorithm algorithm;
+    /** What the route minimizes. */
+    public final Router.Metric metric;
 
     /**
      * Validate and return a parameter map of the required request parameters.
@@ -42,6 +48,25 @@ public class RouteRequestParams {
                 }
             }
         }
+        if (req.containsKey("trace") && req.get("trace").length > 0) {
+            builder.setTrace(Boolean.parseBoolean(req.get("trace")[0]));
+        }
+        if (req.containsKey("algorithm") && req.get("algorithm").length > 0) {
+            try {
+                builder.setAlgorithm(Router.Algorithm.from(req.get("algorithm")[0]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Incorrect parameters: unable to parse algorithm.");
+            }
+        }
+        if (req.containsKey("metric") && req.get("metric").length > 0) {
+            try {
+                builder.setMetric(Router.Metric.from(req.get("metric")[0]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Incorrect parameters: unable to parse metric.");
+            }
+        }
         return builder.create();
     }
 
@@ -50,18 +75,25 @@ public class RouteRequestParams {
      * instance. Use the the factory method, from, instead.
      */
     private RouteRequestParams() {
-        this(0.0, 0.0, 0.0, 0.0);
+        this(0.0, 0.0, 0.0, 0.0, false, Router.Algorithm.AUTO, Router.Metric.DISTANCE);
     }
 
-    private RouteRequestParams(double startLat, double startLon, double endLat, double endLon) {
+    private RouteRequestParams(double startLat, double startLon, double endLat, double endLon,
+                               boolean trace, Router.Algorithm algorithm, Router.Metric metric) {
         this.startLat = startLat;
         this.startLon = startLon;
         this.endLat = endLat;
         this.endLon = endLon;
+        this.trace = trace;
+        this.algorithm = algorithm;
+        this.metric = metric;
     }
 
     public static class Builder {
         private double startLat, startLon, endLat, endLon;
+        private boolean trace;
+        private Router.Algorithm algorithm = Router.Algorithm.AUTO;
+        private Router.Metric metric = Router.Metric.DISTANCE;
 
         /**
          * Creates a RouteRequestParams.Builder instance that can be used to build
@@ -71,7 +103,8 @@ public class RouteRequestParams {
         }
 
         public RouteRequestParams create() {
-            return new RouteRequestParams(startLat, startLon, endLat, endLon);
+            return new RouteRequestParams(startLat, startLon, endLat, endLon, trace, algorithm,
+                    metric);
         }
 
         public Builder setStartLat(double value) {
@@ -94,6 +127,21 @@ public class RouteRequestParams {
             return this;
         }
 
+        public Builder setTrace(boolean value) {
+            this.trace = value;
+            return this;
+        }
+
+        public Builder setAlgorithm(Router.Algorithm value) {
+            this.algorithm = value;
+            return this;
+        }
+
+        public Builder setMetric(Router.Metric value) {
+            this.metric = value;
+            return this;
+        }
+
         private Builder set(String field, double value) {
             switch (field) {
                 case "start_lat":
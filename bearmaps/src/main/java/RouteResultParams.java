@@ -11,6 +11,8 @@ class RouteResultParams {
     private final boolean routingSuccess;
     /** The HTML-friendly String representation of the navigation directions. */
     private final String directions;
+    /** The ID to fetch this request's search trace from /debug/trace, or null if untraced. */
+    private final Integer traceId;
 
     /** Private constructor to prevent direct instantiation of a RouteResultParams instance. */
     private RouteResultParams() {
@@ -23,7 +25,18 @@ class RouteResultParams {
      * @param directions The directions field.
      */
     RouteResultParams(boolean routingSuccess, String directions) {
+        this(routingSuccess, directions, null);
+    }
+
+    /**
+     * Constructs a RouteResultParams instance for a traced request.
+     * @param routingSuccess The routingSuccess field.
+     * @param directions The directions field.
+     * @param traceId The traceId field, or null if the request was not traced.
+     */
+    RouteResultParams(boolean routingSuccess, String directions, Integer traceId) {
         this.routingSuccess = routingSuccess;
         this.directions = directions;
+        this.traceId = traceId;
     }
 }
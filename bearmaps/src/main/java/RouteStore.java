@@ -0,0 +1,148 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The current route of each client session, so that every client's raster requests draw its own
+ * route rather than whichever route was requested last.
+ *
+ * Routes are kept as arrays of vertex IDs and weighed by their estimated footprint, including a
+ * fixed overhead per session. Sessions expire once they have gone unused for the time to live,
+ * and the least recently used sessions are dropped first once the store exceeds its memory
+ * budget. Sessions are kept in access order, so both kinds of removal only ever look at the
+ * eldest sessions. One lock guards the store and is only held for constant-time bookkeeping;
+ * routes are immutable once stored, so readers may use them after it is released.
+ */
+class RouteStore {
+    /** Estimated bytes a session takes besides its route and key characters. */
+    static final long SESSION_OVERHEAD_BYTES = 128;
+
+    private final long budgetBytes;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    /** Kept in access order, least recently used first. */
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an empty store.
+     * @param budgetBytes The most memory the sessions may take, in bytes.
+     * @param ttlMillis How long a session is kept after it was last used, in milliseconds.
+     */
+    RouteStore(long budgetBytes, long ttlMillis) {
+        this(budgetBytes, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * Creates an empty store that reads the time from <code>clock</code>.
+     * @param clock Returns the current time in nanoseconds, as <code>System.nanoTime</code>.
+     */
+    RouteStore(long budgetBytes, long ttlMillis, LongSupplier clock) {
+        this.budgetBytes = budgetBytes;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the route of a session and marks the session as used.
+     * @param session The session token, or <code>null</code> for a client without one.
+     * @return The route, or an empty list if the session has none or has expired.
+     */
+    List<Long> get(String session) {
+        if (session != null) {
+            synchronized (this) {
+                long now = clock.getAsLong();
+                expire(now);
+                Session s = sessions.get(session);
+                if (s != null) {
+                    s.lastUsed = now;
+                    hits.incrementAndGet();
+                    return s.route;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return Collections.emptyList();
+    }
+
+    /**
+     * Sets the route of a session, replacing any earlier route. Setting an empty route clears
+     * the session.
+     * @param session The session token.
+     * @param route The vertex IDs of the route.
+     */
+    void put(String session, List<Long> route) {
+        long[] vertices = VertexList.toArray(route);
+        Session s = new Session(vertices, SESSION_OVERHEAD_BYTES + 2L * session.length()
+                + 8L * vertices.length);
+        synchronized (this) {
+            remove(session);
+            if (vertices.length == 0 || s.bytes > budgetBytes) {
+                return;
+            }
+            long now = clock.getAsLong();
+            s.lastUsed = now;
+            sessions.put(session, s);
+            bytes += s.bytes;
+            expire(now);
+            Iterator<Session> eldest = sessions.values().iterator();
+            while (bytes > budgetBytes) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /** Removes the route of a session, if it has one. */
+    synchronized void remove(String session) {
+        Session s = sessions.remove(session);
+        if (s != null) {
+            bytes -= s.bytes;
+        }
+    }
+
+    /** Drops the sessions that have gone unused for longer than the time to live. */
+    private void expire(long now) {
+        Iterator<Session> eldest = sessions.values().iterator();
+        while (eldest.hasNext()) {
+            Session s = eldest.next();
+            if (now - s.lastUsed < ttlNanos) {
+                return;
+            }
+            bytes -= s.bytes;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the store counters. The entries are the live sessions, hits and
+     * misses count raster lookups with and without a route, and evictions include expiries.
+     */
+    synchronized CacheStats stats() {
+        expire(clock.getAsLong());
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), sessions.size(), bytes,
+                budgetBytes);
+    }
+
+    private static class Session {
+        private final List<Long> route;
+        private final long bytes;
+        /** Guarded by the store. */
+        private long lastUsed;
+
+        private Session(long[] vertices, long bytes) {
+            this.route = new VertexList(vertices);
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -21,81 +21,164 @@ public class Router {
     public static List<Long> shortestPath(GraphDB g,
                                           double stlon, double stlat,
                                           double destlon, double destlat) {
-        long startID = g.closest(stlon, stlat);
-        long endID = g.closest(destlon, destlat);
-        if (startID == endID) {
-            ArrayList<Long> p=new ArrayList<>();
-            p.add(startID);
-            return p;
-        }
-        ArrayList<nodeDistance> path =shortestPahthelper(g, startID, endID);
-        return result(path);
+        return shortestPath(g, stlon, stlat, destlon, destlat, Algorithm.AUTO, Metric.DISTANCE,
+                null);
     }
 
-    public static LinkedList<Long> result(ArrayList<nodeDistance> path){
-        LinkedList<Long> result= new LinkedList<>();
-        nodeDistance track=path.get(path.size()-1);
-        while(track!=null){
-            result.addFirst(track.ID);
-            track=track.parent;
-        }
-        return result;
+    /**
+     * Return a <code>List</code> of vertex IDs corresponding to the shortest path for a route
+     * request, computed with the requested algorithm.
+     *
+     * @param g      <code>GraphDB</code> data source.
+     * @param params The route endpoints and options.
+     * @param trace  Records the search, or <code>null</code> to record nothing.
+     * @return The <code>List</code> of vertex IDs corresponding to the shortest path.
+     */
+    public static List<Long> shortestPath(GraphDB g, RouteRequestParams params,
+                                          SearchTrace trace) {
+        return shortestPath(g, params.startLon, params.startLat, params.endLon, params.endLat,
+                params.algorithm, params.metric, trace);
     }
 
-    public static ArrayList<nodeDistance> shortestPahthelper(GraphDB g, long startID, long endID) {
-        ArrayList<nodeDistance> path = new ArrayList<>();
-        PriorityQueue<nodeDistance> pq = new PriorityQueue<>();
-        HashSet<Long> visited = new HashSet<>();
-        double basedist = g.distance(startID, endID);
-        System.out.println("startID" + startID + "  endID" + endID);
-        nodeDistance next = new nodeDistance(startID, basedist,null);
-        pq.add(next);
-        while (!visited.contains(endID)) {
-            nodeDistance curr = pq.poll();
-            HashSet<Long> neighbor = g.getNeighbors().get(curr.ID);
-            for (Long neighborID : neighbor) {
-                if (!visited.contains(neighborID)) {
-                    basedist = g.distance(neighborID, endID);
-                    double distfromsource = curr.distance - g.distance(curr.ID, endID) + g.distance(curr.ID, neighborID);
-                    next = new nodeDistance(neighborID, basedist + distfromsource,curr);
-                    pq.add(next);
-                }
-            }
-            visited.add(curr.ID);
-            path.add(curr);
-            for(nodeDistance n:pq){
-                System.out.println("dist"+n.distance+"ID"+n.ID);
-            }
+    private static List<Long> shortestPath(GraphDB g,
+                                           double stlon, double stlat,
+                                           double destlon, double destlat,
+                                           Algorithm algorithm, Metric metric,
+                                           SearchTrace trace) {
+        return shortestPath(g, g.closestIndex(stlon, stlat), g.closestIndex(destlon, destlat),
+                algorithm, metric, trace);
+    }
 
+    /**
+     * Return a <code>List</code> of vertex IDs corresponding to the shortest path between two
+     * vertices that the endpoints have already been snapped to.
+     *
+     * @param g         <code>GraphDB</code> data source.
+     * @param start     The compact graph index of the starting vertex, or -1 if the graph is
+     *                  empty.
+     * @param end       The compact graph index of the destination vertex, or -1 if the graph
+     *                  is empty.
+     * @param algorithm The search algorithm to use.
+     * @param metric    What the path minimizes.
+     * @param trace     Records the search, or <code>null</code> to record nothing.
+     * @return The <code>List</code> of vertex IDs corresponding to the shortest path, empty if
+     * there is none.
+     */
+    static List<Long> shortestPath(GraphDB g, int start, int end, Algorithm algorithm,
+                                   Metric metric, SearchTrace trace) {
+        if (start < 0 || end < 0) {
+            return Collections.emptyList();
         }
+        CompactGraph graph = g.compact(metric);
+        ContractionHierarchy hierarchy = g.hierarchy(metric);
+        if (algorithm == Algorithm.AUTO) {
+            algorithm = hierarchy != null ? Algorithm.CH : Algorithm.ASTAR;
+        }
+        switch (algorithm) {
+            case CH:
+                if (hierarchy != null) {
+                    return hierarchy.shortestPath(start, end, trace);
+                }
+                return AStar.shortestPath(graph, start, end, trace);
+            case ALT:
+                /* The landmark tables hold distances, so they only bound distances. */
+                Landmarks landmarks = metric == Metric.DISTANCE ? g.landmarks() : null;
+                return AStar.shortestPath(graph, start, end, landmarks, trace);
+            case BIDIRECTIONAL:
+                return BidirectionalAStar.shortestPath(graph, start, end, trace);
+            case ASTAR:
+            default:
+                return AStar.shortestPath(graph, start, end, trace);
+        }
+    }
 
-        return path;
-
+    /**
+     * Return the road distance, in miles, from every source of a matrix request to every
+     * target, after snapping each point to its closest vertex. Unreachable pairs are infinite.
+     *
+     * @param g      <code>GraphDB</code> data source.
+     * @param params The sources and targets.
+     * @return A matrix with one row per source and one column per target.
+     */
+    public static double[][] distanceMatrix(GraphDB g, MatrixRequestParams params) {
+        return DistanceMatrix.compute(g, snap(g, params.sourceLons, params.sourceLats),
+                snap(g, params.targetLons, params.targetLats));
     }
 
+    /**
+     * Return the vertex IDs reachable within the distance or travel time of an isochrone
+     * request from the vertex closest to its point, in order of distance or time.
+     *
+     * @param g      <code>GraphDB</code> data source.
+     * @param params The start point and bound.
+     * @return The <code>List</code> of reachable vertex IDs, starting with the start vertex.
+     */
+    public static List<Long> reachable(GraphDB g, IsochroneRequestParams params) {
+        Isochrone isochrone = isochrone(g, params);
+        long[] ids = new long[isochrone.size()];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = g.compact().id(isochrone.vertex(i));
+        }
+        return new VertexList(ids);
+    }
 
-    public static class nodeDistance implements Comparable<nodeDistance> {
-        long ID;
-        double distance;
-        nodeDistance parent;
+    /**
+     * Return the isochrone of a request: the vertices within its distance of the vertex
+     * closest to its point, or within its travel time at the speeds of the roads.
+     */
+    static Isochrone isochrone(GraphDB g, IsochroneRequestParams params) {
+        return Isochrone.compute(g.compact(params.metric), g.closestIndex(params.lon, params.lat),
+                params.bound);
+    }
 
-        public nodeDistance(long ID, double distance, nodeDistance parent) {
-            this.ID = ID;
-            this.distance = distance;
-            this.parent=parent;
+    /** Returns the compact graph indices of the vertices closest to the given points. */
+    private static int[] snap(GraphDB g, double[] lons, double[] lats) {
+        int[] vertices = new int[lons.length];
+        for (int i = 0; i < lons.length; i += 1) {
+            vertices[i] = g.closestIndex(lons[i], lats[i]);
         }
+        return vertices;
+    }
 
-        public int compareTo(nodeDistance other) {
-            double compare = distance - other.distance;
-            if (compare > 0) {
-                return 1;
-            }
-            if (compare < 0) {
-                return -1;
-            }
-            return 0;
+    /** What <code>shortestPath</code> minimizes. */
+    public enum Metric {
+        /** The length of the route. */
+        DISTANCE,
+        /** The travel time of the route at the speed limit of each road. */
+        TIME;
+
+        /**
+         * Returns the metric with the given case-insensitive name.
+         * @throws IllegalArgumentException if there is no such metric.
+         */
+        public static Metric from(String name) {
+            return valueOf(name.trim().toUpperCase());
         }
+    }
+
+    /** The search algorithms available to <code>shortestPath</code>. */
+    public enum Algorithm {
+        /** The contraction hierarchy when one is available, and A* otherwise. */
+        AUTO,
+        /** Unidirectional A* with the great-circle heuristic. */
+        ASTAR,
+        /**
+         * A* with landmark lower bounds, or plain A* if no landmarks are loaded or the metric
+         * is time.
+         */
+        ALT,
+        /** Bidirectional A* with average great-circle potentials. */
+        BIDIRECTIONAL,
+        /** Bidirectional upward search in the contraction hierarchy, falling back to A*. */
+        CH;
 
+        /**
+         * Returns the algorithm with the given case-insensitive name.
+         * @throws IllegalArgumentException if there is no such algorithm.
+         */
+        public static Algorithm from(String name) {
+            return valueOf(name.trim().toUpperCase());
+        }
     }
 
     /**
@@ -107,8 +190,21 @@ public class Router {
      * @return A new <code>List</code> of <code>NavigationDirection</code> objects.
      */
     public static List<NavigationDirection> routeDirections(GraphDB g, List<Long> route) {
-        // TODO
-        return Collections.emptyList();
+        List<NavigationDirection> directions = new ArrayList<>();
+        directions(g, route).forEachRemaining(directions::add);
+        return directions;
+    }
+
+    /**
+     * Returns the <code>NavigationDirection</code> objects of a <code>route</code> one at a
+     * time, in a single pass over it, without collecting them into a list.
+     *
+     * @param g     <code>GraphDB</code> data source.
+     * @param route The shortest-path route of vertex IDs.
+     * @return An <code>Iterator</code> over the directions in order.
+     */
+    static Iterator<NavigationDirection> directions(GraphDB g, List<Long> route) {
+        return new TurnByTurn(g, route);
     }
 
     /**
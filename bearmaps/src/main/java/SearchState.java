@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reusable per-thread working memory for shortest-path searches over a <code>CompactGraph</code>:
+ * tentative distances, parent pointers and a priority queue, all indexed by vertex.
+ *
+ * Instead of clearing its arrays before every search, the state stamps each vertex it touches
+ * with the current generation; a vertex whose stamp is stale is treated as unreached. Starting a
+ * new search therefore costs time proportional to what the previous search left in the heap,
+ * not to the size of the graph.
+ *
+ * The arrays only depend on the number of vertices, so a thread keeps one state per pool slot
+ * and lends it to whichever graph it searches next, as long as that graph fits. Searches that
+ * alternate between a graph, its view by travel time and its transpose share one state.
+ */
+class SearchState {
+    /** Pool slot for a unidirectional or forward search. */
+    static final int FORWARD = 0;
+    /** Pool slot for the backward half of a bidirectional search. */
+    static final int BACKWARD = 1;
+    private static final ThreadLocal<SearchState[]> POOL =
+            ThreadLocal.withInitial(() -> new SearchState[2]);
+
+    /** The graph of the current search. */
+    CompactGraph graph;
+    final IndexedMinHeap heap;
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] stamp;
+    /** Generation each vertex was last marked in, allocated by the first search that marks. */
+    private int[] marked;
+    private int generation;
+    /** Number of vertices removed from the heap in the current search. */
+    int settled;
+    /** Number of edges scanned in the current search. */
+    int relaxed;
+
+    private SearchState(int n) {
+        heap = new IndexedMinHeap(n);
+        dist = new double[n];
+        parent = new int[n];
+        stamp = new int[n];
+    }
+
+    /**
+     * Returns the calling thread's search state for <code>graph</code>, reset and ready for a new
+     * search. The state is allocated on first use and whenever the thread moves to a graph with
+     * more vertices than it has room for.
+     */
+    static SearchState forGraph(CompactGraph graph) {
+        return forGraph(graph, FORWARD);
+    }
+
+    /**
+     * Returns the calling thread's search state in pool slot <code>slot</code>, so that a
+     * bidirectional search can hold one state per direction.
+     */
+    static SearchState forGraph(CompactGraph graph, int slot) {
+        SearchState[] states = POOL.get();
+        SearchState state = states[slot];
+        if (state == null || state.stamp.length < graph.size()) {
+            state = new SearchState(graph.size());
+            states[slot] = state;
+        }
+        state.graph = graph;
+        state.reset();
+        return state;
+    }
+
+    private void reset() {
+        heap.clear();
+        settled = 0;
+        relaxed = 0;
+        generation += 1;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            if (marked != null) {
+                Arrays.fill(marked, 0);
+            }
+            generation = 1;
+        }
+    }
+
+    boolean reached(int v) {
+        return stamp[v] == generation;
+    }
+
+    /** Returns the tentative distance to <code>v</code>, or infinity if it is unreached. */
+    double dist(int v) {
+        return stamp[v] == generation ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    int parent(int v) {
+        return parent[v];
+    }
+
+    /** Records that <code>v</code> is reachable at distance <code>d</code> via <code>p</code>. */
+    void reach(int v, double d, int p) {
+        stamp[v] = generation;
+        dist[v] = d;
+        parent[v] = p;
+    }
+
+    /**
+     * Marks <code>v</code> for the current search, independently of its distance, for searches
+     * that must handle a vertex at most once.
+     * @return Whether <code>v</code> was not marked yet.
+     */
+    boolean mark(int v) {
+        if (marked == null) {
+            marked = new int[stamp.length];
+        }
+        if (marked[v] == generation) {
+            return false;
+        }
+        marked[v] = generation;
+        return true;
+    }
+
+    /**
+     * Returns the OSM IDs along the parent pointers from the search root to <code>target</code>.
+     */
+    List<Long> path(int target) {
+        int length = 0;
+        for (int v = target; v >= 0; v = parent[v]) {
+            length += 1;
+        }
+        List<Long> ids = new ArrayList<>(length);
+        for (int v = target; v >= 0; v = parent[v]) {
+            ids.add(graph.id(v));
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+}
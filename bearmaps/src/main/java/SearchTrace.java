@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded record of the vertices expanded by a single shortest-path search, for debugging
+ * routing behavior. Searches take a <code>SearchTrace</code> argument that is normally
+ * <code>null</code>, in which case nothing is recorded.
+ *
+ * The first <code>capacity</code> expansions are kept in primitive arrays; later expansions are
+ * only counted, so a trace never grows past its initial allocation.
+ */
+public class SearchTrace {
+    /** Default number of expansions recorded per trace. */
+    static final int DEFAULT_CAPACITY = 10000;
+
+    private final long[] vertices;
+    private final double[] dists;
+    private final double[] heuristics;
+    private final int[] queueSizes;
+    private int size;
+    /** Total number of expansions, including those past capacity. */
+    private int expansions;
+    private long source, target;
+    private long startNanos, elapsedNanos;
+
+    public SearchTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SearchTrace(int capacity) {
+        vertices = new long[capacity];
+        dists = new double[capacity];
+        heuristics = new double[capacity];
+        queueSizes = new int[capacity];
+    }
+
+    /** Records the start of a search between two OSM vertex IDs. */
+    void begin(long sourceId, long targetId) {
+        source = sourceId;
+        target = targetId;
+        size = 0;
+        expansions = 0;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the expansion of a vertex.
+     * @param id The OSM ID of the expanded vertex.
+     * @param dist Its distance from the source.
+     * @param heuristic Its heuristic estimate of the remaining distance.
+     * @param queueSize The number of vertices left in the queue.
+     */
+    void expand(long id, double dist, double heuristic, int queueSize) {
+        expansions += 1;
+        if (size < vertices.length) {
+            vertices[size] = id;
+            dists[size] = dist;
+            heuristics[size] = heuristic;
+            queueSizes[size] = queueSize;
+            size += 1;
+        }
+    }
+
+    /** Records the end of the search. */
+    void end() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public int expansions() {
+        return expansions;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Returns a serialization-ready summary of this trace. */
+    Summary summary() {
+        List<Expansion> recorded = new ArrayList<>(size);
+        for (int i = 0; i < size; i += 1) {
+            recorded.add(new Expansion(vertices[i], dists[i], heuristics[i], queueSizes[i]));
+        }
+        return new Summary(source, target, expansions, elapsedNanos / 1e6,
+                expansions > size, recorded);
+    }
+
+    /** Serialization-ready view of a trace. */
+    static class Summary {
+        private final long source, target;
+        private final int expansions;
+        private final double elapsedMs;
+        private final boolean truncated;
+        private final List<Expansion> expanded;
+
+        private Summary(long source, long target, int expansions, double elapsedMs,
+                        boolean truncated, List<Expansion> expanded) {
+            this.source = source;
+            this.target = target;
+            this.expansions = expansions;
+            this.elapsedMs = elapsedMs;
+            this.truncated = truncated;
+            this.expanded = expanded;
+        }
+    }
+
+    /** Serialization-ready view of one expansion. */
+    private static class Expansion {
+        private final long id;
+        private final double dist, heuristic;
+        private final int queueSize;
+
+        private Expansion(long id, double dist, double heuristic, int queueSize) {
+            this.id = id;
+            this.dist = dist;
+            this.heuristic = heuristic;
+            this.queueSize = queueSize;
+        }
+    }
+}
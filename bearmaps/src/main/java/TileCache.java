@@ -0,0 +1,194 @@
+import javax.imageio.ImageIO;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of decoded map tiles, keyed by the tile file names that
+ * <code>Rasterer.findGrid</code> produces, so that panning over the same tiles does not decode
+ * the same PNGs again for every raster request.
+ *
+ * Eviction is a size-aware segmented LRU. A newly decoded tile enters the probationary segment,
+ * and moves to the protected segment the next time it is used. The protected segment holds at
+ * most <code>PROTECTED_SHARE</code> of the memory budget and demotes its least recently used
+ * tiles back to probation when it overflows, while tiles are evicted from the least recently used
+ * end of probation first. A single sweep across the map therefore only churns the probationary
+ * tiles and leaves the tiles users keep returning to in place.
+ *
+ * Tiles are converted to <code>TYPE_INT_RGB</code> when they are decoded, drawn over black
+ * exactly as they would be drawn onto the raster, so that rendering can copy their pixel rows
+ * straight into the output. Tiles are weighed by the size of their pixel data. The segments are
+ * guarded by one lock that is only held for the bookkeeping; decoding happens outside it, and
+ * concurrent misses on the same tile wait for a single decode. Cached images are shared between
+ * requests and must not be modified.
+ */
+class TileCache {
+    /** Share of the memory budget that the protected segment may hold. */
+    static final double PROTECTED_SHARE = 0.8;
+
+    private final String root;
+    private final long budgetBytes;
+    private final long protectedBudgetBytes;
+    /** Both segments are kept in insertion order, least recently used first. */
+    private final LinkedHashMap<String, Tile> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Tile> protectedTiles = new LinkedHashMap<>();
+    private long probationBytes, protectedBytes;
+    /** Decodes in progress, so that concurrent misses on one tile share a single decode. */
+    private final Map<String, CompletableFuture<BufferedImage>> loading =
+            new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     * @param root The directory the tile files are read from, ending in a separator.
+     * @param budgetBytes The most decoded pixel data to keep, in bytes. A budget of 0 disables
+     *                    caching, so every request decodes its tiles.
+     */
+    TileCache(String root, long budgetBytes) {
+        this.root = root;
+        this.budgetBytes = budgetBytes;
+        this.protectedBudgetBytes = (long) (PROTECTED_SHARE * budgetBytes);
+    }
+
+    /**
+     * Returns the decoded tile with the given file name, reading it from disk if it is not cached.
+     * @param name A tile file name such as <code>d2_x0_y1.png</code>.
+     * @return The tile, or <code>null</code> if it cannot be read.
+     */
+    BufferedImage get(String name) {
+        BufferedImage image = lookup(name);
+        if (image != null) {
+            hits.incrementAndGet();
+            return image;
+        }
+        CompletableFuture<BufferedImage> load = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> pending = loading.putIfAbsent(name, load);
+        if (pending != null) {
+            hits.incrementAndGet();
+            return pending.join();
+        }
+        try {
+            /* Another request may have finished decoding between the lookup and claiming it. */
+            image = lookup(name);
+            if (image != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                image = read(root + name);
+                if (image != null) {
+                    insert(name, image);
+                }
+            }
+            return image;
+        } finally {
+            load.complete(image);
+            loading.remove(name, load);
+        }
+    }
+
+    /** Returns the cached tile and records the use, or returns <code>null</code>. */
+    private synchronized BufferedImage lookup(String name) {
+        Tile tile = protectedTiles.remove(name);
+        if (tile != null) {
+            protectedTiles.put(name, tile);
+            return tile.image;
+        }
+        tile = probation.remove(name);
+        if (tile == null) {
+            return null;
+        }
+        probationBytes -= tile.bytes;
+        protectedTiles.put(name, tile);
+        protectedBytes += tile.bytes;
+        Iterator<Map.Entry<String, Tile>> eldest = protectedTiles.entrySet().iterator();
+        while (protectedBytes > protectedBudgetBytes) {
+            Map.Entry<String, Tile> demoted = eldest.next();
+            eldest.remove();
+            protectedBytes -= demoted.getValue().bytes;
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationBytes += demoted.getValue().bytes;
+        }
+        return tile.image;
+    }
+
+    /** Adds a newly decoded tile to probation, evicting tiles until the budget is met. */
+    private synchronized void insert(String name, BufferedImage image) {
+        long bytes = bytes(image);
+        if (bytes > budgetBytes || probation.containsKey(name)
+                || protectedTiles.containsKey(name)) {
+            return;
+        }
+        probation.put(name, new Tile(image, bytes));
+        probationBytes += bytes;
+        while (probationBytes + protectedBytes > budgetBytes) {
+            LinkedHashMap<String, Tile> segment = probation.isEmpty() ? protectedTiles : probation;
+            Iterator<Tile> eldest = segment.values().iterator();
+            Tile evicted = eldest.next();
+            eldest.remove();
+            if (segment == probation) {
+                probationBytes -= evicted.bytes;
+            } else {
+                protectedBytes -= evicted.bytes;
+            }
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the image found at the given <code>imgPath</code>, as <code>TYPE_INT_RGB</code>.
+     * @param imgPath <code>String</code> path to the image.
+     * @return The <code>BufferedImage</code> at the specified <code>imgPath</code>.
+     */
+    private static BufferedImage read(String imgPath) {
+        BufferedImage tileImg = null;
+        File in = new File(imgPath);
+        try {
+            tileImg = ImageIO.read(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (tileImg == null || tileImg.getType() == BufferedImage.TYPE_INT_RGB) {
+            return tileImg;
+        }
+        BufferedImage rgb = new BufferedImage(tileImg.getWidth(), tileImg.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics graphic = rgb.getGraphics();
+        graphic.drawImage(tileImg, 0, 0, null);
+        graphic.dispose();
+        return rgb;
+    }
+
+    /** Returns the size of the decoded pixel data of <code>image</code>, in bytes. */
+    static long bytes(BufferedImage image) {
+        DataBuffer data = image.getRaster().getDataBuffer();
+        return (long) data.getSize() * data.getNumBanks()
+                * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+    }
+
+    /** Returns a snapshot of the cache counters. */
+    synchronized CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(),
+                probation.size() + protectedTiles.size(), probationBytes + protectedBytes,
+                budgetBytes);
+    }
+
+    private static class Tile {
+        private final BufferedImage image;
+        private final long bytes;
+
+        private Tile(BufferedImage image, long bytes) {
+            this.image = image;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * A view of a <code>CompactGraph</code> whose edge weights are the travel times of the
+ * underlying graph, in seconds, so that the searches written against <code>weight</code> find
+ * fastest routes rather than shortest ones. Everything else is read through to the underlying
+ * graph; the view keeps no arrays of its own.
+ *
+ * The fastest any edge is traveled bounds the time per mile of any path, so a great-circle
+ * distance scaled by <code>weightPerMile</code> never overestimates a travel time.
+ */
+class TimedGraph extends CompactGraph {
+    private final CompactGraph graph;
+    /** The fewest seconds any edge takes per mile of its length. */
+    private final double secondsPerMile;
+
+    TimedGraph(CompactGraph graph) {
+        this.graph = graph;
+        double fastest = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < graph.edgeCount(); e += 1) {
+            if (graph.weight(e) > 0) {
+                fastest = Math.min(fastest, graph.time(e) / graph.weight(e));
+            }
+        }
+        /* Rounding the weights to floats may shave a little off the true lengths. */
+        this.secondsPerMile = Double.isInfinite(fastest) ? 0.0 : fastest * (1 - 1e-6);
+    }
+
+    @Override
+    int size() {
+        return graph.size();
+    }
+
+    @Override
+    int nodeCount() {
+        return graph.nodeCount();
+    }
+
+    @Override
+    int original(int v) {
+        return graph.original(v);
+    }
+
+    @Override
+    int[] copies(int v) {
+        return graph.copies(v);
+    }
+
+    @Override
+    int edgeCount() {
+        return graph.edgeCount();
+    }
+
+    @Override
+    int index(long id) {
+        return graph.index(id);
+    }
+
+    @Override
+    long id(int v) {
+        return graph.id(v);
+    }
+
+    @Override
+    double lat(int v) {
+        return graph.lat(v);
+    }
+
+    @Override
+    double lon(int v) {
+        return graph.lon(v);
+    }
+
+    @Override
+    int edgeStart(int v) {
+        return graph.edgeStart(v);
+    }
+
+    @Override
+    int edgeEnd(int v) {
+        return graph.edgeEnd(v);
+    }
+
+    @Override
+    int target(int e) {
+        return graph.target(e);
+    }
+
+    /** Returns the travel time of edge <code>e</code>, in seconds. */
+    @Override
+    float weight(int e) {
+        return graph.time(e);
+    }
+
+    @Override
+    float time(int e) {
+        return graph.time(e);
+    }
+
+    @Override
+    boolean directed() {
+        return graph.directed();
+    }
+
+    @Override
+    double weightPerMile() {
+        return secondsPerMile;
+    }
+
+    @Override
+    CompactGraph byTime() {
+        return this;
+    }
+
+    @Override
+    UnitVectors unitVectors() {
+        return graph.unitVectors();
+    }
+
+    @Override
+    float bearing(int e) {
+        return graph.bearing(e);
+    }
+
+    @Override
+    CompactGraph reversed() {
+        return graph.reversed().byTime();
+    }
+
+    /** The view shares the arrays of the underlying graph. */
+    @Override
+    long sizeInBytes() {
+        return 0;
+    }
+}
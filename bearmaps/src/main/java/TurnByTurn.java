@@ -0,0 +1,136 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The navigation directions of a route, generated one at a time in a single pass over it.
+ *
+ * Consecutive segments on ways with the same name, as told by their <code>WayTable</code> name
+ * references, are merged into one direction, whose distance is the sum of theirs. A direction
+ * after the first is the turn from the bearing of the last segment before it to the bearing of
+ * its own first segment. Each step only looks at the next vertex of the route and the edges out
+ * of the current one, and reads the length and bearing precomputed for the edge it takes, so a
+ * route takes time linear in its length, with no trigonometry, and allocates nothing but the
+ * directions handed out.
+ */
+class TurnByTurn implements Iterator<Router.NavigationDirection> {
+    /** Largest change of bearing, either way, that is still going straight. */
+    private static final double STRAIGHT = 15;
+    /** Largest change of bearing, either way, that is a slight turn. */
+    private static final double SLIGHT = 30;
+    /** Largest change of bearing, either way, that is a plain turn rather than a sharp one. */
+    private static final double TURN = 100;
+
+    private final CompactGraph graph;
+    private final WayTable ways;
+    private final List<Long> route;
+    /** The route as an array of IDs, if it is one, to read it without boxing. */
+    private final VertexList vertices;
+    /** Position in the route of the first vertex of the next direction. */
+    private int at;
+    /** The vertices at positions <code>at</code> and <code>at + 1</code>. */
+    private int vertex, target;
+    /** The edge from <code>vertex</code> to <code>target</code>. */
+    private int edge;
+    /** Bearing of the last segment of the previous direction. */
+    private double bearing;
+
+    /**
+     * Returns the directions of <code>route</code>, a path of vertex IDs in <code>g</code>.
+     * @throws IllegalArgumentException if the route has an ID that is not a vertex, or two
+     * consecutive vertices without an edge between them.
+     */
+    TurnByTurn(GraphDB g, List<Long> route) {
+        this.graph = g.compact();
+        this.ways = g.ways();
+        this.route = route;
+        this.vertices = route instanceof VertexList ? (VertexList) route : null;
+        if (route.size() > 1) {
+            vertex = vertex(0);
+            target = vertex(1);
+            edge = edge(vertex, target);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return at + 1 < route.size();
+    }
+
+    @Override
+    public Router.NavigationDirection next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Router.NavigationDirection direction = new Router.NavigationDirection();
+        direction.direction = at == 0 ? Router.NavigationDirection.START
+                : turn(bearing, graph.bearing(edge));
+        int name = ways.nameRef(edge);
+        direction.way = ways.name(name);
+        while (true) {
+            direction.distance += graph.weight(edge);
+            int previous = edge;
+            vertex = target;
+            at += 1;
+            if (!hasNext()) {
+                break;
+            }
+            target = vertex(at + 1);
+            edge = edge(vertex, target);
+            if (ways.nameRef(edge) != name) {
+                bearing = graph.bearing(previous);
+                break;
+            }
+        }
+        return direction;
+    }
+
+    /**
+     * Returns the direction of a turn from bearing <code>from</code> to bearing <code>to</code>,
+     * both in degrees clockwise from north.
+     */
+    static int turn(double from, double to) {
+        double relative = to - from;
+        if (relative > 180) {
+            relative -= 360;
+        } else if (relative < -180) {
+            relative += 360;
+        }
+        double angle = Math.abs(relative);
+        boolean left = relative < 0;
+        if (angle <= STRAIGHT) {
+            return Router.NavigationDirection.STRAIGHT;
+        } else if (angle <= SLIGHT) {
+            return left ? Router.NavigationDirection.SLIGHT_LEFT
+                    : Router.NavigationDirection.SLIGHT_RIGHT;
+        } else if (angle <= TURN) {
+            return left ? Router.NavigationDirection.LEFT : Router.NavigationDirection.RIGHT;
+        }
+        return left ? Router.NavigationDirection.SHARP_LEFT
+                : Router.NavigationDirection.SHARP_RIGHT;
+    }
+
+    /** Returns the vertex at position <code>i</code> of the route. */
+    private int vertex(int i) {
+        long id = vertices != null ? vertices.vertex(i) : route.get(i);
+        int v = graph.index(id);
+        if (v < 0) {
+            throw new IllegalArgumentException("Not a vertex: " + id);
+        }
+        return v;
+    }
+
+    /**
+     * Returns the edge from <code>v</code> to <code>w</code>. A node keeps all its edges when
+     * its junction is split, so the edge is found among those of the node itself, into
+     * <code>w</code> or one of its copies.
+     */
+    private int edge(int v, int w) {
+        for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+            if (graph.original(graph.target(e)) == w) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("Not an edge: " + graph.id(v) + " -> " + graph.id(w));
+    }
+}
@@ -0,0 +1,80 @@
+import java.nio.DoubleBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * The vertices of a <code>CompactGraph</code> as points on the unit sphere, for a lower bound
+ * on great-circle distance that costs a square root instead of the trigonometric calls of
+ * <code>GraphDB.haversine</code>.
+ *
+ * The bound is the chord: two points at central angle <code>a</code> are
+ * <code>2R sin(a / 2)</code> apart in a straight line, which is never more than the arc
+ * <code>Ra</code>. Since the chord is a Euclidean distance it obeys the triangle inequality, so
+ * a heuristic built on it is consistent as well as admissible. Edge weights are arcs rounded to
+ * <code>float</code>, which can lose up to 2^-24 of their length, and the unit vectors carry
+ * <code>double</code> rounding error, so the chord is shrunk by a relative and an absolute
+ * slack that cover both. Over the few miles of a city route the chord is within a millionth of
+ * the arc, so it guides a search as well as the great-circle distance does.
+ *
+ * The coordinates are computed once, when a graph is built, and saved in its snapshot, so a
+ * mapped graph reads them in place like its other arrays.
+ */
+class UnitVectors {
+    /** Relative slack, above the rounding of edge weights to float. */
+    private static final double RELATIVE_SLACK = 1e-7;
+    /** Absolute slack in miles, above the rounding error of the chord itself. */
+    private static final double ABSOLUTE_SLACK = 1e-9;
+    private static final double MILES = GraphDB.R * (1 - RELATIVE_SLACK);
+
+    /** The coordinates of each vertex, three in a row, so one cache line holds all of them. */
+    private final DoubleBuffer xyz;
+
+    /** Wraps the coordinates of every vertex, as <code>compute</code> returns them. */
+    UnitVectors(DoubleBuffer xyz) {
+        this.xyz = xyz;
+    }
+
+    /**
+     * Returns the coordinates of every vertex of <code>graph</code> on the unit sphere, three in
+     * a row, the copies of restricted junctions included.
+     */
+    static double[] compute(CompactGraph graph) {
+        int n = graph.size();
+        double[] xyz = new double[3 * n];
+        IntStream.range(0, n).parallel().forEach(v ->
+                point(graph.lat(v), graph.lon(v), xyz, 3 * v));
+        return xyz;
+    }
+
+    /** Stores the point at a latitude and longitude in degrees at <code>xyz[at..at+2]</code>. */
+    static void point(double lat, double lon, double[] xyz, int at) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        xyz[at] = Math.cos(phi) * Math.cos(lambda);
+        xyz[at + 1] = Math.cos(phi) * Math.sin(lambda);
+        xyz[at + 2] = Math.sin(phi);
+    }
+
+    double x(int v) {
+        return xyz.get(3 * v);
+    }
+
+    double y(int v) {
+        return xyz.get(3 * v + 1);
+    }
+
+    double z(int v) {
+        return xyz.get(3 * v + 2);
+    }
+
+    /**
+     * Returns a lower bound in miles on the great-circle distance from vertex <code>v</code> to
+     * the point <code>(x, y, z)</code> on the unit sphere, and so on the weight of any path
+     * between them in a graph weighted by distance.
+     */
+    double lowerBound(int v, double x, double y, double z) {
+        double dx = xyz.get(3 * v) - x;
+        double dy = xyz.get(3 * v + 1) - y;
+        double dz = xyz.get(3 * v + 2) - z;
+        return Math.max(0.0, Math.sqrt(dx * dx + dy * dy + dz * dz) * MILES - ABSOLUTE_SLACK);
+    }
+}
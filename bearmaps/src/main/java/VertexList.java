@@ -0,0 +1,39 @@
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list view of an array of vertex IDs, so that routes can be kept as compact
+ * arrays and still be handed out as the <code>List&lt;Long&gt;</code> the rest of the server uses.
+ */
+class VertexList extends AbstractList<Long> implements RandomAccess {
+    private final long[] vertices;
+
+    VertexList(long[] vertices) {
+        this.vertices = vertices;
+    }
+
+    /** Returns the vertex IDs of <code>route</code> as an array. */
+    static long[] toArray(List<Long> route) {
+        long[] vertices = new long[route.size()];
+        for (int i = 0; i < vertices.length; i += 1) {
+            vertices[i] = route.get(i);
+        }
+        return vertices;
+    }
+
+    /** Returns the vertex ID at <code>index</code>, without boxing it. */
+    long vertex(int index) {
+        return vertices[index];
+    }
+
+    @Override
+    public Long get(int index) {
+        return vertices[index];
+    }
+
+    @Override
+    public int size() {
+        return vertices.length;
+    }
+}
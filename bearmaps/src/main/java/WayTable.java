@@ -0,0 +1,174 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The OSM way of each edge of a <code>CompactGraph</code>, and the name of each way, for
+ * turn-by-turn directions.
+ *
+ * Every edge holds the index of its way, in an array parallel to the graph's edge arrays; an
+ * edge joined by several ways has the one whose speed it took. Every way holds its OSM ID and a
+ * reference into a table of distinct names, so the many ways that make up one street share one
+ * string, and two edges are on the same street exactly when their name references are equal.
+ * Reference 0 is the empty name of unnamed ways. Routing never reads the table, so it is kept
+ * out of the graph and saved next to the OSM file like the <code>LocationIndex</code>.
+ */
+class WayTable {
+    /** Suffix appended to the OSM file path to name its saved table. */
+    static final String SUFFIX = ".ways";
+    private static final int MAGIC = 0x424d5754; // "BMWT"
+    private static final int VERSION = 1;
+
+    /** The way of each edge, or -1 if it has none. */
+    private final int[] edgeWays;
+    private final long[] wayIds;
+    /** The name reference of each way. */
+    private final int[] wayNames;
+    /** The distinct names, the empty name first. */
+    private final String[] names;
+
+    private WayTable(int[] edgeWays, long[] wayIds, int[] wayNames, String[] names) {
+        this.edgeWays = edgeWays;
+        this.wayIds = wayIds;
+        this.wayNames = wayNames;
+        this.names = names;
+    }
+
+    /**
+     * Returns the table for a graph whose edge <code>e</code> is on way
+     * <code>edgeWays[e]</code>, interning the way names.
+     * @param edgeWays The way of each edge, or -1 for an edge with none.
+     * @param wayIds The OSM ID of each way.
+     * @param wayNames The name of each way, or <code>null</code> if it has none.
+     */
+    static WayTable build(int[] edgeWays, long[] wayIds, String[] wayNames) {
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        refs.put("", 0);
+        names.add("");
+        int[] nameRefs = new int[wayNames.length];
+        for (int k = 0; k < wayNames.length; k += 1) {
+            String name = wayNames[k] == null ? "" : wayNames[k];
+            Integer ref = refs.get(name);
+            if (ref == null) {
+                ref = names.size();
+                refs.put(name, ref);
+                names.add(name);
+            }
+            nameRefs[k] = ref;
+        }
+        return new WayTable(edgeWays, wayIds, nameRefs, names.toArray(new String[0]));
+    }
+
+    /** Returns a table for a graph with no edges. */
+    static WayTable empty() {
+        return build(new int[0], new long[0], new String[0]);
+    }
+
+    /** Returns the number of edges of the graph this table describes. */
+    int edgeCount() {
+        return edgeWays.length;
+    }
+
+    /** Returns the number of ways. */
+    int wayCount() {
+        return wayIds.length;
+    }
+
+    /** Returns the way of edge <code>e</code>, or -1 if it has none. */
+    int way(int e) {
+        return edgeWays[e];
+    }
+
+    /** Returns the OSM ID of <code>way</code>. */
+    long wayId(int way) {
+        return wayIds[way];
+    }
+
+    /** Returns the name reference of the way of edge <code>e</code>, or 0 if it has none. */
+    int nameRef(int e) {
+        int way = edgeWays[e];
+        return way < 0 ? 0 : wayNames[way];
+    }
+
+    /** Returns the name with reference <code>ref</code>. */
+    String name(int ref) {
+        return names[ref];
+    }
+
+    /** Returns the file that holds the saved table of the OSM file at <code>source</code>. */
+    static File of(File source) {
+        return new File(source.getPath() + SUFFIX);
+    }
+
+    /**
+     * Saves this table next to the OSM file it was read from.
+     * @throws IOException if the file cannot be written.
+     */
+    void save(File source) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(of(source))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.length());
+            out.writeInt(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.writeInt(wayIds.length);
+            for (int k = 0; k < wayIds.length; k += 1) {
+                out.writeLong(wayIds[k]);
+                out.writeInt(wayNames[k]);
+            }
+            out.writeInt(edgeWays.length);
+            for (int way : edgeWays) {
+                out.writeInt(way);
+            }
+        }
+    }
+
+    /**
+     * Loads the table saved next to the OSM file at <code>source</code>. The caller checks that
+     * it has as many edges as the graph it is used with.
+     * @return The table, or <code>null</code> if there is none, it is older than the OSM file,
+     * was built from a file of another length, or has another format version.
+     * @throws IOException if the file exists but cannot be read.
+     */
+    static WayTable load(File source) throws IOException {
+        File file = of(source);
+        if (!file.isFile() || !source.isFile() || file.lastModified() < source.lastModified()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != source.length()) {
+                return null;
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i += 1) {
+                names[i] = in.readUTF();
+            }
+            long[] wayIds = new long[in.readInt()];
+            int[] wayNames = new int[wayIds.length];
+            for (int k = 0; k < wayIds.length; k += 1) {
+                wayIds[k] = in.readLong();
+                wayNames[k] = in.readInt();
+            }
+            int[] edgeWays = new int[in.readInt()];
+            for (int e = 0; e < edgeWays.length; e += 1) {
+                edgeWays[e] = in.readInt();
+            }
+            return new WayTable(edgeWays, wayIds, wayNames, names);
+        }
+    }
+}
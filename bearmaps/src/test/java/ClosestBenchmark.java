@@ -0,0 +1,58 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the latency of <code>GraphDB.closest</code> against a linear scan over all vertices for
+ * random query points in the map bounds, reporting p50 and p99 per query. This is not a unit test;
+ * run its main method with an optional OSM file path and number of queries.
+ */
+public class ClosestBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_QUERIES = 100000;
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numQueries = args.length > 1 ? Integer.parseInt(args[1]) : NUM_QUERIES;
+        GraphDB graph = new GraphDB(dbPath);
+
+        Random random = new Random(61);
+        double[] lons = new double[numQueries];
+        double[] lats = new double[numQueries];
+        for (int i = 0; i < numQueries; i += 1) {
+            lons[i] = MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA;
+            lats[i] = MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA;
+        }
+
+        long[] treeAnswers = new long[numQueries];
+        long[] scanAnswers = new long[numQueries];
+        long[] treeNanos = new long[numQueries];
+        long[] scanNanos = new long[numQueries];
+        for (int i = 0; i < numQueries; i += 1) {
+            long start = System.nanoTime();
+            treeAnswers[i] = graph.closest(lons[i], lats[i]);
+            treeNanos[i] = System.nanoTime() - start;
+        }
+        for (int i = 0; i < numQueries; i += 1) {
+            long start = System.nanoTime();
+            scanAnswers[i] = graph.closestByScan(lons[i], lats[i]);
+            scanNanos[i] = System.nanoTime() - start;
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < numQueries; i += 1) {
+            if (treeAnswers[i] != scanAnswers[i]) {
+                mismatches += 1;
+            }
+        }
+        report("k-d tree", treeNanos);
+        report("scan", scanNanos);
+        System.out.println(String.format("%d of %d answers differ", mismatches, numQueries));
+    }
+
+    private static void report(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.println(String.format("%-8s p50 %8.2f us  p99 %8.2f us", name,
+                sorted[sorted.length / 2] / 1e3, sorted[(int) (sorted.length * 0.99)] / 1e3));
+    }
+}
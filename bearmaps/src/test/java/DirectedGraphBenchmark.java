@@ -0,0 +1,127 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures what one-way streets and turn restrictions cost. Reads an OSM file into the directed
+ * graph, with its restricted junctions split, and derives the undirected baseline from it: the
+ * same nodes, every edge in both directions, and no copies. Reports the size of both graphs,
+ * including the transpose the directed graph keeps for backward searches, the contraction
+ * hierarchy build times, and the p50 latency and mean settled vertices of each algorithm on the
+ * same random queries. This is not a unit test; run its main method with an optional OSM file
+ * path and number of queries.
+ */
+public class DirectedGraphBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_QUERIES = 1000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numQueries = args.length > 1 ? Integer.parseInt(args[1]) : NUM_QUERIES;
+        long start = System.nanoTime();
+        CompactGraph directed = OsmIngest.read(new File(dbPath));
+        System.out.println(String.format("ingest: %.1f s", (System.nanoTime() - start) / 1e9));
+        CompactGraph undirected = undirected(directed);
+        long transpose = directed.reversed() == directed ? 0 : directed.reversed().sizeInBytes();
+        System.out.println(String.format("directed:   %d nodes, %d copies, %d edges, %.1f MB"
+                        + " + %.1f MB transpose", directed.nodeCount(),
+                directed.size() - directed.nodeCount(), directed.edgeCount(),
+                directed.sizeInBytes() / 1e6, transpose / 1e6));
+        System.out.println(String.format("undirected: %d nodes, %d edges, %.1f MB",
+                undirected.size(), undirected.edgeCount(), undirected.sizeInBytes() / 1e6));
+
+        Random random = new Random(61);
+        int[][] queries = new int[numQueries][];
+        for (int i = 0; i < numQueries; i += 1) {
+            queries[i] = new int[]{random.nextInt(directed.nodeCount()),
+                random.nextInt(directed.nodeCount())};
+        }
+        run("undirected", undirected, queries);
+        run("directed", directed, queries);
+    }
+
+    private static void run(String name, CompactGraph graph, int[][] queries) {
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        System.out.println(String.format("%s: contraction hierarchy %.1f s, %d shortcuts", name,
+                (System.nanoTime() - start) / 1e9, hierarchy.shortcutCount()));
+        report("A*", queries, (s, t, trace) -> AStar.shortestPath(graph, s, t, trace));
+        report("bidirectional", queries,
+            (s, t, trace) -> BidirectionalAStar.shortestPath(graph, s, t, trace));
+        report("CH", queries, hierarchy::shortestPath);
+    }
+
+    private static void report(String algorithm, int[][] queries, Search search) {
+        long settled = 0;
+        int unreachable = 0;
+        for (int[] q : queries) {
+            SearchTrace trace = new SearchTrace(0);
+            unreachable += search.run(q[0], q[1], trace).isEmpty() ? 1 : 0;
+            settled += trace.expansions();
+        }
+        for (int round = 0; round < WARMUP_ROUNDS; round += 1) {
+            for (int[] q : queries) {
+                search.run(q[0], q[1], null);
+            }
+        }
+        long[] nanos = new long[queries.length];
+        for (int i = 0; i < queries.length; i += 1) {
+            long start = System.nanoTime();
+            search.run(queries[i][0], queries[i][1], null);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.println(String.format("  %-14s settled %9.1f  p50 %8.3f ms  p99 %8.3f ms"
+                        + "  unreachable %d", algorithm, (double) settled / queries.length,
+                nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6,
+                unreachable));
+    }
+
+    /** Returns the graph with every edge in both directions and the copies merged back. */
+    private static CompactGraph undirected(CompactGraph graph) {
+        int n = graph.nodeCount();
+        long[] keys = new long[2 * graph.edgeCount()];
+        int size = 0;
+        for (int v = 0; v < graph.size(); v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int a = graph.original(v);
+                int b = graph.original(graph.target(e));
+                keys[size] = (long) a << 32 | b;
+                keys[size + 1] = (long) b << 32 | a;
+                size += 2;
+            }
+        }
+        keys = Arrays.stream(keys, 0, size).sorted().distinct().toArray();
+        long[] ids = new long[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int v = 0; v < n; v += 1) {
+            ids[v] = graph.id(v);
+            lats[v] = graph.lat(v);
+            lons[v] = graph.lon(v);
+        }
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[keys.length];
+        float[] weights = new float[keys.length];
+        float[] times = new float[keys.length];
+        for (int e = 0; e < keys.length; e += 1) {
+            int v = (int) (keys[e] >>> 32);
+            int w = (int) keys[e];
+            offsets[v + 1] += 1;
+            targets[e] = w;
+            weights[e] = (float) GraphDB.haversine(lats[v], lons[v], lats[w], lons[w]);
+            times[e] = weights[e] * 3600 / OsmIngest.DEFAULT_SPEEDS.get("residential");
+        }
+        for (int v = 0; v < n; v += 1) {
+            offsets[v + 1] += offsets[v];
+        }
+        return new ArrayGraph(ids, lats, lons, new int[0], offsets, targets, weights, times,
+                true);
+    }
+
+    private interface Search {
+        List<Long> run(int source, int target, SearchTrace trace);
+    }
+}
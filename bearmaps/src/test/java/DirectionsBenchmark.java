@@ -0,0 +1,108 @@
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures turn-by-turn directions on very long routes. The routes are walks along the graph
+ * that mostly keep to the street they are on, from 10,000 vertices up, so the time per vertex
+ * shows whether generating directions is linear in the route, and the bytes allocated per
+ * direction whether allocation is bounded by the output. Both the list returned by
+ * <code>routeDirections</code> and the streaming iterator are measured. This is not a unit
+ * test; run its main method with an optional OSM file path.
+ */
+public class DirectionsBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int[] ROUTE_VERTICES = {10000, 20000, 40000, 80000, 160000};
+    /** Chance that a walk stays on its street where it can. */
+    private static final double KEEP_STREET = 0.9;
+    /** Vertices walked per length, in total, so that every length gets comparable time. */
+    private static final long VERTICES_PER_LENGTH = 20000000;
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        GraphDB graph = new GraphDB(dbPath);
+        Random random = new Random(23);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int vertices : ROUTE_VERTICES) {
+            List<Long> route = walk(graph, vertices, random);
+            int rounds = (int) (VERTICES_PER_LENGTH / vertices);
+            int count = Router.routeDirections(graph, route).size();
+            /* The first half of the rounds warm up the JIT and are not counted. */
+            long listNanos = 0, listBytes = 0, streamNanos = 0, streamBytes = 0;
+            for (int round = 0; round < 2 * rounds; round += 1) {
+                long allocated = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                int size = Router.routeDirections(graph, route).size();
+                long listed = System.nanoTime();
+                long listAllocated = threads.getThreadAllocatedBytes(threadId);
+                Iterator<Router.NavigationDirection> directions = Router.directions(graph, route);
+                while (directions.hasNext()) {
+                    size -= directions.next().distance > 0 ? 1 : 0;
+                }
+                long streamed = System.nanoTime();
+                long streamAllocated = threads.getThreadAllocatedBytes(threadId);
+                if (round >= rounds) {
+                    listNanos += listed - start;
+                    listBytes += listAllocated - allocated;
+                    streamNanos += streamed - listed;
+                    streamBytes += streamAllocated - listAllocated;
+                }
+                if (size != 0) {
+                    throw new AssertionError("The list and the stream disagree");
+                }
+            }
+            System.out.println(String.format("%7d vertices, %6d directions:  list %7.3f ms"
+                            + " %5.1f ns/vertex %6.1f B/direction   stream %7.3f ms %5.1f"
+                            + " ns/vertex %6.1f B/direction", vertices, count,
+                    listNanos / 1e6 / rounds, (double) listNanos / rounds / vertices,
+                    (double) listBytes / rounds / count, streamNanos / 1e6 / rounds,
+                    (double) streamNanos / rounds / vertices,
+                    (double) streamBytes / rounds / count));
+        }
+    }
+
+    /**
+     * Returns a walk of <code>length</code> vertices that does not turn back unless it reaches a
+     * dead end, and stays on its street with chance <code>KEEP_STREET</code> where it can.
+     */
+    static List<Long> walk(GraphDB graph, int length, Random random) {
+        CompactGraph compact = graph.compact();
+        WayTable ways = graph.ways();
+        long[] ids = new long[length];
+        int v = random.nextInt(compact.size());
+        int previous = -1;
+        int street = -1;
+        for (int i = 0; i < length; i += 1) {
+            ids[i] = compact.id(v);
+            int degree = compact.edgeEnd(v) - compact.edgeStart(v);
+            if (degree == 0) {
+                v = random.nextInt(compact.size());
+                previous = -1;
+                i = -1;
+                continue;
+            }
+            int next = -1;
+            for (int e = compact.edgeStart(v); e < compact.edgeEnd(v); e += 1) {
+                int w = compact.target(e);
+                if (compact.original(w) != previous && ways.nameRef(e) == street
+                        && random.nextDouble() < KEEP_STREET) {
+                    next = e;
+                }
+            }
+            for (int tries = 0; next < 0 && tries < 2 * degree; tries += 1) {
+                int e = compact.edgeStart(v) + random.nextInt(degree);
+                next = compact.original(compact.target(e)) != previous ? e : -1;
+            }
+            if (next < 0) {
+                next = compact.edgeStart(v) + random.nextInt(degree);
+            }
+            previous = compact.original(v);
+            street = ways.nameRef(next);
+            v = compact.target(next);
+        }
+        return new VertexList(ids);
+    }
+}
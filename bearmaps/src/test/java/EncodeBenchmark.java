@@ -0,0 +1,124 @@
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the cost of turning rendered rasters into <code>/raster</code> responses: the time to
+ * encode each response, the bytes allocated on the heap while doing so, and the response size.
+ * Compares the old path, which encoded with <code>ImageIO</code>, Base64-encoded into a
+ * <code>String</code> and serialized that with Gson, against the streamed JSON and binary
+ * responses at several deflate levels. Rasters come from the raster_params.txt queries and from
+ * random 2560x1440 viewports at the deepest level. This is not a unit test; run its main method
+ * with an optional tile directory; without tiles, synthetic ones are generated.
+ */
+public class EncodeBenchmark {
+    private static final String IMG_ROOT = "../library-su18/bearmaps/img/";
+    private static final int NUM_LARGE_GRIDS = 20;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        String root = args.length > 0 ? args[0] : IMG_ROOT;
+        Rasterer rasterer = new Rasterer();
+        List<RasterResultParams> requests = new ArrayList<>();
+        for (RasterRequestParams q : RasterBenchmark.paramsFromFile()) {
+            requests.add(rasterer.getMapRaster(q));
+        }
+        requests.addAll(RasterBenchmark.largeGrids(rasterer, new Random(61))
+                .subList(0, NUM_LARGE_GRIDS));
+        if (!new File(root).isDirectory()) {
+            root = RasterBenchmark.syntheticTiles(requests);
+        }
+        TileCache tiles = new TileCache(root, 256L << 20);
+        Map<RasterResultParams, BufferedImage> images = new HashMap<>();
+        long pixels = 0;
+        for (RasterResultParams request : requests) {
+            BufferedImage image = MosaicCache.compose(request.renderGrid, tiles);
+            images.put(request, image);
+            pixels += (long) image.getWidth() * image.getHeight();
+        }
+        System.out.println(String.format("%d rasters, %.1f megapixels on average",
+                requests.size(), pixels / 1e6 / requests.size()));
+
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+        Encoding imageIo = (request, image, out) -> {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", os);
+            Map<String, Object> response = new HashMap<>();
+            response.put("render_grid", request.renderGrid);
+            response.put("b64_encoded_image_data",
+                    Base64.getEncoder().encodeToString(os.toByteArray()));
+            out.write(gson.toJson(response).getBytes(StandardCharsets.UTF_8));
+        };
+        run("ImageIO + Base64 string + Gson", imageIo, requests, images);
+        for (int level : new int[]{1, 4, 6, 9}) {
+            run("streamed JSON, level " + level, (request, image, out) ->
+                    MapServer.writeRasterJson(gson, request, image, level, out), requests, images);
+            run("binary PNG, level " + level, (request, image, out) ->
+                    PngEncoder.write(image, out, level), requests, images);
+        }
+    }
+
+    private static void run(String label, Encoding encoding, List<RasterResultParams> requests,
+                            Map<RasterResultParams, BufferedImage> images) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        /* The first round warms up the JIT and is not counted. */
+        long nanos = 0, allocated = 0;
+        CountingStream out = new CountingStream();
+        for (int round = 0; round <= ROUNDS; round += 1) {
+            out.count = 0;
+            for (RasterResultParams request : requests) {
+                long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                encoding.encode(request, images.get(request), out);
+                if (round > 0) {
+                    nanos += System.nanoTime() - start;
+                    allocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                }
+            }
+        }
+        int count = ROUNDS * requests.size();
+        System.out.println(String.format("  %-30s %7.1f ms/request  %7.2f MB allocated/request"
+                        + "  %6.0f KB/response", label, nanos / 1e6 / count,
+                allocated / 1e6 / count, out.count / 1e3 / requests.size()));
+    }
+
+    /** Writes the response for one rendered raster. */
+    private interface Encoding {
+        void encode(RasterResultParams request, BufferedImage image, OutputStream out)
+                throws IOException;
+    }
+
+    /** Discards what is written to it, counting the bytes, in place of the network. */
+    private static class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the cold-start time of a <code>GraphDB</code> from XML and from its snapshot, the
+ * retained heap of the built graph and the throughput of
+ * <code>Router.shortestPath</code> between random vertices. This is not a unit test; run its main
+ * method with an optional OSM file path and number of routes.
+ */
+public class GraphDBBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_ROUTES = 500;
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numRoutes = args.length > 1 ? Integer.parseInt(args[1]) : NUM_ROUTES;
+
+        GraphSnapshot.of(new File(dbPath)).delete();
+        long parseStart = System.nanoTime();
+        new GraphDB(dbPath);
+        long parseNanos = System.nanoTime() - parseStart;
+
+        long heapBefore = usedHeap();
+        long buildStart = System.nanoTime();
+        GraphDB graph = new GraphDB(dbPath);
+        long buildNanos = System.nanoTime() - buildStart;
+        long heapAfter = usedHeap();
+        System.out.println(String.format("Parsed XML and wrote snapshot in %.1f ms,"
+                + " loaded snapshot (%.2f MB) in %.1f ms", parseNanos / 1e6,
+                GraphSnapshot.of(new File(dbPath)).length() / (1024.0 * 1024.0),
+                buildNanos / 1e6));
+
+        List<Long> vertices = new ArrayList<>();
+        for (long v : graph.vertices()) {
+            vertices.add(v);
+        }
+        System.out.println(String.format("Built %d vertices in %.1f ms, retained heap %.2f MB",
+                vertices.size(), buildNanos / 1e6, (heapAfter - heapBefore) / (1024.0 * 1024.0)));
+
+        Random random = new Random(61);
+        double[][] queries = new double[numRoutes][];
+        for (int i = 0; i < numRoutes; i += 1) {
+            long s = vertices.get(random.nextInt(vertices.size()));
+            long t = vertices.get(random.nextInt(vertices.size()));
+            queries[i] = new double[]{graph.lon(s), graph.lat(s), graph.lon(t), graph.lat(t)};
+        }
+        /* Warm up the JIT before timing. */
+        for (int i = 0; i < Math.min(numRoutes, 50); i += 1) {
+            route(graph, queries[i]);
+        }
+        long pathVertices = 0;
+        long start = System.nanoTime();
+        for (double[] q : queries) {
+            pathVertices += route(graph, q).size();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Routed %d queries in %.3f s: %.1f routes/s"
+                + " (%d path vertices)", numRoutes, seconds, numRoutes / seconds, pathVertices));
+    }
+
+    private static List<Long> route(GraphDB graph, double[] q) {
+        return Router.shortestPath(graph, q[0], q[1], q[2], q[3]);
+    }
+
+    /** Returns the used heap in bytes after encouraging the collector to run. */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
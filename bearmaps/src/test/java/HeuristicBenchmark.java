@@ -0,0 +1,114 @@
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Measures the A* inner loop with the chord heuristic of <code>UnitVectors</code> against the
+ * great-circle heuristic it replaced, which called <code>GraphDB.haversine</code> on every push.
+ * Reports the time of one heuristic evaluation of each kind, then runs the same random queries
+ * through <code>AStar</code> and through a copy of its loop that uses the haversine heuristic,
+ * reporting edge relaxations per second and the mean settled vertices. This is not a unit test;
+ * run its main method with an optional OSM file path and number of queries.
+ */
+public class HeuristicBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_QUERIES = 1000;
+    private static final int NUM_EVALUATIONS = 10000000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numQueries = args.length > 1 ? Integer.parseInt(args[1]) : NUM_QUERIES;
+        CompactGraph graph = OsmIngest.read(new File(dbPath));
+        UnitVectors points = graph.unitVectors();
+        Random random = new Random(29);
+
+        int[] vertices = new int[1 << 16];
+        for (int i = 0; i < vertices.length; i += 1) {
+            vertices[i] = random.nextInt(graph.size());
+        }
+        int target = random.nextInt(graph.size());
+        for (int round = 0; round < ROUNDS; round += 1) {
+            double lat = graph.lat(target), lon = graph.lon(target);
+            double x = points.x(target), y = points.y(target), z = points.z(target);
+            double sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < NUM_EVALUATIONS; i += 1) {
+                int v = vertices[i & (vertices.length - 1)];
+                sum += GraphDB.haversine(graph.lat(v), graph.lon(v), lat, lon);
+            }
+            long haversine = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < NUM_EVALUATIONS; i += 1) {
+                sum -= points.lowerBound(vertices[i & (vertices.length - 1)], x, y, z);
+            }
+            long chord = System.nanoTime() - start;
+            if (round == ROUNDS - 1) {
+                System.out.println(String.format("heuristic: haversine %.1f ns, chord %.1f ns,"
+                                + " mean gap %.2e miles", (double) haversine / NUM_EVALUATIONS,
+                        (double) chord / NUM_EVALUATIONS, sum / NUM_EVALUATIONS));
+            }
+        }
+
+        int[][] queries = new int[numQueries][];
+        for (int i = 0; i < numQueries; i += 1) {
+            queries[i] = new int[]{random.nextInt(graph.size()), random.nextInt(graph.size())};
+        }
+        for (int round = 0; round < ROUNDS; round += 1) {
+            boolean last = round == ROUNDS - 1;
+            run(graph, queries, false, last);
+            run(graph, queries, true, last);
+        }
+    }
+
+    private static void run(CompactGraph graph, int[][] queries, boolean chord, boolean report) {
+        long relaxed = 0, settled = 0;
+        long start = System.nanoTime();
+        for (int[] q : queries) {
+            SearchState state = SearchState.forGraph(graph);
+            if (chord) {
+                AStar.search(state, q[0], q[1], null, null);
+            } else {
+                haversineSearch(state, q[0], q[1]);
+            }
+            relaxed += state.relaxed;
+            settled += state.settled;
+        }
+        long nanos = System.nanoTime() - start;
+        if (report) {
+            System.out.println(String.format("A* %-9s %6.2f M relaxations/s, %6.3f ms/query,"
+                            + " %.1f settled", chord ? "chord" : "haversine",
+                    relaxed * 1e3 / nanos, nanos / 1e6 / queries.length,
+                    (double) settled / queries.length));
+        }
+    }
+
+    /** The A* loop of <code>AStar.search</code> with the great-circle heuristic. */
+    private static int haversineSearch(SearchState state, int source, int target) {
+        CompactGraph graph = state.graph;
+        IndexedMinHeap heap = state.heap;
+        double targetLat = graph.lat(target);
+        double targetLon = graph.lon(target);
+        state.reach(source, 0.0, -1);
+        heap.push(source, GraphDB.haversine(graph.lat(source), graph.lon(source), targetLat,
+                targetLon));
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            state.settled += 1;
+            double dv = state.dist(v);
+            if (graph.original(v) == target) {
+                return v;
+            }
+            state.relaxed += graph.edgeEnd(v) - graph.edgeStart(v);
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                double dw = dv + graph.weight(e);
+                if (dw < state.dist(w)) {
+                    state.reach(w, dw, v);
+                    heap.push(w, dw + GraphDB.haversine(graph.lat(w), graph.lon(w), targetLat,
+                            targetLon));
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures isochrones of several sizes from random points on the map. For each bound, reports the
+ * mean number of reached vertices and the p50/p99 latency of the bounded search, and of a whole
+ * <code>/isochrone</code> response including the boundary polygon. This is not a unit test; run
+ * its main method with an optional OSM file path and number of points.
+ */
+public class IsochroneBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_POINTS = 200;
+    private static final double[] BOUNDS = {0.25, 0.5, 1.0, 2.0};
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numPoints = args.length > 1 ? Integer.parseInt(args[1]) : NUM_POINTS;
+        GraphDB graph = new GraphDB(dbPath);
+        CompactGraph compact = graph.compact();
+        Random random = new Random(61);
+        int[] sources = new int[numPoints];
+        for (int i = 0; i < numPoints; i += 1) {
+            sources[i] = graph.closestIndex(
+                    MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA,
+                    MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA);
+        }
+        System.out.println(String.format("%d points on %d vertices", numPoints, compact.size()));
+        for (double bound : BOUNDS) {
+            for (int round = 0; round < WARMUP_ROUNDS; round += 1) {
+                for (int source : sources) {
+                    Isochrone.compute(compact, source, bound).boundary();
+                }
+            }
+            long reached = 0;
+            long[] searchNanos = new long[numPoints];
+            long[] totalNanos = new long[numPoints];
+            for (int i = 0; i < numPoints; i += 1) {
+                long start = System.nanoTime();
+                Isochrone isochrone = Isochrone.compute(compact, sources[i], bound);
+                searchNanos[i] = System.nanoTime() - start;
+                new IsochroneResultParams(isochrone, Router.Metric.DISTANCE, false);
+                totalNanos[i] = System.nanoTime() - start;
+                reached += isochrone.size();
+            }
+            Arrays.sort(searchNanos);
+            Arrays.sort(totalNanos);
+            System.out.println(String.format("  %4.2f mi  reached %8.1f  search p50 %7.3f ms"
+                            + "  p99 %7.3f ms  with boundary p50 %7.3f ms  p99 %7.3f ms", bound,
+                    (double) reached / numPoints, searchNanos[numPoints / 2] / 1e6,
+                    searchNanos[(int) (numPoints * 0.99)] / 1e6, totalNanos[numPoints / 2] / 1e6,
+                    totalNanos[(int) (numPoints * 0.99)] / 1e6));
+        }
+    }
+}
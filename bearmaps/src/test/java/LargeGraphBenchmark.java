@@ -0,0 +1,85 @@
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Checks how heap use and garbage collection scale with the size of the graph in each
+ * <code>GraphDB.Storage</code> mode. Generates a <code>SyntheticGrid</code> of roughly the
+ * requested number of vertices straight into a snapshot file, without building it on the heap,
+ * then loads it with <code>GraphDB</code> and runs closest and routing queries over it, reporting
+ * load time, retained heap and collector activity. This is not a unit test; run its main method
+ * with the vertex count, the storage mode (heap or mapped) and an optional scratch directory, one
+ * JVM per mode so that the measurements do not mix.
+ */
+public class LargeGraphBenchmark {
+    private static final int NUM_CLOSEST = 100000;
+    private static final int NUM_ROUTES = 100;
+
+    public static void main(String[] args) throws Exception {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+        GraphDB.Storage storage = args.length > 1
+                ? GraphDB.Storage.valueOf(args[1].toUpperCase()) : GraphDB.Storage.MAPPED;
+        File dir = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+
+        long start = System.nanoTime();
+        File source = SyntheticGrid.source(dir, vertices);
+        System.out.println(String.format("Grid snapshot of %.1f MB ready in %.1f s",
+                GraphSnapshot.of(source).length() / 1e6, (System.nanoTime() - start) / 1e9));
+
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long heapBefore = GraphDBBenchmark.usedHeap();
+        start = System.nanoTime();
+        GraphDB graph = new GraphDB(source.getPath(), storage);
+        long loadNanos = System.nanoTime() - start;
+        long heapAfter = GraphDBBenchmark.usedHeap();
+        CompactGraph compact = graph.compact();
+        System.out.println(String.format("%s: %d vertices, %d edges loaded in %.1f ms,"
+                        + " retained heap %.1f MB (graph arrays %.1f MB)", storage,
+                compact.size(), compact.edgeCount(), loadNanos / 1e6,
+                (heapAfter - heapBefore) / 1e6, compact.sizeInBytes() / 1e6));
+
+        Random random = new Random(61);
+        double minLat = compact.lat(0), maxLat = compact.lat(compact.size() - 1);
+        double minLon = compact.lon(0), maxLon = compact.lon(compact.size() - 1);
+        start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < NUM_CLOSEST; i += 1) {
+            checksum += graph.closest(minLon + random.nextDouble() * (maxLon - minLon),
+                    minLat + random.nextDouble() * (maxLat - minLat));
+        }
+        System.out.println(String.format("  closest: %.2f us/query (checksum %d)",
+                (System.nanoTime() - start) / 1e3 / NUM_CLOSEST, checksum % 1000));
+
+        /* Routes span a tenth of the grid, so that A* stays fast on the largest graphs. */
+        start = System.nanoTime();
+        long pathVertices = 0;
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            double lat = minLat + random.nextDouble() * 0.9 * (maxLat - minLat);
+            double lon = minLon + random.nextDouble() * 0.9 * (maxLon - minLon);
+            pathVertices += Router.shortestPath(graph, lon, lat,
+                    lon + 0.1 * (maxLon - minLon), lat + 0.1 * (maxLat - minLat)).size();
+        }
+        System.out.println(String.format("  routes: %.2f ms/route (%d path vertices)",
+                (System.nanoTime() - start) / 1e6 / NUM_ROUTES, pathVertices));
+        System.out.println(String.format("  collections: %d taking %d ms in total",
+                gcCount() - gcCountBefore, gcMillis() - gcMillisBefore));
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures 100x100 distance matrices between random points on the map, computed three ways: one
+ * A* search per pair, as N x M calls to <code>/route</code> would, one parallel Dijkstra search
+ * per source, and the contraction hierarchy's bucket-based many-to-many search. Reports the mean
+ * and best time per matrix and the largest difference from the A* matrix. This is not a unit
+ * test; run its main method with an optional OSM file path and matrix size.
+ */
+public class MatrixBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int SIZE = 100;
+    private static final int ROUNDS = 5;
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : SIZE;
+        GraphDB graph = new GraphDB(dbPath);
+        CompactGraph compact = graph.compact();
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(compact);
+        System.out.println(String.format("contraction hierarchy: %.1f s",
+                (System.nanoTime() - start) / 1e9));
+
+        Random random = new Random(61);
+        int[] sources = points(graph, random, size);
+        int[] targets = points(graph, random, size);
+        System.out.println(String.format("%dx%d matrix on %d vertices", size, size,
+                compact.size()));
+
+        double[][] reference = run("A* per pair", 1, () -> aStar(compact, sources, targets),
+                null);
+        run("dijkstra", ROUNDS, () -> DistanceMatrix.dijkstra(compact, sources, targets),
+                reference);
+        run("ch buckets", ROUNDS, () -> hierarchy.distances(sources, targets), reference);
+    }
+
+    private interface Matrix {
+        double[][] compute();
+    }
+
+    private static double[][] run(String label, int rounds, Matrix matrix,
+                                  double[][] reference) {
+        double[][] result = null;
+        for (int round = 0; round < WARMUP_ROUNDS && rounds > 1; round += 1) {
+            matrix.compute();
+        }
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round += 1) {
+            long start = System.nanoTime();
+            result = matrix.compute();
+            long nanos = System.nanoTime() - start;
+            total += nanos;
+            best = Math.min(best, nanos);
+        }
+        String error = "";
+        if (reference != null) {
+            double maxError = 0;
+            for (int i = 0; i < result.length; i += 1) {
+                for (int j = 0; j < result[i].length; j += 1) {
+                    if (result[i][j] != reference[i][j]) {
+                        maxError = Math.max(maxError, Math.abs(result[i][j] - reference[i][j]));
+                    }
+                }
+            }
+            error = String.format("  max difference %.2e mi", maxError);
+        }
+        System.out.println(String.format("  %-12s mean %9.1f ms  best %9.1f ms%s", label,
+                total / 1e6 / rounds, best / 1e6, error));
+        return result;
+    }
+
+    /** Returns the matrix of A* path lengths, one search per pair. */
+    private static double[][] aStar(CompactGraph graph, int[] sources, int[] targets) {
+        double[][] distances = new double[sources.length][targets.length];
+        for (int i = 0; i < sources.length; i += 1) {
+            for (int j = 0; j < targets.length; j += 1) {
+                distances[i][j] = length(graph,
+                        AStar.shortestPath(graph, sources[i], targets[j], null));
+            }
+        }
+        return distances;
+    }
+
+    /** Returns the sum of the edge weights along a path, or infinity if it is empty. */
+    private static double length(CompactGraph graph, List<Long> path) {
+        if (path.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double length = 0;
+        for (int i = 0; i + 1 < path.size(); i += 1) {
+            int v = graph.index(path.get(i));
+            int w = graph.index(path.get(i + 1));
+            double weight = Double.POSITIVE_INFINITY;
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                if (graph.target(e) == w) {
+                    weight = Math.min(weight, graph.weight(e));
+                }
+            }
+            length += weight;
+        }
+        return length;
+    }
+
+    /** Returns the vertices closest to random points on the map. */
+    private static int[] points(GraphDB graph, Random random, int count) {
+        int[] vertices = new int[count];
+        for (int i = 0; i < count; i += 1) {
+            vertices[i] = graph.closestIndex(
+                    MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA,
+                    MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA);
+        }
+        return vertices;
+    }
+}
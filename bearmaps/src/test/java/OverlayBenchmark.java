@@ -0,0 +1,102 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the latency of <code>MapServer.renderImage</code> with a route drawn over the base
+ * map, with and without the mosaic cache. Both runs read tiles through a warm tile cache, so the
+ * difference is the cost of compositing the grid. One workload pans around each of the
+ * raster_params.txt queries with one route active, as a user following a route would; the other
+ * renders the same viewports again for a series of different routes, as many users requesting
+ * directions across the same area would. This is not a unit test; run its main method with an
+ * optional OSM file path and tile directory. When the directory has no tiles, synthetic tiles are
+ * generated in a scratch directory instead.
+ */
+public class OverlayBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final String IMG_ROOT = "../library-su18/bearmaps/img/";
+    private static final int NUM_PANS = 20;
+    private static final int NUM_ROUTES = 20;
+    private static final long CACHE_BYTES = 128L << 20;
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        String root = args.length > 1 ? args[1] : IMG_ROOT;
+        GraphDB graph = new GraphDB(dbPath);
+        Random random = new Random(61);
+        List<List<Long>> routes = new ArrayList<>();
+        while (routes.size() < NUM_ROUTES) {
+            List<Long> route = Router.shortestPath(graph,
+                    MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA,
+                    MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA,
+                    MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA,
+                    MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA);
+            if (route.size() > 1) {
+                routes.add(route);
+            }
+        }
+
+        Rasterer rasterer = new Rasterer();
+        List<RasterResultParams> viewports = new ArrayList<>();
+        List<RasterResultParams> pans = new ArrayList<>();
+        for (RasterRequestParams q : RasterBenchmark.paramsFromFile()) {
+            viewports.add(rasterer.getMapRaster(q));
+            double width = q.lrlon - q.ullon;
+            double height = q.ullat - q.lrlat;
+            for (int i = 0; i <= NUM_PANS; i += 1) {
+                double dx = i == 0 ? 0 : (random.nextDouble() - 0.5) * width / 4;
+                double dy = i == 0 ? 0 : (random.nextDouble() - 0.5) * height / 4;
+                RasterResultParams result = rasterer.getMapRaster(
+                        new RasterRequestParams.Builder().setUllon(q.ullon + dx)
+                                .setUllat(q.ullat + dy).setLrlon(q.lrlon + dx)
+                                .setLrlat(q.lrlat + dy).setW(q.w).setH(q.h).create());
+                if (result.querySuccess) {
+                    pans.add(result);
+                }
+            }
+        }
+        if (!new File(root).isDirectory()) {
+            root = RasterBenchmark.syntheticTiles(pans);
+        }
+        TileCache tiles = new TileCache(root, CACHE_BYTES);
+
+        /* Warm up the JIT and the tile cache before timing. */
+        for (int round = 0; round < 2; round += 1) {
+            run(null, new MosaicCache(tiles, 0), graph, pans, routes.subList(0, 1));
+        }
+        System.out.println("pans with one route:");
+        run("uncached", new MosaicCache(tiles, 0), graph, pans, routes.subList(0, 1));
+        run("cached", new MosaicCache(tiles, CACHE_BYTES), graph, pans, routes.subList(0, 1));
+        System.out.println("viewports with " + NUM_ROUTES + " routes:");
+        run("uncached", new MosaicCache(tiles, 0), graph, viewports, routes);
+        run("cached", new MosaicCache(tiles, CACHE_BYTES), graph, viewports, routes);
+    }
+
+    /** Renders every request with every route, printing the timings unless label is null. */
+    private static void run(String label, MosaicCache mosaics, GraphDB graph,
+                            List<RasterResultParams> requests, List<List<Long>> routes) {
+        long[] nanos = new long[requests.size() * routes.size()];
+        int i = 0;
+        for (List<Long> route : routes) {
+            for (RasterResultParams request : requests) {
+                long start = System.nanoTime();
+                MapServer.renderImage(request, mosaics, graph, route);
+                nanos[i] = System.nanoTime() - start;
+                i += 1;
+            }
+        }
+        if (label == null) {
+            return;
+        }
+        long total = Arrays.stream(nanos).sum();
+        Arrays.sort(nanos);
+        CacheStats stats = mosaics.stats();
+        System.out.println(String.format("  %-9s %d renders in %.0f ms: p50 %.2f ms,"
+                        + " p99 %.2f ms; hit rate %.1f%%, %d mosaics, %.1f MB cached",
+                label, nanos.length, total / 1e6, nanos[nanos.length / 2] / 1e6,
+                nanos[(int) (nanos.length * 0.99)] / 1e6, 100 * stats.hitRate(),
+                stats.entries, stats.bytes / 1e6));
+    }
+}
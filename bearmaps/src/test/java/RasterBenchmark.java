@@ -0,0 +1,195 @@
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the latency of compositing render grids with <code>MosaicCache.compose</code>, with
+ * and without the decoded tile cache. One workload replays the raster_params.txt queries, each
+ * followed by a series of small pans around it, as a user browsing the map would send them; the
+ * other renders random 2560x1440 viewports at the deepest level, which need the largest grids.
+ * Reports the p50/p99 render time per request and the cache counters. This is not a unit test;
+ * run its main method with an optional tile directory and number of pans per query. When the
+ * directory has no tiles, synthetic 256x256 map-like tiles are generated in a scratch directory
+ * instead.
+ */
+public class RasterBenchmark {
+    private static final String IMG_ROOT = "../library-su18/bearmaps/img/";
+    private static final String PARAMS_FILE = "raster_params.txt";
+    private static final int NUM_PARAMS = 8;
+    private static final int NUM_PANS = 50;
+    private static final int NUM_LARGE_GRIDS = 100;
+    private static final long CACHE_BYTES = 128L << 20;
+
+    public static void main(String[] args) throws Exception {
+        String root = args.length > 0 ? args[0] : IMG_ROOT;
+        int numPans = args.length > 1 ? Integer.parseInt(args[1]) : NUM_PANS;
+
+        Rasterer rasterer = new Rasterer();
+        List<RasterResultParams> requests = new ArrayList<>();
+        Random random = new Random(61);
+        for (RasterRequestParams q : paramsFromFile()) {
+            double width = q.lrlon - q.ullon;
+            double height = q.ullat - q.lrlat;
+            for (int i = 0; i <= numPans; i += 1) {
+                double dx = i == 0 ? 0 : (random.nextDouble() - 0.5) * width;
+                double dy = i == 0 ? 0 : (random.nextDouble() - 0.5) * height;
+                if (i > 0 && (q.ullon + dx < MapServer.ROOT_ULLON
+                        || q.lrlon + dx > MapServer.ROOT_LRLON
+                        || q.ullat + dy > MapServer.ROOT_ULLAT
+                        || q.lrlat + dy < MapServer.ROOT_LRLAT)) {
+                    continue;
+                }
+                RasterResultParams result = rasterer.getMapRaster(
+                        new RasterRequestParams.Builder().setUllon(q.ullon + dx)
+                                .setUllat(q.ullat + dy).setLrlon(q.lrlon + dx)
+                                .setLrlat(q.lrlat + dy).setW(q.w).setH(q.h).create());
+                if (result.querySuccess) {
+                    requests.add(result);
+                }
+            }
+        }
+        List<RasterResultParams> largeGrids = largeGrids(rasterer, random);
+        if (!new File(root).isDirectory()) {
+            List<RasterResultParams> all = new ArrayList<>(requests);
+            all.addAll(largeGrids);
+            root = syntheticTiles(all);
+        }
+
+        /* Warm up the JIT on both paths before timing. */
+        for (int i = 0; i < Math.min(20, requests.size()); i += 1) {
+            MosaicCache.compose(requests.get(i).renderGrid, new TileCache(root, 0));
+        }
+        System.out.println("raster_params.txt with pans:");
+        run("uncached", new TileCache(root, 0), requests);
+        run("cached", new TileCache(root, CACHE_BYTES), requests);
+        System.out.println("large grids:");
+        run("uncached", new TileCache(root, 0), largeGrids);
+        run("cached", new TileCache(root, CACHE_BYTES), largeGrids);
+    }
+
+    /** Returns random 2560x1440 viewports at the deepest level that lie within the map. */
+    static List<RasterResultParams> largeGrids(Rasterer rasterer, Random random) {
+        List<RasterResultParams> grids = new ArrayList<>();
+        for (RasterRequestParams viewport : largeViewports(random)) {
+            grids.add(rasterer.getMapRaster(viewport));
+        }
+        return grids;
+    }
+
+    /** Returns the requests for random 2560x1440 viewports at the deepest level. */
+    static List<RasterRequestParams> largeViewports(Random random) {
+        double lonDpp = MapServer.ROOT_LON_DELTA / (MapServer.TILE_SIZE << Rasterer.MAX_DEPTH);
+        double latDpp = MapServer.ROOT_LAT_DELTA / (MapServer.TILE_SIZE << Rasterer.MAX_DEPTH);
+        double width = 2560 * lonDpp;
+        double height = 1440 * latDpp;
+        List<RasterRequestParams> viewports = new ArrayList<>();
+        for (int i = 0; i < NUM_LARGE_GRIDS; i += 1) {
+            double ullon = MapServer.ROOT_ULLON
+                    + random.nextDouble() * (MapServer.ROOT_LON_DELTA - width);
+            double ullat = MapServer.ROOT_ULLAT
+                    - random.nextDouble() * (MapServer.ROOT_LAT_DELTA - height);
+            viewports.add(new RasterRequestParams.Builder().setUllon(ullon).setUllat(ullat)
+                    .setLrlon(ullon + width).setLrlat(ullat - height).setW(2560).setH(1440)
+                    .create());
+        }
+        return viewports;
+    }
+
+    private static void run(String label, TileCache cache, List<RasterResultParams> requests) {
+        long[] nanos = new long[requests.size()];
+        int tiles = 0;
+        for (int i = 0; i < requests.size(); i += 1) {
+            RasterResultParams request = requests.get(i);
+            tiles += request.renderGrid.length * request.renderGrid[0].length;
+            long start = System.nanoTime();
+            MosaicCache.compose(request.renderGrid, cache);
+            nanos[i] = System.nanoTime() - start;
+        }
+        long total = Arrays.stream(nanos).sum();
+        Arrays.sort(nanos);
+        CacheStats stats = cache.stats();
+        System.out.println(String.format("  %-9s %d requests (%d tiles) in %.0f ms: p50 %.2f ms,"
+                        + " p99 %.2f ms; hit rate %.1f%%, %d evictions, %.1f MB cached",
+                label, requests.size(), tiles, total / 1e6, nanos[nanos.length / 2] / 1e6,
+                nanos[(int) (nanos.length * 0.99)] / 1e6, 100 * stats.hitRate(),
+                stats.evictions, stats.bytes / 1e6));
+    }
+
+    /** Writes a synthetic tile for every tile the requests use, returning their directory. */
+    static String syntheticTiles(List<RasterResultParams> requests) throws Exception {
+        File dir = Files.createTempDirectory("tiles").toFile();
+        dir.deleteOnExit();
+        int count = 0;
+        for (RasterResultParams request : requests) {
+            for (String[] row : request.renderGrid) {
+                for (String name : row) {
+                    File file = new File(dir, name);
+                    if (!file.exists()) {
+                        file.deleteOnExit();
+                        ImageIO.write(syntheticTile(name.hashCode()), "png", file);
+                        count += 1;
+                    }
+                }
+            }
+        }
+        System.out.println(String.format("Generated %d synthetic tiles in %s", count, dir));
+        return dir.getPath() + File.separator;
+    }
+
+    /** Draws a tile with a street grid, blocks and labels, to compress like a map tile. */
+    private static BufferedImage syntheticTile(long seed) {
+        Random random = new Random(seed);
+        BufferedImage tile = new BufferedImage(MapServer.TILE_SIZE, MapServer.TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(242, 239, 233));
+        g.fillRect(0, 0, MapServer.TILE_SIZE, MapServer.TILE_SIZE);
+        for (int i = 0; i < 12; i += 1) {
+            g.setColor(random.nextBoolean() ? new Color(205, 235, 176) : new Color(217, 208, 201));
+            g.fillRect(random.nextInt(224), random.nextInt(224), 16 + random.nextInt(48),
+                    16 + random.nextInt(48));
+        }
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < 10; i += 1) {
+            g.setStroke(new BasicStroke(2 + random.nextInt(6)));
+            g.drawLine(random.nextInt(256), 0, random.nextInt(256), 255);
+            g.drawLine(0, random.nextInt(256), 255, random.nextInt(256));
+        }
+        g.setColor(Color.DARK_GRAY);
+        for (int i = 0; i < 4; i += 1) {
+            g.drawString("Street " + random.nextInt(100), random.nextInt(200), random.nextInt(256));
+        }
+        g.dispose();
+        return tile;
+    }
+
+    static List<RasterRequestParams> paramsFromFile() throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get(PARAMS_FILE), Charset.defaultCharset());
+        List<RasterRequestParams> params = new ArrayList<>();
+        int lineIdx = 2; // ignore comment lines
+        for (int i = 0; i < NUM_PARAMS; i++) {
+            params.add(new RasterRequestParams.Builder()
+                    .setUllon(Double.parseDouble(lines.get(lineIdx)))
+                    .setUllat(Double.parseDouble(lines.get(lineIdx + 1)))
+                    .setLrlon(Double.parseDouble(lines.get(lineIdx + 2)))
+                    .setLrlat(Double.parseDouble(lines.get(lineIdx + 3)))
+                    .setW(Double.parseDouble(lines.get(lineIdx + 4)))
+                    .setH(Double.parseDouble(lines.get(lineIdx + 5)))
+                    .create());
+            lineIdx += 6;
+        }
+        return params;
+    }
+}
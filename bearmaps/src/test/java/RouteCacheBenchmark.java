@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the latency of routing requests through <code>MapServer.route</code> with and without
+ * the route cache. Requests travel between a set of popular places with a skewed popularity, as
+ * users asking for directions to the same campus buildings and stations would, and each clicked
+ * point lands a few meters from its place so that only snapping makes them repeat. Reports the
+ * p50/p99 latency, the hit rate, the memory the cached routes take and the search time the hits
+ * saved. This is not a unit test; run its main method with an optional OSM file path and number
+ * of requests.
+ */
+public class RouteCacheBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_REQUESTS = 5000;
+    private static final int NUM_PLACES = 100;
+    private static final double JITTER_DEGREES = 0.00003;
+    private static final long CACHE_BYTES = 32L << 20;
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numRequests = args.length > 1 ? Integer.parseInt(args[1]) : NUM_REQUESTS;
+        GraphDB graph = new GraphDB(dbPath);
+        List<RouteRequestParams> requests = requests(numRequests);
+        /* Warm up the JIT on the search and directions before timing. */
+        RouteCache warmup = new RouteCache(0);
+        for (int i = 0; i < Math.min(500, requests.size()); i += 1) {
+            MapServer.route(graph, warmup, requests.get(i), null);
+        }
+        run(graph, "uncached", new RouteCache(0), requests);
+        run(graph, "cached", new RouteCache(CACHE_BYTES), requests);
+    }
+
+    private static void run(GraphDB graph, String label, RouteCache cache,
+                            List<RouteRequestParams> requests) {
+        long[] nanos = new long[requests.size()];
+        for (int i = 0; i < requests.size(); i += 1) {
+            long start = System.nanoTime();
+            MapServer.route(graph, cache, requests.get(i), null);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        RouteCache.Stats stats = cache.stats();
+        System.out.println(String.format("%-8s %d requests: p50 %.3f ms, p99 %.3f ms, hit rate"
+                        + " %.2f, %d routes in %.1f MB, %.0f ms of searching saved", label,
+                nanos.length, nanos[nanos.length / 2] / 1e6,
+                nanos[(int) (nanos.length * 0.99)] / 1e6, stats.hitRate(), stats.entries,
+                stats.bytes / 1e6, stats.savedMillis));
+    }
+
+    /** Returns requests between places picked with a Zipf-like popularity. */
+    private static List<RouteRequestParams> requests(int count) {
+        Random random = new Random(61);
+        double[][] places = new double[NUM_PLACES][];
+        for (int i = 0; i < NUM_PLACES; i += 1) {
+            places[i] = new double[]{
+                MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA,
+                MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA};
+        }
+        List<RouteRequestParams> requests = new ArrayList<>();
+        while (requests.size() < count) {
+            double[] from = places[zipf(random)];
+            double[] to = places[zipf(random)];
+            if (from == to) {
+                continue;
+            }
+            requests.add(new RouteRequestParams.Builder()
+                    .setStartLon(from[0] + jitter(random)).setStartLat(from[1] + jitter(random))
+                    .setEndLon(to[0] + jitter(random)).setEndLat(to[1] + jitter(random))
+                    .create());
+        }
+        return requests;
+    }
+
+    /** Returns a place index, place i being picked about 1 / (i + 1) as often as place 0. */
+    private static int zipf(Random random) {
+        double harmonic = Math.log(NUM_PLACES) + 0.5772;
+        return Math.min(NUM_PLACES - 1, (int) Math.exp(random.nextDouble() * harmonic) - 1);
+    }
+
+    private static double jitter(Random random) {
+        return (random.nextDouble() - 0.5) * JITTER_DEGREES;
+    }
+}
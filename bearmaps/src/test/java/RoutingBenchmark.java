@@ -0,0 +1,143 @@
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the routing algorithms on the path_params.txt queries and on a workload of random long
+ * routes between points at least half the map diagonal apart. For each algorithm, reports the
+ * mean number of settled vertices, also as a share of those A* settles with the great-circle
+ * heuristic, the p50/p99 latency, and the number of routes that differ from the A* result. Also
+ * reports the contraction hierarchy and landmark preprocessing times. This is not a unit test;
+ * run its main method with an optional OSM file path and number of long routes.
+ */
+public class RoutingBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final String PARAMS_FILE = "path_params.txt";
+    private static final int NUM_PARAMS = 8;
+    private static final int NUM_LONG_ROUTES = 1000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numLongRoutes = args.length > 1 ? Integer.parseInt(args[1]) : NUM_LONG_ROUTES;
+        GraphDB graph = new GraphDB(dbPath);
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph.compact());
+        System.out.println(String.format("contraction hierarchy: %.1f s, %d shortcuts",
+                (System.nanoTime() - start) / 1e9, hierarchy.shortcutCount()));
+        File saved = File.createTempFile("routing", ".ch");
+        saved.deleteOnExit();
+        hierarchy.save(saved.getPath());
+        start = System.nanoTime();
+        graph.loadOrBuildHierarchy(saved.getPath());
+        System.out.println(String.format("  reloaded from %d MB file in %.1f s",
+                saved.length() >> 20, (System.nanoTime() - start) / 1e9));
+
+        start = System.nanoTime();
+        Landmarks landmarks = Landmarks.build(graph.compact(), Landmarks.DEFAULT_COUNT);
+        System.out.println(String.format("landmarks: %d in %.1f s, %.1f MB of tables",
+                landmarks.count(), (System.nanoTime() - start) / 1e9,
+                landmarks.sizeInBytes() / 1e6));
+        saved = File.createTempFile("routing", ".alt");
+        saved.deleteOnExit();
+        landmarks.save(saved.getPath());
+        graph.loadOrBuildLandmarks(saved.getPath());
+
+        run(graph, "path_params.txt", paramsFromFile());
+        run(graph, "long routes", longRoutes(numLongRoutes));
+    }
+
+    private static void run(GraphDB graph, String workload, List<RouteRequestParams> queries) {
+        System.out.println(String.format("%s: %d queries", workload, queries.size()));
+        List<List<Long>> reference = new ArrayList<>();
+        long astarSettled = 0;
+        for (RouteRequestParams q : queries) {
+            SearchTrace trace = new SearchTrace(0);
+            reference.add(Router.shortestPath(graph, withAlgorithm(q, Router.Algorithm.ASTAR),
+                    trace));
+            astarSettled += trace.expansions();
+        }
+        for (Router.Algorithm algorithm : Router.Algorithm.values()) {
+            if (algorithm == Router.Algorithm.AUTO) {
+                continue;
+            }
+            List<RouteRequestParams> params = new ArrayList<>();
+            for (RouteRequestParams q : queries) {
+                params.add(withAlgorithm(q, algorithm));
+            }
+            long settled = 0;
+            int mismatches = 0;
+            for (int i = 0; i < params.size(); i += 1) {
+                SearchTrace trace = new SearchTrace(0);
+                List<Long> path = Router.shortestPath(graph, params.get(i), trace);
+                settled += trace.expansions();
+                if (!path.equals(reference.get(i))) {
+                    mismatches += 1;
+                }
+            }
+            for (int round = 0; round < WARMUP_ROUNDS; round += 1) {
+                for (RouteRequestParams p : params) {
+                    Router.shortestPath(graph, p, null);
+                }
+            }
+            long[] nanos = new long[params.size()];
+            for (int i = 0; i < params.size(); i += 1) {
+                long start = System.nanoTime();
+                Router.shortestPath(graph, params.get(i), null);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.println(String.format("  %-14s settled %9.1f (%5.1f%% of A*)"
+                            + "  p50 %8.3f ms  p99 %8.3f ms  differing routes %d", algorithm,
+                    (double) settled / params.size(), 100.0 * settled / astarSettled,
+                    nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6,
+                    mismatches));
+        }
+    }
+
+    /** Returns random routes whose endpoints are at least half the map diagonal apart. */
+    private static List<RouteRequestParams> longRoutes(int count) {
+        Random random = new Random(61);
+        double diagonal = GraphDB.haversine(MapServer.ROOT_ULLAT, MapServer.ROOT_ULLON,
+                MapServer.ROOT_LRLAT, MapServer.ROOT_LRLON);
+        List<RouteRequestParams> routes = new ArrayList<>();
+        while (routes.size() < count) {
+            double stlon = MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA;
+            double stlat = MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA;
+            double endlon = MapServer.ROOT_ULLON + random.nextDouble() * MapServer.ROOT_LON_DELTA;
+            double endlat = MapServer.ROOT_LRLAT + random.nextDouble() * MapServer.ROOT_LAT_DELTA;
+            if (GraphDB.haversine(stlat, stlon, endlat, endlon) >= diagonal / 2) {
+                routes.add(new RouteRequestParams.Builder().setStartLon(stlon).setStartLat(stlat)
+                        .setEndLon(endlon).setEndLat(endlat).create());
+            }
+        }
+        return routes;
+    }
+
+    private static RouteRequestParams withAlgorithm(RouteRequestParams q,
+                                                    Router.Algorithm algorithm) {
+        return new RouteRequestParams.Builder().setStartLon(q.startLon).setStartLat(q.startLat)
+                .setEndLon(q.endLon).setEndLat(q.endLat).setAlgorithm(algorithm).create();
+    }
+
+    static List<RouteRequestParams> paramsFromFile() throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get(PARAMS_FILE), Charset.defaultCharset());
+        List<RouteRequestParams> params = new ArrayList<>();
+        int lineIdx = 2; // ignore comment lines
+        for (int i = 0; i < NUM_PARAMS; i++) {
+            params.add(new RouteRequestParams.Builder()
+                    .setStartLon(Double.parseDouble(lines.get(lineIdx)))
+                    .setStartLat(Double.parseDouble(lines.get(lineIdx + 1)))
+                    .setEndLon(Double.parseDouble(lines.get(lineIdx + 2)))
+                    .setEndLat(Double.parseDouble(lines.get(lineIdx + 3)))
+                    .create());
+            lineIdx += 4;
+        }
+        return params;
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Replays autocomplete keystrokes against the location index: for each of a sample of location
+ * names, every prefix of it is searched in turn as a user typing it would send them, asking for
+ * the top 10 names. Reports the p50/p99 latency per keystroke, against a scan that cleans and
+ * ranks every name, and the build time and size of the index. Then searches for misspelled
+ * names in fuzzy mode, with a 10 ms budget, against an edit distance scan. Runs on the named
+ * locations of the OSM file, and on a synthetic set of random names to show how both scale.
+ * This is not a unit test; run its main method with an optional OSM file path and synthetic
+ * name count.
+ */
+public class SearchBenchmark {
+    private static final String OSM_DB_PATH = "../library-su18/bearmaps/berkeley-2018.osm.xml";
+    private static final int NUM_SYNTHETIC = 200000;
+    private static final int NUM_TYPED = 500;
+    private static final int LIMIT = 10;
+    private static final int NUM_FUZZY = 2000;
+    private static final long FUZZY_BUDGET_NANOS = 10_000_000;
+    private static final String[] WORDS = {"cafe", "coffee", "pizza", "park", "hall", "street",
+        "market", "bank", "library", "school", "church", "station", "garden", "house", "books",
+        "berkeley", "north", "south", "telegraph", "shattuck", "college", "university", "center"};
+
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        int numSynthetic = args.length > 1 ? Integer.parseInt(args[1]) : NUM_SYNTHETIC;
+        GraphDB graph = new GraphDB(dbPath);
+        List<LocationParams> locations = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String name : graph.getLocationsByPrefix("")) {
+            if (seen.add(GraphDB.cleanString(name))) {
+                locations.addAll(graph.getLocations(name));
+            }
+        }
+        run("OSM locations", locations);
+
+        Random random = new Random(61);
+        List<LocationParams> synthetic = new ArrayList<>();
+        for (int i = 0; i < numSynthetic; i += 1) {
+            /* A few popular names repeat many times, as chains do; most names are unique. */
+            String name = WORDS[(int) Math.abs(random.nextGaussian() * 4) % WORDS.length] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " "
+                    + Integer.toString(random.nextInt(1 + random.nextInt(numSynthetic)), 26)
+                    .replaceAll("[0-9]", "x");
+            synthetic.add(new LocationParams(0, 0, name, i));
+        }
+        run("synthetic locations", synthetic);
+    }
+
+    private static void run(String label, List<LocationParams> locations) {
+        long start = System.nanoTime();
+        LocationIndex index = new LocationIndex(locations);
+        System.out.println(String.format("%s: %d locations, index built in %.0f ms, %.1f MB",
+                label, index.size(), (System.nanoTime() - start) / 1e6,
+                index.sizeInBytes() / 1e6));
+        if (index.size() == 0) {
+            return;
+        }
+
+        Random random = new Random(61);
+        List<String> typed = new ArrayList<>();
+        for (int i = 0; i < NUM_TYPED; i += 1) {
+            String name = locations.get(random.nextInt(locations.size())).name;
+            for (int length = 1; length <= name.length(); length += 1) {
+                typed.add(name.substring(0, length));
+            }
+        }
+        /* Warm up the JIT on both paths before timing. */
+        for (int i = 0; i < Math.min(200, typed.size()); i += 1) {
+            index.byPrefix(typed.get(i), LIMIT);
+            scan(locations, typed.get(i));
+        }
+
+        long[] indexNanos = new long[typed.size()];
+        int mismatches = 0;
+        for (int i = 0; i < typed.size(); i += 1) {
+            start = System.nanoTime();
+            index.byPrefix(typed.get(i), LIMIT);
+            indexNanos[i] = System.nanoTime() - start;
+        }
+        int scanned = Math.min(typed.size(), 2000);
+        long[] scanNanos = new long[scanned];
+        for (int i = 0; i < scanned; i += 1) {
+            start = System.nanoTime();
+            List<String> expected = scan(locations, typed.get(i));
+            scanNanos[i] = System.nanoTime() - start;
+            if (!expected.equals(index.byPrefix(typed.get(i), LIMIT))) {
+                mismatches += 1;
+            }
+        }
+        report("  index", indexNanos);
+        report("  scan", scanNanos);
+        System.out.println(String.format("  %d of %d scanned keystrokes differ", mismatches,
+                scanned));
+        fuzzy(index, locations);
+    }
+
+    /**
+     * Searches for names with one or two random typos, reporting the latency of the fuzzy index
+     * against checking the edit distance to every distinct name, and how often the intended name
+     * is among the results.
+     */
+    private static void fuzzy(LocationIndex index, List<LocationParams> locations) {
+        Random random = new Random(61);
+        String[] queries = new String[NUM_FUZZY];
+        String[] intended = new String[NUM_FUZZY];
+        for (int i = 0; i < NUM_FUZZY; i += 1) {
+            intended[i] = locations.get(random.nextInt(locations.size())).name;
+            StringBuilder query = new StringBuilder(intended[i]);
+            for (int edits = 1 + random.nextInt(2); edits > 0; edits -= 1) {
+                int at = random.nextInt(query.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: query.setCharAt(at, c); break;
+                    case 1: query.insert(at, c); break;
+                    default: query.deleteCharAt(at);
+                }
+            }
+            queries[i] = query.toString();
+        }
+        Set<String> distinct = new HashSet<>();
+        for (LocationParams location : locations) {
+            distinct.add(GraphDB.cleanString(location.name));
+        }
+        String[] keys = distinct.toArray(new String[0]);
+        for (int i = 0; i < Math.min(200, NUM_FUZZY); i += 1) {
+            index.fuzzy(queries[i], LIMIT, FUZZY_BUDGET_NANOS);
+        }
+
+        long[] indexNanos = new long[NUM_FUZZY];
+        int found = 0;
+        for (int i = 0; i < NUM_FUZZY; i += 1) {
+            long start = System.nanoTime();
+            List<LocationParams> matches = index.fuzzy(queries[i], LIMIT, FUZZY_BUDGET_NANOS);
+            indexNanos[i] = System.nanoTime() - start;
+            for (LocationParams match : matches) {
+                if (GraphDB.cleanString(match.name).equals(GraphDB.cleanString(intended[i]))) {
+                    found += 1;
+                    break;
+                }
+            }
+        }
+        int scanned = Math.min(NUM_FUZZY, 200);
+        long[] scanNanos = new long[scanned];
+        for (int i = 0; i < scanned; i += 1) {
+            String query = GraphDB.cleanString(queries[i]);
+            long start = System.nanoTime();
+            for (String key : keys) {
+                LocationIndex.editDistance(query, key, 2);
+            }
+            scanNanos[i] = System.nanoTime() - start;
+        }
+        report("  fuzzy", indexNanos);
+        report("  scan", scanNanos);
+        System.out.println(String.format("  intended name found for %d of %d misspellings"
+                + " (names under 8 letters allow one edit)", found, NUM_FUZZY));
+    }
+
+    /**
+     * Returns the top names for <code>prefix</code> by cleaning every name, in the order the
+     * index gives them.
+     */
+    private static List<String> scan(List<LocationParams> locations, String prefix) {
+        String key = GraphDB.cleanString(prefix);
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, List<String>> names = new HashMap<>();
+        for (LocationParams location : locations) {
+            String cleaned = GraphDB.cleanString(location.name);
+            if (!cleaned.isEmpty() && cleaned.startsWith(key)) {
+                counts.merge(cleaned, 1, Integer::sum);
+                List<String> full = names.computeIfAbsent(cleaned, k -> new ArrayList<>());
+                if (!full.contains(location.name)) {
+                    full.add(location.name);
+                }
+            }
+        }
+        List<String> keys = new ArrayList<>(counts.keySet());
+        keys.sort((a, b) -> counts.get(a).equals(counts.get(b)) ? a.compareTo(b)
+                : counts.get(b) - counts.get(a));
+        List<String> matches = new ArrayList<>();
+        for (String cleaned : keys) {
+            List<String> full = names.get(cleaned);
+            Collections.sort(full);
+            matches.addAll(full);
+            if (matches.size() >= LIMIT) {
+                return matches.subList(0, LIMIT);
+            }
+        }
+        return matches;
+    }
+
+    private static void report(String label, long[] nanos) {
+        Arrays.sort(nanos);
+        System.out.println(String.format("%-7s %d queries: p50 %.1f us, p99 %.1f us", label,
+                nanos.length, nanos[nanos.length / 2] / 1e3,
+                nanos[(int) (nanos.length * 0.99)] / 1e3));
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+
+/**
+ * A side x side grid of streets about 100 m apart with jittered intersections, computed on
+ * demand so that it takes no heap. Every vertex connects to its four grid neighbors, in
+ * increasing index order like a frozen <code>GraphDB</code>.
+ */
+class SyntheticGrid extends CompactGraph {
+    private static final double SPACING = 0.0009;
+    private final int side;
+
+    /**
+     * Returns the source file of a grid of at least <code>vertices</code> vertices in dir,
+     * generating its snapshot and way table first if there are none. The source itself is an
+     * empty OSM file that only serves to name them, so open it with <code>GraphDB</code>.
+     */
+    static File source(File dir, int vertices) throws IOException {
+        int side = (int) Math.ceil(Math.sqrt(vertices));
+        File source = new File(dir, "synthetic-" + side + ".osm.xml");
+        if (!GraphSnapshot.of(source).isFile() || !WayTable.of(source).isFile()) {
+            Files.write(source.toPath(), ("<osm><!-- " + side + " x " + side + " --></osm>")
+                    .getBytes());
+            SyntheticGrid grid = new SyntheticGrid(side);
+            GraphSnapshot.save(grid, source);
+            grid.ways().save(source);
+        }
+        return source;
+    }
+
+    SyntheticGrid(int side) {
+        this.side = side;
+    }
+
+    @Override
+    int size() {
+        return side * side;
+    }
+
+    @Override
+    int edgeCount() {
+        return edgeStart(size());
+    }
+
+    @Override
+    int index(long id) {
+        long v = (id - 1000000000L) / 7;
+        return id >= 1000000000L && (id - 1000000000L) % 7 == 0 && v < size() ? (int) v : -1;
+    }
+
+    @Override
+    long id(int v) {
+        return 1000000000L + 7L * v;
+    }
+
+    @Override
+    double lat(int v) {
+        return 37.0 + SPACING * (v / side + jitter(v, 1));
+    }
+
+    @Override
+    double lon(int v) {
+        return -122.0 + SPACING * (v % side + jitter(v, 2));
+    }
+
+    /** Returns a deterministic offset in [0, 0.3) for vertex v. */
+    private static double jitter(int v, int salt) {
+        long h = (v * 0x9E3779B97F4A7C15L) ^ (salt * 0xC2B2AE3D27D4EB4FL);
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return 0.3 * ((h >>> 11) / (double) (1L << 53));
+    }
+
+    /** Edges before vertex v: whole rows first, then the vertices to its left. */
+    @Override
+    int edgeStart(int v) {
+        if (side < 2) {
+            return 0;
+        }
+        int borderRow = 3 * side - 2, innerRow = 4 * side - 2;
+        if (v == size()) {
+            return 2 * borderRow + (side - 2) * innerRow;
+        }
+        int row = v / side, col = v % side;
+        int before = row == 0 ? 0 : borderRow + (row - 1) * innerRow;
+        int rowDegree = 4 - (row == 0 ? 1 : 0) - (row == side - 1 ? 1 : 0);
+        return before + col * rowDegree - (col > 0 ? 1 : 0);
+    }
+
+    @Override
+    int edgeEnd(int v) {
+        return edgeStart(v + 1);
+    }
+
+    @Override
+    int target(int e) {
+        int v = source(e);
+        int slot = e - edgeStart(v);
+        int row = v / side, col = v % side;
+        int[] candidates = {row > 0 ? v - side : -1, col > 0 ? v - 1 : -1,
+            col < side - 1 ? v + 1 : -1, row < side - 1 ? v + side : -1};
+        for (int w : candidates) {
+            if (w >= 0) {
+                if (slot == 0) {
+                    return w;
+                }
+                slot -= 1;
+            }
+        }
+        throw new IllegalArgumentException("No edge " + e);
+    }
+
+    @Override
+    float weight(int e) {
+        int v = source(e);
+        int w = target(e);
+        return (float) GraphDB.haversine(lat(v), lon(v), lat(w), lon(w));
+    }
+
+    @Override
+    boolean directed() {
+        return false;
+    }
+
+    /** Every street is residential. */
+    @Override
+    float time(int e) {
+        return weight(e) * 3600 / OsmIngest.DEFAULT_SPEEDS.get("residential");
+    }
+
+    /** Built on demand, for searches on the grid itself rather than on its snapshot. */
+    @Override
+    UnitVectors unitVectors() {
+        return new UnitVectors(DoubleBuffer.wrap(UnitVectors.compute(this)));
+    }
+
+    @Override
+    float bearing(int e) {
+        int v = source(e);
+        int w = target(e);
+        return (float) GraphDB.bearing(lat(v), lon(v), lat(w), lon(w));
+    }
+
+    /** Returns the ways of the grid: each row is one street and each column one avenue. */
+    WayTable ways() {
+        int[] edgeWays = new int[edgeCount()];
+        for (int v = 0; v < size(); v += 1) {
+            for (int e = edgeStart(v); e < edgeEnd(v); e += 1) {
+                int w = target(e);
+                edgeWays[e] = w / side == v / side ? v / side : side + v % side;
+            }
+        }
+        long[] wayIds = new long[2 * side];
+        String[] wayNames = new String[2 * side];
+        for (int k = 0; k < side; k += 1) {
+            wayIds[k] = 2000000000L + k;
+            wayNames[k] = "Street " + (k + 1);
+            wayIds[side + k] = 2000000000L + side + k;
+            wayNames[side + k] = "Avenue " + (k + 1);
+        }
+        return WayTable.build(edgeWays, wayIds, wayNames);
+    }
+
+    /** Returns the vertex that edge e leaves from. */
+    private int source(int e) {
+        int lo = 0, hi = size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (edgeStart(mid) <= e) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    long sizeInBytes() {
+        return 0;
+    }
+}
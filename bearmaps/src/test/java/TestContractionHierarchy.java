@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks contraction hierarchy queries against A* on a randomly thinned, jittered grid, which
+ * has detours and unreachable pairs without needing any OSM data.
+ */
+public class TestContractionHierarchy {
+    private static final int SIDE = 12;
+
+    /** Builds a SIDE x SIDE grid, dropping some edges at random. */
+    static CompactGraph grid(long seed) {
+        Random random = new Random(seed);
+        int n = SIDE * SIDE;
+        long[] ids = new long[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        List<List<Integer>> adj = new ArrayList<>();
+        for (int v = 0; v < n; v += 1) {
+            ids[v] = 100 + 3 * v;
+            lats[v] = 37.85 + (v / SIDE + random.nextDouble() * 0.5) * 0.001;
+            lons[v] = -122.26 + (v % SIDE + random.nextDouble() * 0.5) * 0.001;
+            adj.add(new ArrayList<>());
+        }
+        for (int v = 0; v < n; v += 1) {
+            int right = v % SIDE + 1 < SIDE ? v + 1 : -1;
+            int down = v + SIDE < n ? v + SIDE : -1;
+            for (int w : new int[]{right, down}) {
+                if (w >= 0 && random.nextDouble() < 0.8) {
+                    adj.get(v).add(w);
+                    adj.get(w).add(v);
+                }
+            }
+        }
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v += 1) {
+            offsets[v + 1] = offsets[v] + adj.get(v).size();
+        }
+        int[] targets = new int[offsets[n]];
+        float[] weights = new float[offsets[n]];
+        float[] times = new float[offsets[n]];
+        for (int v = 0; v < n; v += 1) {
+            for (int i = 0; i < adj.get(v).size(); i += 1) {
+                int w = adj.get(v).get(i);
+                targets[offsets[v] + i] = w;
+                weights[offsets[v] + i] = (float) GraphDB.haversine(lats[v], lons[v],
+                        lats[w], lons[w]);
+                /* Rows and columns are streets with their own speed limits, 15 to 45 mph. */
+                int street = Math.abs(w - v) == 1 ? v / SIDE : SIDE + v % SIDE;
+                times[offsets[v] + i] = weights[offsets[v] + i] * 3600 / (15 + street % 7 * 5);
+            }
+        }
+        return new ArrayGraph(ids, lats, lons, offsets, targets, weights, times);
+    }
+
+    /** Returns the length of a path, checking that consecutive vertices are adjacent. */
+    static double length(CompactGraph graph, List<Long> path) {
+        double length = 0;
+        for (int i = 0; i + 1 < path.size(); i += 1) {
+            int v = graph.index(path.get(i));
+            int w = graph.index(path.get(i + 1));
+            double weight = Double.NaN;
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                if (graph.target(e) == w) {
+                    weight = graph.weight(e);
+                }
+            }
+            assertTrue("path uses a missing edge", !Double.isNaN(weight));
+            length += weight;
+        }
+        return length;
+    }
+
+    @Test
+    public void testMatchesAStar() {
+        CompactGraph graph = grid(5);
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        for (int s = 0; s < graph.size(); s += 7) {
+            for (int t = 0; t < graph.size(); t += 1) {
+                List<Long> expected = AStar.shortestPath(graph, s, t, null);
+                List<Long> actual = ch.shortestPath(s, t, null);
+                assertEquals(expected.isEmpty(), actual.isEmpty());
+                if (!expected.isEmpty()) {
+                    assertEquals(graph.id(s), (long) actual.get(0));
+                    assertEquals(graph.id(t), (long) actual.get(actual.size() - 1));
+                    assertEquals(length(graph, expected), length(graph, actual), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        CompactGraph graph = grid(9);
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        File file = File.createTempFile("hierarchy", ".ch");
+        file.deleteOnExit();
+        ch.save(file.getPath());
+
+        ContractionHierarchy loaded = ContractionHierarchy.load(file.getPath(), graph);
+        assertNotNull(loaded);
+        for (int t = 0; t < graph.size(); t += 1) {
+            assertEquals(ch.shortestPath(3, t, null), loaded.shortestPath(3, t, null));
+        }
+        assertNull("a hierarchy must not load for another graph",
+                ContractionHierarchy.load(file.getPath(), grid(10)));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() / 2);
+            int b = raf.read();
+            raf.seek(file.length() / 2);
+            raf.write(b ^ 0x40);
+        }
+        assertNull("a damaged hierarchy must not load",
+                ContractionHierarchy.load(file.getPath(), graph));
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the distance matrices from per-source Dijkstra and from the contraction hierarchy
+ * against A* path lengths on the thinned grids of <code>TestContractionHierarchy</code>.
+ */
+public class TestDistanceMatrix {
+    /** Returns the A* distance from <code>s</code> to <code>t</code>, or infinity. */
+    private static double expected(CompactGraph graph, int s, int t) {
+        List<Long> path = AStar.shortestPath(graph, s, t, null);
+        if (path.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return TestContractionHierarchy.length(graph, path);
+    }
+
+    private static void assertMatchesAStar(CompactGraph graph, int[] sources, int[] targets,
+                                           double[][] actual) {
+        assertEquals(sources.length, actual.length);
+        for (int i = 0; i < sources.length; i += 1) {
+            assertEquals(targets.length, actual[i].length);
+            for (int j = 0; j < targets.length; j += 1) {
+                assertEquals(expected(graph, sources[i], targets[j]), actual[i][j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testDijkstraMatchesAStar() {
+        CompactGraph graph = TestContractionHierarchy.grid(5);
+        int[] sources = {0, 17, 40, 77, 143};
+        int[] targets = {3, 3, 17, 60, 99, 120, 0};
+        assertMatchesAStar(graph, sources, targets,
+                DistanceMatrix.dijkstra(graph, sources, targets));
+    }
+
+    @Test
+    public void testHierarchyMatchesAStar() {
+        CompactGraph graph = TestContractionHierarchy.grid(7);
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        int[] sources = new int[graph.size() / 5];
+        int[] targets = new int[graph.size() / 3];
+        for (int i = 0; i < sources.length; i += 1) {
+            sources[i] = 5 * i;
+        }
+        for (int j = 0; j < targets.length; j += 1) {
+            targets[j] = 3 * j + 1;
+        }
+        assertMatchesAStar(graph, sources, targets, ch.distances(sources, targets));
+    }
+
+    @Test
+    public void testDiagonalIsZero() {
+        CompactGraph graph = TestContractionHierarchy.grid(11);
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        int[] vertices = {2, 30, 31, 100};
+        double[][] dijkstra = DistanceMatrix.dijkstra(graph, vertices, vertices);
+        double[][] hierarchy = ch.distances(vertices, vertices);
+        for (int i = 0; i < vertices.length; i += 1) {
+            assertEquals(0.0, dijkstra[i][i], 0.0);
+            assertEquals(0.0, hierarchy[i][i], 0.0);
+            for (int j = 0; j < vertices.length; j += 1) {
+                assertTrue(dijkstra[i][j] >= 0);
+                assertEquals(dijkstra[i][j], hierarchy[i][j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testRequestParsing() {
+        MatrixRequestParams params = MatrixRequestParams.from(Map.of(
+                "sources", new String[]{"-122.26,37.87;-122.25,37.86"},
+                "targets", new String[]{"-122.24,37.85"}));
+        assertEquals(2, params.sourceLons.length);
+        assertEquals(-122.25, params.sourceLons[1], 0.0);
+        assertEquals(37.86, params.sourceLats[1], 0.0);
+        assertEquals(1, params.targetLats.length);
+        assertEquals(37.85, params.targetLats[0], 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedPoint() {
+        MatrixRequestParams.from(Map.of(
+                "sources", new String[]{"-122.26;37.87"},
+                "targets", new String[]{"-122.24,37.85"}));
+    }
+}
@@ -0,0 +1,135 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that graph snapshots round-trip onto the heap and through a memory map, that stale or
+ * damaged snapshots are ignored, and that a graph with neither a snapshot nor a readable source
+ * is not built at all.
+ */
+public class TestGraphSnapshot {
+    private static File source() throws Exception {
+        File source = File.createTempFile("graph", ".osm.xml");
+        source.deleteOnExit();
+        GraphSnapshot.of(source).deleteOnExit();
+        Files.write(source.toPath(), "<osm></osm>".getBytes());
+        return source;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        CompactGraph graph = TestContractionHierarchy.grid(3);
+        File source = source();
+        GraphSnapshot.save(graph, source);
+
+        CompactGraph loaded = GraphSnapshot.load(source);
+        assertNotNull(loaded);
+        assertEquals(graph.size(), loaded.size());
+        assertEquals(graph.edgeCount(), loaded.edgeCount());
+        assertEquals(graph.checksum(), loaded.checksum());
+        assertFalse(loaded.directed());
+        assertTrue(loaded.reversed() == loaded);
+        for (int v = 0; v < graph.size(); v += 1) {
+            assertEquals(graph.lat(v), loaded.lat(v), 0.0);
+            assertEquals(graph.lon(v), loaded.lon(v), 0.0);
+        }
+        for (int e = 0; e < graph.edgeCount(); e += 1) {
+            assertEquals(graph.time(e), loaded.time(e), 0.0f);
+        }
+    }
+
+    @Test
+    public void testMappedGraphMatches() throws Exception {
+        CompactGraph graph = TestContractionHierarchy.grid(4);
+        File source = source();
+        GraphSnapshot.save(graph, source);
+
+        CompactGraph mapped = GraphSnapshot.map(source);
+        assertNotNull(mapped);
+        assertEquals(graph.checksum(), mapped.checksum());
+        for (int v = 0; v < graph.size(); v += 1) {
+            assertEquals(v, mapped.index(graph.id(v)));
+            assertEquals(graph.lat(v), mapped.lat(v), 0.0);
+            assertEquals(graph.lon(v), mapped.lon(v), 0.0);
+        }
+        assertEquals(-1, mapped.index(graph.id(0) - 1));
+        for (int e = 0; e < graph.edgeCount(); e += 1) {
+            assertEquals(graph.time(e), mapped.time(e), 0.0f);
+        }
+        for (int t = 0; t < graph.size(); t += 1) {
+            assertEquals(AStar.shortestPath(graph, 0, t, null),
+                    AStar.shortestPath(mapped, 0, t, null));
+        }
+    }
+
+    @Test
+    public void testKeepsJunctionCopies() throws Exception {
+        CompactGraph graph = TestTurnRestrictions.restricted();
+        File source = source();
+        GraphSnapshot.save(graph, source);
+
+        for (CompactGraph loaded : new CompactGraph[]{GraphSnapshot.load(source),
+            GraphSnapshot.map(source)}) {
+            assertNotNull(loaded);
+            assertEquals(graph.nodeCount(), loaded.nodeCount());
+            assertTrue(loaded.directed());
+            assertEquals(graph.size(), loaded.size());
+            assertEquals(graph.checksum(), loaded.checksum());
+            for (int v = 0; v < graph.size(); v += 1) {
+                assertEquals(graph.original(v), loaded.original(v));
+                assertEquals(graph.id(v), loaded.id(v));
+                assertEquals(graph.unitVectors().x(v), loaded.unitVectors().x(v), 0.0);
+                assertEquals(graph.unitVectors().y(v), loaded.unitVectors().y(v), 0.0);
+                assertEquals(graph.unitVectors().z(v), loaded.unitVectors().z(v), 0.0);
+            }
+            for (int e = 0; e < graph.edgeCount(); e += 1) {
+                assertEquals(graph.bearing(e), loaded.bearing(e), 0.0f);
+            }
+            for (int t = 0; t < graph.nodeCount(); t += 1) {
+                assertEquals(BidirectionalAStar.shortestPath(graph, 3, t, null),
+                        BidirectionalAStar.shortestPath(loaded, 3, t, null));
+            }
+        }
+    }
+
+    @Test
+    public void testStaleSnapshotIsIgnored() throws Exception {
+        File source = source();
+        GraphSnapshot.save(TestContractionHierarchy.grid(3), source);
+        source.setLastModified(GraphSnapshot.of(source).lastModified() + 2000);
+        assertNull(GraphSnapshot.load(source));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        File source = source();
+        GraphSnapshot.save(TestContractionHierarchy.grid(3), source);
+        File snapshot = GraphSnapshot.of(source);
+        long modified = snapshot.lastModified();
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);
+        }
+        snapshot.setLastModified(modified);
+        assertNull(GraphSnapshot.load(source));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnreadableSourceWithoutSnapshotThrows() throws Exception {
+        File source = source();
+        LocationIndex.of(source).deleteOnExit();
+        WayTable.of(source).deleteOnExit();
+        Files.write(source.toPath(), "<osm><node".getBytes());
+        new GraphDB(source.getPath());
+    }
+}
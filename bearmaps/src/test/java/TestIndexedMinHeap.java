@@ -0,0 +1,56 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestIndexedMinHeap {
+    private static final int CAPACITY = 500;
+
+    @Test
+    public void testPollOrderWithDecreaseKey() {
+        Random random = new Random(61);
+        IndexedMinHeap heap = new IndexedMinHeap(CAPACITY);
+        double[] expected = new double[CAPACITY];
+        for (int v = 0; v < CAPACITY; v += 1) {
+            expected[v] = random.nextDouble() * 100;
+            heap.push(v, expected[v]);
+        }
+        /* Lower some priorities; attempts to raise a priority are ignored. */
+        for (int i = 0; i < CAPACITY; i += 1) {
+            int v = random.nextInt(CAPACITY);
+            double key = random.nextDouble() * 100;
+            heap.push(v, key);
+            expected[v] = Math.min(expected[v], key);
+        }
+        double last = Double.NEGATIVE_INFINITY;
+        int polled = 0;
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int v = heap.poll();
+            assertEquals(expected[v], key, 0.0);
+            assertTrue(key >= last);
+            assertFalse(heap.contains(v));
+            last = key;
+            polled += 1;
+        }
+        assertEquals(CAPACITY, polled);
+    }
+
+    @Test
+    public void testClear() {
+        IndexedMinHeap heap = new IndexedMinHeap(CAPACITY);
+        for (int v = 0; v < CAPACITY; v += 2) {
+            heap.push(v, v);
+        }
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        for (int v = 0; v < CAPACITY; v += 1) {
+            assertFalse(heap.contains(v));
+        }
+        heap.push(7, 1.0);
+        assertEquals(7, heap.poll());
+    }
+}
@@ -0,0 +1,105 @@
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an isochrone holds exactly the vertices within its bound, at their shortest path
+ * distances, on the thinned grids of <code>TestContractionHierarchy</code>, and that requests
+ * given in minutes bound the travel time unless they give a constant speed.
+ */
+public class TestIsochrone {
+    @Test
+    public void testMatchesDijkstra() {
+        CompactGraph graph = TestContractionHierarchy.grid(5);
+        int[] all = new int[graph.size()];
+        for (int v = 0; v < all.length; v += 1) {
+            all[v] = v;
+        }
+        int source = 70;
+        double[] expected = DistanceMatrix.dijkstra(graph, new int[]{source}, all)[0];
+        for (double bound : new double[]{0.0, 0.05, 0.2, 0.4, 10.0}) {
+            Isochrone isochrone = Isochrone.compute(graph, source, bound);
+            int within = 0;
+            for (double d : expected) {
+                within += d <= bound ? 1 : 0;
+            }
+            assertEquals(within, isochrone.size());
+            assertEquals(source, isochrone.vertex(0));
+            for (int i = 0; i < isochrone.size(); i += 1) {
+                assertEquals(expected[isochrone.vertex(i)], isochrone.distance(i), 1e-12);
+                assertTrue(isochrone.distance(i) <= bound);
+                if (i > 0) {
+                    assertTrue(isochrone.distance(i - 1) <= isochrone.distance(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTimeMatchesDijkstra() {
+        CompactGraph graph = TestContractionHierarchy.grid(5).byTime();
+        int[] all = new int[graph.size()];
+        for (int v = 0; v < all.length; v += 1) {
+            all[v] = v;
+        }
+        int source = 70;
+        double[] expected = DistanceMatrix.dijkstra(graph, new int[]{source}, all)[0];
+        double bound = 30.0;
+        Isochrone isochrone = Isochrone.compute(graph, source, bound);
+        int within = 0;
+        for (double d : expected) {
+            within += d <= bound ? 1 : 0;
+        }
+        assertTrue(within > 1 && within < graph.size());
+        assertEquals(within, isochrone.size());
+        for (int i = 0; i < isochrone.size(); i += 1) {
+            assertEquals(expected[isochrone.vertex(i)], isochrone.distance(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void testBoundary() {
+        CompactGraph graph = TestContractionHierarchy.grid(7);
+        Isochrone isochrone = Isochrone.compute(graph, 78, 0.3);
+        double[] boundary = isochrone.boundary();
+        assertEquals(0, boundary.length % 2);
+        assertTrue(boundary.length >= 6);
+        assertTrue(boundary.length <= 2 * Isochrone.BOUNDARY_SECTORS);
+        /* Every corner of the boundary is a reached vertex. */
+        double[] dist = isochrone.distancesByVertex();
+        for (int i = 0; i < boundary.length; i += 2) {
+            boolean found = false;
+            for (int v = 0; v < graph.size(); v += 1) {
+                if (graph.lon(v) == boundary[i] && graph.lat(v) == boundary[i + 1]) {
+                    found = dist[v] <= isochrone.bound;
+                }
+            }
+            assertTrue(found);
+        }
+    }
+
+    @Test
+    public void testMinutes() {
+        IsochroneRequestParams params = IsochroneRequestParams.from(Map.of(
+                "lon", new String[]{"-122.26"}, "lat", new String[]{"37.87"},
+                "minutes", new String[]{"20"}));
+        assertEquals(Router.Metric.TIME, params.metric);
+        assertEquals(1200.0, params.bound, 1e-12);
+        params = IsochroneRequestParams.from(Map.of(
+                "isochrone_lon", new String[]{"-122.26"}, "isochrone_lat", new String[]{"37.87"},
+                "isochrone_minutes", new String[]{"6"}, "isochrone_mph", new String[]{"30"}),
+                "isochrone_");
+        assertEquals(Router.Metric.DISTANCE, params.metric);
+        assertEquals(3.0, params.bound, 1e-12);
+        assertEquals(-122.26, params.lon, 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooFar() {
+        IsochroneRequestParams.from(Map.of("lon", new String[]{"-122.26"},
+                "lat", new String[]{"37.87"}, "miles", new String[]{"1000"}));
+    }
+}
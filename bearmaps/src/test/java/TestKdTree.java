@@ -0,0 +1,78 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the k-d tree behind <code>GraphDB.closest</code> returns exactly the same vertex as
+ * a linear scan over all vertices.
+ */
+public class TestKdTree {
+    private static final String OSM_DB_PATH_TINY = "../library-su18/bearmaps/tiny-clean.osm.xml";
+    private static final String OSM_DB_PATH_SMALL = "../library-su18/bearmaps/berkeley-2018-small.osm.xml";
+    private static final int NUM_QUERIES = 2000;
+    private static GraphDB graphTiny;
+    private static GraphDB graphSmall;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws Exception {
+        if (initialized) {
+            return;
+        }
+        graphTiny = new GraphDB(OSM_DB_PATH_TINY);
+        graphSmall = new GraphDB(OSM_DB_PATH_SMALL);
+        initialized = true;
+    }
+
+    @Test
+    public void testClosestMatchesScanTiny() {
+        checkRandomQueries(graphTiny);
+    }
+
+    @Test
+    public void testClosestMatchesScanSmall() {
+        checkRandomQueries(graphSmall);
+    }
+
+    @Test
+    public void testClosestOnVertex() {
+        for (long v : graphSmall.vertices()) {
+            assertEquals(v, graphSmall.closest(graphSmall.lon(v), graphSmall.lat(v)));
+        }
+    }
+
+    @Test
+    public void testClosestOnEmptyGraph() throws Exception {
+        File source = File.createTempFile("empty", ".osm.xml");
+        source.deleteOnExit();
+        GraphSnapshot.of(source).deleteOnExit();
+        LocationIndex.of(source).deleteOnExit();
+        WayTable.of(source).deleteOnExit();
+        Files.write(source.toPath(), "<osm></osm>".getBytes());
+        GraphDB empty = new GraphDB(source.getPath());
+
+        assertEquals(GraphDB.NO_VERTEX, empty.closest(-122.26, 37.87));
+        assertEquals(GraphDB.NO_VERTEX, empty.closestByScan(-122.26, 37.87));
+        assertTrue(Router.shortestPath(empty, -122.26, 37.87, -122.25, 37.86).isEmpty());
+    }
+
+    /** Query points inside and well outside of the map bounds. */
+    private static void checkRandomQueries(GraphDB g) {
+        Random random = new Random(61);
+        double lonSpan = 2 * MapServer.ROOT_LON_DELTA;
+        double latSpan = 2 * MapServer.ROOT_LAT_DELTA;
+        for (int i = 0; i < NUM_QUERIES; i += 1) {
+            double lon = MapServer.ROOT_ULLON - MapServer.ROOT_LON_DELTA / 2
+                    + random.nextDouble() * lonSpan;
+            double lat = MapServer.ROOT_LRLAT - MapServer.ROOT_LAT_DELTA / 2
+                    + random.nextDouble() * latSpan;
+            assertEquals(g.closestByScan(lon, lat), g.closest(lon, lat));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that landmark bounds never overestimate and that ALT finds shortest paths, on the same
+ * random grids as <code>TestContractionHierarchy</code>.
+ */
+public class TestLandmarks {
+    @Test
+    public void testLowerBoundIsAdmissible() {
+        CompactGraph graph = TestContractionHierarchy.grid(5);
+        Landmarks landmarks = Landmarks.build(graph, 4);
+        for (int s = 0; s < graph.size(); s += 5) {
+            for (int t = 0; t < graph.size(); t += 1) {
+                List<Long> path = AStar.shortestPath(graph, s, t, null);
+                if (!path.isEmpty()) {
+                    double length = TestContractionHierarchy.length(graph, path);
+                    assertTrue(landmarks.lowerBound(s, t) <= length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesAStar() throws Exception {
+        CompactGraph graph = TestContractionHierarchy.grid(7);
+        File file = File.createTempFile("landmarks", ".alt");
+        file.deleteOnExit();
+        Landmarks.build(graph, 4).save(file.getPath());
+        Landmarks landmarks = Landmarks.load(file.getPath(), graph);
+        assertNotNull(landmarks);
+        for (int s = 0; s < graph.size(); s += 7) {
+            for (int t = 0; t < graph.size(); t += 1) {
+                List<Long> expected = AStar.shortestPath(graph, s, t, null);
+                List<Long> actual = AStar.shortestPath(graph, s, t, landmarks, null);
+                assertEquals(expected.isEmpty(), actual.isEmpty());
+                if (!expected.isEmpty()) {
+                    assertEquals(TestContractionHierarchy.length(graph, expected),
+                            TestContractionHierarchy.length(graph, actual), 1e-9);
+                }
+            }
+        }
+    }
+}
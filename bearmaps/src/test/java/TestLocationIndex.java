@@ -0,0 +1,191 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that the location index matches cleaned prefixes and names, ranks prefix matches by the
+ * number of locations sharing a name, finds misspelled names as a scan would, and survives saving
+ * and loading.
+ */
+public class TestLocationIndex {
+    private static List<LocationParams> locations() {
+        return Arrays.asList(
+                new LocationParams(37.87, -122.26, "Peet's Coffee", 3),
+                new LocationParams(37.86, -122.25, "Peets Coffee", 1),
+                new LocationParams(37.85, -122.27, "Peet's Coffee", 2),
+                new LocationParams(37.88, -122.28, "Pizzeria", 4),
+                new LocationParams(37.89, -122.29, "Philz Coffee", 5),
+                new LocationParams(37.84, -122.24, "Philz Coffee", 6),
+                new LocationParams(37.83, -122.23, "Cafe Strada", 7),
+                new LocationParams(37.82, -122.22, "!!!", 8));
+    }
+
+    @Test
+    public void testByPrefix() {
+        LocationIndex index = new LocationIndex(locations());
+        assertEquals(7, index.size());
+        /* Peets is shared by three locations under two spellings, Philz by two. */
+        assertEquals(Arrays.asList("Peet's Coffee", "Peets Coffee", "Philz Coffee", "Pizzeria"),
+                index.byPrefix("p", 10));
+        assertEquals(Arrays.asList("Peet's Coffee", "Peets Coffee"), index.byPrefix("PEET'", 10));
+        assertEquals(Arrays.asList("Peet's Coffee", "Peets Coffee", "Philz Coffee"),
+                index.byPrefix("p", 3));
+        assertEquals(Collections.singletonList("Peet's Coffee"), index.byPrefix("p", 1));
+        assertEquals(Collections.emptyList(), index.byPrefix("q", 10));
+        assertEquals(5, index.byPrefix("", 10).size());
+    }
+
+    @Test
+    public void testGet() {
+        LocationIndex index = new LocationIndex(locations());
+        List<LocationParams> peets = index.get("peets coffee");
+        assertEquals(3, peets.size());
+        assertEquals(2, peets.get(0).id);
+        assertEquals("Peet's Coffee", peets.get(0).name);
+        assertEquals(37.85, peets.get(0).lat, 0.0);
+        assertEquals(-122.27, peets.get(0).lon, 0.0);
+        assertEquals(3, peets.get(1).id);
+        assertEquals(1, peets.get(2).id);
+        assertEquals("Peets Coffee", peets.get(2).name);
+        assertEquals(Collections.emptyList(), index.get("peets"));
+    }
+
+    @Test
+    public void testMatchesScan() {
+        Random random = new Random(61);
+        List<LocationParams> locations = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 1) {
+            /* Names with a skewed popularity, some differing only in case and punctuation. */
+            String name = "" + (char) ('a' + random.nextInt(3)) + (char) ('a' + random.nextInt(4))
+                    + " " + Integer.toString(random.nextInt(1 + random.nextInt(300)), 36)
+                    .replaceAll("[0-9]", "") + (random.nextInt(8) == 0 ? "!" : "");
+            name = random.nextInt(8) == 0 ? name.toUpperCase() : name;
+            locations.add(new LocationParams(0, 0, name, i));
+        }
+        LocationIndex index = new LocationIndex(locations);
+        for (String prefix : new String[]{"", "a", "bc", "ca ", "ab f", "cd g", "zz"}) {
+            /* Count the locations per cleaned name, and rank the names by count then name. */
+            Map<String, Set<String>> names = new TreeMap<>();
+            Map<String, Integer> counts = new TreeMap<>();
+            for (LocationParams location : locations) {
+                String key = GraphDB.cleanString(location.name);
+                if (key.startsWith(prefix)) {
+                    names.computeIfAbsent(key, k -> new TreeSet<>()).add(location.name);
+                    counts.merge(key, 1, Integer::sum);
+                }
+            }
+            List<String> keys = new ArrayList<>(counts.keySet());
+            keys.sort(Comparator.comparing((String k) -> -counts.get(k)));
+            List<String> expected = new ArrayList<>();
+            for (String key : keys) {
+                expected.addAll(names.get(key));
+            }
+            assertEquals(expected.subList(0, Math.min(25, expected.size())),
+                    index.byPrefix(prefix, 25));
+        }
+    }
+
+    @Test
+    public void testFuzzy() {
+        LocationIndex index = new LocationIndex(locations());
+        List<LocationParams> peets = index.fuzzy("Peets Cofee", 10, Long.MAX_VALUE);
+        assertEquals(3, peets.size());
+        assertEquals("Peet's Coffee", peets.get(0).name);
+        assertEquals(2, peets.get(0).id);
+        /* Both names are one edit away; Philz is shared by more locations than Pizzeria. */
+        List<LocationParams> matches = index.fuzzy("pilz coffee", 10, Long.MAX_VALUE);
+        assertEquals("Philz Coffee", matches.get(0).name);
+        assertEquals(2, index.fuzzy("Philz Coffee", 10, Long.MAX_VALUE).size());
+        assertEquals(1, index.fuzzy("Cafe Stradda", 10, Long.MAX_VALUE).size());
+        assertEquals(Collections.emptyList(), index.fuzzy("Cafe Sprouts", 10, Long.MAX_VALUE));
+        assertEquals(1, index.fuzzy("Peet's Coffee", 1, Long.MAX_VALUE).size());
+
+        assertEquals(0, LocationIndex.editDistance("coffee", "coffee", 2));
+        assertEquals(1, LocationIndex.editDistance("cofee", "coffee", 2));
+        assertEquals(2, LocationIndex.editDistance("cofefe", "coffee", 2));
+        assertEquals(3, LocationIndex.editDistance("tea", "coffee", 2));
+    }
+
+    @Test
+    public void testFuzzyMatchesScan() {
+        Random random = new Random(61);
+        List<LocationParams> locations = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 1) {
+            StringBuilder name = new StringBuilder();
+            for (int j = 3 + random.nextInt(10); j > 0; j -= 1) {
+                name.append((char) ('a' + random.nextInt(6)));
+            }
+            locations.add(new LocationParams(0, 0, name.toString(), i));
+        }
+        LocationIndex index = new LocationIndex(locations);
+        for (int q = 0; q < 200; q += 1) {
+            /* Misspell a name with up to two random substitutions, insertions or deletions. */
+            StringBuilder query = new StringBuilder(locations.get(random.nextInt(3000)).name);
+            for (int edits = random.nextInt(3); edits > 0; edits -= 1) {
+                int at = random.nextInt(query.length());
+                char c = (char) ('a' + random.nextInt(6));
+                switch (random.nextInt(3)) {
+                    case 0: query.setCharAt(at, c); break;
+                    case 1: query.insert(at, c); break;
+                    default: query.deleteCharAt(at);
+                }
+            }
+            String key = query.toString();
+            int maxEdits = key.length() < 4 ? 0 : key.length() < 8 ? 1 : 2;
+            /* Rank every location by edit distance, count of its name, name and ID. */
+            Map<String, Integer> counts = new TreeMap<>();
+            for (LocationParams location : locations) {
+                counts.merge(location.name, 1, Integer::sum);
+            }
+            List<LocationParams> expected = new ArrayList<>();
+            for (LocationParams location : locations) {
+                if (LocationIndex.editDistance(key, location.name, maxEdits) <= maxEdits) {
+                    expected.add(location);
+                }
+            }
+            expected.sort(Comparator.comparingInt((LocationParams l) ->
+                    LocationIndex.editDistance(key, l.name, maxEdits))
+                    .thenComparing(l -> -counts.get(l.name))
+                    .thenComparing(l -> l.name).thenComparingLong(l -> l.id));
+            List<LocationParams> actual = index.fuzzy(key, 20, Long.MAX_VALUE);
+            assertEquals(Math.min(20, expected.size()), actual.size());
+            for (int i = 0; i < actual.size(); i += 1) {
+                assertEquals(expected.get(i).id, actual.get(i).id);
+            }
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File source = File.createTempFile("locations", ".osm.xml");
+        source.deleteOnExit();
+        LocationIndex.of(source).deleteOnExit();
+        Files.write(source.toPath(), "<osm></osm>".getBytes());
+        assertNull(LocationIndex.load(source));
+
+        new LocationIndex(locations()).save(source);
+        LocationIndex loaded = LocationIndex.load(source);
+        assertNotNull(loaded);
+        assertEquals(7, loaded.size());
+        assertEquals(new LocationIndex(locations()).byPrefix("", 10), loaded.byPrefix("", 10));
+        assertEquals(3, loaded.get("Peet's Coffee").size());
+
+        Files.write(source.toPath(), "<osm> </osm>".getBytes());
+        assertNull(LocationIndex.load(source));
+    }
+}
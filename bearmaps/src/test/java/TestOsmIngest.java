@@ -0,0 +1,257 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that <code>OsmIngest</code> keeps only the nodes on allowed roads, builds each
+ * adjacency list without duplicates, collects the named nodes, times each edge at the speed
+ * of its way, only adds edges in the direction of travel of one-way roads, and keeps the way
+ * of each edge.
+ */
+public class TestOsmIngest {
+    private static final String OSM = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<osm version=\"0.6\">\n"
+            + "  <node id=\"30\" lat=\"37.870\" lon=\"-122.260\"/>\n"
+            + "  <node id=\"10\" lat=\"37.871\" lon=\"-122.261\"/>\n"
+            + "  <node id=\"20\" lat=\"37.872\" lon=\"-122.262\"/>\n"
+            + "  <node id=\"40\" lat=\"37.873\" lon=\"-122.263\"/>\n"
+            + "  <node id=\"50\" lat=\"37.874\" lon=\"-122.264\"/>\n"
+            + "  <node id=\"60\" lat=\"37.875\" lon=\"-122.265\"/>\n"
+            + "  <node id=\"70\" lat=\"37.876\" lon=\"-122.266\">\n"
+            + "    <tag k=\"amenity\" v=\"cafe\"/><tag k=\"name\" v=\"Caffe Strada\"/>\n"
+            + "  </node>\n"
+            + "  <way id=\"1\">\n"
+            + "    <nd ref=\"10\"/><nd ref=\"20\"/><nd ref=\"30\"/>\n"
+            + "    <tag k=\"highway\" v=\"residential\"/>\n"
+            + "  </way>\n"
+            + "  <way id=\"2\">\n"
+            + "    <nd ref=\"30\"/><nd ref=\"20\"/>\n"
+            + "    <tag k=\"highway\" v=\"primary\"/><tag k=\"name\" v=\"Oxford Street\"/>\n"
+            + "  </way>\n"
+            + "  <way id=\"3\">\n"
+            + "    <nd ref=\"30\"/><nd ref=\"40\"/>\n"
+            + "    <tag k=\"highway\" v=\"footway\"/>\n"
+            + "  </way>\n"
+            + "  <way id=\"4\">\n"
+            + "    <nd ref=\"50\"/><nd ref=\"99\"/>\n"
+            + "    <tag k=\"highway\" v=\"tertiary\"/>\n"
+            + "  </way>\n"
+            + "  <way id=\"5\">\n"
+            + "    <nd ref=\"10\"/><nd ref=\"60\"/>\n"
+            + "    <tag k=\"building\" v=\"yes\"/>\n"
+            + "  </way>\n"
+            + "</osm>\n";
+
+    @Test
+    public void testKeepsOnlyAllowedRoads() throws Exception {
+        File source = File.createTempFile("ingest", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), OSM.getBytes());
+
+        List<LocationParams> locations = new ArrayList<>();
+        CompactGraph graph = OsmIngest.read(source, locations);
+        /*
+         * 40 is only on a footway, 50 only reaches a missing node and 60 is only on a way with
+         * no highway tag.
+         */
+        assertEquals(3, graph.size());
+        assertEquals(10, graph.id(0));
+        assertEquals(20, graph.id(1));
+        assertEquals(30, graph.id(2));
+        assertEquals(-1, graph.index(40));
+        assertFalse(graph.directed());
+        assertTrue(graph.reversed() == graph);
+        assertEquals(37.870, graph.lat(2), 0.0);
+        assertEquals(-122.262, graph.lon(1), 0.0);
+
+        /* Ways 1 and 2 both join 20 and 30, which must yield a single edge each way. */
+        assertEquals(4, graph.edgeCount());
+        assertEquals(1, graph.edgeEnd(0) - graph.edgeStart(0));
+        assertEquals(2, graph.edgeEnd(1) - graph.edgeStart(1));
+        assertEquals(0, graph.target(graph.edgeStart(1)));
+        assertEquals(2, graph.target(graph.edgeStart(1) + 1));
+        assertEquals(1, graph.target(graph.edgeStart(2)));
+        assertEquals((float) GraphDB.haversine(37.871, -122.261, 37.872, -122.262),
+                graph.weight(graph.edgeStart(0)), 0.0f);
+
+        /* Only node 70 has a name; the name of way 2 belongs to the road, not a location. */
+        assertEquals(1, locations.size());
+        assertEquals("Caffe Strada", locations.get(0).name);
+        assertEquals(70, locations.get(0).id);
+        assertEquals(37.876, locations.get(0).lat, 0.0);
+        assertEquals(-122.266, locations.get(0).lon, 0.0);
+        List<LocationParams> reread = OsmIngest.readLocations(source);
+        assertEquals(1, reread.size());
+        assertEquals("Caffe Strada", reread.get(0).name);
+    }
+
+    @Test
+    public void testSpeeds() {
+        assertEquals(30f, OsmIngest.speed("residential", "30 mph"), 0f);
+        assertEquals(30f, OsmIngest.speed("residential", "30mph"), 0f);
+        assertEquals(50 / 1.609344f, OsmIngest.speed("primary", "50"), 1e-4f);
+        assertEquals(50 / 1.609344f, OsmIngest.speed("primary", "50 km/h"), 1e-4f);
+        assertEquals(10 / 0.868976f, OsmIngest.speed("primary", "10 knots"), 1e-4f);
+        for (String unreadable : new String[]{null, "none", "signals", "US:urban", "0", ""}) {
+            assertEquals(OsmIngest.DEFAULT_SPEEDS.get("tertiary"),
+                    OsmIngest.speed("tertiary", unreadable), 0f);
+        }
+        for (String highway : OsmIngest.ALLOWED_HIGHWAY_TYPES) {
+            assertTrue(OsmIngest.DEFAULT_SPEEDS.get(highway) > 0);
+        }
+    }
+
+    @Test
+    public void testEdgeTimes() throws Exception {
+        String osm = "<osm version=\"0.6\">\n"
+                + "  <node id=\"1\" lat=\"37.870\" lon=\"-122.260\"/>\n"
+                + "  <node id=\"2\" lat=\"37.871\" lon=\"-122.261\"/>\n"
+                + "  <node id=\"3\" lat=\"37.872\" lon=\"-122.262\"/>\n"
+                + "  <way id=\"1\">\n"
+                + "    <nd ref=\"1\"/><nd ref=\"2\"/>\n"
+                + "    <tag k=\"highway\" v=\"residential\"/><tag k=\"maxspeed\" v=\"15 mph\"/>\n"
+                + "  </way>\n"
+                + "  <way id=\"2\">\n"
+                + "    <nd ref=\"2\"/><nd ref=\"3\"/>\n"
+                + "    <tag k=\"highway\" v=\"primary\"/>\n"
+                + "  </way>\n"
+                + "</osm>\n";
+        File source = File.createTempFile("ingest", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), osm.getBytes());
+
+        CompactGraph graph = OsmIngest.read(source);
+        for (int v = 0; v < graph.size(); v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                boolean first = v == 0 || graph.target(e) == 0;
+                /* Way 2 has no maxspeed and must not inherit the 15 mph of way 1. */
+                float mph = first ? 15f : OsmIngest.DEFAULT_SPEEDS.get("primary");
+                assertEquals(graph.weight(e) * 3600 / mph, graph.time(e), 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void testOneway() throws Exception {
+        String osm = "<osm version=\"0.6\">\n"
+                + "  <node id=\"1\" lat=\"37.870\" lon=\"-122.260\"/>\n"
+                + "  <node id=\"2\" lat=\"37.871\" lon=\"-122.261\"/>\n"
+                + "  <node id=\"3\" lat=\"37.872\" lon=\"-122.262\"/>\n"
+                + "  <node id=\"4\" lat=\"37.873\" lon=\"-122.263\"/>\n"
+                + "  <node id=\"5\" lat=\"37.874\" lon=\"-122.264\"/>\n"
+                + "  <way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/><tag k=\"oneway\" v=\"yes\"/></way>\n"
+                + "  <way id=\"2\"><nd ref=\"2\"/><nd ref=\"3\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/><tag k=\"oneway\" v=\"-1\"/></way>\n"
+                + "  <way id=\"3\"><nd ref=\"3\"/><nd ref=\"4\"/>"
+                + "<tag k=\"highway\" v=\"primary\"/><tag k=\"junction\" v=\"roundabout\"/>"
+                + "</way>\n"
+                + "  <way id=\"4\"><nd ref=\"4\"/><nd ref=\"5\"/>"
+                + "<tag k=\"highway\" v=\"motorway\"/><tag k=\"oneway\" v=\"no\"/></way>\n"
+                + "</osm>\n";
+        File source = File.createTempFile("ingest", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), osm.getBytes());
+
+        CompactGraph graph = OsmIngest.read(source);
+        /* 2 is a dead end with no edge of its own, but is still a vertex. */
+        assertEquals(5, graph.size());
+        assertEquals(5, graph.edgeCount());
+        assertTrue(hasEdge(graph, 1, 2));
+        assertTrue(hasEdge(graph, 3, 2));
+        assertTrue(hasEdge(graph, 3, 4));
+        assertTrue(hasEdge(graph, 4, 5));
+        assertTrue(hasEdge(graph, 5, 4));
+        assertEquals(0, graph.edgeEnd(graph.index(2)) - graph.edgeStart(graph.index(2)));
+        assertTrue(graph.directed());
+        CompactGraph reversed = graph.reversed();
+        assertTrue(reversed != graph);
+        assertTrue(reversed == graph.reversed());
+        assertTrue(reversed.reversed() == graph);
+        assertTrue(hasEdge(reversed, 2, 1));
+        assertEquals(graph.edgeCount(), reversed.edgeCount());
+        for (int v = 0; v < graph.size(); v += 1) {
+            assertEquals(graph.id(v), reversed.id(v));
+        }
+        /* The transpose shares the vertices and only keeps its edges. */
+        assertEquals(4L * (graph.size() + 1) + 12L * graph.edgeCount(), reversed.sizeInBytes());
+
+        assertEquals(1, OsmIngest.direction("motorway", null, null));
+        assertEquals(0, OsmIngest.direction("motorway", "no", null));
+        assertEquals(1, OsmIngest.direction("residential", null, "roundabout"));
+        assertEquals(-1, OsmIngest.direction("residential", "reverse", null));
+        assertEquals(0, OsmIngest.direction("residential", "reversible", null));
+    }
+
+    @Test
+    public void testWayOfEachEdge() throws Exception {
+        File source = File.createTempFile("ingest", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), OSM.getBytes());
+
+        List<WayTable> tables = new ArrayList<>();
+        CompactGraph graph = OsmIngest.read(source, null, tables::add);
+        WayTable ways = tables.get(0);
+        assertEquals(graph.edgeCount(), ways.edgeCount());
+        for (int v = 0; v < graph.size(); v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                /* 20-30 is on both ways and takes the faster, named one. */
+                boolean oxford = graph.id(v) + graph.id(graph.target(e)) == 50;
+                assertEquals(oxford ? 2 : 1, ways.wayId(ways.way(e)));
+                assertEquals(oxford ? "Oxford Street" : "", ways.name(ways.nameRef(e)));
+            }
+        }
+        ways.save(source);
+        WayTable loaded = WayTable.load(source);
+        for (int e = 0; e < graph.edgeCount(); e += 1) {
+            assertEquals(ways.way(e), loaded.way(e));
+            assertEquals(ways.name(ways.nameRef(e)), loaded.name(loaded.nameRef(e)));
+        }
+        WayTable.of(source).delete();
+    }
+
+    @Test
+    public void testTiesGoToFirstWayInFile() throws Exception {
+        /* Enough ways on the same two nodes that the workers get several batches of them. */
+        StringBuilder osm = new StringBuilder("<osm version=\"0.6\">\n"
+                + "  <node id=\"1\" lat=\"37.870\" lon=\"-122.260\"/>\n"
+                + "  <node id=\"2\" lat=\"37.871\" lon=\"-122.261\"/>\n");
+        for (int way = 1; way <= 20000; way += 1) {
+            osm.append("  <way id=\"").append(way).append("\"><nd ref=\"1\"/><nd ref=\"2\"/>")
+                    .append("<tag k=\"highway\" v=\"residential\"/>")
+                    .append("<tag k=\"name\" v=\"Street ").append(way).append("\"/></way>\n");
+        }
+        osm.append("</osm>\n");
+        File source = File.createTempFile("ingest", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), osm.toString().getBytes());
+
+        for (int run = 0; run < 5; run += 1) {
+            List<WayTable> tables = new ArrayList<>();
+            CompactGraph graph = OsmIngest.read(source, null, tables::add);
+            WayTable ways = tables.get(0);
+            assertEquals(2, graph.edgeCount());
+            for (int e = 0; e < graph.edgeCount(); e += 1) {
+                assertEquals(1, ways.wayId(ways.way(e)));
+                assertEquals("Street 1", ways.name(ways.nameRef(e)));
+            }
+        }
+    }
+
+    private static boolean hasEdge(CompactGraph graph, long from, long to) {
+        int v = graph.index(from);
+        for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+            if (graph.id(graph.target(e)) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
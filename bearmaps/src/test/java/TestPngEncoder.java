@@ -0,0 +1,76 @@
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that <code>PngEncoder</code> output decodes back to the same pixels at every deflate
+ * level, and that the streamed JSON raster response carries the same image.
+ */
+public class TestPngEncoder {
+    /** An image with noise in its top half and flat bands below, spanning several chunks. */
+    private static BufferedImage image() {
+        Random random = new Random(61);
+        BufferedImage image = new BufferedImage(300, 260, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y += 1) {
+            for (int x = 0; x < image.getWidth(); x += 1) {
+                image.setRGB(x, y, y < 130 ? random.nextInt() : 0x102030 * (y / 40));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y += 1) {
+            for (int x = 0; x < expected.getWidth(); x += 1) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BufferedImage image = image();
+        for (int level = 0; level <= 9; level += 3) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PngEncoder.write(image, out, level);
+            assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testRasterJson() throws Exception {
+        BufferedImage image = image();
+        String[][] grid = {{"d0_x0_y0.png"}};
+        RasterResultParams params = new RasterResultParams.Builder().setRenderGrid(grid)
+                .setRasterUlLon(MapServer.ROOT_ULLON).setRasterUlLat(MapServer.ROOT_ULLAT)
+                .setRasterLrLon(MapServer.ROOT_LRLON).setRasterLrLat(MapServer.ROOT_LRLAT)
+                .setDepth(0).setQuerySuccess(true).create();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MapServer.writeRasterJson(new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create(), params, image, PngEncoder.DEFAULT_LEVEL, out);
+
+        JsonObject json = new JsonParser().parse(new String(out.toByteArray(),
+                StandardCharsets.UTF_8)).getAsJsonObject();
+        assertEquals(300, json.get("raster_width").getAsInt());
+        assertEquals(260, json.get("raster_height").getAsInt());
+        assertEquals("d0_x0_y0.png", json.getAsJsonArray("render_grid").get(0)
+                .getAsJsonArray().get(0).getAsString());
+        byte[] png = Base64.getDecoder().decode(json.get("b64_encoded_image_data").getAsString());
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+}
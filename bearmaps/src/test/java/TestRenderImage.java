@@ -0,0 +1,130 @@
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that rendering copies each tile into the raster exactly as drawing it onto the raster
+ * with <code>Graphics.drawImage</code> would, for every kind of image a PNG decodes into, and that
+ * routes are drawn over a copy of the cached base map.
+ */
+public class TestRenderImage {
+    private static final String OSM_DB_PATH_TINY = "../library-su18/bearmaps/tiny-clean.osm.xml";
+    private static final int[] TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_BYTE_INDEXED};
+
+    @Test
+    public void testMatchesDrawImage() throws Exception {
+        File dir = Files.createTempDirectory("tiles").toFile();
+        dir.deleteOnExit();
+        Random random = new Random(61);
+        String[][] grid = new String[2][3];
+        for (int i = 0; i < 6; i += 1) {
+            grid[i / 3][i % 3] = "d1_x" + (i % 3) + "_y" + (i / 3) + ".png";
+            if (i == TYPES.length) {
+                continue; // the last tile is missing and stays black
+            }
+            BufferedImage tile = new BufferedImage(MapServer.TILE_SIZE, MapServer.TILE_SIZE,
+                    TYPES[i]);
+            for (int y = 0; y < MapServer.TILE_SIZE; y += 1) {
+                for (int x = 0; x < MapServer.TILE_SIZE; x += 1) {
+                    tile.setRGB(x, y, random.nextInt());
+                }
+            }
+            File file = new File(dir, grid[i / 3][i % 3]);
+            file.deleteOnExit();
+            ImageIO.write(tile, "png", file);
+        }
+        RasterResultParams params = new RasterResultParams.Builder().setRenderGrid(grid)
+                .setRasterUlLon(MapServer.ROOT_ULLON).setRasterUlLat(MapServer.ROOT_ULLAT)
+                .setRasterLrLon(MapServer.ROOT_LRLON).setRasterLrLat(MapServer.ROOT_LRLAT)
+                .setDepth(1).setQuerySuccess(true).create();
+
+        BufferedImage expected = new BufferedImage(3 * MapServer.TILE_SIZE,
+                2 * MapServer.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics graphic = expected.getGraphics();
+        for (int i = 0; i < TYPES.length; i += 1) {
+            graphic.drawImage(ImageIO.read(new File(dir, grid[i / 3][i % 3])),
+                    (i % 3) * MapServer.TILE_SIZE, (i / 3) * MapServer.TILE_SIZE, null);
+        }
+        String root = dir.getPath() + File.separator;
+        for (long budget : new long[]{0, 64L << 20}) {
+            MosaicCache mosaics = new MosaicCache(new TileCache(root, budget), budget);
+            for (int round = 0; round < 2; round += 1) {
+                assertSamePixels(expected, MapServer.renderImage(params, mosaics, null,
+                        Collections.emptyList()));
+            }
+        }
+    }
+
+    @Test
+    public void testRouteDrawnOnCopy() throws Exception {
+        File dir = Files.createTempDirectory("tiles").toFile();
+        dir.deleteOnExit();
+        BufferedImage white = new BufferedImage(MapServer.TILE_SIZE, MapServer.TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics graphic = white.getGraphics();
+        graphic.setColor(Color.WHITE);
+        graphic.fillRect(0, 0, MapServer.TILE_SIZE, MapServer.TILE_SIZE);
+        File file = new File(dir, "d0_x0_y0.png");
+        file.deleteOnExit();
+        ImageIO.write(white, "png", file);
+        RasterResultParams params = new RasterResultParams.Builder()
+                .setRenderGrid(new String[][]{{"d0_x0_y0.png"}})
+                .setRasterUlLon(MapServer.ROOT_ULLON).setRasterUlLat(MapServer.ROOT_ULLAT)
+                .setRasterLrLon(MapServer.ROOT_LRLON).setRasterLrLat(MapServer.ROOT_LRLAT)
+                .setDepth(0).setQuerySuccess(true).create();
+        GraphDB graph = new GraphDB(OSM_DB_PATH_TINY);
+        List<Long> route = Arrays.asList(11L, 41L, 63L);
+
+        MosaicCache mosaics = new MosaicCache(new TileCache(dir.getPath() + File.separator,
+                1L << 20), 1L << 20);
+        BufferedImage withRoute = MapServer.renderImage(params, mosaics, graph, route);
+        BufferedImage base = MapServer.renderImage(params, mosaics, graph,
+                Collections.emptyList());
+        assertSamePixels(white, base);
+        int routePixels = 0;
+        for (int y = 0; y < MapServer.TILE_SIZE; y += 1) {
+            for (int x = 0; x < MapServer.TILE_SIZE; x += 1) {
+                routePixels += withRoute.getRGB(x, y) != white.getRGB(x, y) ? 1 : 0;
+            }
+        }
+        assertTrue(routePixels > 0);
+        assertEquals(1, mosaics.stats().hits);
+        assertEquals(1, mosaics.stats().misses);
+
+        /* An isochrone is shaded on a copy too, out along the edges as far as its bound. */
+        Isochrone isochrone = Isochrone.compute(graph.compact(), graph.compact().index(11L), 0.3);
+        BufferedImage withIsochrone = MapServer.renderImage(params, mosaics, graph,
+                Collections.emptyList(), isochrone);
+        assertSamePixels(white, MapServer.renderImage(params, mosaics, graph,
+                Collections.emptyList()));
+        int shadedPixels = 0;
+        for (int y = 0; y < MapServer.TILE_SIZE; y += 1) {
+            for (int x = 0; x < MapServer.TILE_SIZE; x += 1) {
+                shadedPixels += withIsochrone.getRGB(x, y) != white.getRGB(x, y) ? 1 : 0;
+            }
+        }
+        assertTrue(shadedPixels > 0);
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); y += 1) {
+            for (int x = 0; x < expected.getWidth(); x += 1) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the route cache hits on repeated vertex pairs, keeps metrics and algorithms apart,
+ * stays within its budget, empties itself for a different graph, and that routing through it
+ * matches routing without it.
+ */
+public class TestRouteCache {
+    private static final String OSM_DB_PATH_TINY = "../library-su18/bearmaps/tiny-clean.osm.xml";
+    private static final Router.Metric DISTANCE = Router.Metric.DISTANCE;
+    private static final Router.Algorithm AUTO = Router.Algorithm.AUTO;
+
+    @Test
+    public void testHitsAndMisses() {
+        GraphDB graph = new GraphDB(OSM_DB_PATH_TINY);
+        RouteCache cache = new RouteCache(1L << 20);
+        assertNull(cache.get(graph, 1, 2, DISTANCE, AUTO));
+        cache.put(graph, 1, 2, DISTANCE, AUTO, Arrays.asList(10L, 20L, 30L), "1. go <br>",
+                5_000_000);
+        RouteCache.Route route = cache.get(graph, 1, 2, DISTANCE, AUTO);
+        assertNotNull(route);
+        assertEquals(Arrays.asList(10L, 20L, 30L), route.path());
+        assertEquals("1. go <br>", route.directions);
+        /* The key is ordered, so the reverse trip is a different route. */
+        assertNull(cache.get(graph, 2, 1, DISTANCE, AUTO));
+
+        RouteCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(1, stats.entries);
+        assertEquals(RouteCache.ROUTE_OVERHEAD_BYTES + 3 * 8 + 10, stats.bytes);
+        assertEquals(5.0, stats.savedMillis, 1e-9);
+    }
+
+    @Test
+    public void testKeyedByMetricAndAlgorithm() {
+        GraphDB graph = new GraphDB(OSM_DB_PATH_TINY);
+        RouteCache cache = new RouteCache(1L << 20);
+        cache.put(graph, 1, 2, DISTANCE, AUTO, Arrays.asList(10L, 20L), "shortest", 0);
+        cache.put(graph, 1, 2, Router.Metric.TIME, AUTO, Arrays.asList(10L, 30L), "fastest", 0);
+        assertEquals("shortest", cache.get(graph, 1, 2, DISTANCE, AUTO).directions);
+        assertEquals("fastest", cache.get(graph, 1, 2, Router.Metric.TIME, AUTO).directions);
+        assertNull(cache.get(graph, 1, 2, DISTANCE, Router.Algorithm.ALT));
+        assertEquals(2, cache.stats().entries);
+    }
+
+    @Test
+    public void testStaysWithinBudget() {
+        GraphDB graph = new GraphDB(OSM_DB_PATH_TINY);
+        long routeBytes = RouteCache.ROUTE_OVERHEAD_BYTES + 8 * 100;
+        RouteCache cache = new RouteCache(3 * routeBytes);
+        List<Long> path = Collections.nCopies(100, 7L);
+        for (int i = 0; i < 10; i += 1) {
+            cache.put(graph, i, i + 1, DISTANCE, AUTO, path, "", 0);
+            cache.get(graph, 0, 1, DISTANCE, AUTO);
+            assertTrue(cache.stats().bytes <= 3 * routeBytes);
+        }
+        /* The route looked up after every insertion stays; the others go oldest first. */
+        assertNotNull(cache.get(graph, 0, 1, DISTANCE, AUTO));
+        assertNull(cache.get(graph, 7, 8, DISTANCE, AUTO));
+        assertNotNull(cache.get(graph, 8, 9, DISTANCE, AUTO));
+        assertNotNull(cache.get(graph, 9, 10, DISTANCE, AUTO));
+        assertEquals(7, cache.stats().evictions);
+
+        RouteCache disabled = new RouteCache(0);
+        disabled.put(graph, 0, 1, DISTANCE, AUTO, path, "", 0);
+        assertNull(disabled.get(graph, 0, 1, DISTANCE, AUTO));
+    }
+
+    @Test
+    public void testInvalidatedByAnotherGraph() {
+        GraphDB graph = new GraphDB(OSM_DB_PATH_TINY);
+        RouteCache cache = new RouteCache(1L << 20);
+        cache.put(graph, 1, 2, DISTANCE, AUTO, Arrays.asList(10L, 20L), "", 0);
+        GraphDB reloaded = new GraphDB(OSM_DB_PATH_TINY);
+        assertNull(cache.get(reloaded, 1, 2, DISTANCE, AUTO));
+        assertEquals(0, cache.stats().entries);
+        assertEquals(0, cache.stats().bytes);
+    }
+
+    @Test
+    public void testRouteMatchesUncached() {
+        GraphDB graph = new GraphDB(OSM_DB_PATH_TINY);
+        RouteCache cache = new RouteCache(1L << 20);
+        RouteRequestParams params = new RouteRequestParams.Builder().setStartLon(-122.27)
+                .setStartLat(37.84).setEndLon(-122.23).setEndLat(37.88).create();
+        RouteCache.Route first = MapServer.route(graph, cache, params, null);
+        assertEquals(Arrays.asList(22L, 46L, 66L), first.path());
+        /* A nearby click snaps to the same vertices and reuses the route. */
+        RouteRequestParams nearby = new RouteRequestParams.Builder().setStartLon(-122.2701)
+                .setStartLat(37.8401).setEndLon(-122.2299).setEndLat(37.8799).create();
+        assertSame(first, MapServer.route(graph, cache, nearby, null));
+        assertEquals(1, cache.stats().hits);
+
+        /* Traced requests always search, and other algorithms are cached apart. */
+        SearchTrace trace = new SearchTrace();
+        RouteCache.Route traced = MapServer.route(graph, cache, params, trace);
+        assertEquals(first.path(), traced.path());
+        assertEquals(first.directions, traced.directions);
+        assertTrue(trace.expansions() > 0);
+        RouteRequestParams aStar = new RouteRequestParams.Builder().setStartLon(-122.27)
+                .setStartLat(37.84).setEndLon(-122.23).setEndLat(37.88)
+                .setAlgorithm(Router.Algorithm.ASTAR).create();
+        RouteCache.Route explicit = MapServer.route(graph, cache, aStar, null);
+        assertEquals(first.path(), explicit.path());
+        assertSame(explicit, MapServer.route(graph, cache, aStar, null));
+        assertEquals(2, cache.stats().hits);
+        assertEquals(2, cache.stats().misses);
+
+        /* Fastest routes are cached too. */
+        RouteRequestParams fastest = new RouteRequestParams.Builder().setStartLon(-122.27)
+                .setStartLat(37.84).setEndLon(-122.23).setEndLat(37.88)
+                .setMetric(Router.Metric.TIME).create();
+        RouteCache.Route timed = MapServer.route(graph, cache, fastest, null);
+        assertSame(timed, MapServer.route(graph, cache, fastest, null));
+        assertEquals(3, cache.stats().hits);
+    }
+}
@@ -0,0 +1,114 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the route store keeps each session's route apart, expires idle sessions, stays
+ * within its budget, and stays consistent under concurrent use.
+ */
+public class TestRouteStore {
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    public void testSessionsAreSeparate() {
+        RouteStore store = new RouteStore(1L << 20, 60_000);
+        store.put("a", Arrays.asList(1L, 2L, 3L));
+        store.put("b", Arrays.asList(4L, 5L));
+        assertEquals(Arrays.asList(1L, 2L, 3L), store.get("a"));
+        assertEquals(Arrays.asList(4L, 5L), store.get("b"));
+        assertEquals(Collections.emptyList(), store.get("c"));
+        assertEquals(Collections.emptyList(), store.get(null));
+
+        store.remove("a");
+        assertEquals(Collections.emptyList(), store.get("a"));
+        assertEquals(Arrays.asList(4L, 5L), store.get("b"));
+        store.put("b", Collections.emptyList());
+        assertEquals(Collections.emptyList(), store.get("b"));
+
+        CacheStats stats = store.stats();
+        assertEquals(3, stats.hits);
+        assertEquals(4, stats.misses);
+        assertEquals(0, stats.entries);
+        assertEquals(0, stats.bytes);
+    }
+
+    @Test
+    public void testIdleSessionsExpire() {
+        AtomicLong now = new AtomicLong();
+        RouteStore store = new RouteStore(1L << 20, 60_000, now::get);
+        store.put("a", Arrays.asList(1L, 2L));
+        store.put("b", Arrays.asList(3L, 4L));
+        now.addAndGet(MINUTE / 2);
+        assertEquals(Arrays.asList(1L, 2L), store.get("a"));
+        now.addAndGet(MINUTE / 2);
+        assertEquals(Arrays.asList(1L, 2L), store.get("a"));
+        assertEquals(Collections.emptyList(), store.get("b"));
+        assertEquals(1, store.stats().entries);
+        assertEquals(1, store.stats().evictions);
+
+        now.addAndGet(MINUTE);
+        assertEquals(0, store.stats().entries);
+        assertEquals(0, store.stats().bytes);
+    }
+
+    @Test
+    public void testStaysWithinBudget() {
+        List<Long> route = new ArrayList<>();
+        for (long v = 0; v < 100; v += 1) {
+            route.add(v);
+        }
+        long sessionBytes = RouteStore.SESSION_OVERHEAD_BYTES + 2 * 2 + 8 * route.size();
+        RouteStore store = new RouteStore(3 * sessionBytes, 60_000);
+        for (int i = 0; i < 10; i += 1) {
+            store.put("s" + i, route);
+            /* Reading s1 keeps it in use while older sessions are dropped. */
+            assertEquals(i >= 1 ? route : Collections.emptyList(), store.get("s1"));
+            assertTrue(store.stats().bytes <= 3 * sessionBytes);
+        }
+        CacheStats stats = store.stats();
+        assertEquals(3, stats.entries);
+        assertEquals(3 * sessionBytes, stats.bytes);
+        assertEquals(7, stats.evictions);
+        assertEquals(Collections.emptyList(), store.get("s7"));
+        assertEquals(route, store.get("s9"));
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        RouteStore store = new RouteStore(1L << 20, 60_000);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t += 1) {
+            String session = "s" + t;
+            long id = t;
+            results.add(pool.submit(() -> {
+                boolean consistent = true;
+                for (int i = 0; i < 10000; i += 1) {
+                    store.put(session, Arrays.asList(id, (long) i));
+                    List<Long> route = store.get(session);
+                    consistent &= route.get(0) == id && route.get(1) == i;
+                }
+                return consistent;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        pool.shutdown();
+        CacheStats stats = store.stats();
+        assertEquals(8, stats.entries);
+        assertEquals(80000, stats.hits);
+        assertEquals(8 * (RouteStore.SESSION_OVERHEAD_BYTES + 4 + 16), stats.bytes);
+    }
+}
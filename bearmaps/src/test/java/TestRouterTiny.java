@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by hug, 4/9/2018. Basic tests for A* on the tiny graph.
@@ -63,4 +64,68 @@ public class TestRouterTiny {
         expected.add(55L);
         assertEquals(expected, actual);
     }
+
+    @Test
+    public void testTraceRecordsExpansions() {
+        SearchTrace trace = new SearchTrace(2);
+        RouteRequestParams params = new RouteRequestParams.Builder()
+                .setStartLon(-122.25).setStartLat(37.83).setEndLon(-122.25).setEndLat(37.88)
+                .create();
+        List<Long> actual = Router.shortestPath(graphTiny, params, trace);
+        List<Long> expected = Router.shortestPath(graphTiny, -122.25, 37.83, -122.25, 37.88);
+        assertEquals(expected, actual);
+        assertTrue(trace.expansions() >= expected.size());
+    }
+
+    @Test
+    public void testBidirectionalMatchesAStar() {
+        for (long s : graphTiny.vertices()) {
+            for (long t : graphTiny.vertices()) {
+                RouteRequestParams.Builder builder = new RouteRequestParams.Builder()
+                        .setStartLon(graphTiny.lon(s)).setStartLat(graphTiny.lat(s))
+                        .setEndLon(graphTiny.lon(t)).setEndLat(graphTiny.lat(t));
+                List<Long> expected = Router.shortestPath(graphTiny,
+                        builder.setAlgorithm(Router.Algorithm.ASTAR).create(), null);
+                List<Long> actual = Router.shortestPath(graphTiny,
+                        builder.setAlgorithm(Router.Algorithm.BIDIRECTIONAL).create(), null);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    private static List<String> directions(long... route) {
+        List<Long> path = new ArrayList<>();
+        for (long v : route) {
+            path.add(v);
+        }
+        List<String> directions = new ArrayList<>();
+        for (Router.NavigationDirection d : Router.routeDirections(graphTiny, path)) {
+            directions.add(d.toString());
+        }
+        return directions;
+    }
+
+    @Test
+    public void testDirections() {
+        List<String> expected = new ArrayList<>();
+        expected.add("Start on 11/41/63 southeast side highway and continue for 1.763 miles.");
+        expected.add("Turn left on scenic 22/55/63/66 highway and continue for 2.075 miles.");
+        expected.add("Turn left on 22/46/66 northwest side highway and continue for 1.092 miles.");
+        assertEquals(expected, directions(41, 63, 66, 46));
+
+        expected.clear();
+        expected.add("Start on 22/46/66 northwest side highway and continue for 4.066 miles.");
+        expected.add("Slight right on 11/21 connector road and continue for 0.881 miles.");
+        assertEquals(expected, directions(66, 46, 22, 11));
+    }
+
+    @Test
+    public void testDirectionsMergeSegmentsOnOneWay() {
+        List<String> expected = new ArrayList<>();
+        expected.add("Start on 11/41/63 southeast side highway and continue for 3.402 miles.");
+        assertEquals(expected, directions(11, 41, 63));
+        assertEquals(1, directions(22, 55, 63, 66).size());
+        assertTrue(directions(11).isEmpty());
+        assertTrue(directions().isEmpty());
+    }
 }
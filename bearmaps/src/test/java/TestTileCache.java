@@ -0,0 +1,94 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the tile cache counts hits and misses, stays within its budget, and keeps tiles
+ * that are used again when a scan passes over many others.
+ */
+public class TestTileCache {
+    private static final int NUM_TILES = 8;
+    private String root;
+    /** Size of one test tile as the cache holds it. */
+    private long tileBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        File dir = Files.createTempDirectory("tiles").toFile();
+        dir.deleteOnExit();
+        for (int i = 0; i < NUM_TILES; i += 1) {
+            BufferedImage tile = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+            tile.setRGB(i, i, 0xffffff);
+            File file = new File(dir, name(i));
+            file.deleteOnExit();
+            ImageIO.write(tile, "png", file);
+        }
+        root = dir.getPath() + File.separator;
+        tileBytes = TileCache.bytes(new TileCache(root, Long.MAX_VALUE).get(name(0)));
+    }
+
+    private static String name(int i) {
+        return "d7_x" + i + "_y0.png";
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        TileCache cache = new TileCache(root, 100 * tileBytes);
+        BufferedImage first = cache.get(name(0));
+        assertNotNull(first);
+        assertEquals(0xffffffff, first.getRGB(0, 0));
+        assertSame(first, cache.get(name(0)));
+        assertNull(cache.get("d7_x99_y99.png"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(1, stats.entries);
+        assertEquals(tileBytes, stats.bytes);
+    }
+
+    @Test
+    public void testStaysWithinBudget() {
+        TileCache cache = new TileCache(root, 3 * tileBytes);
+        for (int i = 0; i < NUM_TILES; i += 1) {
+            cache.get(name(i));
+        }
+        CacheStats stats = cache.stats();
+        assertEquals(3, stats.entries);
+        assertEquals(NUM_TILES - 3, stats.evictions);
+        cache.get(name(0));
+        assertEquals(NUM_TILES + 1, cache.stats().misses);
+    }
+
+    @Test
+    public void testScanKeepsReusedTiles() {
+        TileCache cache = new TileCache(root, 4 * tileBytes);
+        cache.get(name(0));
+        cache.get(name(0));
+        for (int i = 1; i < NUM_TILES; i += 1) {
+            cache.get(name(i));
+        }
+        cache.get(name(0));
+        assertEquals(2, cache.stats().hits);
+    }
+
+    @Test
+    public void testZeroBudgetDisablesCaching() {
+        TileCache cache = new TileCache(root, 0);
+        cache.get(name(0));
+        cache.get(name(0));
+        CacheStats stats = cache.stats();
+        assertEquals(0, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(0, stats.entries);
+    }
+}
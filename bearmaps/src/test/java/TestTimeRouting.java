@@ -0,0 +1,91 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every routing algorithm finds fastest routes on the travel time view of the
+ * thinned grids of <code>TestContractionHierarchy</code>, whose streets have different speed
+ * limits, and that the scaled great-circle heuristic never overestimates a travel time.
+ */
+public class TestTimeRouting {
+    /** Returns the travel time of a path, in seconds, or infinity if it is empty. */
+    private static double time(CompactGraph graph, List<Long> path) {
+        if (path.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return TestContractionHierarchy.length(graph, path);
+    }
+
+    @Test
+    public void testAlgorithmsMatchDijkstra() {
+        CompactGraph graph = TestContractionHierarchy.grid(5).byTime();
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        int[] all = new int[graph.size()];
+        for (int v = 0; v < all.length; v += 1) {
+            all[v] = v;
+        }
+        for (int s = 0; s < graph.size(); s += 11) {
+            double[] expected = DistanceMatrix.dijkstra(graph, new int[]{s}, all)[0];
+            for (int t = 0; t < graph.size(); t += 1) {
+                assertEquals(expected[t], time(graph, AStar.shortestPath(graph, s, t, null)),
+                        1e-6);
+                assertEquals(expected[t],
+                        time(graph, BidirectionalAStar.shortestPath(graph, s, t, null)), 1e-6);
+                assertEquals(expected[t], time(graph, ch.shortestPath(s, t, null)), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testHeuristicIsAdmissible() {
+        CompactGraph graph = TestContractionHierarchy.grid(9).byTime();
+        assertTrue(graph.weightPerMile() > 0);
+        int[] all = new int[graph.size()];
+        for (int v = 0; v < all.length; v += 1) {
+            all[v] = v;
+        }
+        double[][] times = DistanceMatrix.dijkstra(graph, all, all);
+        for (int s = 0; s < graph.size(); s += 1) {
+            for (int t = 0; t < graph.size(); t += 1) {
+                double h = GraphDB.haversine(graph.lat(s), graph.lon(s), graph.lat(t),
+                        graph.lon(t)) * graph.weightPerMile();
+                assertTrue(h <= times[s][t]);
+            }
+        }
+    }
+
+    @Test
+    public void testFastestIsNotShortest() {
+        CompactGraph graph = TestContractionHierarchy.grid(5);
+        CompactGraph timed = graph.byTime();
+        int slower = 0;
+        for (int t = 0; t < graph.size(); t += 1) {
+            List<Long> shortest = AStar.shortestPath(graph, 0, t, null);
+            List<Long> fastest = AStar.shortestPath(timed, 0, t, null);
+            assertTrue(time(timed, fastest) <= time(timed, shortest) + 1e-9);
+            assertTrue(TestContractionHierarchy.length(graph, shortest)
+                    <= TestContractionHierarchy.length(graph, fastest) + 1e-9);
+            slower += time(timed, fastest) < time(timed, shortest) - 1e-9 ? 1 : 0;
+        }
+        assertTrue("speed limits should change some routes", slower > 0);
+    }
+
+    @Test
+    public void testMetricsShareSearchState() {
+        CompactGraph distance = TestContractionHierarchy.grid(5);
+        CompactGraph time = distance.byTime();
+        SearchState state = SearchState.forGraph(distance);
+        assertTrue(state == SearchState.forGraph(time));
+        assertTrue(state.graph == time);
+        for (int t = 0; t < distance.size(); t += 1) {
+            List<Long> fastest = AStar.shortestPath(time, 0, t, null);
+            List<Long> shortest = AStar.shortestPath(distance, 0, t, null);
+            assertTrue(state == SearchState.forGraph(distance));
+            assertEquals(fastest, AStar.shortestPath(time, 0, t, null));
+            assertEquals(shortest, AStar.shortestPath(distance, 0, t, null));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that turn restrictions are honored by every routing algorithm on a three by three grid
+ * whose center junction, node 5, has a banned left turn and an only-straight-on restriction.
+ * The west column is bent outward, so that without the restrictions every route below goes
+ * through the center.
+ */
+public class TestTurnRestrictions {
+    private static final String OSM = "<osm version=\"0.6\">\n"
+            + "  <node id=\"1\" lat=\"37.872\" lon=\"-122.2625\"/>\n"
+            + "  <node id=\"2\" lat=\"37.872\" lon=\"-122.261\"/>\n"
+            + "  <node id=\"3\" lat=\"37.872\" lon=\"-122.260\"/>\n"
+            + "  <node id=\"4\" lat=\"37.871\" lon=\"-122.262\"/>\n"
+            + "  <node id=\"5\" lat=\"37.871\" lon=\"-122.261\"/>\n"
+            + "  <node id=\"6\" lat=\"37.871\" lon=\"-122.260\"/>\n"
+            + "  <node id=\"7\" lat=\"37.870\" lon=\"-122.2625\"/>\n"
+            + "  <node id=\"8\" lat=\"37.870\" lon=\"-122.261\"/>\n"
+            + "  <node id=\"9\" lat=\"37.870\" lon=\"-122.260\"/>\n"
+            + way(11, "residential", 1, 2, 3)
+            + way(12, "residential", 4, 5)
+            + way(13, "residential", 5, 6)
+            + way(14, "residential", 7, 8, 9)
+            + way(15, "residential", 1, 4, 7)
+            + way(16, "residential", 2, 5)
+            + way(17, "residential", 5, 8)
+            + way(18, "residential", 3, 6, 9)
+            /* Heading east on 12, turning north onto 16 at 5 is a left turn. */
+            + restriction("no_left_turn", 12, 5, 16, "")
+            /* Heading north on 17, the only way on at 5 is straight onto 16. */
+            + restriction("only_straight_on", 17, 5, 16, "")
+            /* Neither of these applies to cars. */
+            + restriction("no_right_turn", 12, 5, 17, "<tag k=\"except\" v=\"bicycle;motorcar\"/>")
+            + "  <relation id=\"4\"><member type=\"way\" ref=\"13\" role=\"from\"/>"
+            + "<member type=\"way\" ref=\"16\" role=\"via\"/>"
+            + "<member type=\"way\" ref=\"11\" role=\"to\"/>"
+            + "<tag k=\"type\" v=\"restriction\"/><tag k=\"restriction\" v=\"no_u_turn\"/>"
+            + "</relation>\n"
+            + "</osm>\n";
+
+    private static String way(long id, String highway, long... nodes) {
+        StringBuilder way = new StringBuilder("  <way id=\"" + id + "\">");
+        for (long node : nodes) {
+            way.append("<nd ref=\"").append(node).append("\"/>");
+        }
+        return way.append("<tag k=\"highway\" v=\"").append(highway).append("\"/></way>\n")
+                .toString();
+    }
+
+    private static String restriction(String type, long from, long via, long to, String tags) {
+        return "  <relation id=\"" + from + via + to + "\">"
+                + "<member type=\"way\" ref=\"" + from + "\" role=\"from\"/>"
+                + "<member type=\"node\" ref=\"" + via + "\" role=\"via\"/>"
+                + "<member type=\"way\" ref=\"" + to + "\" role=\"to\"/>"
+                + "<tag k=\"type\" v=\"restriction\"/><tag k=\"restriction\" v=\"" + type + "\"/>"
+                + tags + "</relation>\n";
+    }
+
+    /** Returns the restricted grid, read by <code>OsmIngest</code>. */
+    static CompactGraph restricted() throws Exception {
+        return read(OSM);
+    }
+
+    private static CompactGraph read(String osm) throws Exception {
+        File source = File.createTempFile("restricted", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), osm.getBytes());
+        return OsmIngest.read(source);
+    }
+
+    private static List<Long> path(long... ids) {
+        Long[] boxed = new Long[ids.length];
+        for (int i = 0; i < ids.length; i += 1) {
+            boxed[i] = ids[i];
+        }
+        return Arrays.asList(boxed);
+    }
+
+    @Test
+    public void testJunctionIsSplit() throws Exception {
+        CompactGraph graph = restricted();
+        /* The approaches from 4 and from 8 each get their own copy of 5. */
+        assertEquals(9, graph.nodeCount());
+        assertEquals(11, graph.size());
+        int center = graph.index(5);
+        assertEquals(2, graph.copies(center).length);
+        for (int copy : graph.copies(center)) {
+            assertEquals(center, graph.original(copy));
+            assertEquals(5, graph.id(copy));
+            assertEquals(graph.lat(center), graph.lat(copy), 0.0);
+        }
+        assertEquals(0, graph.copies(graph.index(4)).length);
+        Set<Long> ids = new HashSet<>();
+        graph.idIterator().forEachRemaining((long id) -> ids.add(id));
+        assertEquals(9, ids.size());
+
+        /* Without the relations, the junction is not split. */
+        CompactGraph plain = read(OSM.replaceAll("  <relation.*\n", ""));
+        assertEquals(9, plain.size());
+        assertEquals(plain.index(2), plain.target(plain.edgeStart(plain.index(5))));
+    }
+
+    @Test
+    public void testCopiesKeepTheirWays() throws Exception {
+        File source = File.createTempFile("restricted", ".osm.xml");
+        source.deleteOnExit();
+        Files.write(source.toPath(), OSM.getBytes());
+        List<WayTable> tables = new ArrayList<>();
+        CompactGraph graph = OsmIngest.read(source, null, tables::add);
+        WayTable ways = tables.get(0);
+        assertEquals(graph.edgeCount(), ways.edgeCount());
+        long[][] wayEnds = {{11, 1, 2}, {11, 2, 3}, {12, 4, 5}, {13, 5, 6}, {14, 7, 8},
+            {14, 8, 9}, {15, 1, 4}, {15, 4, 7}, {16, 2, 5}, {17, 5, 8}, {18, 3, 6}, {18, 6, 9}};
+        for (int v = 0; v < graph.size(); v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                long a = Math.min(graph.id(v), graph.id(graph.target(e)));
+                long b = Math.max(graph.id(v), graph.id(graph.target(e)));
+                long way = -1;
+                for (long[] ends : wayEnds) {
+                    way = ends[1] == a && ends[2] == b ? ends[0] : way;
+                }
+                assertEquals(way, ways.wayId(ways.way(e)));
+            }
+        }
+    }
+
+    @Test
+    public void testRoutesAvoidBannedTurns() throws Exception {
+        CompactGraph graph = restricted();
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        Landmarks landmarks = Landmarks.build(graph, 2);
+        long[][] queries = {{4, 2}, {8, 4}, {8, 6}, {4, 8}, {8, 2}, {4, 5}, {6, 4}};
+        long[][] expected = {{4, 1, 2}, {8, 7, 4}, {8, 9, 6}, {4, 5, 8}, {8, 5, 2}, {4, 5},
+            {6, 5, 4}};
+        for (int i = 0; i < queries.length; i += 1) {
+            int s = graph.index(queries[i][0]);
+            int t = graph.index(queries[i][1]);
+            List<Long> want = path(expected[i]);
+            assertEquals(want, AStar.shortestPath(graph, s, t, null));
+            assertEquals(want, AStar.shortestPath(graph, s, t, landmarks, null));
+            assertEquals(want, BidirectionalAStar.shortestPath(graph, s, t, null));
+            assertEquals(want, ch.shortestPath(s, t, null));
+        }
+    }
+
+    @Test
+    public void testAlgorithmsAgree() throws Exception {
+        CompactGraph graph = restricted();
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+        int[] nodes = new int[graph.nodeCount()];
+        for (int v = 0; v < nodes.length; v += 1) {
+            nodes[v] = v;
+        }
+        double[][] dijkstra = DistanceMatrix.dijkstra(graph, nodes, nodes);
+        double[][] buckets = ch.distances(nodes, nodes);
+        for (int s : nodes) {
+            for (int t : nodes) {
+                double want = dijkstra[s][t];
+                assertEquals(want, buckets[s][t], 1e-6);
+                List<Long> astar = AStar.shortestPath(graph, s, t, null);
+                List<Long> bidirectional = BidirectionalAStar.shortestPath(graph, s, t, null);
+                assertEquals(want, length(graph, astar), 1e-6);
+                assertEquals(want, length(graph, bidirectional), 1e-6);
+                assertEquals(want, length(graph, ch.shortestPath(s, t, null)), 1e-6);
+                for (List<Long> path : Arrays.asList(astar, bidirectional)) {
+                    String ids = path.toString();
+                    assertFalse(ids, ids.contains("4, 5, 2"));
+                    assertFalse(ids, ids.contains("8, 5, 4") || ids.contains("8, 5, 6"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIsochroneReportsNodesOnce() throws Exception {
+        CompactGraph graph = restricted();
+        Isochrone isochrone = Isochrone.compute(graph, graph.index(4), 10);
+        assertEquals(graph.nodeCount(), isochrone.size());
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < isochrone.size(); i += 1) {
+            assertTrue(isochrone.vertex(i) < graph.nodeCount());
+            assertTrue(seen.add(isochrone.vertex(i)));
+        }
+        double[] byVertex = isochrone.distancesByVertex();
+        for (int copy : graph.copies(graph.index(5))) {
+            assertEquals(byVertex[graph.index(5)], byVertex[copy], 0.0);
+        }
+    }
+
+    /** Returns the length of a path of OSM IDs, summing the lightest edge between each pair. */
+    private static double length(CompactGraph graph, List<Long> path) {
+        double length = 0;
+        for (int i = 0; i + 1 < path.size(); i += 1) {
+            double lightest = Double.POSITIVE_INFINITY;
+            for (int v = 0; v < graph.size(); v += 1) {
+                if (graph.id(v) != path.get(i)) {
+                    continue;
+                }
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                    if (graph.id(graph.target(e)) == path.get(i + 1)) {
+                        lightest = Math.min(lightest, graph.weight(e));
+                    }
+                }
+            }
+            length += lightest;
+        }
+        return path.isEmpty() ? Double.POSITIVE_INFINITY : length;
+    }
+}
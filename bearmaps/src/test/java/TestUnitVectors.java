@@ -0,0 +1,79 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the chord bound of <code>UnitVectors</code> never exceeds the great-circle
+ * distance or the weight of an edge, while staying close to the great-circle distance, and that
+ * the precomputed edge bearings match <code>GraphDB.bearing</code>.
+ */
+public class TestUnitVectors {
+    @Test
+    public void testChordIsTightLowerBound() throws Exception {
+        CompactGraph graph = TestTurnRestrictions.restricted();
+        UnitVectors points = graph.unitVectors();
+        assertTrue(points == graph.unitVectors());
+        assertTrue(points == graph.byTime().unitVectors());
+        Random random = new Random(5);
+        for (int i = 0; i < 10000; i += 1) {
+            double lat = 37.8 + random.nextDouble() * 0.1;
+            double lon = -122.3 + random.nextDouble() * 0.1;
+            if (i % 100 == 0) {
+                /* Points right next to a vertex, where rounding matters most. */
+                lat = graph.lat(i % graph.size()) + random.nextGaussian() * 1e-9;
+                lon = graph.lon(i % graph.size()) + random.nextGaussian() * 1e-9;
+            }
+            double phi = Math.toRadians(lat);
+            double lambda = Math.toRadians(lon);
+            int v = random.nextInt(graph.size());
+            double bound = points.lowerBound(v, Math.cos(phi) * Math.cos(lambda),
+                    Math.cos(phi) * Math.sin(lambda), Math.sin(phi));
+            double arc = GraphDB.haversine(graph.lat(v), graph.lon(v), lat, lon);
+            assertTrue(bound <= arc);
+            assertEquals(arc, bound, arc * 1e-6 + 1e-8);
+        }
+    }
+
+    @Test
+    public void testChordIsConsistent() throws Exception {
+        CompactGraph graph = TestTurnRestrictions.restricted();
+        UnitVectors points = graph.unitVectors();
+        for (int v = 0; v < graph.size(); v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                assertTrue(points.lowerBound(v, points.x(w), points.y(w), points.z(w))
+                        <= graph.weight(e));
+                for (int t = 0; t < graph.size(); t += 1) {
+                    double hv = points.lowerBound(v, points.x(t), points.y(t), points.z(t));
+                    double hw = points.lowerBound(w, points.x(t), points.y(t), points.z(t));
+                    assertTrue(hv <= graph.weight(e) + hw);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeBearings() throws Exception {
+        CompactGraph graph = TestTurnRestrictions.restricted();
+        for (int v = 0; v < graph.size(); v += 1) {
+            for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                int w = graph.target(e);
+                assertEquals(GraphDB.bearing(graph.lat(v), graph.lon(v), graph.lat(w),
+                        graph.lon(w)), graph.bearing(e), 1e-4);
+                assertEquals(graph.bearing(e), graph.byTime().bearing(e), 0.0f);
+                assertEquals(graph.bearing(e), graph.reversed().reversed().bearing(e), 0.0f);
+            }
+        }
+        CompactGraph reversed = graph.reversed();
+        for (int v = 0; v < reversed.size(); v += 1) {
+            for (int e = reversed.edgeStart(v); e < reversed.edgeEnd(v); e += 1) {
+                int w = reversed.target(e);
+                assertEquals(GraphDB.bearing(graph.lat(v), graph.lon(v), graph.lat(w),
+                        graph.lon(w)), reversed.bearing(e), 1e-4);
+            }
+        }
+    }
+}